@@ -0,0 +1,275 @@
+package Game;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 平衡与压力测试工具
+ *
+ * 在所有核心上并行运行大量按种子生成的无界面对局，英雄全部由HeroBot控制，
+ * 波次参数由WaveRules指定，结束后汇总：
+ * - 平衡：每局到达的波次（平均值和分位数）、消灭的敌人数量、达到帧数上限的局数
+ * - 性能：所有线程合计每秒推进的帧数、每帧耗时的分位数（p50/p99/p99.9/最长）、
+ *   每个线程的内存分配速率（按线程统计，不含其它线程）
+ * 同样的种子和规则得到同样的对局，性能数据可以直接和上次的运行比较；指定CSV文件时追加一行汇总
+ */
+public class BalanceRunner {
+    private final WaveRules rules;      // 波次规则
+    private final int heroNum;          // 每局英雄数量
+    private final int maxTicks;         // 每局最多帧数
+    private final TickHistogram histogram = new TickHistogram();  // 最近一次run所有对局的帧耗时
+
+    /**
+     * 单局结果
+     */
+    public static class MatchResult {
+        final long seed;                // 种子
+        final int wave;                 // 到达的波次
+        final long ticks;               // 运行的帧数
+        final int killed;               // 消灭的敌人数量
+        final boolean capped;           // 是否达到帧数上限（英雄没有全灭）
+        final long nanos;               // 模拟用时
+        final long allocatedBytes;      // 模拟期间本线程分配的内存
+
+        MatchResult(long seed, int wave, long ticks, int killed, boolean capped, long nanos, long allocatedBytes) {
+            this.seed = seed;
+            this.wave = wave;
+            this.ticks = ticks;
+            this.killed = killed;
+            this.capped = capped;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    /**
+     * 帧耗时直方图
+     * 1微秒一个桶，最多记录到MAX_MICROS微秒，更长的帧计入最后一个桶（最长耗时单独记录）
+     */
+    public static class TickHistogram {
+        public static final int MAX_MICROS = 100000;
+        private final int[] buckets = new int[MAX_MICROS + 1];
+        private long count;
+        private long maxNanos;
+
+        public void record(long nanos) {
+            buckets[(int) Math.min(nanos / 1000, MAX_MICROS)]++;
+            count++;
+            if(nanos > maxNanos) maxNanos = nanos;
+        }
+
+        public void clear() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            maxNanos = 0;
+        }
+
+        public void merge(TickHistogram other) {
+            for(int i = 0; i <= MAX_MICROS; i++)
+                buckets[i] += other.buckets[i];
+            count += other.count;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+        }
+
+        /**
+         * 获取分位数
+         * @param q 分位（0~1）
+         * @return 耗时（微秒，桶的上界）
+         */
+        public long percentileMicros(double q) {
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for(int i = 0; i <= MAX_MICROS; i++) {
+                seen += buckets[i];
+                if(seen >= rank && seen > 0) return i + 1;
+            }
+            return MAX_MICROS;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param rules 波次规则
+     * @param heroNum 每局英雄数量
+     * @param maxTicks 每局最多帧数
+     */
+    public BalanceRunner(WaveRules rules, int heroNum, int maxTicks) {
+        this.rules = rules;
+        this.heroNum = heroNum;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * 运行一局（在调用线程中执行）
+     * @param seed 种子
+     * @param histogram 记录每帧耗时的直方图（每个线程一个）
+     * @return 单局结果
+     */
+    public MatchResult play(long seed, TickHistogram histogram) {
+        World world = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, heroNum, seed, rules);
+        world.getPlanner().setParallel(false);  // 并行度由对局之间提供
+        HeroBot[] bots = new HeroBot[heroNum];
+        for(int i = 0; i < heroNum; i++)
+            bots[i] = new HeroBot(i);
+
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        while(!world.End() && world.getTick() < maxTicks) {
+            long t0 = System.nanoTime();
+            for(HeroBot bot : bots)
+                bot.apply(world);
+            world.tick();
+            histogram.record(System.nanoTime() - t0);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocStart;
+        return new MatchResult(seed, world.getWave(), world.getTick(), world.getKilledEnemyNum(),
+                !world.End(), nanos, allocated);
+    }
+
+    /**
+     * 获取最近一次run所有对局的帧耗时
+     * @return 直方图
+     */
+    public TickHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * 获取当前线程累计分配的内存（JVM不支持时返回0）
+     * @return 字节数
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+            if(sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * 在线程池中并行运行多局
+     * 每个线程把帧耗时记录在自己的直方图中，全部结束后合并（见getHistogram）
+     * @param matches 局数
+     * @param seed 第一局的种子（之后依次加1）
+     * @param threads 线程数量
+     * @return 按种子排列的结果
+     */
+    public List<MatchResult> run(int matches, long seed, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<TickHistogram> histograms = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<TickHistogram> local = ThreadLocal.withInitial(() -> {
+            TickHistogram h = new TickHistogram();
+            histograms.add(h);
+            return h;
+        });
+        try {
+            List<Future<MatchResult>> futures = new ArrayList<>(matches);
+            for(int i = 0; i < matches; i++) {
+                long matchSeed = seed + i;
+                futures.add(pool.submit(() -> play(matchSeed, local.get())));
+            }
+            List<MatchResult> results = new ArrayList<>(matches);
+            for(Future<MatchResult> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("对局模拟出错", e.getCause());
+                }
+            }
+            histogram.clear();
+            for(TickHistogram h : histograms)
+                histogram.merge(h);
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 平衡与压力测试入口
+     * 参数：[局数] [英雄数量] [每局最多帧数] [线程数] [种子] [波次规则] [CSV文件]
+     * 默认64局、2个英雄、20000帧、CPU核数个线程、种子1、默认规则（如"growth=5,cap=150,ghost=30,box=400"）、不写CSV
+     * CSV文件不存在或为空时先写入表头，之后每次运行追加一行
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        System.setProperty("java.awt.headless", "true");
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int heroNum = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        WaveRules rules = args.length > 5 ? WaveRules.parse(args[5]) : WaveRules.DEFAULT;
+        String csv = args.length > 6 ? args[6] : null;
+        if(matches < 1) throw new IllegalArgumentException("局数必须为正: " + matches);
+
+        BalanceRunner runner = new BalanceRunner(rules, heroNum, maxTicks);
+        long start = System.nanoTime();
+        List<MatchResult> results = runner.run(matches, seed, threads);
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        int[] waves = new int[results.size()];
+        long ticks = 0, nanos = 0, allocated = 0, killed = 0;
+        int capped = 0;
+        TickHistogram histogram = runner.getHistogram();
+        for(int i = 0; i < results.size(); i++) {
+            MatchResult r = results.get(i);
+            waves[i] = r.wave;
+            ticks += r.ticks;
+            nanos += r.nanos;
+            allocated += r.allocatedBytes;
+            killed += r.killed;
+            if(r.capped) capped++;
+        }
+        Arrays.sort(waves);
+        double meanWave = Arrays.stream(waves).average().orElse(0);
+        double ticksPerSec = ticks / wallSeconds;
+        double allocMBps = nanos == 0 ? 0 : allocated / (nanos / 1e9) / (1 << 20);
+
+        System.out.printf("规则 %s，%d局×%d个英雄，最多%d帧，%d个线程，用时%.1fs%n",
+                rules, matches, heroNum, maxTicks, threads, wallSeconds);
+        System.out.printf("存活波次：平均%.2f  最少%d  p10 %d  中位数%d  p90 %d  最多%d；平均消灭%.1f个敌人，%d局达到帧数上限%n",
+                meanWave, waves[0], waves[waves.length / 10], waves[waves.length / 2],
+                waves[Math.min(waves.length - 1, waves.length * 9 / 10)], waves[waves.length - 1],
+                killed / (double) matches, capped);
+        System.out.printf("吞吐量：合计每秒%.0f帧（每个线程%.0f帧）%n", ticksPerSec, ticks / (nanos / 1e9));
+        System.out.printf("每帧耗时：中位数%dus  p99 %dus  p99.9 %dus  最长%.1fms%n",
+                histogram.percentileMicros(0.5), histogram.percentileMicros(0.99),
+                histogram.percentileMicros(0.999), histogram.getMaxNanos() / 1e6);
+        System.out.printf("内存分配：每个线程%.1fMB/s，每帧%.1fKB%n", allocMBps, allocated / (double) Math.max(1, ticks) / 1024);
+
+        if(csv != null) {
+            boolean header = new File(csv).length() == 0;  // 文件不存在时长度也是0
+            try(PrintWriter out = new PrintWriter(new FileWriter(csv, true))) {
+                if(header) out.println("rules,matches,heroes,max_ticks,threads,seed,mean_wave,median_wave,capped,"
+                        + "ticks_per_sec,p50_us,p99_us,max_ms,alloc_mb_per_s");
+                out.printf("%s,%d,%d,%d,%d,%d,%.3f,%d,%d,%.0f,%d,%d,%.1f,%.1f%n",
+                        rules.toString().replace(',', ';'), matches, heroNum, maxTicks, threads, seed,
+                        meanWave, waves[waves.length / 2], capped, ticksPerSec,
+                        histogram.percentileMicros(0.5), histogram.percentileMicros(0.99),
+                        histogram.getMaxNanos() / 1e6, allocMBps);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package Game;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
 
 /**
  * 弹丸基类
@@ -82,34 +83,53 @@ public class Ball extends Weapon implements Cloneable{
 
     /**
      * 碰撞检测（重写）
-     * 弹丸不与持有者和其他武器碰撞
+     * 弹丸不与持有者碰撞（与其他弹丸的碰撞已由碰撞层排除）
      * @param object 要检测的对象
      * @return 是否发生碰撞
      */
     @Override
     public boolean collisionDetection(GameObject object) {
-        return ((!object.equals(this.host)) && !(object instanceof Weapon) && super.collisionDetection(object));
+        return ((!object.equals(this.host)) && super.collisionDetection(object));
+    }
+
+    /**
+     * 更新弹丸
+     * 每帧推进动画、更新位置并进行碰撞检测
+     * 移动前先用网格射线扫描本帧的位移：依次在进入每个静态阻挡网格的位置检测一次碰撞，
+     * 飞行速度超过障碍的厚度时也不会从障碍中穿过去；某个位置没有碰撞（如只擦过墙壁占用网格的角）时继续检查后面的阻挡
+     */
+    public void update(){
+        maintainState(3);  // 3帧循环动画
+        
+        int startX = x, startY = y;
+        int targetX = x + xIncrement, targetY = y + yIncrement;
+        GridRaycast raycast = world.getRaycast();
+        for(int hit = raycast.cast(startX, startY, targetX, targetY); hit >= 0;
+            hit = raycast.cast(startX, startY, targetX, targetY, hit)) {
+            this.x = startX + (int) ((long) xIncrement * hit / GridRaycast.ONE);
+            this.y = startY + (int) ((long) yIncrement * hit / GridRaycast.ONE);
+            if(world.collisionDetection(this)) return;
+        }
+        
+        // 更新弹丸位置
+        this.x = targetX;
+        this.y = targetY;
+        
+        // 碰撞检测
+        world.collisionDetection(this);
     }
 
     /**
      * 绘制弹丸
-     * 每帧更新位置并绘制动画
      * @param g 图形上下文
      */
     public void draw(Graphics g){
         // 根据方向选择图片帧
         int picY = imgOrder[dir == Direction.STOP ? oldDir.ordinal() : dir.ordinal()];
-        int picX = maintainState(3);  // 3帧循环动画
-        
-        // 更新弹丸位置
-        this.x += xIncrement;
-        this.y += yIncrement;
+        int picX = state < 0 ? 0 : state;  // 刚发射尚未更新的弹丸显示第0帧
         
         // 绘制弹丸
         drawOneImage(g, this.name, getPicOffset(), this.x, this.y, picX, picY);
-        
-        // 碰撞检测
-        world.collisionDetection(this);
     }
 
     /**
@@ -169,6 +189,35 @@ public class Ball extends Weapon implements Cloneable{
         return picOffset;
     }
 
+    /**
+     * 获取本帧绘制使用的精灵图帧（与draw一致）
+     * @return 列索引*16+行索引
+     */
+    public int getSpriteFrame(){
+        int picY = imgOrder[dir == Direction.STOP ? oldDir.ordinal() : dir.ordinal()];
+        int picX = state < 0 ? 0 : state;
+        return picX * 16 + picY;
+    }
+
+    /**
+     * 写入弹丸状态（追加弹药数量）
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        super.writeState(buf);
+        Varint.putVarInt(buf, num);
+    }
+
+    /**
+     * 读取弹丸状态
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        super.readState(buf, reader);
+        this.num = Varint.getVarInt(buf);
+    }
+
     /**
      * 转换为字符串
      * 显示武器名称和弹药数量
@@ -0,0 +1,330 @@
+package Game;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 批量训练环境
+ *
+ * 同时运行N个无界面的世界，每次step所有世界一起前进一帧（按固定区间分给线程池中的线程）：
+ * - 动作：每个英雄一个按键位掩码（第Hero.KEY_*位表示按住对应按键），与键盘和联机输入的语义相同
+ * - 观测：所有世界的观测直接写入一个预先分配的直接缓冲区（本机字节序的float数组），
+ *   每个世界占OBS_SIZE个float，Python等调用方可以零拷贝地把它当作[N, OBS_SIZE]的数组读取
+ * - 世界结束（所有英雄死亡）或达到最大帧数时自动用新种子重开，本次观测的done标记结束原因
+ * 世界内的敌人决策改为串行执行，并行度由环境的线程提供
+ *
+ * 每个世界的观测布局（float）：
+ * - 头部HEADER_SIZE个：奖励、done（0继续/1全灭/2达到最大帧数）、帧、波次、当前敌人数量
+ * - 每个英雄HERO_SIZE个：x/宽度、y/高度、生命值比例、是否存活、当前武器下标、火球弹药、剩余冷却帧数、朝向x、朝向y
+ *   之后是最近的NEAREST个敌人，每个ENEMY_SIZE个：是否存在、dx/VIEW_RADIUS、dy/VIEW_RADIUS、生命值比例、是否为Ghost
+ * 奖励为所有英雄共享：每消灭一个敌人+1，每损失一个英雄的满血量-1
+ */
+public class BatchEnv {
+    public static final int HEADER_SIZE = 5;        // 头部float数量
+    public static final int NEAREST = 8;            // 每个英雄观测的最近敌人数量
+    public static final int ENEMY_SIZE = 5;         // 每个敌人的float数量
+    public static final int HERO_SIZE = 9 + NEAREST * ENEMY_SIZE;  // 每个英雄的float数量
+    public static final int VIEW_RADIUS = 480;      // 观测敌人的范围
+    public static final int DONE_DEAD = 1;          // 所有英雄死亡
+    public static final int DONE_TRUNCATED = 2;     // 达到最大帧数
+
+    private final int envNum;                       // 世界数量
+    private final int heroNum;                      // 每个世界的英雄数量
+    private final int maxTicks;                     // 每局最大帧数（0表示不限）
+    private final int obsSize;                      // 每个世界的观测float数量
+    private final World[] worlds;                   // 世界
+    private final int[] lastKilled;                 // 上一帧累计消灭的敌人数量
+    private final int[] lastHP;                     // 上一帧每个英雄的生命值
+    private final long[] episodes;                  // 每个世界已开始的局数（用于生成种子）
+    private final long seed;                        // 基础种子
+    private final ByteBuffer observations;          // 观测缓冲区（直接缓冲区，本机字节序）
+    private final ForkJoinPool pool;                // 执行世界的线程池
+    private final List<Callable<Void>> tasks;       // 每个线程负责的区间（复用）
+    private int[] actions;                          // 本次step的动作
+
+    /**
+     * 区间任务
+     * 推进[from, to)区间的世界并写入观测，缓冲区只用绝对位置读写，各区间互不重叠
+     */
+    private class RangeTask implements Callable<Void> {
+        final int from, to;
+        final List<GameObject> nearby = new ArrayList<>();  // 视野查询结果（复用）
+        final Enemy[] nearest = new Enemy[NEAREST];          // 最近的敌人（复用）
+        final long[] distances = new long[NEAREST];          // 最近敌人的距离平方
+
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Void call() {
+            for(int i = from; i < to; i++)
+                stepWorld(i, this);
+            return null;
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param envNum 世界数量
+     * @param heroNum 每个世界的英雄数量（1~World.MAX_HEROES）
+     * @param seed 基础种子（第i个世界的第k局使用由它派生的种子，结果可重现）
+     * @param maxTicks 每局最大帧数（0表示不限）
+     * @param threads 线程数量
+     */
+    public BatchEnv(int envNum, int heroNum, long seed, int maxTicks, int threads) {
+        this.envNum = envNum;
+        this.heroNum = heroNum;
+        this.seed = seed;
+        this.maxTicks = maxTicks;
+        this.obsSize = HEADER_SIZE + heroNum * HERO_SIZE;
+        this.worlds = new World[envNum];
+        this.lastKilled = new int[envNum];
+        this.lastHP = new int[envNum * heroNum];
+        this.episodes = new long[envNum];
+        this.actions = new int[envNum * heroNum];
+        this.observations = ByteBuffer.allocateDirect(envNum * obsSize * 4).order(ByteOrder.nativeOrder());
+        threads = Math.max(1, Math.min(threads, envNum));
+        this.pool = new ForkJoinPool(threads);
+        this.tasks = new ArrayList<>(threads);
+        for(int t = 0; t < threads; t++)
+            tasks.add(new RangeTask(envNum * t / threads, envNum * (t + 1) / threads));
+    }
+
+    /**
+     * 重开所有世界并写入初始观测
+     * @return 观测缓冲区
+     */
+    public ByteBuffer reset() {
+        for(int i = 0; i < envNum; i++)
+            resetWorld(i);
+        RangeTask scratch = new RangeTask(0, 0);
+        for(int i = 0; i < envNum; i++)
+            writeObservation(i, 0, 0, scratch);
+        return observations;
+    }
+
+    /**
+     * 所有世界前进一帧
+     * @param actions 动作，长度为世界数量×英雄数量，第i个世界第h个英雄的动作在下标i*heroNum+h
+     * @return 观测缓冲区（与getObservations相同，内容已更新）
+     */
+    public ByteBuffer step(int[] actions) {
+        if(actions.length != envNum * heroNum)
+            throw new IllegalArgumentException("动作数量应为" + envNum * heroNum + ": " + actions.length);
+        if(worlds[0] == null) reset();
+        this.actions = actions;
+        try {
+            for(Future<Void> f : pool.invokeAll(tasks))
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("step被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("世界模拟出错", e.getCause());
+        }
+        return observations;
+    }
+
+    /**
+     * 推进一个世界并写入观测，结束时自动重开
+     * @param i 世界下标
+     * @param task 执行的区间任务（提供复用的临时数据）
+     */
+    private void stepWorld(int i, RangeTask task) {
+        World world = worlds[i];
+        List<Hero> heroes = world.getHeroes();
+        for(int h = 0; h < heroNum; h++)
+            heroes.get(h).setButtons(actions[i * heroNum + h]);
+        world.tick();
+
+        // 奖励：消灭敌人的数量减去英雄损失的生命值（以满血量为单位）
+        float reward = world.getKilledEnemyNum() - lastKilled[i];
+        lastKilled[i] = world.getKilledEnemyNum();
+        for(int h = 0; h < heroNum; h++) {
+            int hp = heroes.get(h).getHP();
+            if(hp < lastHP[i * heroNum + h]) reward -= (lastHP[i * heroNum + h] - hp) / (float) Hero.MAX_HP;
+            lastHP[i * heroNum + h] = hp;
+        }
+
+        int done = world.isEnd() ? DONE_DEAD : (maxTicks > 0 && world.getTick() >= maxTicks ? DONE_TRUNCATED : 0);
+        if(done != 0) {
+            try {
+                resetWorld(i);
+            } catch (RuntimeException e) {
+                WorldCodec.writeCrashSnapshot(world, "env" + i);
+                throw e;
+            }
+        }
+        writeObservation(i, reward, done, task);
+    }
+
+    /**
+     * 用下一个种子重开一个世界
+     * @param i 世界下标
+     */
+    private void resetWorld(int i) {
+        long worldSeed = seed * 0x9E3779B97F4A7C15L + i * 0xC2B2AE3D27D4EB4FL + episodes[i]++;
+        World world = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, heroNum, worldSeed);
+        world.getPlanner().setParallel(false);  // 并行度由环境的线程提供
+        worlds[i] = world;
+        lastKilled[i] = 0;
+        for(int h = 0; h < heroNum; h++)
+            lastHP[i * heroNum + h] = world.getHeroes().get(h).getHP();
+    }
+
+    /**
+     * 写入一个世界的观测
+     * @param i 世界下标
+     * @param reward 奖励
+     * @param done 结束标记
+     * @param task 提供复用的临时数据
+     */
+    private void writeObservation(int i, float reward, int done, RangeTask task) {
+        World world = worlds[i];
+        int p = i * obsSize * 4;
+        p = put(p, reward);
+        p = put(p, done);
+        p = put(p, world.getTick());
+        p = put(p, world.getWave());
+        p = put(p, world.getCurrentEnemyNum());
+        for(Hero hero : world.getHeroes()) {
+            p = put(p, hero.getX() / (float) world.getWidth());
+            p = put(p, hero.getY() / (float) world.getHeight());
+            p = put(p, hero.getHP() / (float) hero.getMaxHP());
+            p = put(p, hero.getDeadState() < 0 ? 1 : 0);
+            p = put(p, hero.getWeapons().indexOf(hero.getCurrentWeapon()));
+            p = put(p, ammoOf(hero));
+            p = put(p, hero.getCurrentWeapon().getColdDown());
+            Direction dir = hero.getDir() == Direction.STOP ? hero.getOldDir() : hero.getDir();
+            p = put(p, dir == Direction.STOP ? 0 : (float) Direction.getVectorX(dir));
+            p = put(p, dir == Direction.STOP ? 0 : (float) Direction.getVectorY(dir));
+            p = writeNearest(p, world, hero, task);
+        }
+    }
+
+    /**
+     * 写入离英雄最近的NEAREST个敌人（按距离从近到远，不足时补0）
+     * @return 写入后的位置
+     */
+    private int writeNearest(int p, World world, Hero hero, RangeTask task) {
+        int n = 0;
+        task.nearby.clear();
+        world.getSpatialIndex().query(hero.getX(), hero.getY(), VIEW_RADIUS, task.nearby);
+        for(GameObject obj : task.nearby) {
+            if(!(obj instanceof Enemy) || obj.getLifecycle() != LifecycleState.ACTIVE) continue;
+            long dx = obj.getX() - hero.getX(), dy = obj.getY() - hero.getY();
+            long d = dx * dx + dy * dy;
+            if(d > (long) VIEW_RADIUS * VIEW_RADIUS || (n == NEAREST && d >= task.distances[n - 1])) continue;
+            // 插入排序（NEAREST很小）
+            int k = n < NEAREST ? n++ : n - 1;
+            while(k > 0 && task.distances[k - 1] > d) {
+                task.distances[k] = task.distances[k - 1];
+                task.nearest[k] = task.nearest[k - 1];
+                k--;
+            }
+            task.distances[k] = d;
+            task.nearest[k] = (Enemy) obj;
+        }
+        for(int k = 0; k < NEAREST; k++) {
+            if(k < n) {
+                Enemy enemy = task.nearest[k];
+                p = put(p, 1);
+                p = put(p, (enemy.getX() - hero.getX()) / (float) VIEW_RADIUS);
+                p = put(p, (enemy.getY() - hero.getY()) / (float) VIEW_RADIUS);
+                p = put(p, enemy.getHP() / (float) enemy.getMaxHP());
+                p = put(p, enemy instanceof Ghost ? 1 : 0);
+                task.nearest[k] = null;
+            } else {
+                for(int f = 0; f < ENEMY_SIZE; f++)
+                    p = put(p, 0);
+            }
+        }
+        return p;
+    }
+
+    private static int ammoOf(Hero hero) {
+        for(Weapon weapon : hero.getWeapons())
+            if(weapon instanceof Ball) return ((Ball) weapon).getNum();
+        return 0;
+    }
+
+    private int put(int p, float value) {
+        observations.putFloat(p, value);
+        return p + 4;
+    }
+
+    /**
+     * 获取观测缓冲区
+     * @return 直接缓冲区（本机字节序），大小为世界数量×getObservationSize()×4字节
+     */
+    public ByteBuffer getObservations() {
+        return observations;
+    }
+
+    /**
+     * 获取每个世界的观测float数量
+     * @return float数量
+     */
+    public int getObservationSize() {
+        return obsSize;
+    }
+
+    public int getEnvNum() {
+        return envNum;
+    }
+
+    public int getHeroNum() {
+        return heroNum;
+    }
+
+    public World getWorld(int i) {
+        return worlds[i];
+    }
+
+    /**
+     * 关闭线程池
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * 吞吐量测试入口
+     * 参数：[世界数量] [步数] [线程数] [英雄数量]，默认64个世界、2000步、CPU核数个线程、2个英雄
+     * 动作由按种子生成的随机按键提供，输出每秒推进的世界帧数
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int envNum = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int heroNum = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        BatchEnv env = new BatchEnv(envNum, heroNum, 42, 5000, threads);
+        GameRandom random = new GameRandom(7);
+        int[] actions = new int[envNum * heroNum];
+        env.reset();
+        long start = System.nanoTime();
+        int episodes = 0;
+        for(int s = 0; s < steps; s++) {
+            if(s % 10 == 0)
+                for(int a = 0; a < actions.length; a++)
+                    actions[a] = random.nextInt(1 << Hero.KEY_NUM);
+            ByteBuffer obs = env.step(actions);
+            for(int i = 0; i < envNum; i++)
+                if(obs.getFloat((i * env.getObservationSize() + 1) * 4) != 0) episodes++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d个世界×%d步，%d个线程：每秒%.0f步（每步%.1fus），结束%d局，观测每个世界%d个float%n",
+                envNum, steps, threads, envNum * steps / seconds, seconds * 1e6 / steps, episodes, env.getObservationSize());
+        env.close();
+    }
+}
@@ -1,7 +1,6 @@
 package Game;
 
 import java.awt.*;
-import java.util.Random;
 
 /**
  * 血迹类
@@ -26,13 +25,35 @@ public class Blood extends GameObject{
         // HP=99999: 永不消失
         // collidable=false: 不可碰撞
         
-        Random rand = new Random();
+        GameRandom rand = world.getRandom();  // 使用世界的随机数，保证对局可重现
         int picX = Math.abs(rand.nextInt()) % 2;  // 随机选择列（0或1）
         int picY = Math.abs(rand.nextInt()) % 2;  // 随机选择行（0或1）
         this.picX = picX * 475;  // 转换为像素坐标
         this.picY = picY * 475;
     }
 
+    /**
+     * 构造方法（指定图片位置，读档时使用，不消耗随机数）
+     * @param x X坐标
+     * @param y Y坐标
+     * @param picX 精灵图X坐标
+     * @param picY 精灵图Y坐标
+     * @param world 所属世界
+     */
+    public Blood(int x, int y, int picX, int picY, World world) {
+        super("Blood", 0, 0, 99999, x, y, false, world);
+        this.picX = picX;
+        this.picY = picY;
+    }
+
+    public int getPicX() {
+        return picX;
+    }
+
+    public int getPicY() {
+        return picY;
+    }
+
     /**
      * 绘制血迹
      * 从精灵图中截取随机样式的血迹并绘制
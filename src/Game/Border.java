@@ -5,44 +5,58 @@ import java.awt.*;
 /**
  * 边界类
  * 继承自GameObject，用于限制游戏活动范围
- * 使用巨大的圆形碰撞体作为地图边界
+ * 碰撞体是整个活动区域的轴对齐包围盒，对象越界时直接夹回区域内
  */
 public class Border extends GameObject {
-    private int position;  // 边界位置（0上1下2左3右）
+    private int minX, minY;  // 活动区域左上角（对象边缘不能越过）
+    private int maxX, maxY;  // 活动区域右下角（对象边缘不能越过）
 
     /**
      * 构造方法
-     * 根据位置创建对应的边界
-     * @param position 边界位置（0上1下2左3右）
+     * 根据世界大小创建活动区域
      * @param world 所属世界
      */
-    public Border(int position, World world){
-        super("Border", 100000000, 0, 100000000, 0, 0, true, world);
-        // radius=100000000: 巨大的半径，确保能阻挡所有对象
+    public Border(World world){
+        super("Border", 0, 0, 100000000, world.getWidth() / 2, world.getHeight() / 2, true, world);
         // speed=0: 不移动
         // HP=100000000: 不可破坏
         // collidable=true: 可碰撞
         
-        // 根据位置设置边界中心坐标
-        // 边界圆心在地图外很远的地方，只有边缘与地图接触
-        switch(position){
-            case 0:  // 上边界
-                this.x = 0;
-                this.y = -100000000 + Role.PICOFFSET + 10;
-                break;
-            case 1:  // 下边界
-                this.x = 0;
-                this.y = 100000000 + world.getHeight() - Role.PICOFFSET;
-                break;
-            case 2:  // 左边界
-                this.x = -100000000 + 10;
-                this.y = 0;
-                break;
-            case 3:  // 右边界
-                this.x = 100000000 + world.getWidth() - 10;
-                this.y = 0;
-                break;
-        }
+        // 上边界留出角色头顶的空间，下边界留出角色脚下的空间
+        this.minX = 10;
+        this.minY = Role.PICOFFSET + 10;
+        this.maxX = world.getWidth() - 10;
+        this.maxY = world.getHeight() - Role.PICOFFSET;
+        this.x = (minX + maxX) / 2;
+        this.y = (minY + maxY) / 2;
+        this.halfWidth = (maxX - minX) / 2;
+        this.halfHeight = (maxY - minY) / 2;
+    }
+
+    /**
+     * 窄相检测（重写）
+     * 对象接触或越过边界时，把对象夹回活动区域内（额外留出2像素）
+     * @param mover 移动的对象
+     * @return 是否接触边界
+     */
+    protected boolean separate(GameObject mover){
+        int r = mover.getRadius();
+        boolean hit = false;
+        if(mover.x - r <= minX) { mover.x = minX + r + 2; hit = true; }
+        else if(mover.x + r >= maxX) { mover.x = maxX - r - 2; hit = true; }
+        if(mover.y - r <= minY) { mover.y = minY + r + 2; hit = true; }
+        else if(mover.y + r >= maxY) { mover.y = maxY - r - 2; hit = true; }
+        return hit;
+    }
+
+    /**
+     * 判断点是否在活动区域内
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 是否在区域内
+     */
+    public boolean contains(int x, int y){
+        return x > minX && x < maxX && y > minY && y < maxY;
     }
 
     /**
@@ -51,8 +65,8 @@ public class Border extends GameObject {
      * @param g 图形上下文
      */
     public void draw(Graphics g){
-        // 边界不可见，可选择性绘制调试用的圆弧
-        // g.drawArc(this.x, this.y, 100000000, 100000000, 0, 360);
+        // 边界不可见，可选择性绘制调试用的矩形
+        // g.drawRect(minX, minY, maxX - minX, maxY - minY);
     }
 
     /**
@@ -70,4 +84,20 @@ public class Border extends GameObject {
     public void onAttack(Weapon weapon){ 
         // 边界不受攻击影响
     }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
 }
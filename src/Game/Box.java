@@ -1,7 +1,7 @@
 package Game;
 
 import java.awt.*;
-import java.util.Random;
+import java.nio.ByteBuffer;
 
 /**
  * 宝箱类
@@ -9,8 +9,9 @@ import java.util.Random;
  * 拾取后会重生
  */
 public class Box extends GameObject{
-    public static final int DELAYTIME = 800;  // 重生延迟时间（帧数）
-    private int delay = 0;                     // 当前延迟计数器
+    public static final int DELAYTIME = 800;  // 默认重生延迟时间（帧数，实际使用WaveRules中的值）
+    private long respawnTick = 0;              // 重生的帧（由World的计时器调度）
+    private TimerWheel.TimerEvent respawnEvent; // 重生事件
 
     /**
      * 构造方法
@@ -27,13 +28,29 @@ public class Box extends GameObject{
     }
 
     /**
-     * 绘制宝箱
+     * 更新宝箱
      * 每帧检测碰撞（拾取判定）
+     */
+    public void update(){
+        world.collisionDetection(this);  // 检测是否有玩家接触
+    }
+
+    /**
+     * 绘制宝箱
      * @param g 图形上下文
      */
     public void draw(Graphics g){
-        world.collisionDetection(this);  // 检测是否有玩家接触
-        g.drawImage(imgMap.get(name), x - 20, y - 10, 60, 60, null);
+        drawAt(g, x, y);
+    }
+
+    /**
+     * 在指定位置绘制宝箱（静态版本，供只持有快照的客户端使用）
+     * @param g 图形上下文
+     * @param x X坐标
+     * @param y Y坐标
+     */
+    public static void drawAt(Graphics g, int x, int y){
+        g.drawImage(imgMap.get("Box"), x - 20, y - 10, 60, 60, null);
     }
     
     /**
@@ -43,7 +60,7 @@ public class Box extends GameObject{
      */
     public void collisionResponse(GameObject object){
         if(object instanceof Hero) {  // 只有玩家可以拾取
-            Random rand = new Random();
+            GameRandom rand = world.getRandom();
             int n = Math.abs(rand.nextInt()) % 100;  // 随机掉落
             
             // 掉落概率：45%弹药，45%生命，10%无
@@ -52,8 +69,7 @@ public class Box extends GameObject{
             else if(n < 90)
                 bloodBox((Hero) object);     // 补充生命
             
-            world.pickUpBox(this);  // 从世界移除并加入重生队列
-            setDelay(DELAYTIME);    // 设置重生延迟
+            world.pickUpBox(this);  // 从世界移除并加入重生队列（同时设置重生延迟）
         }
     }
 
@@ -62,7 +78,36 @@ public class Box extends GameObject{
      * @param delay 延迟帧数
      */
     public void setDelay(int delay){
-        this.delay = delay;
+        this.respawnTick = world.getTick() + delay;
+    }
+
+    /**
+     * 设置重生事件（由World登记）
+     * @param respawnEvent 重生事件
+     */
+    public void setRespawnEvent(TimerWheel.TimerEvent respawnEvent) {
+        this.respawnEvent = respawnEvent;
+    }
+
+    /**
+     * 写入宝箱状态（追加重生帧和重生事件）
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        super.writeState(buf);
+        Varint.putVarLong(buf, respawnTick);
+        WorldCodec.putEvent(buf, world.getTimer(), respawnEvent);
+    }
+
+    /**
+     * 读取宝箱状态
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        super.readState(buf, reader);
+        this.respawnTick = Varint.getVarLong(buf);
+        this.respawnEvent = reader.readEvent(buf, () -> world.produceBox(this));
     }
 
     /**
@@ -70,7 +115,7 @@ public class Box extends GameObject{
      * @return 剩余延迟帧数
      */
     public int getDelay() {
-        return delay;
+        return (int) Math.max(0, respawnTick - world.getTick());
     }
 
     /**
@@ -105,20 +150,16 @@ public class Box extends GameObject{
 
     /**
      * 碰撞检测（重写）
-     * 只检测与玩家的碰撞
+     * 只检测接触，不推开对象（只与玩家检测已由碰撞层保证）
      * @param object 要检测的对象
      * @return 是否发生碰撞
      */
     public boolean collisionDetection(GameObject object){
-        if(!(object instanceof Hero)) return false;  // 只检测玩家
-        
-        // 圆形碰撞检测
-        double deltaX = this.x - object.getX();
-        double deltaY = (this.y - object.getY());
-        double d = Math.sqrt(Math.pow(deltaX, 2) + Math.pow(deltaY, 2));
-        int R = this.getRadius() + object.getRadius();
+        // 圆形碰撞检测（比较距离平方，无需开方）
+        long deltaX = this.x - object.getX();
+        long deltaY = this.y - object.getY();
+        long R = this.getRadius() + object.getRadius();
         
-        if(d <= R) return true;
-        return false;
+        return deltaX * deltaX + deltaY * deltaY <= R * R;
     }
 }
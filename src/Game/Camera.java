@@ -0,0 +1,122 @@
+package Game;
+
+import java.util.List;
+
+/**
+ * 摄像机（视口）
+ *
+ * 世界可以比窗口大很多倍，绘制时只显示以摄像机为中心、窗口大小的一块区域：
+ * - 单人时跟随英雄，多人时跟随存活英雄的中点（全部阵亡时跟随所有英雄的中点）
+ * - 视口被限制在世界范围内，世界比窗口小时居中显示
+ * - 绘制只处理视口（向外扩展MARGIN）内的对象，耗时与屏幕上的内容有关，与世界中的对象总数无关
+ * 摄像机只影响绘制，不属于模拟状态
+ */
+public class Camera {
+    public static final int MARGIN = 64;  // 精灵图、武器和名称超出对象中心的范围
+
+    private final int viewWidth;   // 视口宽度
+    private final int viewHeight;  // 视口高度
+    private int left;              // 视口左上角X坐标（世界坐标）
+    private int top;               // 视口左上角Y坐标（世界坐标）
+
+    /**
+     * 构造方法
+     * @param viewWidth 视口宽度
+     * @param viewHeight 视口高度
+     */
+    public Camera(int viewWidth, int viewHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    /**
+     * 把视口中心移到指定位置（限制在世界范围内）
+     * @param x 中心X坐标
+     * @param y 中心Y坐标
+     * @param worldWidth 世界宽度
+     * @param worldHeight 世界高度
+     */
+    public void center(int x, int y, int worldWidth, int worldHeight) {
+        this.left = clamp(x - viewWidth / 2, worldWidth - viewWidth);
+        this.top = clamp(y - viewHeight / 2, worldHeight - viewHeight);
+    }
+
+    /**
+     * 跟随英雄（存活英雄的中点）
+     * @param heroes 英雄列表
+     * @param worldWidth 世界宽度
+     * @param worldHeight 世界高度
+     */
+    public void follow(List<Hero> heroes, int worldWidth, int worldHeight) {
+        long sx = 0, sy = 0;
+        int n = 0;
+        for(Hero hero : heroes) {
+            if(hero.getHP() <= 0) continue;
+            sx += hero.getX();
+            sy += hero.getY();
+            n++;
+        }
+        if(n == 0) {
+            for(Hero hero : heroes) {
+                sx += hero.getX();
+                sy += hero.getY();
+                n++;
+            }
+        }
+        if(n == 0) return;
+        center((int) (sx / n), (int) (sy / n), worldWidth, worldHeight);
+    }
+
+    /**
+     * 把视口左上角限制在[0, max]内，max小于0（世界比视口小）时居中
+     * @param value 左上角坐标
+     * @param max 最大值
+     * @return 限制后的坐标
+     */
+    private static int clamp(int value, int max) {
+        if(max < 0) return max / 2;
+        return Math.max(0, Math.min(max, value));
+    }
+
+    /**
+     * 判断对象中心是否在视口（向外扩展MARGIN）内
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 是否需要绘制
+     */
+    public boolean isVisible(int x, int y) {
+        return x >= getCullLeft() && x <= getCullRight() && y >= getCullTop() && y <= getCullBottom();
+    }
+
+    public int getCullLeft() {
+        return left - MARGIN;
+    }
+
+    public int getCullTop() {
+        return top - MARGIN;
+    }
+
+    public int getCullRight() {
+        return left + viewWidth + MARGIN;
+    }
+
+    public int getCullBottom() {
+        return top + viewHeight + MARGIN;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    public int getViewHeight() {
+        return viewHeight;
+    }
+}
@@ -0,0 +1,118 @@
+package Game;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 碰撞层配置类
+ * 
+ * 每个游戏对象属于一个碰撞层（layer，一个二进制位），
+ * 并持有一个碰撞掩码（mask，表示它会与哪些层发生碰撞）
+ * 粗筛阶段只需一次按位与：(a.mask & b.layer) == 0 即可排除，无需任何距离计算
+ * 
+ * 碰撞矩阵的每一行表示"该层的对象移动时检测哪些层"，不要求对称：
+ * - 宝箱检测英雄（拾取），英雄不检测宝箱
+ * - 墙壁、边界是静态的，不主动检测任何层
+ * 
+ * 新增实体类型时只需在静态初始化块中注册名称对应的层即可
+ */
+public class CollisionLayers {
+    public static final int NONE = 0;                 // 不参与碰撞
+    public static final int HERO = 1;                 // 英雄
+    public static final int ENEMY = 1 << 1;           // 敌人
+    public static final int PROJECTILE = 1 << 2;      // 弹丸
+    public static final int WALL = 1 << 3;            // 墙壁
+    public static final int BORDER = 1 << 4;          // 边界
+    public static final int PICKUP = 1 << 5;          // 可拾取物（宝箱）
+    public static final int NAV_BLOCKING = HERO | ENEMY | PROJECTILE | WALL;  // 阻挡寻路的层
+    public static final int STATIC = WALL | BORDER | PICKUP;                  // 静态（不移动）的层
+
+    private static final Map<String, Integer> layers = new HashMap<>();  // 对象名称 → 碰撞层
+    private static final int[] collisionMatrix = new int[32];            // 碰撞层序号 → 检测的层
+    private static final int[] attackMatrix = new int[32];               // 武器持有者的层序号 → 可攻击的层
+
+    /**
+     * 静态初始化块
+     * 注册所有实体类型的碰撞层和层之间的碰撞关系
+     */
+    static {
+        // 对象名称对应的层（武器和血迹不在世界中碰撞，属于NONE）
+        layers.put("Hero", HERO);
+        layers.put("Monster", ENEMY);
+        layers.put("Ghost", ENEMY);
+        layers.put("Fireball", PROJECTILE);
+        layers.put("Ghostball", PROJECTILE);
+        layers.put("Wall", WALL);
+        layers.put("Border", BORDER);
+        layers.put("Box", PICKUP);
+
+        // 碰撞矩阵：角色之间、角色与弹丸/墙壁/边界碰撞
+        setCollisionMask(HERO, HERO | ENEMY | PROJECTILE | WALL | BORDER);
+        setCollisionMask(ENEMY, HERO | ENEMY | PROJECTILE | WALL | BORDER);
+        // 弹丸不与其他弹丸碰撞
+        setCollisionMask(PROJECTILE, HERO | ENEMY | WALL | BORDER);
+        // 宝箱只检测英雄（拾取判定）
+        setCollisionMask(PICKUP, HERO);
+
+        // 攻击矩阵：英雄可以攻击所有角色，敌人不攻击敌人
+        setAttackMask(HERO, HERO | ENEMY);
+        setAttackMask(ENEMY, HERO);
+    }
+
+    /**
+     * 设置碰撞层的碰撞掩码
+     * @param layer 碰撞层（单个二进制位）
+     * @param mask 该层检测的层
+     */
+    public static void setCollisionMask(int layer, int mask) {
+        collisionMatrix[Integer.numberOfTrailingZeros(layer)] = mask;
+    }
+
+    /**
+     * 设置武器持有者所在层的攻击掩码
+     * @param layer 持有者的碰撞层
+     * @param mask 可攻击的层
+     */
+    public static void setAttackMask(int layer, int mask) {
+        attackMatrix[Integer.numberOfTrailingZeros(layer)] = mask;
+    }
+
+    /**
+     * 注册实体类型
+     * @param name 对象名称
+     * @param layer 碰撞层
+     */
+    public static void register(String name, int layer) {
+        layers.put(name, layer);
+    }
+
+    /**
+     * 获取对象名称对应的碰撞层
+     * @param name 对象名称
+     * @return 碰撞层，未注册返回NONE
+     */
+    public static int layerOf(String name) {
+        Integer layer = layers.get(name);
+        return layer == null ? NONE : layer;
+    }
+
+    /**
+     * 获取碰撞层的碰撞掩码
+     * @param layer 碰撞层
+     * @return 碰撞掩码
+     */
+    public static int collisionMaskOf(int layer) {
+        if(layer == NONE) return NONE;
+        return collisionMatrix[Integer.numberOfTrailingZeros(layer)];
+    }
+
+    /**
+     * 获取持有者所在层的攻击掩码
+     * @param layer 持有者的碰撞层
+     * @return 攻击掩码
+     */
+    public static int attackMaskOf(int layer) {
+        if(layer == NONE) return NONE;
+        return attackMatrix[Integer.numberOfTrailingZeros(layer)];
+    }
+}
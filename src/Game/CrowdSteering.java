@@ -0,0 +1,206 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 敌人的局部避让（分离 + 互惠速度障碍RVO）
+ *
+ * 全局路线仍由寻路决定，路径给出的方向只是"期望速度"；读阶段再从空间索引取出附近的敌人，
+ * 在九个候选速度（八个方向和停止）中选代价最小的一个：
+ * 1. 偏离期望速度的代价：候选速度与期望速度之差的平方，停下额外加一点，被挡住时宁可绕开也不原地等待
+ * 2. 速度障碍的代价：按RVO，假设对方也承担一半的避让，用2v' - vA - vB作为相对速度，
+ *    算出与每个邻居在预见帧数内相撞的最早时间，越早相撞代价越高；已经重叠时只有继续靠近的速度才算相撞
+ * 3. 分离：与靠得太近的邻居的距离差推出一个离开的方向，候选速度沿这个方向时代价降低
+ * 候选速度前方几帧内碰到地图障碍时直接排除，避让不会把敌人推向墙壁
+ *
+ * 邻居的位置和方向只在写阶段改变，读阶段可以并行读取；邻居的影响取最小值或整数求和，
+ * 与空间索引中对象的顺序无关（读档后索引的顺序可能不同，结果仍然一致）
+ * 角色只能沿八个方向移动，速度与Role.move相同地按方向和速率取整
+ */
+public class CrowdSteering {
+    public static final int RANGE = 64;         // 邻居查询半径（像素）
+    public static final int HORIZON = 12;       // 预见帧数（更晚的相撞不考虑）
+    public static final int LOOKAHEAD = 4;      // 检查前方地图障碍的帧数
+    private static final double COLLIDE = 12;   // 马上相撞的代价（按预见帧数内的剩余时间线性减小）
+    private static final double STOP = 6;       // 停下的额外代价
+    private static final double SEPARATE = 0.5; // 分离方向上每单位速度降低的代价
+    private static final int SPACING = 4;       // 分离的间隙（两个半径之和再加上的像素）
+    private static final Direction[] CANDIDATES = {
+            Direction.R, Direction.RU, Direction.U, Direction.LU,
+            Direction.L, Direction.LD, Direction.D, Direction.RD, Direction.STOP};
+
+    private final World world;
+    private final Enemy enemy;
+    private final List<GameObject> neighbours = new ArrayList<>();  // 复用的查询结果（每个敌人一个，只在自己的读阶段使用）
+
+    /**
+     * 构造方法
+     * @param world 所属世界
+     * @param enemy 避让的敌人
+     */
+    public CrowdSteering(World world, Enemy enemy) {
+        this.world = world;
+        this.enemy = enemy;
+    }
+
+    /**
+     * 根据附近的敌人调整移动方向（读阶段调用，只读取邻居）
+     * @param preferred 沿路径的期望方向
+     * @return 实际移动的方向，附近没有敌人时就是期望方向
+     */
+    public Direction steer(Direction preferred) {
+        if(preferred == Direction.STOP) return preferred;
+        neighbours.clear();
+        world.getSpatialIndex().query(enemy.getX(), enemy.getY(), RANGE, neighbours);
+        int x = enemy.getX(), y = enemy.getY(), speed = enemy.getSpeed();
+        // 分离方向（整数求和，与邻居的顺序无关）
+        int sepX = 0, sepY = 0, count = 0;
+        for(int i = 0; i < neighbours.size(); i++) {
+            GameObject other = neighbours.get(i);
+            if(!isNeighbour(other)) continue;
+            count++;
+            int dx = x - other.getX(), dy = y - other.getY();
+            int gap = enemy.getRadius() + other.getRadius() + SPACING;
+            double d = Math.sqrt((double) dx * dx + (double) dy * dy);
+            if(d >= gap) continue;
+            if(d == 0) {
+                // 完全重合时按编号分开（两个敌人得到相反的方向）
+                sepX += enemy.getId() < other.getId() ? -16 : 16;
+                continue;
+            }
+            sepX += (int) (dx * 16 * (gap - d) / (d * gap));
+            sepY += (int) (dy * 16 * (gap - d) / (d * gap));
+        }
+        if(count == 0) return preferred;
+
+        int prefX = xIncrement(preferred, speed), prefY = yIncrement(preferred, speed);
+        int selfX = xIncrement(enemy.getDir(), speed), selfY = yIncrement(enemy.getDir(), speed);
+        WorldGrids grids = world.getWorldGrids();
+        Direction best = preferred;
+        double bestCost = Double.MAX_VALUE;
+        for(int c = -1; c < CANDIDATES.length; c++) {
+            Direction dir = c < 0 ? preferred : CANDIDATES[c];  // 期望方向最先比较，代价相同时保持原方向
+            if(c >= 0 && dir == preferred) continue;
+            int vx = xIncrement(dir, speed), vy = yIncrement(dir, speed);
+            if(dir != Direction.STOP && !grids.isFree(x + vx * LOOKAHEAD, y + vy * LOOKAHEAD, enemy.getRadius())) continue;
+            double cost = (vx - prefX) * (vx - prefX) + (vy - prefY) * (vy - prefY);
+            if(dir == Direction.STOP) cost += STOP;
+            cost -= SEPARATE * (vx * sepX + vy * sepY) / 16.0;
+            double collide = HORIZON;
+            for(int i = 0; i < neighbours.size() && collide > 0; i++) {
+                GameObject other = neighbours.get(i);
+                if(!isNeighbour(other)) continue;
+                int otherSpeed = other.getSpeed();
+                int wx = 2 * vx - selfX - xIncrement(other.getDir(), otherSpeed);
+                int wy = 2 * vy - selfY - yIncrement(other.getDir(), otherSpeed);
+                collide = Math.min(collide, timeToCollision(other.getX() - x, other.getY() - y, wx, wy,
+                        enemy.getRadius() + other.getRadius()));
+            }
+            cost += COLLIDE * (HORIZON - collide) / HORIZON;
+            if(cost < bestCost) {
+                bestCost = cost;
+                best = dir;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 判断查询到的对象是否参与避让（其他活着的敌人；英雄是追击的目标，不避让）
+     */
+    private boolean isNeighbour(GameObject other) {
+        return other != enemy && other.getHP() > 0 && other.isCollidable()
+                && (other.getCollisionLayer() & CollisionLayers.ENEMY) != 0;
+    }
+
+    /**
+     * 以相对速度(wx, wy)移动时，与相对位置(px, py)处的邻居相撞（距离小于radius）的最早时间
+     * @return 帧数，已经重叠并继续靠近时返回0，预见帧数内不会相撞时返回HORIZON
+     */
+    private static double timeToCollision(int px, int py, int wx, int wy, int radius) {
+        long dist2 = (long) px * px + (long) py * py;
+        long r2 = (long) radius * radius;
+        long dot = (long) px * wx + (long) py * wy;  // 大于0表示正在靠近
+        if(dist2 < r2) return dot > 0 ? 0 : HORIZON;
+        long w2 = (long) wx * wx + (long) wy * wy;
+        if(dot <= 0 || w2 == 0) return HORIZON;
+        // |p - w·t| = radius 的较小根
+        double disc = (double) dot * dot - (double) w2 * (dist2 - r2);
+        if(disc < 0) return HORIZON;
+        double t = (dot - Math.sqrt(disc)) / w2;
+        return Math.min(HORIZON, t);
+    }
+
+    /**
+     * 方向对应的X增量（与GameObject.setxIncrement相同）
+     */
+    private static int xIncrement(Direction dir, int speed) {
+        if(dir == Direction.STOP) return 0;
+        return (int) (speed * Math.cos(Math.toRadians(Direction.toDegree(dir))));
+    }
+
+    /**
+     * 方向对应的Y增量（与GameObject.setyIncrement相同）
+     */
+    private static int yIncrement(Direction dir, int speed) {
+        if(dir == Direction.STOP) return 0;
+        return -(int) (speed * Math.sin(Math.toRadians(Direction.toDegree(dir))));
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[敌人数量] [世界宽度] [世界高度] [障碍百分比] [帧数] [种子]，默认600个、2000×1500、5%、1500帧、种子1
+     * 同一局（尸潮规则，英雄由HeroBot控制、每帧回满生命值）分别关闭和开启局部避让运行，
+     * 输出每个敌人每秒碰撞后重新寻路的次数、停下的比例、英雄每秒受到的攻击和每帧耗时
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+        int percent = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int ticks = args.length > 4 ? Integer.parseInt(args[4]) : 1500;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+        TileMap map = TileMap.generate(width / Grid.LENGTH, height / Grid.LENGTH, Grid.LENGTH, percent, seed);
+        System.out.printf("地图%d×%d，障碍%d%%，%d个敌人，%d帧，种子%d%n", width, height, percent, count, ticks, seed);
+
+        for(int round = 0; round < 2; round++) {
+            int frames = round == 0 ? ticks / 5 : ticks;  // 第一轮预热
+            for(boolean steering : new boolean[]{false, true}) {
+                World world = new World(map, 1, seed, WaveRules.horde(count, 200));
+                world.setCrowdSteering(steering);
+                world.setStateHash(new StateHash());
+                HeroBot bot = new HeroBot(0);
+                Map<GameObject, int[]> positions = new HashMap<>();
+                long replans = 0, stopped = 0, enemyTicks = 0, moved = 0, hits = 0;
+                long start = System.nanoTime();
+                for(int i = 0; i < frames; i++) {
+                    Hero hero = world.getHeroes().get(0);
+                    hero.setHP(Hero.MAX_HP);
+                    bot.apply(world);
+                    world.tick();
+                    if(hero.getHP() < Hero.MAX_HP) hits++;
+                    for(Iterator<GameObject> it = world.getObjectsIterator(); it.hasNext(); ) {
+                        GameObject obj = it.next();
+                        if(!(obj instanceof Enemy) || obj.getHP() <= 0) continue;
+                        int[] last = positions.put(obj, new int[]{obj.getX(), obj.getY()});
+                        if(last != null) moved += Math.abs(obj.getX() - last[0]) + Math.abs(obj.getY() - last[1]);
+                        if(((Enemy) obj).isReplan()) replans++;
+                        if(obj.getDir() == Direction.STOP) stopped++;
+                        enemyTicks++;
+                    }
+                }
+                if(round == 0) continue;
+                double ms = (System.nanoTime() - start) / 1e6 / frames;
+                double seconds = Math.max(1, enemyTicks) / 30.0;
+                System.out.printf("%s：每个敌人每秒重新寻路%.3f次，停下%.1f%%，每帧移动%.2f像素，英雄受击的帧%.1f%%，每帧%.2fms，状态哈希%016x%n",
+                        steering ? "局部避让" : "碰撞停下", replans / seconds, stopped * 100.0 / Math.max(1, enemyTicks),
+                        (double) moved / Math.max(1, enemyTicks), hits * 100.0 / frames, ms, world.getStateHash().getTickHash());
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package Game;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 一致性检查工具
+ *
+ * 用相同的种子和相同的输入同时运行两个世界，每帧比较状态哈希，报告第一个出现差异的帧和实体：
+ * - repeat：两个世界的配置完全相同，检查模拟本身是否可重现（没有依赖时间、哈希表顺序等的隐藏状态）
+ * - threads：参照世界单线程决策，另一个世界用多个线程并行决策（每个子任务只处理一个敌人），
+ *   检查并行读阶段与串行执行的结果完全一致
+ * - perturb：与repeat相同，但在较早的一帧（不晚于PERTURB_TICK，游戏结束前）修改其中一个世界的一个敌人，
+ *   用于确认检查工具本身能发现差异：发现差异是预期结果，没有发现或没能注入差异时以状态码1退出
+ * 输入由按种子生成的随机按键序列提供（每个英雄每隔若干帧换一组按键）
+ */
+public class DesyncChecker {
+    public static final int PERTURB_TICK = 300;  // perturb模式最晚注入差异的帧（默认参数下游戏一定还没有结束）
+
+    /**
+     * 随机输入
+     * 按种子为每个英雄生成按键位掩码，每组按键保持5~40帧
+     */
+    public static class RandomInput {
+        private final GameRandom random;  // 独立于世界的随机数（不影响模拟的随机序列）
+        private final int[] buttons;      // 每个英雄当前的按键
+        private final long[] nextChange;  // 每个英雄下一次换按键的帧
+
+        /**
+         * 构造方法
+         * @param seed 输入种子
+         * @param heroNum 英雄数量
+         */
+        public RandomInput(long seed, int heroNum) {
+            this.random = new GameRandom(seed);
+            this.buttons = new int[heroNum];
+            this.nextChange = new long[heroNum];
+        }
+
+        /**
+         * 计算本帧每个英雄的按键并应用到世界
+         * @param world 游戏世界（在tick之前调用）
+         */
+        public void apply(World world) {
+            long tick = world.getTick();
+            for(int i = 0; i < buttons.length; i++) {
+                if(tick >= nextChange[i]) {
+                    buttons[i] = next();
+                    nextChange[i] = tick + 5 + random.nextInt(36);
+                }
+                world.getHeroes().get(i).setButtons(buttons[i]);
+            }
+        }
+
+        /**
+         * 生成一组按键：随机方向（可能不动），一半时间攻击，偶尔切换武器或放大招
+         * @return 按键位掩码
+         */
+        private int next() {
+            int mask = 0;
+            int dir = random.nextInt(9);
+            if(dir == 1 || dir == 2 || dir == 8) mask |= 1 << Hero.KEY_LEFT;
+            if(dir == 2 || dir == 3 || dir == 4) mask |= 1 << Hero.KEY_UP;
+            if(dir == 4 || dir == 5 || dir == 6) mask |= 1 << Hero.KEY_RIGHT;
+            if(dir == 6 || dir == 7 || dir == 8) mask |= 1 << Hero.KEY_DOWN;
+            if(random.nextInt(2) == 0) mask |= 1 << Hero.KEY_ATTACK;
+            int r = random.nextInt(20);
+            if(r == 0) mask |= 1 << Hero.KEY_SWITCH;
+            else if(r == 1) mask |= 1 << Hero.KEY_ULTIMATE;
+            return mask;
+        }
+    }
+
+    /**
+     * 比较两个世界
+     * @param reference 参照世界
+     * @param candidate 被检查的世界
+     * @param inputSeed 输入种子
+     * @param ticks 最多运行帧数
+     * @param perturbTick 在这一帧修改被检查的世界（-1表示不修改；这一帧没有敌人时在之后第一个有敌人的帧修改）
+     * @return 是否全部一致
+     * @throws IllegalStateException 要求修改，但游戏结束或达到帧数时还没有修改
+     */
+    public static boolean compare(World reference, World candidate, long inputSeed, int ticks, long perturbTick) {
+        StateHash refHash = new StateHash();
+        StateHash candHash = new StateHash();
+        reference.setStateHash(refHash);
+        candidate.setStateHash(candHash);
+        RandomInput refInput = new RandomInput(inputSeed, reference.getHeroes().size());
+        RandomInput candInput = new RandomInput(inputSeed, candidate.getHeroes().size());
+
+        boolean perturbed = perturbTick < 0;
+        for(int i = 0; i < ticks && !reference.End(); i++) {
+            refInput.apply(reference);
+            candInput.apply(candidate);
+            reference.tick();
+            candidate.tick();
+            if(!perturbed && candidate.getTick() >= perturbTick) perturbed = perturb(candidate);
+
+            if(refHash.getTickHash() != candHash.getTickHash()) {
+                report(reference, candidate, refHash, candHash);
+                return false;
+            }
+        }
+        if(!perturbed) throw new IllegalStateException("运行到第" + reference.getTick() + "帧也没有在第" + perturbTick + "帧之后注入差异");
+        System.out.printf("运行%d帧（第%d波）全部一致，链式哈希%016x，每帧计算哈希%.1fus%n",
+                reference.getTick(), reference.getWave(), refHash.getChainHash(),
+                refHash.getAverageNanos() / 1e3);
+        return true;
+    }
+
+    /**
+     * 修改世界中的第一个敌人（perturb模式）
+     * @param world 游戏世界
+     * @return 是否找到敌人并修改
+     */
+    private static boolean perturb(World world) {
+        for(Iterator<GameObject> iter = world.getObjectsIterator(); iter.hasNext(); ) {
+            GameObject obj = iter.next();
+            if(obj instanceof Enemy) {
+                obj.setHP(obj.getHP() - 1);
+                System.out.println("第" + world.getTick() + "帧修改了对象" + obj.getId() + "的生命值");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 报告第一个出现差异的帧和实体
+     */
+    private static void report(World reference, World candidate, StateHash refHash, StateHash candHash) {
+        System.out.printf("第%d帧出现差异：参照%016x，被检查%016x%n",
+                reference.getTick(), refHash.getTickHash(), candHash.getTickHash());
+        int index = refHash.firstMismatch(candHash);
+        if(index >= refHash.getEntityCount() && index >= candHash.getEntityCount()) {
+            System.out.println("所有实体相同，世界自身的状态（随机数、波次计数或血迹）不同");
+            return;
+        }
+        int refId = index < refHash.getEntityCount() ? refHash.getEntityId(index) : 0;
+        int candId = index < candHash.getEntityCount() ? candHash.getEntityId(index) : 0;
+        System.out.println("按编号排列的第" + (index + 1) + "个实体不同：");
+        System.out.println("  参照:   " + describe(StateHash.find(reference, refId)));
+        System.out.println("  被检查: " + describe(StateHash.find(candidate, candId)));
+        if(refId != candId) {
+            System.out.println("  （两个世界的实体不同，被检查世界中的对象" + refId + "：" + describe(StateHash.find(candidate, refId)) + "）");
+        }
+    }
+
+    private static String describe(GameObject obj) {
+        if(obj == null) return "无";
+        return String.format("%s#%d %s 坐标(%d,%d) 生命值%d 方向%s", obj.getClass().getSimpleName(), obj.getId(),
+                obj.getLifecycle(), obj.getX(), obj.getY(), obj.getHP(), obj.getDir());
+    }
+
+    /**
+     * 检查工具入口
+     * 参数：[模式repeat|threads|perturb] [种子] [帧数] [线程数]，默认threads、种子42、5000帧、CPU核数个线程
+     * 发现差异时以状态码1退出；perturb模式相反，发现注入的差异时正常退出，没有发现或没能注入时以状态码1退出
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String mode = args.length > 0 ? args[0] : "threads";
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        World reference = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, 2, seed);
+        World candidate = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, 2, seed);
+        reference.getPlanner().setParallel(false);
+        long perturbTick = -1;
+        ForkJoinPool pool = null;
+        switch (mode) {
+            case "repeat":
+                candidate.getPlanner().setParallel(false);
+                break;
+            case "threads":
+                pool = new ForkJoinPool(Math.max(2, threads));
+                candidate.setPlanner(new EnemyPlanner(pool, 1));
+                break;
+            case "perturb":
+                candidate.getPlanner().setParallel(false);
+                perturbTick = Math.min(ticks / 2, PERTURB_TICK);
+                break;
+            default:
+                throw new IllegalArgumentException("未知模式: " + mode);
+        }
+        boolean same;
+        try {
+            same = compare(reference, candidate, seed * 31 + 7, ticks, perturbTick);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        } finally {
+            if(pool != null) pool.shutdown();
+        }
+        if(perturbTick >= 0) {
+            System.out.println(same ? "注入差异后仍然一致，检查工具没有发现差异" : "发现了注入的差异（预期结果）");
+            if(same) System.exit(1);
+        } else if(!same) {
+            System.exit(1);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package Game;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -10,11 +12,16 @@ import java.util.List;
  * 使用A*寻路算法追踪玩家
  */
 public class Enemy extends Role {
-    private Pathfinder pathfinder;  // 寻路器
     private Role target;            // 目标玩家
     private List<Grid> path;        // 路径列表
     private int refreshPath;        // 路径刷新计数器
     private int collisionDelay;     // 碰撞延迟计数器
+    private boolean replan;         // 是否需要在下一个读阶段重新寻路（碰撞后设置）
+    private EnemyIntent intent;     // 读阶段产生的决策（写阶段应用后清空）
+    private IncrementalPlanner planner;  // 增量寻路器（INCREMENTAL模式下创建，不写入存档）
+    private PathSmoother smoother;       // 路径平滑（开启路径平滑时创建，没有状态）
+    private PathCache.Entry cacheCandidate;  // 本帧搜索得到、等待存入路径缓存的路径（读阶段结束后取走，不写入存档）
+    private CrowdSteering steering;      // 局部避让（开启局部避让时创建，没有状态）
 
     /**
      * 构造方法
@@ -28,10 +35,10 @@ public class Enemy extends Role {
      */
     public Enemy(String name, int HP, int radius, int speed,int x, int y, World world){
         super(name, HP, radius, speed, x, y, world);
-        this.pathfinder = new Pathfinder(new WorldGrids(world), this);
         this.target = getTarget();  // 寻找初始目标
         this.refreshPath = 0;
         this.collisionDelay = 0;
+        this.replan = false;
     }
 
     /**
@@ -64,6 +71,24 @@ public class Enemy extends Role {
         return this.target;
     }
 
+    /**
+     * 是否需要在下一个读阶段重新寻路（上一帧发生了碰撞）
+     * @return 是否需要重新寻路
+     */
+    public boolean isReplan(){
+        return replan;
+    }
+
+    /**
+     * 取走本帧等待存入路径缓存的路径（读阶段结束后由PathCache.publish调用）
+     * @return 路径，没有时返回null
+     */
+    public PathCache.Entry takeCacheCandidate(){
+        PathCache.Entry entry = cacheCandidate;
+        cacheCandidate = null;
+        return entry;
+    }
+
     /**
      * 维护路径刷新计数器
      * @param n 刷新周期
@@ -87,23 +112,45 @@ public class Enemy extends Role {
      * @return 当前网格
      */
     public Grid getCurrentGrid(){
-        return pathfinder.getWorldGrids().getGrid(this.x, this.y);
-    }
-
-    /**
-     * 获取目标所在网格
-     * @return 目标网格
-     */
-    public Grid getTargetGrid(){
-        return pathfinder.getWorldGrids().getGrid(target.getX(), target.getY());
+        return world.getWorldGrids().getGrid(this.x, this.y);
     }
 
     /**
      * 计算到目标的路径
-     * 使用A*算法
+     * 使用A*算法，基于快照中的目标位置和本帧已更新的网格
+     * 目标较远时先由分层寻路规划完整路线，A*只细化到路线上的下一个路点
+     * INCREMENTAL模式下由自己的增量寻路器细化，保留上一次的搜索树，只修复变化的部分
+     * 开启路径缓存时先尝试接入其他敌人搜索过的路径，没有命中时搜索到的完整路径再存入缓存
+     * 开启路径平滑时，逐格的路径再拉直成几个拐点
+     * @param snapshot 本帧世界快照
      */
-    public void getPath(){
-        path = pathfinder.shortestPath(getTargetGrid());
+    public void getPath(WorldSnapshot snapshot){
+        WorldSnapshot.HeroView view = snapshot.viewOf(target);
+        if(view == null) {
+            path = null;  // 没有目标
+            return;
+        }
+        WorldGrids worldGrids = snapshot.getWorldGrids();
+        Grid goal = worldGrids.getGrid(view.getX(), view.getY());
+        Grid waypoint = world.getHierarchicalPathfinder().nextWaypoint(getCurrentGrid(), goal, radius);
+        int goalRadius = waypoint == goal ? view.getRadius() : 0;
+        PathCache cache = world.getPathCache();
+        List<Grid> cached = cache == null ? null : cache.lookup(this, waypoint, goalRadius);
+        if(cached != null) {
+            path = cached;
+        } else if(world.getPathMode() == Pathfinder.Mode.INCREMENTAL) {
+            if(planner == null) planner = new IncrementalPlanner(worldGrids, radius, world.isPlannerReset());
+            path = planner.plan(this, waypoint, radius + goalRadius + 10);
+        } else {
+            Pathfinder pathfinder = new Pathfinder(worldGrids, this);
+            pathfinder.setMode(world.getPathMode());
+            path = pathfinder.shortestPath(waypoint, goalRadius);
+        }
+        if(cache != null && cached == null) cacheCandidate = cache.candidate(this, waypoint, goalRadius, path, world.getTick());
+        if(world.isPathSmoothing()) {
+            if(smoother == null) smoother = new PathSmoother(worldGrids, this);
+            path = smoother.smooth(path);
+        }
     }
 
     /**
@@ -228,6 +275,40 @@ public class Enemy extends Role {
         return Direction.STOP;
     }
 
+    /**
+     * 读阶段：计算本帧决策（敌人AI的入口）
+     * 
+     * 只读取快照和自身状态，只修改自身的寻路状态（目标、路径、计数器），
+     * 移动方向和攻击决策记录在EnemyIntent中，由写阶段的update统一应用
+     * 因此不同敌人的plan可以在多个线程上并行执行
+     * 
+     * @param snapshot 本帧世界快照
+     * @return 本帧决策
+     */
+    public EnemyIntent plan(WorldSnapshot snapshot) {
+        EnemyIntent intent = new EnemyIntent(this.dir, this.oldDir);
+        
+        // 上一帧发生碰撞，重新计算路径
+        if(replan) {
+            replan = false;
+            getPath(snapshot);
+        }
+        
+        planAttack(snapshot, intent);         // 攻击决策（由子类实现）
+        locateDirection(snapshot, intent);    // 移动方向决策
+        this.intent = intent;
+        return intent;
+    }
+
+    /**
+     * 攻击决策
+     * 默认不攻击，子类根据自身武器决定是否攻击
+     * @param snapshot 本帧世界快照
+     * @param intent 本帧决策
+     */
+    protected void planAttack(WorldSnapshot snapshot, EnemyIntent intent) {
+    }
+
     /**
      * 确定移动方向（敌人AI的核心方法）
      * 
@@ -240,65 +321,128 @@ public class Enemy extends Role {
      * 为什么每30帧刷新：
      * - A*算法计算量大，每帧计算会严重影响性能
      * - 30帧约1秒，足够应对玩家移动和障碍物变化
-     * - 碰撞时会立即重新计算路径
+     * - 碰撞后会在下一个读阶段立即重新计算路径
+     * 
+     * @param snapshot 本帧世界快照
+     * @param intent 本帧决策
      */
-    public void locateDirection() {
-        if(getTarget() == null) return;  // 没有目标玩家
+    protected void locateDirection(WorldSnapshot snapshot, EnemyIntent intent) {
+        WorldSnapshot.HeroView nearest = snapshot.nearestHero(this.x, this.y);
+        if(nearest == null) return;  // 没有目标玩家
         
         // 每30帧刷新一次路径
         if(mainTainRefreshPath(30) == 0) {
-            this.target = getTarget();  // 重新选择最近的玩家
-            this.pathfinder = new Pathfinder(new WorldGrids(world), this);
-            getPath();  // 使用A*算法计算新路径
+            this.target = nearest.getHero();  // 重新选择最近的玩家
+            getPath(snapshot);  // 使用A*算法计算新路径
         }
         
         // 路径为空，停止移动
         if(this.path == null || this.path.size() == 0){
-            this.dir = Direction.STOP;
+            intent.setDir(Direction.STOP);
             return;
         }
         
         // 到达当前路径点，移除并前往下一个
-        if(getCurrentGrid().getGridX() == path.get(0).getGridX() && getCurrentGrid().getGridY() == path.get(0).getGridY())
+        Grid current = getCurrentGrid();
+        if(current.getGridX() == path.get(0).getGridX() && current.getGridY() == path.get(0).getGridY())
             path.remove(0);
         
         // 设置移动方向（朝向下一个路径点）
         if(this.path.size() > 0) {
             Grid nextGrid = path.get(0);
-            this.oldDir =(this.dir == Direction.STOP) ? oldDir : dir;
-            this.dir = getNextDir(nextGrid);
+            intent.setOldDir((intent.getDir() == Direction.STOP) ? intent.getOldDir() : intent.getDir());
+            intent.setDir(getNextDir(nextGrid));
+            // 开启局部避让时，沿路径的方向只是期望方向，再根据附近的敌人绕开
+            if(world.isCrowdSteering()) {
+                if(steering == null) steering = new CrowdSteering(world, this);
+                intent.setDir(steering.steer(intent.getDir()));
+            }
         }
         
         // 如果停止移动，至少保持朝向目标（用于攻击动画的朝向）
-        if(this.getDir() == Direction.STOP) {
-            this.oldDir = (judgeAccurateDir(target.getX(), target.getY()) == Direction.STOP) ? oldDir : judgeAccurateDir(target.getX(), target.getY());
+        WorldSnapshot.HeroView view = snapshot.viewOf(target);
+        if(intent.getDir() == Direction.STOP && view != null) {
+            Direction dir = judgeAccurateDir(view.getX(), view.getY());
+            intent.setOldDir(dir == Direction.STOP ? intent.getOldDir() : dir);
         }
     }
 
     /**
-     * 绘制敌人
-     * 先确定方向，再调用父类绘制
-     * @param g 图形上下文
+     * 写阶段：应用读阶段的决策，再更新角色
+     * 攻击在修改方向之前执行，保证弹丸沿决策前的方向发射
      */
-    public void draw(Graphics g) {
-        locateDirection();  // 更新移动方向
-        super.draw(g);      // 绘制角色
+    public void update() {
+        if(intent != null) {
+            if(intent.isAttack()) {
+                this.getCurrentWeapon().setState();
+                this.getCurrentWeapon().setColdDown();
+            }
+            this.dir = intent.getDir();
+            this.oldDir = intent.getOldDir();
+            intent = null;
+        }
+        super.update();
+    }
+
+    /**
+     * 写入敌人状态（追加寻路状态）
+     * 目标记为对象编号，路径记为网格坐标序列
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        super.writeState(buf);
+        Varint.putVarInt(buf, target == null ? 0 : target.getId());
+        Varint.putVarInt(buf, refreshPath);
+        Varint.putVarInt(buf, collisionDelay);
+        buf.put((byte) (replan ? 1 : 0));
+        Varint.putVarInt(buf, path == null ? 0 : path.size() + 1);  // 0表示没有路径
+        if(path != null) {
+            for(Grid grid : path) {
+                Varint.putVarInt(buf, grid.getGridX());
+                Varint.putVarInt(buf, grid.getGridY());
+            }
+        }
+    }
+
+    /**
+     * 读取敌人状态
+     * 路径中的网格从世界网格中按坐标取回
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        super.readState(buf, reader);
+        this.target = (Role) reader.get(Varint.getVarInt(buf));
+        this.refreshPath = Varint.getVarInt(buf);
+        this.collisionDelay = Varint.getVarInt(buf);
+        this.replan = buf.get() != 0;
+        int n = Varint.getVarInt(buf) - 1;
+        this.path = n < 0 ? null : new ArrayList<Grid>(n);
+        for(int i = 0; i < n; i++) {
+            int gridX = Varint.getVarInt(buf);
+            int gridY = Varint.getVarInt(buf);
+            path.add(world.getWorldGrids().get(gridX, gridY));
+        }
     }
 
     /**
      * 碰撞响应（重写）
-     * 碰撞时停止移动并重新计算路径
+     * 碰撞时停止移动，并在下一个读阶段重新计算路径
+     * 开启局部避让时，与其他角色的碰撞只沿对方边缘滑开（由避让负责绕行），不停下也不重新寻路
      * @param object 碰撞的对象
      */
     public void collisionResponse(GameObject object){
+        if(world.isCrowdSteering() && (object.getCollisionLayer() & (CollisionLayers.ENEMY | CollisionLayers.HERO)) != 0) {
+            super.collisionResponse(object);
+            return;
+        }
         this.dir = Direction.STOP;  // 停止移动
 
         // 碰撞延迟，避免频繁重新计算路径
         if(maintainCollisionDelay(3) > 0) return;
         else{
             collisionDelay = 3;
-            this.pathfinder = new Pathfinder(new WorldGrids(world), this);
-            getPath();  // 重新计算路径
+            replan = true;  // 请求重新计算路径
         }
         super.collisionResponse(object);
     }
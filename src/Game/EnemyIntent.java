@@ -0,0 +1,47 @@
+package Game;
+
+/**
+ * 敌人决策类
+ * 读阶段中由Enemy.plan生成，写阶段中由Enemy.update应用到敌人身上
+ * 只记录决策结果，不直接修改世界状态
+ */
+public class EnemyIntent {
+    private Direction dir;      // 决策后的移动方向
+    private Direction oldDir;   // 决策后的朝向
+    private boolean attack;     // 是否发动攻击
+
+    /**
+     * 构造方法
+     * @param dir 当前移动方向
+     * @param oldDir 当前朝向
+     */
+    public EnemyIntent(Direction dir, Direction oldDir) {
+        this.dir = dir;
+        this.oldDir = oldDir;
+        this.attack = false;
+    }
+
+    public Direction getDir() {
+        return dir;
+    }
+
+    public void setDir(Direction dir) {
+        this.dir = dir;
+    }
+
+    public Direction getOldDir() {
+        return oldDir;
+    }
+
+    public void setOldDir(Direction oldDir) {
+        this.oldDir = oldDir;
+    }
+
+    public boolean isAttack() {
+        return attack;
+    }
+
+    public void setAttack(boolean attack) {
+        this.attack = attack;
+    }
+}
@@ -0,0 +1,101 @@
+package Game;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 敌人决策器类
+ * 负责每帧的读阶段：所有敌人基于同一个只读快照计算目标、方向和攻击决策
+ * 敌人较多时使用ForkJoinPool将敌人列表二分拆分到多个核心上并行执行
+ * 每个敌人只修改自己的寻路状态，因此并行与串行执行的结果完全一致
+ */
+public class EnemyPlanner {
+    public static final int THRESHOLD = 16;  // 子任务最少处理的敌人数量（低于此数量直接串行执行）
+    private static final ForkJoinPool SHARED_POOL =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors());  // 所有世界共享的线程池
+    private ForkJoinPool pool;   // 执行读阶段的线程池
+    private boolean parallel;    // 是否并行执行
+    private int threshold;       // 子任务最少处理的敌人数量
+
+    /**
+     * 构造方法
+     * 使用共享线程池
+     */
+    public EnemyPlanner() {
+        this(SHARED_POOL);
+    }
+
+    /**
+     * 构造方法
+     * @param pool 执行读阶段的线程池
+     */
+    public EnemyPlanner(ForkJoinPool pool) {
+        this(pool, THRESHOLD);
+    }
+
+    /**
+     * 构造方法
+     * @param pool 执行读阶段的线程池
+     * @param threshold 子任务最少处理的敌人数量（一致性检查时设为1，敌人很少时也拆分到多个线程）
+     */
+    public EnemyPlanner(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.parallel = true;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    /**
+     * 执行读阶段
+     * 为每个敌人计算本帧决策，返回时所有决策均已完成
+     * @param enemies 需要决策的敌人列表
+     * @param snapshot 本帧世界快照
+     */
+    public void plan(List<Enemy> enemies, WorldSnapshot snapshot) {
+        if(!parallel || enemies.size() <= threshold) {
+            for(Enemy enemy : enemies)
+                enemy.plan(snapshot);
+        } else {
+            pool.invoke(new PlanTask(enemies, 0, enemies.size(), threshold, snapshot));
+        }
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * 决策子任务
+     * 处理敌人列表中[from, to)区间，区间过大时一分为二
+     */
+    private static class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Enemy> enemies;
+        private final int from, to;
+        private final int threshold;
+        private final WorldSnapshot snapshot;
+
+        PlanTask(List<Enemy> enemies, int from, int to, int threshold, WorldSnapshot snapshot) {
+            this.enemies = enemies;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= threshold) {
+                for(int i = from; i < to; i++)
+                    enemies.get(i).plan(snapshot);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PlanTask(enemies, from, mid, threshold, snapshot), new PlanTask(enemies, mid, to, threshold, snapshot));
+        }
+    }
+}
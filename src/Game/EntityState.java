@@ -0,0 +1,158 @@
+package Game;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+
+/**
+ * 复制给客户端的对象状态
+ *
+ * 服务器每次广播时从GameObject采集一份，与发给某个客户端的上一份比较，
+ * 只编码变化的字段（字段掩码 + 字段）；客户端按同样的掩码还原并绘制。
+ * 坐标按与上一份的差值编码，移动中的对象每个坐标通常只占1个字节。
+ */
+public class EntityState {
+    // 字段掩码
+    public static final int FIELD_NEW = 1;     // 新对象：名称、精灵图偏移量、最大生命值
+    public static final int FIELD_POS = 2;     // 坐标
+    public static final int FIELD_FRAME = 4;   // 精灵图帧和尸体标志
+    public static final int FIELD_HP = 8;      // 生命值
+    public static final int FIELD_LABEL = 16;  // 头顶文字
+
+    int id;              // 对象编号
+    String name;         // 对象名称（决定使用哪张图片）
+    int picOffset;       // 精灵图偏移量（0表示整张图片绘制）
+    int maxHP;           // 最大生命值
+    int x, y;            // 坐标
+    int frame;           // 精灵图帧（列索引*16+行索引，-1表示不绘制）
+    boolean corpse;      // 是否为尸体（绘制在最底层）
+    int hp;              // 生命值
+    String label;        // 头顶文字（英雄的武器信息，其它对象为null）
+    long stamp;          // 服务器：最近一次出现在快照中的序号
+    int prevX, prevY;    // 客户端：上一份快照中的坐标（用于插值）
+
+    /**
+     * 从游戏对象采集状态
+     * @param obj 游戏对象
+     */
+    public void capture(GameObject obj) {
+        this.id = obj.getId();
+        this.name = obj.getName();
+        this.picOffset = obj.getPicOffset();
+        this.maxHP = obj instanceof Role ? ((Role) obj).getMaxHP() : obj.getHP();
+        this.x = obj.getX();
+        this.y = obj.getY();
+        this.frame = obj.getSpriteFrame();
+        this.corpse = obj.getLifecycle() == LifecycleState.DYING;
+        this.hp = Math.max(0, obj.getHP());
+        this.label = obj.getLabel();
+    }
+
+    /**
+     * 复制另一份状态
+     * @param other 另一份状态
+     */
+    public void copyFrom(EntityState other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.picOffset = other.picOffset;
+        this.maxHP = other.maxHP;
+        this.x = other.x;
+        this.y = other.y;
+        this.frame = other.frame;
+        this.corpse = other.corpse;
+        this.hp = other.hp;
+        this.label = other.label;
+    }
+
+    /**
+     * 计算与基准状态相比变化的字段
+     * @param base 基准状态（客户端还没有该对象时为null）
+     * @return 字段掩码，0表示没有变化
+     */
+    public int diff(EntityState base) {
+        if(base == null) return FIELD_NEW | FIELD_POS | FIELD_FRAME | FIELD_HP | (label != null ? FIELD_LABEL : 0);
+        int mask = 0;
+        if(x != base.x || y != base.y) mask |= FIELD_POS;
+        if(frame != base.frame || corpse != base.corpse) mask |= FIELD_FRAME;
+        if(hp != base.hp) mask |= FIELD_HP;
+        if(label == null ? base.label != null : !label.equals(base.label)) mask |= FIELD_LABEL;
+        return mask;
+    }
+
+    /**
+     * 写入变化的字段
+     * @param buf 目标缓冲区
+     * @param mask 字段掩码
+     * @param base 基准状态（为null时坐标相对于原点编码）
+     */
+    public void write(ByteBuffer buf, int mask, EntityState base) {
+        Varint.putVarInt(buf, id);
+        buf.put((byte) mask);
+        if((mask & FIELD_NEW) != 0) {
+            NetProtocol.putString(buf, name);
+            Varint.putVarInt(buf, picOffset);
+            Varint.putVarInt(buf, maxHP);
+        }
+        if((mask & FIELD_POS) != 0) {
+            Varint.putSignedVarInt(buf, x - (base == null ? 0 : base.x));
+            Varint.putSignedVarInt(buf, y - (base == null ? 0 : base.y));
+        }
+        if((mask & FIELD_FRAME) != 0) {
+            Varint.putSignedVarInt(buf, frame);
+            buf.put((byte) (corpse ? 1 : 0));
+        }
+        if((mask & FIELD_HP) != 0) Varint.putVarInt(buf, hp);
+        if((mask & FIELD_LABEL) != 0) NetProtocol.putString(buf, label == null ? "" : label);
+    }
+
+    /**
+     * 读取变化的字段（编号已由调用方读出）
+     * @param buf 源缓冲区
+     */
+    public void read(ByteBuffer buf) {
+        int mask = buf.get();
+        if((mask & FIELD_NEW) != 0) {
+            name = NetProtocol.getString(buf);
+            picOffset = Varint.getVarInt(buf);
+            maxHP = Varint.getVarInt(buf);
+        }
+        prevX = x;
+        prevY = y;
+        if((mask & FIELD_POS) != 0) {
+            x += Varint.getSignedVarInt(buf);
+            y += Varint.getSignedVarInt(buf);
+            if((mask & FIELD_NEW) != 0) {  // 新对象没有上一份坐标，不插值
+                prevX = x;
+                prevY = y;
+            }
+        }
+        if((mask & FIELD_FRAME) != 0) {
+            frame = Varint.getSignedVarInt(buf);
+            corpse = buf.get() != 0;
+        }
+        if((mask & FIELD_HP) != 0) hp = Varint.getVarInt(buf);
+        if((mask & FIELD_LABEL) != 0) {
+            String s = NetProtocol.getString(buf);
+            label = s.isEmpty() ? null : s;
+        }
+    }
+
+    /**
+     * 绘制对象
+     * 有头顶文字的对象（英雄）同时绘制文字和血条
+     * @param g 图形上下文
+     * @param alpha 插值系数（0为上一份快照的位置，1为最新位置）
+     */
+    public void draw(Graphics g, double alpha) {
+        int drawX = prevX + (int) Math.round((x - prevX) * alpha);
+        int drawY = prevY + (int) Math.round((y - prevY) * alpha);
+        if(label != null) {
+            g.drawString(label, drawX - 20, drawY - 45);
+            Role.drawBloodBar(g, drawX, drawY, hp, maxHP);
+        }
+        if(frame < 0) return;
+        if("Wall".equals(name)) Wall.drawAt(g, drawX, drawY);
+        else if("Box".equals(name)) Box.drawAt(g, drawX, drawY);
+        else GameObject.drawSprite(g, name, picOffset, drawX, drawY, frame >> 4, frame & 15);
+    }
+}
@@ -6,6 +6,8 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * 游戏客户端主窗口类
@@ -13,17 +15,43 @@ import java.awt.event.KeyEvent;
  * 使用双缓冲技术避免画面闪烁
  */
 public class GameClient extends Frame {
-    public static final int WORLD_WIDTH = 960;   // 游戏世界宽度
-    public static final int WORLD_HEIGHT = 720;  // 游戏世界高度
+    public static final int WORLD_WIDTH = 960;   // 默认游戏世界宽度（也是窗口宽度）
+    public static final int WORLD_HEIGHT = 720;  // 默认游戏世界高度（也是窗口高度）
+    public static final int STREAM_CHUNKS = 4;   // 地图宽或高超过这么多个分块时开启分块流式加载
+    public static final File SAVE_FILE = new File("zombiecrisis.sav");  // 快速存档文件
     private Image offScreenImage;                 // 离屏图像（用于双缓冲）
-    private World world;                          // 游戏世界对象
+    private volatile World world;                 // 游戏世界对象（读档时替换）
+    private final Camera camera;                  // 摄像机（跟随英雄，世界比窗口大时滚动）
+    private volatile boolean saveRequested;       // 是否请求存档（F5）
+    private volatile boolean loadRequested;       // 是否请求读档（F9）
 
     /**
      * 构造方法
      * @param Doubleplayer 是否为双人模式（true为双人，false为单人）
      */
     public GameClient(boolean Doubleplayer){
-        this.world = new World(WORLD_WIDTH, WORLD_HEIGHT, Doubleplayer);
+        this(new World(WORLD_WIDTH, WORLD_HEIGHT, Doubleplayer));
+    }
+
+    /**
+     * 构造方法
+     * 使用指定的地图（地图可以比窗口大，画面跟随英雄滚动；很大的地图只完整模拟英雄附近的分块）
+     * @param Doubleplayer 是否为双人模式
+     * @param map 地图
+     */
+    public GameClient(boolean Doubleplayer, TileMap map){
+        this(new World(map, Doubleplayer ? 2 : 1, System.nanoTime(), WaveRules.DEFAULT));
+        if(Math.max(map.getWidth(), map.getHeight()) > STREAM_CHUNKS * WorldStreamer.CHUNK_SIZE)
+            world.enableStreaming(1);
+    }
+
+    /**
+     * 构造方法
+     * @param world 游戏世界
+     */
+    private GameClient(World world){
+        this.world = world;
+        this.camera = new Camera(WORLD_WIDTH, WORLD_HEIGHT);
         offScreenImage = null;
     }
 
@@ -50,13 +78,43 @@ public class GameClient extends Frame {
      * @param g 图形上下文对象
      */
     public void paint(Graphics g) {
-    	if(!world.End())        // 如果游戏未结束
-    		world.drawWorld(g);  // 绘制游戏世界
+    	handleSaveLoad();       // 存档和读档在两帧之间进行
+    	if(!world.End()) {      // 如果游戏未结束
+    		world.tick();        // 更新游戏世界
+    		camera.follow(world.getHeroes(), world.getWidth(), world.getHeight());  // 视口跟随英雄
+    		world.drawWorld(g, camera);  // 绘制视口内的游戏世界
+    	}
     	else {
-    		world.drawEnd(g);    // 绘制游戏结束画面
+    		world.drawEnd(g, camera);    // 绘制游戏结束画面
     	}
     }
 
+    /**
+     * 处理快速存档和快速读档请求
+     * 键盘事件在AWT线程中，这里在绘制线程的两帧之间执行，保证存档时世界不在更新中
+     */
+    private void handleSaveLoad() {
+        try {
+            if(saveRequested) {
+                saveRequested = false;
+                WorldCodec.save(world, SAVE_FILE);
+                System.out.println("已存档: " + SAVE_FILE.getPath());
+            }
+            if(loadRequested) {
+                loadRequested = false;
+                World loaded = WorldCodec.load(SAVE_FILE);
+                if(loaded.getHeroes().size() != world.getHeroes().size()) {
+                    System.out.println("存档的玩家数量与当前模式不同");
+                } else {
+                    world = loaded;
+                    System.out.println("已读档: 第" + world.getTick() + "帧");
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("存档/读档失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 更新方法（双缓冲实现）
      * 先在离屏图像上绘制，然后一次性绘制到屏幕，避免闪烁
@@ -91,12 +149,9 @@ public class GameClient extends Frame {
         this.setResizable(false);                    // 禁止调整窗口大小
         this.setBackground(Color.lightGray);         // 设置背景色
         
-        // 为第一个玩家（索引0）添加键盘监听器
-        this.addKeyListener(new KeyMonitor((Hero) world.getObject(0)));
-        
-        // 如果是双人模式，为第二个玩家（索引1）添加键盘监听器
-        if(world.getObject(1) instanceof Hero)
-            this.addKeyListener(new KeyMonitor((Hero) world.getObject(1)));
+        // 为每个玩家添加键盘监听器（双人模式下有两个玩家）
+        for(int i = 0; i < world.getHeroes().size(); i++)
+            this.addKeyListener(new KeyMonitor(i));
         
         setVisible(true);                            // 显示窗口
         new Thread(new PaintThread()).start();       // 启动绘制线程
@@ -105,16 +160,17 @@ public class GameClient extends Frame {
     /**
      * 键盘监听器内部类
      * 监听键盘事件并传递给对应的英雄对象处理
+     * 按英雄序号查找英雄，读档替换世界后仍然有效
      */
     private class KeyMonitor extends KeyAdapter {
-        Hero hero;  // 关联的英雄对象
+        int index;  // 关联的英雄序号
         
         /**
          * 构造方法
-         * @param hero 要监听的英雄对象
+         * @param index 要监听的英雄序号
          */
-        public KeyMonitor(Hero hero){
-            this.hero = hero;
+        public KeyMonitor(int index){
+            this.index = index;
         }
         
         /**
@@ -122,15 +178,18 @@ public class GameClient extends Frame {
          * @param e 键盘事件对象
          */
         public void keyReleased(KeyEvent e) {
-            this.hero.keyReleased(e);
+            world.getHeroes().get(index).keyReleased(e);
         }
         
         /**
          * 键盘按下事件处理
+         * F5快速存档，F9快速读档（只由第一个监听器处理）
          * @param e 键盘事件对象
          */
         public void keyPressed(KeyEvent e) {
-            this.hero.KeyPressed(e);
+            if(index == 0 && e.getKeyCode() == KeyEvent.VK_F5) saveRequested = true;
+            else if(index == 0 && e.getKeyCode() == KeyEvent.VK_F9) loadRequested = true;
+            world.getHeroes().get(index).KeyPressed(e);
         }
     }
 }
@@ -2,6 +2,7 @@ package Game;
 
 import javax.naming.event.ObjectChangeListener;
 import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,8 +12,11 @@ import java.util.Map;
  * 定义了对象的基本属性和行为
  */
 public abstract class GameObject implements Cloneable{
+    protected int id;                // 对象编号（加入世界时由World分配，0表示未分配）
     protected String name;           // 对象名称
     protected int radius;            // 半径（用于碰撞检测）
+    protected int halfWidth;         // 轴对齐包围盒半宽（0表示使用圆形碰撞体）
+    protected int halfHeight;        // 轴对齐包围盒半高
     protected int speed;             // 移动速度
     protected int xIncrement;        // X轴增量（每帧移动距离）
     protected int yIncrement;        // Y轴增量（每帧移动距离）
@@ -22,7 +26,13 @@ public abstract class GameObject implements Cloneable{
     protected int HP;                // 生命值
     protected int onAttackState;     // 受击状态计数器（>0表示正在受击）
     protected boolean collidable;    // 是否可碰撞
+    protected int collisionLayer;    // 碰撞层（见CollisionLayers）
+    protected int collisionMask;     // 碰撞掩码（会与哪些层碰撞）
     protected World world;           // 所属的游戏世界
+    protected LifecycleState lifecycle = LifecycleState.REMOVED;  // 生命周期状态（由World维护）
+    protected int spatialCell = -1;  // 在空间索引中所在的格子（由SpatialHash维护，-1表示不在索引中）
+    protected long entityHash;       // 上一次计算的实体哈希（由StateHash维护）
+    protected int hashEpoch;         // 计算entityHash时StateHash的轮次（与当前轮次不同表示不在哈希中）
     protected static Toolkit tk = Toolkit.getDefaultToolkit();  // 工具包
     protected static Image[] imgs = null;                        // 图片数组
     protected static Map<String, Image> imgMap = new HashMap<String, Image>();  // 图片映射表
@@ -30,8 +40,17 @@ public abstract class GameObject implements Cloneable{
     /**
      * 绘制方法（抽象）
      * 子类必须实现具体的绘制逻辑
+     * 只负责绘制，不修改游戏状态（状态变化在update中完成）
      */
     public abstract void draw(Graphics g);
+
+    /**
+     * 逻辑更新方法
+     * 每帧在绘制之前调用，负责移动、碰撞检测、计时等状态变化
+     * 默认无逻辑（墙壁、边界等静态对象无需更新）
+     */
+    public void update() {
+    }
     
     /**
      * 碰撞响应方法（抽象）
@@ -95,6 +114,8 @@ public abstract class GameObject implements Cloneable{
         this.y = y;
         this.collidable = collidable;
         this.world = world;
+        this.collisionLayer = CollisionLayers.layerOf(name);
+        this.collisionMask = CollisionLayers.collisionMaskOf(collisionLayer);
     }
 
     /**
@@ -123,6 +144,8 @@ public abstract class GameObject implements Cloneable{
         this.y = y;
         this.collidable = collidable;
         this.world = world;
+        this.collisionLayer = CollisionLayers.layerOf(name);
+        this.collisionMask = CollisionLayers.collisionMaskOf(collisionLayer);
     }
 
     /**
@@ -137,6 +160,20 @@ public abstract class GameObject implements Cloneable{
      * @param picY 精灵图中的Y索引
      */
     public void drawOneImage(Graphics g, String name, int picOffset,int x, int y, int picX, int picY){
+        drawSprite(g, name, picOffset, x, y, picX, picY);
+    }
+
+    /**
+     * 绘制精灵图中的一帧（静态版本，供只持有快照的客户端使用）
+     * @param g 图形上下文
+     * @param name 图片名称
+     * @param picOffset 图片偏移量（半宽/半高）
+     * @param x 绘制X坐标
+     * @param y 绘制Y坐标
+     * @param picX 精灵图中的X索引
+     * @param picY 精灵图中的Y索引
+     */
+    public static void drawSprite(Graphics g, String name, int picOffset, int x, int y, int picX, int picY){
         g.drawImage(
                 imgMap.get(name),
                 x - picOffset - 4,                          // 目标区域左上角X
@@ -151,54 +188,130 @@ public abstract class GameObject implements Cloneable{
     }
 
     /**
-     * 碰撞检测（圆形碰撞检测算法）
+     * 碰撞粗筛
+     * 只用一次按位与判断两个对象所在的层是否可能碰撞
+     * @param object 另一个对象
+     * @return 是否需要进一步检测
+     */
+    public boolean canCollideWith(GameObject object){
+        return (this.collisionMask & object.collisionLayer) != 0;
+    }
+
+    /**
+     * 碰撞检测
      * 
      * 工作原理：
-     * 1. 计算两个对象中心点的距离
-     * 2. 如果距离 ≤ 两个半径之和，则发生碰撞
+     * 1. 对方不可碰撞、或自己静止且未受击时直接返回
+     * 2. 由对方的碰撞体（圆形或轴对齐包围盒）执行窄相检测
      * 3. 碰撞时将当前对象推开，避免重叠
      * 
+     * @param object 要检测的对象
+     * @return 是否发生碰撞
+     */
+    public boolean collisionDetection(GameObject object){
+        if(!object.isCollidable()) return false;  // 对方不可碰撞
+        if(this.getDir() == Direction.STOP  && this.checkOnAttack() <= 0) return false;  // 自己静止且未受击
+        return object.separate(this);
+    }
+
+    /**
+     * 窄相检测（以本对象为静止碰撞体）
+     * 检测移动对象mover是否与本对象重叠，重叠时把mover推开
+     * 半宽大于0时使用轴对齐包围盒，否则使用圆形
+     * @param mover 移动的对象（圆形）
+     * @return 是否发生碰撞
+     */
+    protected boolean separate(GameObject mover){
+        if(this.halfWidth > 0) return separateFromBox(mover);
+        return separateFromCircle(mover);
+    }
+
+    /**
+     * 圆形与圆形的碰撞检测
+     * 
+     * 工作原理：
+     * 1. 先比较中心距离的平方与半径和的平方，大多数不重叠的对象在这里排除，无需开方
+     * 2. 如果距离 ≤ 两个半径之和，则发生碰撞
+     * 3. 碰撞时将移动对象推开，避免重叠
+     * 
      * 推开算法：
      * - 计算碰撞方向的单位向量（cosValue, sinValue）
      * - 计算需要分离的距离：R - d + 2
-     * - 沿着碰撞方向推开当前对象
+     * - 沿着碰撞方向推开移动对象
      * 
      * 示例：
-     * - 玩家半径14，墙壁半径50，半径和R=64
-     * - 如果距离d=60，重叠了4像素
-     * - 需要推开距离：64-60+2=6像素
-     * - 沿着远离墙壁的方向推开6像素
+     * - 玩家半径14，幽灵半径14，半径和R=28
+     * - 如果距离d=24，重叠了4像素
+     * - 需要推开距离：28-24+2=6像素
+     * - 沿着远离对方的方向推开6像素
      * 
-     * @param object 要检测的对象
+     * @param mover 移动的对象
      * @return 是否发生碰撞
      */
-    public boolean collisionDetection(GameObject object){
-        if(!object.isCollidable()) return false;  // 对方不可碰撞
-        if(this.getDir() == Direction.STOP  && this.checkOnAttack() <= 0) return false;  // 自己静止且未受击
+    protected boolean separateFromCircle(GameObject mover){
+        // 计算两个对象中心点的距离平方
+        long deltaX = mover.x - this.x;
+        long deltaY = mover.y - this.y;
+        long R = mover.getRadius() + this.getRadius();  // 两个半径之和
+        long d2 = deltaX * deltaX + deltaY * deltaY;
+        if(d2 > R * R) return false;  // 平方距离快速排除
+        
+        double d = Math.sqrt(d2);
+        if(d == 0) return true;  // 中心重合，无法确定推开方向
+        
+        // 计算碰撞方向的单位向量
+        double cosValue = deltaX / d;  // X方向分量
+        double sinValue = deltaY / d;  // Y方向分量
+        
+        // 计算分离距离（让两个对象不再重叠）
+        // R - d：重叠的距离
+        // +2：额外的安全距离，防止浮点误差导致仍然重叠
+        mover.x += (int)((R - d + 2) * cosValue);
+        mover.y += (int)((R - d + 2) * sinValue);
+        return true;
+    }
+
+    /**
+     * 圆形与轴对齐包围盒的碰撞检测
+     * 
+     * 工作原理：
+     * 1. 求包围盒上离圆心最近的点（把圆心坐标夹到包围盒范围内）
+     * 2. 最近点到圆心的距离平方 > 半径平方，则不碰撞
+     * 3. 圆心在包围盒外：沿最近点指向圆心的方向推开
+     * 4. 圆心在包围盒内：沿穿透最浅的轴推出包围盒
+     * 
+     * @param mover 移动的对象
+     * @return 是否发生碰撞
+     */
+    protected boolean separateFromBox(GameObject mover){
+        int left = this.x - halfWidth, right = this.x + halfWidth;
+        int top = this.y - halfHeight, bottom = this.y + halfHeight;
+        int r = mover.getRadius();
         
-        // 计算两个对象中心点的距离
-        double deltaX = this.x - object.getX();
-        double deltaY = (this.y - object.getY());
-        double d = Math.sqrt(Math.pow(deltaX, 2) + Math.pow(deltaY, 2));
-        int R = this.getRadius() + object.getRadius();  // 两个半径之和
+        // 包围盒上离圆心最近的点
+        int closestX = Math.max(left, Math.min(mover.x, right));
+        int closestY = Math.max(top, Math.min(mover.y, bottom));
+        long deltaX = mover.x - closestX;
+        long deltaY = mover.y - closestY;
+        long d2 = deltaX * deltaX + deltaY * deltaY;
+        if(d2 > (long) r * r) return false;  // 平方距离快速排除
         
-        if(d <= R){  // 距离小于等于半径和，发生碰撞
-            // 计算碰撞方向的单位向量
-            double cosValue = deltaX / d;  // X方向分量
-            double sinValue = deltaY / d;  // Y方向分量
-            
-            // 计算分离距离（让两个对象不再重叠）
-            // R - d：重叠的距离
-            // +2：额外的安全距离，防止浮点误差导致仍然重叠
-            int offsetY = (int)((R - d + 2) * sinValue);
-            int offsetX = (int)((R - d + 2) * cosValue);
-            
-            // 将当前对象沿碰撞方向推开
-            this.x += offsetX;
-            this.y += offsetY;
+        if(d2 > 0) {  // 圆心在包围盒外
+            double d = Math.sqrt(d2);
+            mover.x += (int)((r - d + 2) * deltaX / d);
+            mover.y += (int)((r - d + 2) * deltaY / d);
             return true;
         }
-        return false;
+        
+        // 圆心在包围盒内，沿穿透最浅的方向推出
+        int toLeft = mover.x - left, toRight = right - mover.x;
+        int toTop = mover.y - top, toBottom = bottom - mover.y;
+        int min = Math.min(Math.min(toLeft, toRight), Math.min(toTop, toBottom));
+        if(min == toLeft) mover.x = left - r - 2;
+        else if(min == toRight) mover.x = right + r + 2;
+        else if(min == toTop) mover.y = top - r - 2;
+        else mover.y = bottom + r + 2;
+        return true;
     }
 
     /**
@@ -242,6 +355,14 @@ public abstract class GameObject implements Cloneable{
         this.radius = radius;
     }
 
+    public int getHalfWidth() {
+        return halfWidth;
+    }
+
+    public int getHalfHeight() {
+        return halfHeight;
+    }
+
     public int getX() {
         return this.x;
     }
@@ -268,6 +389,101 @@ public abstract class GameObject implements Cloneable{
         return collidable;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * 获取精灵图偏移量（半宽/半高）
+     * 整张图片绘制的对象（墙壁、宝箱）返回0
+     * @return 偏移量
+     */
+    public int getPicOffset() {
+        return 0;
+    }
+
+    /**
+     * 获取本帧绘制使用的精灵图帧
+     * 与draw的选择一致，供网络快照复制给客户端
+     * @return 列索引*16+行索引，-1表示本帧不绘制
+     */
+    public int getSpriteFrame() {
+        return 0;
+    }
+
+    /**
+     * 获取显示在对象头顶的文字（如英雄的武器信息）
+     * @return 文字，没有时返回null
+     */
+    public String getLabel() {
+        return null;
+    }
+
+    /**
+     * 写入对象状态（用于存档和快照，格式见WorldCodec）
+     * 编号和坐标记录在实体表中，这里只写其余会随对局变化的字段
+     * 子类先调用父类方法，再追加自己的字段
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        buf.put((byte) dir.ordinal());
+        buf.put((byte) oldDir.ordinal());
+        Varint.putSignedVarInt(buf, HP);
+        Varint.putSignedVarInt(buf, onAttackState);
+        Varint.putSignedVarInt(buf, xIncrement);
+        Varint.putSignedVarInt(buf, yIncrement);
+        buf.put((byte) (collidable ? 1 : 0));
+    }
+
+    /**
+     * 读取对象状态（与writeState的顺序一致）
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文（按编号查找对象、登记计时事件）
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        Direction[] dirs = Direction.values();
+        this.dir = dirs[buf.get()];
+        this.oldDir = dirs[buf.get()];
+        this.HP = Varint.getSignedVarInt(buf);
+        this.onAttackState = Varint.getSignedVarInt(buf);
+        this.xIncrement = Varint.getSignedVarInt(buf);
+        this.yIncrement = Varint.getSignedVarInt(buf);
+        this.collidable = buf.get() != 0;
+    }
+
+    public LifecycleState getLifecycle() {
+        return lifecycle;
+    }
+
+    public void setLifecycle(LifecycleState lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    public int getCollisionLayer() {
+        return collisionLayer;
+    }
+
+    public int getCollisionMask() {
+        return collisionMask;
+    }
+
+    /**
+     * 获取对象的持有者
+     * 普通对象没有持有者，武器返回持有它的角色
+     * @return 持有者
+     */
+    public GameObject getOwner() {
+        return null;
+    }
+
     public int getxIncrement() {
         return xIncrement;
     }
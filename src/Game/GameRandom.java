@@ -0,0 +1,66 @@
+package Game;
+
+/**
+ * 游戏随机数生成器
+ *
+ * 每个World持有一个，所有影响模拟结果的随机数（敌人生成、血迹、宝箱掉落、复活位置）都从这里取，
+ * 相同种子和相同输入得到完全相同的对局。
+ * 内部状态只有一个long（SplitMix64算法），可以直接保存到存档中并原样恢复，
+ * 这是java.util.Random做不到的（它的种子无法读出）。
+ */
+public class GameRandom {
+    private long state;  // 内部状态
+
+    /**
+     * 构造方法
+     * @param seed 种子
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * 生成下一个64位随机数
+     * @return 随机数
+     */
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 生成下一个32位随机数
+     * @return 随机数（可能为负）
+     */
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * 生成[0, bound)范围内的随机数
+     * @param bound 上界（必须为正）
+     * @return 随机数
+     */
+    public int nextInt(int bound) {
+        if(bound <= 0) throw new IllegalArgumentException("上界必须为正: " + bound);
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * 获取内部状态（用于存档）
+     * @return 内部状态
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * 恢复内部状态（用于读档）
+     * @param state 内部状态
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,617 @@
+package Game;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * 权威游戏服务器
+ *
+ * 在无界面模式下运行World，所有游戏逻辑只在服务器上计算：
+ * - 一个线程通过NIO Selector处理所有连接，读取输入和写出快照都不阻塞
+ * - 客户端只发送按键状态（按键槽位的位掩码），服务器在两帧之间把变化转换为Hero.press/release
+ * - 每SNAPSHOT_INTERVAL帧广播一次快照，每个客户端只收到相对于上一次发给它的快照的变化字段
+ * - TCP保证有序可靠，服务器记录每个客户端已收到的状态作为增量基准，不需要确认消息
+ * - 客户端来不及接收（发送缓冲积压）时跳过该客户端的快照，基准不变，下一次的增量自然包含跳过的变化
+ *
+ * 兴趣管理：每个客户端只收到其英雄视野半径内的对象（从世界的空间索引查询），
+ * 基准状态即该客户端的相关对象集合，对象进入视野时完整发送，离开视野（或被移除）时发送移除编号；
+ * 离开判定比进入多LEAVE_MARGIN像素，避免在视野边缘来回进出。波次等全局状态每次都在快照头中发送
+ * 一次快照放不下（超过单条消息的上限）时，放不下的对象留到之后的快照，基准不变，不会中断其它客户端和服务器
+ *
+ * 所有玩家连上之后才开始计时，玩家断线后其英雄松开所有按键，可以重新连接接管
+ */
+public class GameServer {
+    public static final int TICK_MS = 30;                 // 每帧毫秒数（与单机客户端的刷新间隔一致）
+    public static final int SNAPSHOT_INTERVAL = 2;        // 每隔多少帧广播一次快照
+    private static final int OUTBOX_HIGH_WATER = 256 * 1024;  // 发送缓冲积压超过该字节数时跳过快照
+    private static final long STATS_PERIOD_MS = 5000;     // 统计输出周期
+    public static final int DEFAULT_VIEW_RADIUS = 640;    // 默认视野半径（覆盖960x720窗口的半对角线）
+    private static final int LEAVE_MARGIN = 64;           // 离开视野的额外距离
+
+    private final World world;                            // 游戏世界（只在服务器线程访问）
+    private final Selector selector;                      // 多路复用器
+    private final ServerSocketChannel serverChannel;      // 监听通道
+    private final ClientConnection[] players;             // 玩家连接（下标与英雄下标一致）
+    private final int viewRadius;                         // 视野半径
+    private final Map<Integer, EntityState> captured;     // 本次快照已采集的对象状态（多个客户端共用，按编号）
+    private final List<GameObject> nearby;                // 视野查询结果（复用）
+    private int capturedNum;                              // 本次快照采集的对象数量
+    private final ByteBuffer scratch;                     // 快照负载编码缓冲区（复用）
+    private final byte[] mapData;                         // 编码后的地图（欢迎消息之后分成多条发送）
+    private long snapshotSeq;                             // 快照序号
+    private boolean started;                              // 是否已开始计时
+    private volatile boolean running;                     // 是否继续运行
+
+    private Stats stats = new Stats();                    // 统计数据（每个统计周期换新）
+    private boolean printStats = true;                    // 是否定期输出统计数据
+    private Runnable beforeTick;                          // 每帧World.tick之前在服务器线程执行（可以为null）
+
+    /**
+     * 统计数据
+     * 从上一次取走（takeStats）到现在的累计值
+     */
+    public static class Stats {
+        int ticks;                // 帧数
+        long tickNanos;           // 帧耗时合计（模拟加快照）
+        long maxTickNanos;        // 最长的一帧
+        long snapshotNanos;       // 快照编码和发送耗时合计
+        int snapshots;            // 快照次数
+        long bytes;               // 发给所有客户端的字节数
+        int skipped;              // 因发送缓冲积压跳过的快照
+        int truncated;            // 写满缓冲被截断的快照
+    }
+
+    /**
+     * 玩家连接
+     * 保存接收缓冲、发送缓冲、当前按键状态和增量基准
+     */
+    private class ClientConnection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final int slot;                                    // 对应的英雄下标
+        final ByteBuffer inbox = ByteBuffer.allocate(4096); // 接收缓冲
+        ByteBuffer outbox = ByteBuffer.allocate(64 * 1024); // 发送缓冲（写模式，按需扩容）
+        final Map<Integer, EntityState> baseline = new HashMap<>();  // 客户端已收到的对象状态
+        int resume;                                        // 上一次快照写满时停下的位置（下一次从这里开始写，避免总是漏掉同一批对象）
+
+        ClientConnection(SocketChannel channel, SelectionKey key, int slot) {
+            this.channel = channel;
+            this.key = key;
+            this.slot = slot;
+        }
+
+        /**
+         * 把一条消息放入发送缓冲并尝试立即发送
+         * @param payload 消息负载（读模式）
+         */
+        void send(ByteBuffer payload) throws IOException {
+            int need = NetProtocol.frameSize(payload.remaining());
+            if(outbox.remaining() < need) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(outbox.capacity() * 2, outbox.position() + need));
+                outbox.flip();
+                bigger.put(outbox);
+                outbox = bigger;
+            }
+            stats.bytes += need;
+            NetProtocol.writeFrame(outbox, payload);
+            flush();
+        }
+
+        /**
+         * 尽可能多地写出发送缓冲，写不完时关注OP_WRITE
+         */
+        void flush() throws IOException {
+            outbox.flip();
+            channel.write(outbox);
+            outbox.compact();
+            key.interestOps(outbox.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param port 监听端口（0表示由系统分配）
+     * @param playerNum 玩家数量（1~World.MAX_HEROES）
+     * @throws IOException 端口绑定失败
+     */
+    public GameServer(int port, int playerNum) throws IOException {
+        this(port, playerNum, DEFAULT_VIEW_RADIUS);
+    }
+
+    /**
+     * 构造方法
+     * @param port 监听端口（0表示由系统分配）
+     * @param playerNum 玩家数量（1~World.MAX_HEROES）
+     * @param viewRadius 视野半径
+     * @throws IOException 端口绑定失败
+     */
+    public GameServer(int port, int playerNum, int viewRadius) throws IOException {
+        this(port, new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, playerNum), viewRadius);
+    }
+
+    /**
+     * 构造方法
+     * 在指定的世界上运行（每个英雄对应一个玩家）
+     * @param port 监听端口（0表示由系统分配）
+     * @param world 游戏世界
+     * @param viewRadius 视野半径
+     * @throws IOException 端口绑定失败
+     * @throws IllegalArgumentException 地图数据超过NetProtocol.MAX_MAP，客户端不能接收
+     */
+    public GameServer(int port, World world, int viewRadius) throws IOException {
+        TileMap map = world.getMap();
+        if(map.getByteSize() > NetProtocol.MAX_MAP)
+            throw new IllegalArgumentException("地图太大，不能联机: " + map.getCols() + "×" + map.getRows() + "瓦片，" + map.getByteSize() + "字节");
+        ByteBuffer encoded = ByteBuffer.allocate(map.getByteSize());
+        map.write(encoded);
+        this.mapData = encoded.array();
+        this.world = world;
+        if(world.getStateHash() == null) world.setStateHash(new StateHash());  // 每帧计算状态哈希，统计信息中输出链式哈希
+        this.players = new ClientConnection[world.getHeroes().size()];
+        this.viewRadius = viewRadius;
+        this.captured = new HashMap<>();
+        this.nearby = new ArrayList<>();
+        this.scratch = ByteBuffer.allocate(NetProtocol.MAX_FRAME);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * 获取实际监听的端口
+     * @return 端口
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * 获取游戏世界
+     * @return 游戏世界
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * 停止服务器（可在其它线程调用）
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * 设置每帧World.tick之前在服务器线程执行的回调（如机器人计算按键），用于无界面测试
+     * @param beforeTick 回调（null表示不执行）
+     */
+    public void setBeforeTick(Runnable beforeTick) {
+        this.beforeTick = beforeTick;
+    }
+
+    /**
+     * 设置是否定期输出统计数据（关闭后由调用方通过takeStats取走）
+     * @param printStats 是否输出
+     */
+    public void setPrintStats(boolean printStats) {
+        this.printStats = printStats;
+    }
+
+    /**
+     * 取走当前的统计数据并重新开始累计（只能在服务器线程调用，如beforeTick回调中）
+     * @return 统计数据
+     */
+    public Stats takeStats() {
+        Stats taken = stats;
+        stats = new Stats();
+        return taken;
+    }
+
+    /**
+     * 服务器主循环
+     * 在两帧之间等待网络事件，到时间后推进一帧并按固定频率广播快照
+     * 游戏结束后发送最后一次快照，等待发送缓冲写完（最多2秒）后退出
+     */
+    public void run() throws IOException {
+        running = true;
+        final long tickNanos = TICK_MS * 1000000L;
+        long nextTick = System.nanoTime() + tickNanos;
+        long nextStats = System.currentTimeMillis() + STATS_PERIOD_MS;
+        long closeDeadline = -1;
+        try {
+            while(running) {
+                long waitMs = (nextTick - System.nanoTime()) / 1000000L;
+                if(waitMs > 0) selector.select(waitMs);
+                else selector.selectNow();
+                handleSelectedKeys();
+
+                long now = System.nanoTime();
+                if(now - nextTick >= 0) {
+                    nextTick += tickNanos;
+                    if(now - nextTick > tickNanos * 5) nextTick = now + tickNanos;  // 严重落后时不追帧
+                    if(started && closeDeadline < 0) {
+                        try {
+                            tickOnce();
+                        } catch (RuntimeException e) {
+                            WorldCodec.writeCrashSnapshot(world, "server");
+                            throw e;
+                        }
+                        if(world.End()) closeDeadline = System.currentTimeMillis() + 2000;
+                    }
+                }
+                if(closeDeadline >= 0 && (allFlushed() || System.currentTimeMillis() > closeDeadline)) break;
+                if(System.currentTimeMillis() >= nextStats) {
+                    if(printStats) printStats();
+                    nextStats += STATS_PERIOD_MS;
+                }
+            }
+        } finally {
+            for(ClientConnection c : players)
+                if(c != null) c.channel.close();
+            serverChannel.close();
+            selector.close();
+        }
+    }
+
+    /**
+     * 处理就绪的网络事件
+     */
+    private void handleSelectedKeys() {
+        Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+        while(iter.hasNext()) {
+            SelectionKey key = iter.next();
+            iter.remove();
+            if(!key.isValid()) continue;
+            ClientConnection c = (ClientConnection) key.attachment();
+            try {
+                if(key.isAcceptable()) accept();
+                else {
+                    if(key.isReadable()) read(c);
+                    if(key.isValid() && key.isWritable()) c.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                if(c != null) disconnect(c, e.toString());
+                else System.out.println("接受连接失败: " + e);
+            }
+        }
+    }
+
+    /**
+     * 接受新连接，分配空闲的英雄
+     * 没有空闲英雄时发送拒绝消息后关闭；设置连接或发送欢迎消息失败时释放英雄并关闭连接
+     * （接受事件的附件为空，异常不能交给handleSelectedKeys处理）
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if(channel == null) return;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            channel.close();
+            return;
+        }
+
+        int slot = -1;
+        for(int i = 0; i < players.length; i++)
+            if(players[i] == null) { slot = i; break; }
+        if(slot < 0) {
+            scratch.clear();
+            scratch.put(NetProtocol.MSG_REJECT);
+            scratch.flip();
+            ByteBuffer frame = ByteBuffer.allocate(16);
+            NetProtocol.writeFrame(frame, scratch);
+            frame.flip();
+            channel.write(frame);
+            channel.close();
+            return;
+        }
+
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        ClientConnection c = new ClientConnection(channel, key, slot);
+        key.attach(c);
+        players[slot] = c;
+        try {
+            sendWelcome(c);
+            System.out.println("玩家" + (slot + 1) + "已连接: " + channel.getRemoteAddress());
+        } catch (IOException | RuntimeException e) {
+            disconnect(c, e.toString());  // 释放英雄，客户端可以重新连接
+            return;
+        }
+
+        if(!started) {
+            boolean full = true;
+            for(ClientConnection p : players) full &= p != null;
+            if(full) {
+                started = true;
+                System.out.println("所有玩家已就绪，游戏开始");
+            }
+        }
+        // 新连接（包括重连）的基准为空，下一次快照是完整快照
+    }
+
+    /**
+     * 发送欢迎消息：英雄编号、世界尺寸、快照频率、地图数据的字节数，
+     * 再把地图（客户端按地图绘制障碍物）分成不超过MAX_FRAME的多条消息发送
+     * @param c 连接
+     */
+    private void sendWelcome(ClientConnection c) throws IOException {
+        scratch.clear();
+        scratch.put(NetProtocol.MSG_WELCOME);
+        Varint.putVarInt(scratch, world.getHeroes().get(c.slot).getId());
+        Varint.putVarInt(scratch, world.getWidth());
+        Varint.putVarInt(scratch, world.getHeight());
+        Varint.putVarInt(scratch, SNAPSHOT_INTERVAL);
+        Varint.putVarInt(scratch, TICK_MS);
+        Varint.putVarInt(scratch, mapData.length);
+        scratch.flip();
+        c.send(scratch);
+        for(int offset = 0; offset < mapData.length; offset += NetProtocol.MAP_PART) {
+            scratch.clear();
+            scratch.put(NetProtocol.MSG_MAP);
+            scratch.put(mapData, offset, Math.min(NetProtocol.MAP_PART, mapData.length - offset));
+            scratch.flip();
+            c.send(scratch);
+        }
+    }
+
+    /**
+     * 读取并处理客户端消息
+     * @param c 连接
+     */
+    private void read(ClientConnection c) throws IOException {
+        int n = c.channel.read(c.inbox);
+        if(n < 0) {
+            disconnect(c, "连接关闭");
+            return;
+        }
+        c.inbox.flip();
+        ByteBuffer payload;
+        while((payload = NetProtocol.readFrame(c.inbox)) != null) {
+            byte type = payload.get();
+            if(type == NetProtocol.MSG_INPUT) applyInput(c, Varint.getVarInt(payload));
+            else throw new IllegalStateException("未知消息类型: " + type);
+        }
+        c.inbox.compact();
+        if(!c.inbox.hasRemaining()) throw new IllegalStateException("消息过长");
+    }
+
+    /**
+     * 把按键状态的变化转换为英雄的按下/释放
+     * 在服务器线程的两帧之间执行，与单机模式中在两帧之间处理键盘事件一致
+     * @param c 连接
+     * @param buttons 当前按下的按键槽位位掩码
+     */
+    private void applyInput(ClientConnection c, int buttons) {
+        world.getHeroes().get(c.slot).setButtons(buttons);
+    }
+
+    /**
+     * 断开连接，英雄松开所有按键
+     * @param c 连接
+     * @param reason 原因
+     */
+    private void disconnect(ClientConnection c, String reason) {
+        if(players[c.slot] != c) return;
+        applyInput(c, 0);
+        players[c.slot] = null;
+        c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException ignored) {
+        }
+        System.out.println("玩家" + (c.slot + 1) + "已断开: " + reason);
+    }
+
+    /**
+     * 推进一帧，到广播间隔时发送快照
+     */
+    private void tickOnce() {
+        if(beforeTick != null) beforeTick.run();
+        long t0 = System.nanoTime();
+        world.tick();
+        long t1 = System.nanoTime();
+        if(world.getTick() % SNAPSHOT_INTERVAL == 0 || world.End()) {
+            broadcast();
+            stats.snapshotNanos += System.nanoTime() - t1;
+            stats.snapshots++;
+        }
+        long cost = System.nanoTime() - t0;
+        stats.ticks++;
+        stats.tickNanos += cost;
+        stats.maxTickNanos = Math.max(stats.maxTickNanos, cost);
+    }
+
+    /**
+     * 向每个客户端发送增量快照
+     * 对象状态在第一次被某个客户端需要时采集，同一次快照中所有客户端共用
+     */
+    private void broadcast() {
+        snapshotSeq++;
+        capturedNum = 0;
+        if(snapshotSeq % 256 == 0) {
+            // 清理长时间不在任何视野中的采集缓存
+            Iterator<EntityState> iter = captured.values().iterator();
+            while(iter.hasNext())
+                if(snapshotSeq - iter.next().stamp > 256) iter.remove();
+        }
+
+        for(ClientConnection c : players) {
+            if(c == null) continue;
+            try {
+                sendSnapshot(c);
+            } catch (IOException e) {
+                disconnect(c, e.toString());
+            }
+        }
+    }
+
+    /**
+     * 采集对象状态（每次快照每个对象只采集一次）
+     * @param obj 游戏对象
+     * @return 本次快照中的对象状态
+     */
+    private EntityState capture(GameObject obj) {
+        EntityState state = captured.get(obj.getId());
+        if(state == null) {
+            state = new EntityState();
+            captured.put(obj.getId(), state);
+        }
+        if(state.stamp != snapshotSeq) {
+            state.capture(obj);
+            state.stamp = snapshotSeq;
+            capturedNum++;
+        }
+        return state;
+    }
+
+    /**
+     * 编码并发送一个客户端的增量快照
+     *
+     * 快照格式：
+     * 类型、帧号、标志、当前波次最大敌人数、当前敌人数、
+     * 变化的对象（编号 + 字段掩码 + 字段）...、0、
+     * 被移除或离开视野的对象编号...、0
+     *
+     * 变化的对象最多写到消息上限减去移除列表需要的空间（每个基准对象最多一个编号）；
+     * 之后的对象本次不发送：已在基准中的对象基准不变（下一次的增量包含本次的变化），新进入视野的对象下一次再完整发送；
+     * 下一次快照从停下的位置开始写
+     *
+     * @param c 连接
+     */
+    private void sendSnapshot(ClientConnection c) throws IOException {
+        if(c.outbox.position() > OUTBOX_HIGH_WATER) {
+            stats.skipped++;
+            return;
+        }
+        scratch.clear();
+        scratch.put(NetProtocol.MSG_SNAPSHOT);
+        Varint.putVarLong(scratch, world.getTick());
+        int flags = (world.End() ? NetProtocol.SNAPSHOT_SHOW_END : 0) | (world.isEnd() ? NetProtocol.SNAPSHOT_GAME_OVER : 0);
+        scratch.put((byte) flags);
+        Varint.putVarInt(scratch, world.getMaxEnemyNum());
+        Varint.putVarInt(scratch, world.getCurrentEnemyNum());
+
+        // 从空间索引查询英雄附近的对象
+        Hero hero = world.getHeroes().get(c.slot);
+        long enter2 = (long) viewRadius * viewRadius;
+        nearby.clear();
+        world.getSpatialIndex().query(hero.getX(), hero.getY(), viewRadius + LEAVE_MARGIN, nearby);
+        scratch.limit(Math.max(scratch.position(), scratch.capacity() - Varint.MAX_INT_BYTES * (c.baseline.size() + 2)));
+        boolean full = false;  // 本次快照是否已写满
+        int count = nearby.size(), start = count == 0 ? 0 : c.resume % count;
+        c.resume = 0;
+        for(int k = 0; k < count; k++) {
+            int i = (start + k) % count;
+            GameObject obj = nearby.get(i);
+            EntityState base = c.baseline.get(obj.getId());
+            if(base == null) {
+                // 新进入视野的对象必须在视野半径内
+                long dx = obj.getX() - hero.getX();
+                long dy = obj.getY() - hero.getY();
+                if(dx * dx + dy * dy > enter2) continue;
+            }
+            EntityState state = capture(obj);
+            int mask = full ? 0 : state.diff(base);
+            if(mask != 0) {
+                int mark = scratch.position();
+                try {
+                    state.write(scratch, mask, base);
+                } catch (BufferOverflowException e) {
+                    scratch.position(mark);
+                    full = true;
+                    mask = 0;
+                    c.resume = i;
+                }
+            }
+            if(mask != 0) {
+                if(base == null) {
+                    base = new EntityState();
+                    c.baseline.put(state.id, base);
+                }
+                base.copyFrom(state);
+            }
+            if(base != null) base.stamp = snapshotSeq;  // 写满后没有发送的新对象不进入基准
+        }
+        scratch.limit(scratch.capacity());
+        if(full) stats.truncated++;
+        Varint.putVarInt(scratch, 0);
+
+        // 本次没有出现的对象已从世界移除或离开视野
+        Iterator<EntityState> iter = c.baseline.values().iterator();
+        while(iter.hasNext()) {
+            EntityState base = iter.next();
+            if(base.stamp != snapshotSeq) {
+                Varint.putVarInt(scratch, base.id);
+                iter.remove();
+            }
+        }
+        Varint.putVarInt(scratch, 0);
+
+        scratch.flip();
+        c.send(scratch);
+    }
+
+    /**
+     * 所有发送缓冲是否已写完
+     * @return 是否已写完
+     */
+    private boolean allFlushed() {
+        for(ClientConnection c : players)
+            if(c != null && c.outbox.position() > 0) return false;
+        return true;
+    }
+
+    /**
+     * 输出统计数据：帧耗时、快照编码耗时和每个客户端的带宽
+     */
+    private void printStats() {
+        int clients = 0;
+        for(ClientConnection c : players) if(c != null) clients++;
+        Stats s = takeStats();
+        if(s.ticks > 0) {
+            System.out.printf("帧%d 采集对象%d 敌人%d 客户端%d | 帧耗时 平均%.2fms 最大%.2fms | 快照 平均%.2fms | 每客户端 %.1fKB/s | 跳过快照%d 截断快照%d | 状态哈希%016x%n",
+                    world.getTick(), capturedNum, world.getCurrentEnemyNum(), clients,
+                    s.tickNanos / 1e6 / s.ticks, s.maxTickNanos / 1e6,
+                    s.snapshots == 0 ? 0 : s.snapshotNanos / 1e6 / s.snapshots,
+                    clients == 0 ? 0 : s.bytes / 1024.0 / clients / (STATS_PERIOD_MS / 1000.0),
+                    s.skipped, s.truncated, world.getStateHash().getChainHash());
+        }
+    }
+
+    /**
+     * 服务器入口
+     * 参数：[端口] [玩家数量] [视野半径] [回放文件] [地图文件]，默认7777端口、2名玩家、视野半径640、不录制回放（"-"也表示不录制）、
+     * 窗口大小的空地图
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");  // 服务器不需要窗口
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : NetProtocol.DEFAULT_PORT;
+        int playerNum = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int viewRadius = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_VIEW_RADIUS;
+        World world = args.length > 4
+                ? new World(TileMap.load(new File(args[4])), playerNum, System.nanoTime(), WaveRules.DEFAULT)
+                : new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, playerNum);
+        GameServer server = new GameServer(port, world, viewRadius);
+        System.out.println("服务器已启动，端口" + server.getPort() + "，等待" + playerNum + "名玩家连接");
+        if(args.length > 3 && !args[3].equals("-")) {
+            // 录制器在构造时挂到世界上，由World.tick逐帧录制，服务器结束后关闭
+            ReplayWriter replay = new ReplayWriter(new File(args[3]), server.getWorld(), ReplayWriter.DEFAULT_INTERVAL);
+            try {
+                server.run();
+            } finally {
+                replay.close();
+            }
+        } else {
+            server.run();
+        }
+    }
+}
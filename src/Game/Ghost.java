@@ -29,46 +29,48 @@ public class Ghost extends Enemy {
     }
 
     /**
-     * 绘制幽灵
+     * 攻击决策（读阶段）
      * 
      * 攻击逻辑：
      * 1. 检查与目标的距离是否在攻击范围内（300像素）
      * 2. 检查当前朝向是否对准目标（角度差<60度）
-     * 3. 满足条件且武器冷却结束时发射弹丸
+     * 3. 检查与目标之间是否没有墙壁和地图障碍（网格射线）
+     * 4. 满足条件且武器冷却结束时发射弹丸
      * 
      * 为什么要检查角度差：
      * - 远程攻击需要瞄准，不能随便发射
      * - 60度的容错范围让幽灵不需要完全对准也能攻击
      * - 如果角度差太大，幽灵会继续移动调整位置
      * 
-     * @param g 图形上下文
+     * @param snapshot 本帧世界快照
+     * @param intent 本帧决策
      */
-    public void draw(Graphics g) {
-        if(getTarget() != null && getTarget().getHP() > 0 && this.getHP() > 0) {
+    protected void planAttack(WorldSnapshot snapshot, EnemyIntent intent) {
+        WorldSnapshot.HeroView nearest = snapshot.nearestHero(this.getX(), this.getY());
+        WorldSnapshot.HeroView current = snapshot.viewOf(getCurrentTarget());
+        if(nearest != null && current != null && this.getHP() > 0) {
             // 计算与目标的距离
-            int distance = (int) getDistance(this.getX(), this.getY(), getCurrentTarget().getX(), getCurrentTarget().getY());
+            int distance = (int) getDistance(this.getX(), this.getY(), current.getX(), current.getY());
             
             // 在攻击范围内且武器冷却结束
             if (distance <= attackRange && this.getCurrentWeapon().getColdDown() == 0) {
                 // 计算当前朝向角度
-                double currentDegree = Direction.toDegree(this.dir == Direction.STOP ? oldDir : dir);
+                double currentDegree = Direction.toDegree(intent.getDir() == Direction.STOP ? intent.getOldDir() : intent.getDir());
                 // 计算目标方向角度
-                double targetDegree = getDeltaDegree(getTarget().getX(), getTarget().getY());
+                double targetDegree = getDeltaDegree(nearest.getX(), nearest.getY());
                 
                 // 检查角度差是否小于60度（瞄准判定）
                 // 需要考虑360度循环（例如350度和10度的差值是20度，不是340度）
-                if(Math.abs(targetDegree - currentDegree) < 60 || Math.abs(360 - targetDegree + currentDegree) < 60) {
-                    // 发射弹丸
-                    this.getCurrentWeapon().setState();
-                    this.getCurrentWeapon().setColdDown();
+                // 隔着墙壁发射的弹丸只会打在墙上，看不到目标时继续移动
+                if((Math.abs(targetDegree - currentDegree) < 60 || Math.abs(360 - targetDegree + currentDegree) < 60)
+                        && world.getRaycast().lineOfSight(this.getX(), this.getY(), current.getX(), current.getY())) {
+                    // 发射弹丸（写阶段执行）
+                    intent.setAttack(true);
                     
                     // 重新计算路径（发射后可能需要调整位置）
-                    getPath();
+                    getPath(snapshot);
                 }
             }
         }
-        
-        locateDirection();  // 更新移动方向
-        super.draw(g);      // 绘制角色
     }
 }
@@ -0,0 +1,231 @@
+package Game;
+
+import java.util.Random;
+
+/**
+ * 网格射线（DDA遍历占用网格）
+ *
+ * 从起点出发，按射线依次越过竖线和横线的先后顺序逐个访问经过的网格（Amanatides-Woo），
+ * 遇到第一个阻挡网格时返回射线进入这个网格的位置。全部用整数计算（交叉相乘比较越过边线的先后），
+ * 结果与平台无关，可以在写阶段中使用；不修改任何状态、不创建对象，多个线程可以同时调用
+ *
+ * 阻挡网格是静态阻挡：世界边界、地图障碍、未装入的分块和墙壁占用的网格；英雄、敌人和弹丸占用的网格不阻挡。
+ * 与WorldGrids.buildChunk和markObjects的偏移一致，像素p在网格floorDiv(p, LENGTH)+1中。
+ * 射线正好经过网格角时，两侧的网格也检查（不能从两个斜对的障碍之间穿过去）；起点所在的网格不检查
+ *
+ * 用途：
+ * 1. 远程攻击的视线：Ghost只在能看到目标时发射幽灵弹
+ * 2. 弹丸的扫掠碰撞：Ball每帧移动前依次检查位移经过的每个阻挡网格，飞行速度超过障碍厚度时也不会穿过去
+ */
+public class GridRaycast {
+    public static final int ONE = 1 << 16;  // 射线参数的定点数精度（ONE表示终点）
+    private final WorldGrids worldGrids;
+
+    /**
+     * 构造方法
+     * @param worldGrids 世界网格系统
+     */
+    public GridRaycast(WorldGrids worldGrids) {
+        this.worldGrids = worldGrids;
+    }
+
+    /**
+     * 沿线段(x0, y0)→(x1, y1)查找第一个静态阻挡网格
+     * @return 射线进入阻挡网格时的参数（0到ONE的定点数），线段上没有阻挡时返回-1
+     */
+    public int cast(int x0, int y0, int x1, int y1) {
+        return cast(x0, y0, x1, y1, -1);
+    }
+
+    /**
+     * 沿线段(x0, y0)→(x1, y1)查找参数大于after的第一个静态阻挡网格（继续查找同一条线段上的下一个阻挡）
+     * @param after 上一个阻挡的参数，-1表示从起点开始
+     * @return 射线进入阻挡网格时的参数（after到ONE之间的定点数），没有更多阻挡时返回-1
+     */
+    public int cast(int x0, int y0, int x1, int y1, int after) {
+        final int length = Grid.LENGTH;
+        int cx = Math.floorDiv(x0, length) + 1, cy = Math.floorDiv(y0, length) + 1;
+        long dx = (long) x1 - x0, dy = (long) y1 - y0;
+        int sx = Long.signum(dx), sy = Long.signum(dy);
+        long adx = Math.abs(dx), ady = Math.abs(dy);
+        // 起点到下一条竖线、横线的距离（像素）；网格不含右边线和下边线，向左、向上时越过边线才进入相邻网格
+        long nx = sx > 0 ? (long) cx * length - x0 : x0 - (long) (cx - 1) * length;
+        long ny = sy > 0 ? (long) cy * length - y0 : y0 - (long) (cy - 1) * length;
+        while(true) {
+            boolean stepX = sx > 0 ? nx <= adx : sx < 0 && nx < adx;
+            boolean stepY = sy > 0 ? ny <= ady : sy < 0 && ny < ady;
+            if(stepX && stepY) {
+                // 两条边线都在线段内，先越过参数小的（nx/adx与ny/ady交叉相乘比较），相等时正好经过网格角
+                long cmp = nx * ady - ny * adx;
+                if(cmp < 0) stepY = false;
+                else if(cmp > 0) stepX = false;
+            }
+            if(stepX && stepY) {
+                if((blocks(cx + sx, cy) || blocks(cx, cy + sy) || blocks(cx + sx, cy + sy)) && entry(nx, adx) > after) return entry(nx, adx);
+                cx += sx;
+                cy += sy;
+                nx += length;
+                ny += length;
+            } else if(stepX) {
+                cx += sx;
+                if(blocks(cx, cy) && entry(nx, adx) > after) return entry(nx, adx);
+                nx += length;
+            } else if(stepY) {
+                cy += sy;
+                if(blocks(cx, cy) && entry(ny, ady) > after) return entry(ny, ady);
+                ny += length;
+            } else {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * 判断两点之间是否没有静态阻挡
+     * @return 视线畅通时返回true
+     */
+    public boolean lineOfSight(int x0, int y0, int x1, int y1) {
+        return cast(x0, y0, x1, y1) < 0;
+    }
+
+    /**
+     * 越过距离为distance的边线时的射线参数
+     */
+    private static int entry(long distance, long total) {
+        return (int) (distance * ONE / total);
+    }
+
+    /**
+     * 判断网格是否为静态阻挡
+     */
+    private boolean blocks(int gx, int gy) {
+        if(gx < 0 || gy < 0 || gx >= worldGrids.getCols() || gy >= worldGrids.getRows()) return true;
+        Grid grid = worldGrids.get(gx, gy);
+        if(grid.isBorder()) return true;
+        GameObject object = grid.getObject();
+        return object != null && (object.getCollisionLayer() & CollisionLayers.WALL) != 0;
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[世界宽度] [世界高度] [障碍百分比] [射线数量] [种子]，默认2000×1500、10%、200000条、种子1
+     * 1. 在随机障碍地图上投射300像素以内的随机射线，输出每条的耗时、被挡住的比例（幽灵不再隔墙发射的比例），
+     *    并按1/4像素逐点采样校验：射线判为畅通但采样点落在阻挡网格中的次数应为0
+     * 2. 以不同速度从随机位置沿八个方向发射幽灵弹大小的弹丸，分别用原来的离散检测和扫掠检测移动，
+     *    输出弹丸中心穿过障碍（进入障碍后又离开，之后仍在飞行）的比例
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+        int percent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int rays = args.length > 3 ? Integer.parseInt(args[3]) : 200000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        TileMap map = TileMap.generate(width / Grid.LENGTH, height / Grid.LENGTH, Grid.LENGTH, percent, seed);
+        System.out.printf("地图%d×%d，障碍%d%%，种子%d%n", width, height, percent, seed);
+        World world = new World(map, 1, seed, WaveRules.DEFAULT);
+        WorldGrids grids = world.getWorldGrids();
+        grids.updateGrids();
+        GridRaycast raycast = world.getRaycast();
+
+        Random random = new Random(seed);
+        int[] segments = new int[rays * 4];
+        for(int n = 0; n < rays; ) {
+            int x0 = 20 + random.nextInt(width - 40), y0 = 20 + random.nextInt(height - 40);
+            int x1 = x0 - 300 + random.nextInt(601), y1 = y0 - 300 + random.nextInt(601);
+            if(!grids.isFree(x0, y0, 14) || !grids.isFree(x1, y1, 14) || Math.hypot(x1 - x0, y1 - y0) > 300) continue;
+            segments[n * 4] = x0;
+            segments[n * 4 + 1] = y0;
+            segments[n * 4 + 2] = x1;
+            segments[n * 4 + 3] = y1;
+            n++;
+        }
+        for(int round = 0; round < 3; round++) {  // 前两轮预热
+            long blocked = 0, missed = 0;
+            long start = System.nanoTime();
+            for(int n = 0; n < rays; n++) {
+                if(raycast.cast(segments[n * 4], segments[n * 4 + 1], segments[n * 4 + 2], segments[n * 4 + 3]) >= 0) blocked++;
+            }
+            long nanos = System.nanoTime() - start;
+            if(round < 2) continue;
+            for(int n = 0; n < rays; n++) {
+                int x0 = segments[n * 4], y0 = segments[n * 4 + 1], x1 = segments[n * 4 + 2], y1 = segments[n * 4 + 3];
+                if(!raycast.lineOfSight(x0, y0, x1, y1) || !sampledBlocked(raycast, x0, y0, x1, y1)) continue;
+                missed++;
+            }
+            System.out.printf("射线%d条：每条%.0fns，被挡住%.1f%%，采样校验漏检%d条%n",
+                    rays, (double) nanos / rays, blocked * 100.0 / rays, missed);
+        }
+
+        Role host = new Ghost(0, 0, world);
+        for(int speed : new int[]{8, 15, 30, 45}) {
+            int shots = 2000;
+            long[] tunnels = new long[2];
+            Random shotRandom = new Random(seed);
+            for(int n = 0; n < shots; n++) {
+                Ghostball ball = new Ghostball(host, world);
+                int x0, y0;
+                do {
+                    x0 = 20 + shotRandom.nextInt(width - 40);
+                    y0 = 20 + shotRandom.nextInt(height - 40);
+                } while(!grids.isFree(x0, y0, ball.getRadius()));
+                Direction dir = Direction.values()[shotRandom.nextInt(8)];  // 前8个是移动方向
+                double degree = Math.toRadians(Direction.toDegree(dir));
+                int xIncrement = (int) (speed * Math.cos(degree)), yIncrement = -(int) (speed * Math.sin(degree));
+                for(int swept = 0; swept < 2; swept++) {
+                    ball = new Ghostball(host, world);
+                    ball.x = x0;
+                    ball.y = y0;
+                    ball.xIncrement = xIncrement;
+                    ball.yIncrement = yIncrement;
+                    ball.setDir(dir);
+                    ball.setLifecycle(LifecycleState.ACTIVE);  // 不加入世界，碰撞后移除时变为REMOVED
+                    int lastX = x0, lastY = y0;  // 最后一个没有碰撞的位置（碰撞时会被推开，不在飞行路线上）
+                    for(int step = 0; step * speed < 400; step++) {
+                        if(swept == 1) {
+                            ball.update();
+                        } else {  // 原来的离散检测
+                            ball.x += xIncrement;
+                            ball.y += yIncrement;
+                            world.collisionDetection(ball);
+                        }
+                        if(ball.getLifecycle() == LifecycleState.REMOVED) break;
+                        lastX = ball.getX();
+                        lastY = ball.getY();
+                    }
+                    if(passedThrough(map, x0, y0, lastX, lastY)) tunnels[swept]++;
+                }
+            }
+            System.out.printf("弹丸速度%d：离散检测穿过障碍%.1f%%，扫掠检测穿过障碍%.1f%%%n",
+                    speed, tunnels[0] * 100.0 / shots, tunnels[1] * 100.0 / shots);
+        }
+    }
+
+    /**
+     * 按1/4像素采样线段（不含起点所在网格），判断是否有采样点落在阻挡网格中
+     */
+    private static boolean sampledBlocked(GridRaycast raycast, int x0, int y0, int x1, int y1) {
+        int samples = (int) Math.ceil(Math.hypot(x1 - x0, y1 - y0) * 4);
+        int sx = Math.floorDiv(x0, Grid.LENGTH) + 1, sy = Math.floorDiv(y0, Grid.LENGTH) + 1;
+        for(int i = 1; i <= samples; i++) {
+            int gx = Math.floorDiv((int) Math.floor(x0 + (double) (x1 - x0) * i / samples), Grid.LENGTH) + 1;
+            int gy = Math.floorDiv((int) Math.floor(y0 + (double) (y1 - y0) * i / samples), Grid.LENGTH) + 1;
+            if((gx != sx || gy != sy) && raycast.blocks(gx, gy)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 判断从起点直线飞到终点的弹丸中心是否进入障碍后又离开了障碍
+     */
+    private static boolean passedThrough(TileMap map, int x0, int y0, int x1, int y1) {
+        int samples = Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0));
+        boolean inside = false;
+        for(int i = 1; i <= samples; i++) {
+            boolean blocked = map.isBlockedAt(x0 + (x1 - x0) * i / samples, y0 + (y1 - y0) * i / samples);
+            if(inside && !blocked) return true;
+            inside |= blocked;
+        }
+        return false;
+    }
+}
@@ -2,7 +2,8 @@ package Game;
 
 import java.awt.*;
 import java.awt.event.KeyEvent;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * 英雄类（玩家角色）
@@ -11,8 +12,27 @@ import java.util.Random;
  */
 public class Hero extends Role {
     public static final int MAX_HP = 1200;  // 最大生命值
+    // 按键槽位（本地键盘和网络输入都按槽位操作英雄）
+    public static final int KEY_LEFT = 0;      // 左
+    public static final int KEY_UP = 1;        // 上
+    public static final int KEY_RIGHT = 2;     // 右
+    public static final int KEY_DOWN = 3;      // 下
+    public static final int KEY_ATTACK = 4;    // 攻击
+    public static final int KEY_SWITCH = 5;    // 切换武器
+    public static final int KEY_ULTIMATE = 6;  // 大招
+    public static final int KEY_NUM = 7;       // 按键槽位数量
+    // 两套按键方案：0为方向键+小键盘（2P），1为WASD+JKL（1P）
+    private static final int[][] KEY_GROUPS = {
+            {KeyEvent.VK_LEFT, KeyEvent.VK_UP, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN,
+             KeyEvent.VK_NUMPAD1, KeyEvent.VK_NUMPAD2, KeyEvent.VK_NUMPAD3},
+            {KeyEvent.VK_A, KeyEvent.VK_W, KeyEvent.VK_D, KeyEvent.VK_S,
+             KeyEvent.VK_J, KeyEvent.VK_K, KeyEvent.VK_L}
+    };
+    private int keyGroup;                    // 按键组
     private int[] keys;                      // 按键映射数组
     private boolean bL=false, bU=false, bR=false, bD=false;  // 方向键状态
+    private boolean blink;                   // 本帧是否处于保护期闪烁（不绘制角色）
+    private int buttons;                     // 当前按下的按键槽位位掩码
 
     /**
      * 构造方法
@@ -33,26 +53,30 @@ public class Hero extends Role {
         addWeapon(new Fireball(this, world));  // 远程火球
         setCurrentWeapon(getWeapons().get(0)); // 默认装备剑
         
-        keys = new int[7];  // 7个按键：左上右下、攻击、切换武器、大招
-        
-        // 根据按键组设置按键映射
-        if(keyGroup == 0){  // 2P按键（方向键+小键盘）
-            keys[0] = KeyEvent.VK_LEFT;     // 左
-            keys[1] = KeyEvent.VK_UP;       // 上
-            keys[2] = KeyEvent.VK_RIGHT;    // 右
-            keys[3] = KeyEvent.VK_DOWN;     // 下
-            keys[4] = KeyEvent.VK_NUMPAD1;  // 攻击
-            keys[5] = KeyEvent.VK_NUMPAD2;  // 切换武器
-            keys[6] = KeyEvent.VK_NUMPAD3;  // 大招
-        } else {  // 1P按键（WASD+JKL）
-            keys[0] = KeyEvent.VK_A;  // 左
-            keys[1] = KeyEvent.VK_W;  // 上
-            keys[2] = KeyEvent.VK_D;  // 右
-            keys[3] = KeyEvent.VK_S;  // 下
-            keys[4] = KeyEvent.VK_J;  // 攻击
-            keys[5] = KeyEvent.VK_K;  // 切换武器
-            keys[6] = KeyEvent.VK_L;  // 大招
-        }
+        // 根据按键组设置按键映射（7个按键：左上右下、攻击、切换武器、大招）
+        this.keyGroup = keyGroup == 0 ? 0 : 1;
+        keys = KEY_GROUPS[this.keyGroup];
+    }
+
+    /**
+     * 获取按键组
+     * @return 按键组（0为方向键+小键盘，1为WASD+JKL）
+     */
+    public int getKeyGroup() {
+        return keyGroup;
+    }
+
+    /**
+     * 查找按键在指定按键组中的槽位
+     * @param keyGroup 按键组（0为方向键+小键盘，1为WASD+JKL）
+     * @param keyCode 按键码
+     * @return 槽位，不属于该按键组时返回-1
+     */
+    public static int keySlotOf(int keyGroup, int keyCode) {
+        int[] group = KEY_GROUPS[keyGroup == 0 ? 0 : 1];
+        for(int slot = 0; slot < KEY_NUM; slot++)
+            if(group[slot] == keyCode) return slot;
+        return -1;
     }
 
     /**
@@ -60,15 +84,8 @@ public class Hero extends Role {
      * @param e 键盘事件
      */
     public void keyReleased(KeyEvent e) {
-        int key = e.getKeyCode();
-        if(key == keys[0]) bL = false;       // 释放左键
-        else if(key == keys[1]) bU = false;  // 释放上键
-        else if(key == keys[2]) bR = false;  // 释放右键
-        else if(key == keys[3]) bD = false;  // 释放下键
-        else if(key == keys[4]);             // 攻击键（无需处理释放）
-        else if(key == keys[5]);             // 切换武器键（无需处理释放）
-        else if(key == keys[6]);             // 大招键（无需处理释放）
-        locateDirection();  // 更新移动方向
+        int slot = indexOfKey(e.getKeyCode());
+        if(slot >= 0) release(slot);
     }
 
     /**
@@ -76,19 +93,55 @@ public class Hero extends Role {
      * @param e 键盘事件
      */
     public void KeyPressed(KeyEvent e) {
-        int key = e.getKeyCode();
-        if(key == keys[0]) bL = true;        // 按下左键
-        else if(key == keys[1]) bU = true;   // 按下上键
-        else if(key == keys[2]) bR = true;   // 按下右键
-        else if(key == keys[3]) bD = true;   // 按下下键
-        else if(key == keys[4] && this.getCurrentWeapon().getColdDown() == 0) {
+        int slot = indexOfKey(e.getKeyCode());
+        if(slot >= 0) press(slot);
+    }
+
+    /**
+     * 查找按键在本英雄按键映射中的槽位
+     * @param key 按键码
+     * @return 槽位，未映射时返回-1
+     */
+    private int indexOfKey(int key) {
+        for(int slot = 0; slot < KEY_NUM; slot++)
+            if(keys[slot] == key) return slot;
+        return -1;
+    }
+
+    /**
+     * 释放按键槽位
+     * @param slot 按键槽位
+     */
+    public void release(int slot) {
+        world.onHeroInput(this, slot, false);   // 录制回放
+        buttons &= ~(1 << slot);
+        if(slot == KEY_LEFT) bL = false;        // 释放左键
+        else if(slot == KEY_UP) bU = false;     // 释放上键
+        else if(slot == KEY_RIGHT) bR = false;  // 释放右键
+        else if(slot == KEY_DOWN) bD = false;   // 释放下键
+        // 攻击、切换武器、大招键无需处理释放
+        locateDirection();  // 更新移动方向
+    }
+
+    /**
+     * 按下按键槽位
+     * @param slot 按键槽位
+     */
+    public void press(int slot) {
+        world.onHeroInput(this, slot, true);    // 录制回放
+        buttons |= 1 << slot;
+        if(slot == KEY_LEFT) bL = true;         // 按下左键
+        else if(slot == KEY_UP) bU = true;      // 按下上键
+        else if(slot == KEY_RIGHT) bR = true;   // 按下右键
+        else if(slot == KEY_DOWN) bD = true;    // 按下下键
+        else if(slot == KEY_ATTACK && this.getCurrentWeapon().getColdDown() == 0) {
             // 攻击键：冷却结束才能攻击
             this.getCurrentWeapon().setState();
             this.getCurrentWeapon().setColdDown();
-        } else if(key == keys[5]){
+        } else if(slot == KEY_SWITCH){
             // 切换武器键
             this.NextWeapon();
-        } else if(key == keys[6] && this.getCurrentWeapon().getColdDown() == 0){
+        } else if(slot == KEY_ULTIMATE && this.getCurrentWeapon().getColdDown() == 0){
             // 大招键：只有火球武器支持大招
             Weapon weapon = this.getCurrentWeapon();
             if(weapon instanceof Fireball) {
@@ -99,6 +152,29 @@ public class Hero extends Role {
         locateDirection();  // 更新移动方向
     }
 
+    /**
+     * 按位掩码设置所有按键槽位的状态（网络输入、回放和自动测试使用）
+     * 只对变化的槽位调用press/release，与逐个按下、释放按键的效果一致
+     * @param buttons 当前按下的按键槽位位掩码
+     */
+    public void setButtons(int buttons) {
+        buttons &= (1 << KEY_NUM) - 1;
+        int changed = buttons ^ this.buttons;
+        for(int slot = 0; slot < KEY_NUM; slot++) {
+            if((changed & (1 << slot)) == 0) continue;
+            if((buttons & (1 << slot)) != 0) press(slot);
+            else release(slot);
+        }
+    }
+
+    /**
+     * 获取当前按下的按键槽位位掩码
+     * @return 位掩码
+     */
+    public int getButtons() {
+        return buttons;
+    }
+
     /**
      * 根据按键状态确定移动方向
      * 支持8方向移动
@@ -115,6 +191,40 @@ public class Hero extends Role {
         else if(!bL && !bU && !bR && !bD) dir = Direction.STOP;  // 停止
     }
 
+    /**
+     * 更新英雄
+     * 保护期内闪烁时只维护行走状态和移动
+     */
+    public void update(){
+        // 保护时间处理（闪烁效果）
+        int b = this.getBegin();
+        blink = b > 0 && (b / 3) % 2 == 0;
+        if(blink) {
+            // 保护期内每3帧闪烁一次（不绘制角色）
+        	mainTainWalkState(16);
+            move();
+        } else {
+            // 正常更新
+        	super.update();
+        }
+    }
+
+    /**
+     * 获取本帧绘制使用的精灵图帧（闪烁帧不绘制）
+     * @return 列索引*16+行索引，-1表示不绘制
+     */
+    public int getSpriteFrame(){
+        return blink ? -1 : super.getSpriteFrame();
+    }
+
+    /**
+     * 获取头顶显示的武器信息
+     * @return 当前武器信息
+     */
+    public String getLabel(){
+        return getCurrentWeapon().toString();
+    }
+
     /**
      * 绘制英雄
      * 显示武器信息、血条和角色动画
@@ -127,19 +237,38 @@ public class Hero extends Role {
         // 绘制血条
         drawBloodBar(g);
         
-        // 保护时间处理（闪烁效果）
-        int b = this.getBegin();
-        if(b > 0 && (b / 3) % 2 == 0) {
-            // 保护期内每3帧闪烁一次（不绘制角色）
-        	this.getCurrentWeapon().maintainColdDown();
-        	mainTainWalkState(16);
-            move();
-        } else {
-            // 正常绘制
+        // 闪烁帧不绘制角色
+        if(!blink) {
         	super.draw(g);
         }
     }
     
+    /**
+     * 写入英雄状态（追加方向键状态、闪烁标志和按键位掩码）
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        super.writeState(buf);
+        buf.put((byte) ((bL ? 1 : 0) | (bU ? 2 : 0) | (bR ? 4 : 0) | (bD ? 8 : 0) | (blink ? 16 : 0)));
+        Varint.putVarInt(buf, buttons);
+    }
+
+    /**
+     * 读取英雄状态
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        super.readState(buf, reader);
+        int bits = buf.get();
+        bL = (bits & 1) != 0;
+        bU = (bits & 2) != 0;
+        bR = (bits & 4) != 0;
+        bD = (bits & 8) != 0;
+        blink = (bits & 16) != 0;
+        buttons = Varint.getVarInt(buf);
+    }
+
     /**
      * 设置死亡状态（重写）
      * 英雄死亡时停止移动，延长死亡动画时间
@@ -148,7 +277,8 @@ public class Hero extends Role {
     	this.setxIncrement(0, 0);   // 停止X方向移动
     	this.setyIncrement(0, 0);   // 停止Y方向移动
     	this.onAttackState = 0;     // 清除受击状态
-        this.deadState = 600;       // 死亡动画持续600帧（比敌人长）
+        this.startDeadState(600);   // 死亡动画持续600帧（比敌人长）
+        world.searchHero();         // 检查是否还有存活玩家（全部死亡则游戏结束）
     }
     
     /**
@@ -156,30 +286,30 @@ public class Hero extends Role {
      * 复活时重置位置、生命值和保护时间
      */
     public void resetBegin() {
-        // 随机选择复活位置（左或右）
-        this.x = (new Random().nextInt(100) % 2 == 0) ? 340 : 620;
-        this.y = 280;
+        // 随机选择复活位置（地图的前两个英雄出生点之一）
+        List<int[]> spawns = world.getMap().getSpawns(TileMap.SPAWN_HERO);
+        int[] spawn = spawns.get(world.getRandom().nextInt(100) % Math.min(2, spawns.size()));
+        this.x = spawn[0];
+        this.y = spawn[1];
         this.setHP(MAX_HP);      // 满血复活
         this.deadState = -1;     // 重置死亡状态
+        world.setLifecycle(this, LifecycleState.ACTIVE);  // 从尸体列表移回活动对象列表
         super.resetBegin();      // 设置保护时间
     }
     
     /**
-     * 维护死亡状态（重写）
+     * 死亡状态结束（重写，由计时器调用）
      * 检查是否还有其他存活玩家，决定是否复活
      */
-    public void maintainDeadState() {
-    	world.searchHero();  // 检查是否还有存活玩家
-    	if(deadState <= 0) {
-        	if(world.searchHero()) {
-        		// 还有其他玩家存活，复活当前玩家
-        		this.resetBegin();
-        	} else {
-        		// 所有玩家死亡，游戏结束
-        		world.objDead(this);
-        	}
+    public void endDeadState() {
+    	world.stateChanged(this);  // 事件不再等待，尸体的状态改变了
+    	if(deadState < 0 || world.getTick() < deadEndTick) return;  // 已复活，事件已过期
+    	if(world.searchHero()) {
+    		// 还有其他玩家存活，复活当前玩家
+    		this.resetBegin();
     	} else {
-    		this.deadState--;  // 死亡倒计时
+    		// 所有玩家死亡，游戏结束
+    		world.objDead(this);
     	}
     }
 }
@@ -0,0 +1,291 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 英雄机器人
+ *
+ * 代替键盘控制一个英雄，用于无界面的压力测试和长时间运行测试。
+ * 每帧在World.tick之前调用apply，根据当前局面计算按键位掩码并交给Hero.setButtons，
+ * 因此与键盘、联机输入走同一条路径，也会被回放录制。决策只依赖世界状态，结果可重现。
+ *
+ * 策略：
+ * - 敌人贴身（剑的攻击范围内）时用剑：朝向最近的敌人攻击
+ * - 敌人在远处且有火球时用火球：保持KITE_MIN~KITE_MAX的距离，太近就后退（风筝），攻击的那一帧转向目标
+ * - 周围SURROUND_RADIUS内的敌人达到SURROUND_COUNT个且火球够放大招时放大招
+ * - 生命值或火球不足且有宝箱时，用A*寻路走向最近的宝箱（途中仍会用剑还击贴身的敌人）
+ * 攻击、切换武器和大招都在按下的那一帧生效，所以这几个键按下一帧后会先松开一帧
+ */
+public class HeroBot {
+    public static final int VIEW_RADIUS = 400;       // 观察敌人的范围
+    public static final int KITE_MIN = 150;          // 用火球时与敌人保持的最小距离
+    public static final int KITE_MAX = 260;          // 用火球时与敌人保持的最大距离（火球射程300）
+    public static final int SURROUND_RADIUS = 130;   // 判断被包围的范围
+    public static final int SURROUND_COUNT = 4;      // 判断被包围的敌人数量
+    public static final int LOW_HP = Hero.MAX_HP * 2 / 5;  // 需要补血的生命值
+    public static final int LOW_AMMO = 6;            // 需要补充的火球数量
+    public static final int ULTIMATE_AMMO = 8;       // 放大招需要的火球数量
+    private static final int REPLAN_TICKS = 10;      // 走向宝箱时每隔多少帧重新寻路
+    private static final int EDGE_MARGIN = 60;       // 后退时与地图边缘保持的距离
+
+    private final int heroIndex;                     // 控制的英雄下标
+    private final List<GameObject> nearby;           // 视野查询结果（复用）
+    private int lastButtons;                         // 上一帧的按键
+    private List<Grid> path;                         // 走向宝箱的路径
+    private Box pathGoal;                            // 路径的目标宝箱
+    private long pathTick = -1;                      // 上一次寻路的帧
+
+    // 本帧的观察结果
+    private Enemy nearest;                           // 最近的敌人
+    private long nearestDist2;                       // 最近的敌人的距离平方
+    private int surrounding;                         // 周围的敌人数量
+    private double awayX, awayY;                     // 远离敌人的方向（按距离加权）
+
+    /**
+     * 构造方法
+     * @param heroIndex 控制的英雄下标
+     */
+    public HeroBot(int heroIndex) {
+        this.heroIndex = heroIndex;
+        this.nearby = new ArrayList<>();
+    }
+
+    /**
+     * 计算本帧的按键并应用到英雄（在World.tick之前调用）
+     * @param world 游戏世界
+     */
+    public void apply(World world) {
+        world.getHeroes().get(heroIndex).setButtons(next(world));
+    }
+
+    /**
+     * 计算本帧的按键但不应用（联机测试中由客户端把按键发给服务器）
+     * @param world 游戏世界
+     * @return 按键位掩码
+     */
+    public int next(World world) {
+        lastButtons = decide(world, world.getHeroes().get(heroIndex));
+        return lastButtons;
+    }
+
+    /**
+     * 计算本帧的按键
+     * @param world 游戏世界
+     * @param hero 控制的英雄
+     * @return 按键位掩码
+     */
+    public int decide(World world, Hero hero) {
+        if(hero.getDeadState() >= 0) {
+            path = null;
+            return 0;  // 死亡中，松开所有按键
+        }
+        observe(world, hero);
+        Ball fireball = fireballOf(hero);
+        int ammo = fireball == null ? 0 : fireball.getNum();
+        boolean usingSword = hero.getCurrentWeapon() instanceof Sword;
+        Sword sword = swordOf(hero);
+        int swordRange = sword == null ? 0 : sword.getAttackRange();
+        boolean ready = hero.getCurrentWeapon().getColdDown() == 0;
+        int buttons = 0;
+
+        // 1. 被包围：切换到火球放大招
+        if(surrounding >= SURROUND_COUNT && ammo >= ULTIMATE_AMMO) {
+            if(usingSword) return press(buttons, Hero.KEY_SWITCH);
+            if(ready) return press(buttons, Hero.KEY_ULTIMATE);
+        }
+
+        // 2. 补给：生命值或火球不足时走向宝箱，贴身的敌人用剑还击
+        boolean close = nearest != null && nearestDist2 < (long) swordRange * swordRange;
+        Box box = (hero.getHP() < LOW_HP || ammo < LOW_AMMO) ? nearestBox(world, hero) : null;
+        if(box != null && !(close && hero.getHP() >= LOW_HP)) {
+            if(close) {
+                if(!usingSword) return press(buttons, Hero.KEY_SWITCH);
+                if(ready) return press(toward(hero, nearest), Hero.KEY_ATTACK);
+            }
+            return moveAlong(world, hero, box);
+        }
+        path = null;
+
+        // 3. 战斗
+        if(nearest == null) return 0;
+        boolean wantSword = close || ammo == 0;
+        if(wantSword != usingSword) return press(buttons, Hero.KEY_SWITCH);
+        if(wantSword) {
+            buttons = toward(hero, nearest);  // 朝向并贴近最近的敌人
+            return ready ? press(buttons, Hero.KEY_ATTACK) : buttons;
+        }
+        if(ready && nearestDist2 < (long) KITE_MAX * KITE_MAX)
+            return press(toward(hero, nearest), Hero.KEY_ATTACK);  // 攻击的一帧转向目标
+        if(nearestDist2 < (long) KITE_MIN * KITE_MIN) return away(world, hero);  // 风筝：后退
+        if(nearestDist2 > (long) KITE_MAX * KITE_MAX) return toward(hero, nearest);
+        return 0;
+    }
+
+    /**
+     * 观察周围的敌人：最近的敌人、被包围的程度和远离敌人的方向
+     */
+    private void observe(World world, Hero hero) {
+        nearest = null;
+        nearestDist2 = Long.MAX_VALUE;
+        surrounding = 0;
+        awayX = 0;
+        awayY = 0;
+        nearby.clear();
+        world.getSpatialIndex().query(hero.getX(), hero.getY(), VIEW_RADIUS, nearby);
+        for(GameObject obj : nearby) {
+            if(!(obj instanceof Enemy) || obj.getLifecycle() != LifecycleState.ACTIVE) continue;
+            if(((Enemy) obj).getDeadState() >= 0) continue;
+            long dx = obj.getX() - hero.getX(), dy = obj.getY() - hero.getY();
+            long d2 = dx * dx + dy * dy;
+            if(d2 > (long) VIEW_RADIUS * VIEW_RADIUS) continue;
+            if(d2 < nearestDist2) {
+                nearestDist2 = d2;
+                nearest = (Enemy) obj;
+            }
+            if(d2 < (long) SURROUND_RADIUS * SURROUND_RADIUS) surrounding++;
+            double d = Math.max(1, Math.sqrt(d2));
+            awayX -= dx / (d * d);  // 越近权重越大
+            awayY -= dy / (d * d);
+        }
+    }
+
+    /**
+     * 查找最近的可拾取宝箱
+     * @return 宝箱，没有时返回null
+     */
+    private static Box nearestBox(World world, Hero hero) {
+        Box best = null;
+        long bestDist2 = Long.MAX_VALUE;
+        for(Iterator<GameObject> iter = world.getObjectsIterator(); iter.hasNext(); ) {
+            GameObject obj = iter.next();
+            if(!(obj instanceof Box)) continue;
+            long dx = obj.getX() - hero.getX(), dy = obj.getY() - hero.getY();
+            if(dx * dx + dy * dy < bestDist2) {
+                bestDist2 = dx * dx + dy * dy;
+                best = (Box) obj;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 沿A*路径走向宝箱，每隔REPLAN_TICKS帧或换了目标时重新寻路
+     * 寻路有深度上限，远处的宝箱会分几段走到
+     * @return 按键位掩码
+     */
+    private int moveAlong(World world, Hero hero, Box box) {
+        WorldGrids grids = world.getWorldGrids();
+        if(path == null || pathGoal != box || world.getTick() - pathTick >= REPLAN_TICKS || path.isEmpty()) {
+            path = new Pathfinder(grids, hero).shortestPath(grids.getGrid(box.getX(), box.getY()), box.getRadius());
+            pathGoal = box;
+            pathTick = world.getTick();
+        }
+        Grid current = grids.getGrid(hero.getX(), hero.getY());
+        while(!path.isEmpty() && path.get(0).getGridX() == current.getGridX() && path.get(0).getGridY() == current.getGridY())
+            path.remove(0);
+        if(path.isEmpty()) return toward(hero, box.getX(), box.getY());
+        Grid next = path.get(0);
+        return toward(hero, next.getX() + Grid.LENGTH / 2, next.getY() + Grid.LENGTH / 2);
+    }
+
+    /**
+     * 远离敌人，靠近地图边缘时沿边缘滑动
+     * @return 方向键位掩码
+     */
+    private int away(World world, Hero hero) {
+        double dx = awayX, dy = awayY;
+        if(hero.getX() < EDGE_MARGIN) dx = Math.max(dx, 0);
+        if(hero.getX() > world.getWidth() - EDGE_MARGIN) dx = Math.min(dx, 0);
+        if(hero.getY() < EDGE_MARGIN) dy = Math.max(dy, 0);
+        if(hero.getY() > world.getHeight() - EDGE_MARGIN) dy = Math.min(dy, 0);
+        if(dx == 0 && dy == 0) {
+            // 被逼到角落：向地图中心突围
+            dx = world.getWidth() / 2 - hero.getX();
+            dy = world.getHeight() / 2 - hero.getY();
+        }
+        return directionBits(dx, dy);
+    }
+
+    private static int toward(Hero hero, GameObject target) {
+        return toward(hero, target.getX(), target.getY());
+    }
+
+    private static int toward(Hero hero, int x, int y) {
+        return directionBits(x - hero.getX(), y - hero.getY());
+    }
+
+    /**
+     * 把方向向量量化为8方向的方向键
+     * @param dx X分量
+     * @param dy Y分量（向下为正）
+     * @return 方向键位掩码
+     */
+    private static int directionBits(double dx, double dy) {
+        if(dx == 0 && dy == 0) return 0;
+        int octant = (int) Math.round(Math.atan2(-dy, dx) / (Math.PI / 4));  // 0为右，逆时针
+        switch ((octant + 8) % 8) {
+            case 0: return 1 << Hero.KEY_RIGHT;
+            case 1: return 1 << Hero.KEY_RIGHT | 1 << Hero.KEY_UP;
+            case 2: return 1 << Hero.KEY_UP;
+            case 3: return 1 << Hero.KEY_LEFT | 1 << Hero.KEY_UP;
+            case 4: return 1 << Hero.KEY_LEFT;
+            case 5: return 1 << Hero.KEY_LEFT | 1 << Hero.KEY_DOWN;
+            case 6: return 1 << Hero.KEY_DOWN;
+            default: return 1 << Hero.KEY_RIGHT | 1 << Hero.KEY_DOWN;
+        }
+    }
+
+    /**
+     * 按下一个只在按下时生效的按键：上一帧已按住时先松开一帧
+     * @param buttons 其它按键
+     * @param slot 按键槽位
+     * @return 按键位掩码
+     */
+    private int press(int buttons, int slot) {
+        return (lastButtons & (1 << slot)) != 0 ? buttons : buttons | 1 << slot;
+    }
+
+    private static Ball fireballOf(Hero hero) {
+        for(Weapon weapon : hero.getWeapons())
+            if(weapon instanceof Ball) return (Ball) weapon;
+        return null;
+    }
+
+    private static Sword swordOf(Hero hero) {
+        for(Weapon weapon : hero.getWeapons())
+            if(weapon instanceof Sword) return (Sword) weapon;
+        return null;
+    }
+
+    /**
+     * 压力测试入口
+     * 参数：[局数] [英雄数量] [每局最多帧数] [种子]，默认5局、2个英雄、20000帧、种子1
+     * 每个英雄由一个机器人控制，输出每局到达的波次、帧数和每帧平均耗时
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int heroNum = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        for(int g = 0; g < games; g++) {
+            World world = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, heroNum, seed + g);
+            HeroBot[] bots = new HeroBot[heroNum];
+            for(int i = 0; i < heroNum; i++)
+                bots[i] = new HeroBot(i);
+            long start = System.nanoTime();
+            while(!world.End() && world.getTick() < maxTicks) {
+                for(HeroBot bot : bots)
+                    bot.apply(world);
+                world.tick();
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("第%d局（种子%d）：%s，第%d帧，第%d波，消灭%d个敌人，当前敌人%d个，每帧%.3fms%n",
+                    g + 1, seed + g, world.End() ? "全灭" : "达到帧数上限", world.getTick(), world.getWave(),
+                    world.getKilledEnemyNum(), world.getCurrentEnemyNum(), nanos / 1e6 / Math.max(1, world.getTick()));
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分层寻路器（HPA*）
+ *
+ * Pathfinder的A*搜索深度限制为25步，目标很远时只得到一段朝着目标直线方向的部分路径，遇到长墙会来回徘徊。
+ * 分层寻路把网格划分为CLUSTER×CLUSTER的簇（与WorldGrids的分块对齐），在簇之间建立抽象图：
+ * - 相邻两簇共享的边上，两侧都能通过的连续网格构成入口，入口较短时在中点放一个过渡点，较长时在两端各放一个
+ * - 同一簇内过渡点之间的代价由簇内的Dijkstra搜索得到（只在簇内移动）
+ * - 抽象图只考虑始终阻挡寻路的东西（边界、地图障碍和静态墙壁），敌人和英雄每帧都在移动，仍由网格上的A*处理
+ * 寻路时先把起点和终点连到所在簇的过渡点上，在抽象图上做A*得到完整的路线，
+ * 然后只把路线上不超过DIRECT_RANGE个网格远的下一个路点交给Pathfinder细化，每次重新寻路时再取新的路点
+ *
+ * 对象占用多个网格，能否通过取决于半径：每种半径一层抽象图，按对象在网格内的任意位置都能容纳来判断（偏保守），
+ * 狭窄的缝隙在抽象图中可能不通，这时退回原来直接朝目标的A*
+ * 簇、入口和簇内代价都在第一次用到时生成（并行读阶段中加锁，每个簇只生成一次）；
+ * 静态墙壁加入或移出世界时，只让它覆盖的簇及其相邻簇的入口和代价失效
+ * 抽象图只取决于地图和静态对象，属于可以随时重建的缓存，不写入存档
+ */
+public class HierarchicalPathfinder {
+    public static final int CLUSTER = 16;         // 簇边长（网格数，WorldGrids.CHUNK的约数）
+    public static final int DIRECT_RANGE = 20;    // 起点和终点相距不超过这么多个网格（切比雪夫距离）时直接在网格上寻路
+    private static final int LONG_ENTRANCE = 6;   // 入口长度达到这个值时在两端各放一个过渡点
+    private static final int MAX_EXPANDED = 20000;  // 抽象图上最多扩展的节点数（终点不可达时停止）
+
+    private final World world;
+    private final WorldGrids grids;
+    private final int w, h;                       // 网格数量（宽、高）
+    private final int clusterCols, clusterRows;   // 簇数量（宽、高）
+    private final Map<Integer, Layer> layers = new ConcurrentHashMap<>();  // 半径 → 抽象图
+    private final AtomicLong searches = new AtomicLong();   // 抽象图搜索次数
+    private final AtomicLong expanded = new AtomicLong();   // 扩展的节点数（抽象图节点和连接起点、终点时访问的网格）
+    private final AtomicLong builds = new AtomicLong();     // 生成簇的次数
+
+    /**
+     * 一种半径的抽象图
+     * 对象中心在网格(gx, gy)时占用的网格不超出[gx+lo, gx+hi]×[gy+lo, gy+hi]
+     */
+    private class Layer {
+        final int lo, hi;
+        final AtomicReferenceArray<boolean[]> free;      // 每个簇中对象中心可以停留的网格（行优先）
+        final AtomicReferenceArray<int[]> eastDoors;     // 簇与右侧簇之间的过渡点（沿边的偏移）
+        final AtomicReferenceArray<int[]> southDoors;    // 簇与下方簇之间的过渡点（沿边的偏移）
+        final AtomicReferenceArray<Cluster> clusters;    // 簇内的过渡点和代价
+
+        Layer(int radius) {
+            // 与WorldGrids.getGrid(GameObject)相同：覆盖像素x-radius开始的t列，像素p在网格p/LENGTH+1中
+            int t = radius * 2 / Grid.LENGTH + 1;
+            this.lo = Math.floorDiv(-radius, Grid.LENGTH) + 1;
+            this.hi = Math.floorDiv(Grid.LENGTH - 1 + (t - 1) * Grid.LENGTH - radius, Grid.LENGTH) + 1;
+            int n = clusterCols * clusterRows;
+            this.free = new AtomicReferenceArray<>(n);
+            this.eastDoors = new AtomicReferenceArray<>(n);
+            this.southDoors = new AtomicReferenceArray<>(n);
+            this.clusters = new AtomicReferenceArray<>(n);
+        }
+    }
+
+    /**
+     * 簇内的抽象图节点
+     */
+    private static class Cluster {
+        final int[] cells;     // 过渡点网格（gy*w+gx，升序）
+        final int[] partnerA;  // 过渡点在相邻簇中对应的网格（-1表示没有）
+        final int[] partnerB;  // 角上的过渡点可能同时连着两个相邻簇
+        final int[] cost;      // 过渡点之间的簇内代价（n×n，-1表示簇内不连通）
+
+        Cluster(int[] cells, int[] partnerA, int[] partnerB, int[] cost) {
+            this.cells = cells;
+            this.partnerA = partnerA;
+            this.partnerB = partnerB;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param world 游戏世界（需要已创建网格系统）
+     */
+    public HierarchicalPathfinder(World world) {
+        this.world = world;
+        this.grids = world.getWorldGrids();
+        this.w = grids.getCols();
+        this.h = grids.getRows();
+        this.clusterCols = (w + CLUSTER - 1) / CLUSTER;
+        this.clusterRows = (h + CLUSTER - 1) / CLUSTER;
+    }
+
+    /**
+     * 获取下一个细化的路点
+     * 起点和终点很近时直接返回终点；否则在抽象图上规划完整路线，返回路线上不超过DIRECT_RANGE远的最后一个路点
+     * @param start 起点网格（对象中心所在网格）
+     * @param goal 终点网格
+     * @param radius 对象半径
+     * @return 路点网格，抽象图中不可达时返回终点（退回直接寻路）
+     */
+    public Grid nextWaypoint(Grid start, Grid goal, int radius) {
+        int sx = start.getGridX(), sy = start.getGridY();
+        if(chebyshev(sx, sy, goal.getGridX(), goal.getGridY()) <= DIRECT_RANGE) return goal;
+        int[] route = route(sx, sy, goal.getGridX(), goal.getGridY(), radius);
+        if(route == null) return goal;
+        int next = route[1];
+        for(int i = 1; i < route.length; i++) {
+            if(chebyshev(sx, sy, route[i] % w, route[i] / w) > DIRECT_RANGE) break;
+            next = route[i];
+        }
+        if(next == route[route.length - 1]) return goal;
+        return grids.get(next % w, next / w);
+    }
+
+    /**
+     * 在抽象图上规划完整路线
+     * @param sx 起点网格X坐标
+     * @param sy 起点网格Y坐标
+     * @param gx 终点网格X坐标
+     * @param gy 终点网格Y坐标
+     * @param radius 对象半径
+     * @return 路线上的网格（gy*w+gx，包括起点和终点），不可达时返回null
+     */
+    public int[] route(int sx, int sy, int gx, int gy, int radius) {
+        if(!inside(sx, sy) || !inside(gx, gy)) return null;
+        Layer layer = layer(radius);
+        int startKey = sy * w + sx, goalKey = gy * w + gx;
+        int startCluster = clusterOf(sx, sy), goalCluster = clusterOf(gx, gy);
+        Cluster first = cluster(layer, startCluster);
+        int[] fromStart = dijkstra(free(layer, startCluster), local(sx, sy));
+        int[] toGoal = dijkstra(free(layer, goalCluster), local(gx, gy));
+        int work = reached(fromStart) + reached(toGoal);
+        searches.incrementAndGet();
+
+        Map<Integer, Integer> g = new HashMap<>();
+        Map<Integer, Integer> parent = new HashMap<>();
+        HashSet<Integer> closed = new HashSet<>();
+        PriorityQueue<Long> open = new PriorityQueue<>();
+        g.put(startKey, 0);
+        open.add((long) heuristic(startKey, gx, gy) << 32 | startKey);
+        boolean found = false;
+        while(!open.isEmpty() && closed.size() < MAX_EXPANDED) {
+            int key = (int) (open.poll() & 0xFFFFFFFFL);
+            if(!closed.add(key)) continue;
+            if(key == goalKey) {
+                found = true;
+                break;
+            }
+            int base = g.get(key);
+            int x = key % w, y = key / w;
+            int c = clusterOf(x, y);
+            Cluster cluster = key == startKey ? first : cluster(layer, c);
+            int index = Arrays.binarySearch(cluster.cells, key);
+            if(key == startKey) {
+                // 起点连到所在簇的所有过渡点
+                for(int i = 0; i < first.cells.length; i++) {
+                    int d = fromStart[local(first.cells[i] % w, first.cells[i] / w)];
+                    if(d != Integer.MAX_VALUE) relax(open, g, parent, closed, key, first.cells[i], base + d, gx, gy);
+                }
+                if(c == goalCluster && fromStart[local(gx, gy)] != Integer.MAX_VALUE)
+                    relax(open, g, parent, closed, key, goalKey, base + fromStart[local(gx, gy)], gx, gy);
+            }
+            if(index >= 0) {
+                int n = cluster.cells.length;
+                for(int i = 0; i < n; i++) {
+                    int d = cluster.cost[index * n + i];
+                    if(i != index && d >= 0) relax(open, g, parent, closed, key, cluster.cells[i], base + d, gx, gy);
+                }
+                if(cluster.partnerA[index] >= 0) relax(open, g, parent, closed, key, cluster.partnerA[index], base + 10, gx, gy);
+                if(cluster.partnerB[index] >= 0) relax(open, g, parent, closed, key, cluster.partnerB[index], base + 10, gx, gy);
+            }
+            if(c == goalCluster && key != startKey) {
+                int d = toGoal[local(x, y)];
+                if(d != Integer.MAX_VALUE) relax(open, g, parent, closed, key, goalKey, base + d, gx, gy);
+            }
+        }
+        expanded.addAndGet(work + closed.size());
+        if(!found) return null;
+
+        List<Integer> reversed = new ArrayList<>();
+        for(Integer key = goalKey; key != null; key = parent.get(key))
+            reversed.add(key);
+        int[] route = new int[reversed.size()];
+        for(int i = 0; i < route.length; i++)
+            route[i] = reversed.get(route.length - 1 - i);
+        return route;
+    }
+
+    /**
+     * 更新抽象图节点的代价
+     */
+    private void relax(PriorityQueue<Long> open, Map<Integer, Integer> g, Map<Integer, Integer> parent, HashSet<Integer> closed,
+                       int from, int to, int cost, int gx, int gy) {
+        if(closed.contains(to)) return;
+        Integer old = g.get(to);
+        if(old != null && old <= cost) return;
+        g.put(to, cost);
+        parent.put(to, from);
+        open.add((long) (cost + heuristic(to, gx, gy)) << 32 | to);
+    }
+
+    /**
+     * 启发式值（八方向距离，直线10、斜线14）
+     */
+    private int heuristic(int key, int gx, int gy) {
+        int dx = Math.abs(key % w - gx), dy = Math.abs(key / w - gy);
+        return 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+    }
+
+    /**
+     * 判断对象中心能否停留在网格上（按静态障碍判断，与对象在网格内的位置无关）
+     * @param gx 网格X坐标
+     * @param gy 网格Y坐标
+     * @param radius 对象半径
+     * @return 是否可以停留
+     */
+    public boolean isPassable(int gx, int gy, int radius) {
+        if(!inside(gx, gy)) return false;
+        return free(layer(radius), clusterOf(gx, gy))[local(gx, gy)];
+    }
+
+    /**
+     * 静态对象加入或移出世界后，让它覆盖的簇及其相邻簇失效（在写阶段调用）
+     * @param obj 阻挡寻路的静态对象
+     */
+    public void invalidate(GameObject obj) {
+        int margin = 1;
+        for(Layer layer : layers.values())
+            margin = Math.max(margin, Math.max(-layer.lo, layer.hi) + 1);
+        int[] cells = coveredCells(obj);
+        int minCx = Math.max(0, (cells[0] - margin) / CLUSTER), maxCx = Math.min(clusterCols - 1, (cells[2] + margin) / CLUSTER);
+        int minCy = Math.max(0, (cells[1] - margin) / CLUSTER), maxCy = Math.min(clusterRows - 1, (cells[3] + margin) / CLUSTER);
+        for(Layer layer : layers.values()) {
+            for(int cy = minCy; cy <= maxCy; cy++) {
+                for(int cx = minCx; cx <= maxCx; cx++) {
+                    int c = cy * clusterCols + cx;
+                    layer.free.set(c, null);
+                    layer.eastDoors.set(c, null);
+                    layer.southDoors.set(c, null);
+                    layer.clusters.set(c, null);
+                    if(cx > 0) {
+                        layer.eastDoors.set(c - 1, null);
+                        layer.clusters.set(c - 1, null);
+                    }
+                    if(cy > 0) {
+                        layer.southDoors.set(c - clusterCols, null);
+                        layer.clusters.set(c - clusterCols, null);
+                    }
+                    if(cx < clusterCols - 1) layer.clusters.set(c + 1, null);
+                    if(cy < clusterRows - 1) layer.clusters.set(c + clusterCols, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算对象占用的网格范围（与WorldGrids.markObjects相同）
+     * @param obj 游戏对象
+     * @return {最小X, 最小Y, 最大X, 最大Y}
+     */
+    private static int[] coveredCells(GameObject obj) {
+        int objX = obj.getX() - obj.getRadius(), objY = obj.getY() - obj.getRadius();
+        int t = obj.getRadius() * 2 / Grid.LENGTH + 1;
+        return new int[]{(objX + Grid.LENGTH) / Grid.LENGTH, (objY + Grid.LENGTH) / Grid.LENGTH,
+                (objX + t * Grid.LENGTH) / Grid.LENGTH, (objY + t * Grid.LENGTH) / Grid.LENGTH};
+    }
+
+    private Layer layer(int radius) {
+        return layers.computeIfAbsent(radius, Layer::new);
+    }
+
+    /**
+     * 获取簇中对象中心可以停留的网格，第一次访问时生成
+     */
+    private boolean[] free(Layer layer, int c) {
+        boolean[] free = layer.free.get(c);
+        if(free != null) return free;
+        synchronized (layer) {
+            free = layer.free.get(c);
+            if(free == null) {
+                free = buildFree(layer, c);
+                layer.free.set(c, free);
+                builds.incrementAndGet();
+            }
+            return free;
+        }
+    }
+
+    /**
+     * 生成簇中对象中心可以停留的网格
+     * 先标出簇向外扩展对象占用范围的区域中的静态障碍，再用二维前缀和检查每个网格对应的占用范围
+     */
+    private boolean[] buildFree(Layer layer, int c) {
+        int gx0 = c % clusterCols * CLUSTER + layer.lo, gy0 = c / clusterCols * CLUSTER + layer.lo;
+        int size = CLUSTER + layer.hi - layer.lo;
+        boolean[] blocked = new boolean[size * size];
+        for(int i = 0; i < size; i++)
+            for(int j = 0; j < size; j++)
+                blocked[i * size + j] = grids.isStaticBlocked(gx0 + j, gy0 + i);
+        for(Iterator<GameObject> it = world.getStaticsIterator(); it.hasNext(); ) {
+            GameObject obj = it.next();
+            if(!obj.isCollidable() || (obj.getCollisionLayer() & CollisionLayers.NAV_BLOCKING) == 0) continue;
+            int[] cells = coveredCells(obj);
+            for(int y = Math.max(cells[1], gy0); y <= Math.min(cells[3], gy0 + size - 1); y++)
+                for(int x = Math.max(cells[0], gx0); x <= Math.min(cells[2], gx0 + size - 1); x++)
+                    blocked[(y - gy0) * size + x - gx0] = true;
+        }
+        int[] sum = new int[(size + 1) * (size + 1)];
+        for(int i = 0; i < size; i++)
+            for(int j = 0; j < size; j++)
+                sum[(i + 1) * (size + 1) + j + 1] = (blocked[i * size + j] ? 1 : 0) + sum[i * (size + 1) + j + 1]
+                        + sum[(i + 1) * (size + 1) + j] - sum[i * (size + 1) + j];
+        int span = layer.hi - layer.lo + 1;
+        boolean[] free = new boolean[CLUSTER * CLUSTER];
+        for(int i = 0; i < CLUSTER; i++) {
+            for(int j = 0; j < CLUSTER; j++) {
+                int count = sum[(i + span) * (size + 1) + j + span] - sum[i * (size + 1) + j + span]
+                        - sum[(i + span) * (size + 1) + j] + sum[i * (size + 1) + j];
+                free[i * CLUSTER + j] = count == 0 && inside(gx0 - layer.lo + j, gy0 - layer.lo + i);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * 获取簇与右侧（east为true）或下方簇之间的过渡点
+     */
+    private int[] doors(Layer layer, int c, boolean east) {
+        AtomicReferenceArray<int[]> cache = east ? layer.eastDoors : layer.southDoors;
+        int[] doors = cache.get(c);
+        if(doors != null) return doors;
+        boolean[] a = free(layer, c), b = free(layer, east ? c + 1 : c + clusterCols);
+        synchronized (layer) {
+            doors = cache.get(c);
+            if(doors != null) return doors;
+            List<Integer> list = new ArrayList<>();
+            int run = -1;
+            for(int i = 0; i <= CLUSTER; i++) {
+                boolean open = i < CLUSTER && (east ? a[i * CLUSTER + CLUSTER - 1] && b[i * CLUSTER]
+                        : a[(CLUSTER - 1) * CLUSTER + i] && b[i]);
+                if(open && run < 0) {
+                    run = i;
+                } else if(!open && run >= 0) {
+                    if(i - run >= LONG_ENTRANCE) {
+                        list.add(run);
+                        list.add(i - 1);
+                    } else {
+                        list.add((run + i - 1) / 2);
+                    }
+                    run = -1;
+                }
+            }
+            doors = new int[list.size()];
+            for(int i = 0; i < doors.length; i++)
+                doors[i] = list.get(i);
+            cache.set(c, doors);
+            return doors;
+        }
+    }
+
+    /**
+     * 获取簇内的过渡点和代价，第一次访问时生成
+     */
+    private Cluster cluster(Layer layer, int c) {
+        Cluster cluster = layer.clusters.get(c);
+        if(cluster != null) return cluster;
+        int cx = c % clusterCols, cy = c / clusterCols;
+        int gx0 = cx * CLUSTER, gy0 = cy * CLUSTER;
+        // 过渡点和相邻簇中对应的网格（高32位为本簇网格）
+        List<Long> links = new ArrayList<>();
+        if(cx < clusterCols - 1)
+            for(int d : doors(layer, c, true)) links.add(link(gx0 + CLUSTER - 1, gy0 + d, gx0 + CLUSTER, gy0 + d));
+        if(cx > 0)
+            for(int d : doors(layer, c - 1, true)) links.add(link(gx0, gy0 + d, gx0 - 1, gy0 + d));
+        if(cy < clusterRows - 1)
+            for(int d : doors(layer, c, false)) links.add(link(gx0 + d, gy0 + CLUSTER - 1, gx0 + d, gy0 + CLUSTER));
+        if(cy > 0)
+            for(int d : doors(layer, c - clusterCols, false)) links.add(link(gx0 + d, gy0, gx0 + d, gy0 - 1));
+        boolean[] free = free(layer, c);
+        synchronized (layer) {
+            cluster = layer.clusters.get(c);
+            if(cluster != null) return cluster;
+            links.sort(null);
+            int[] cells = new int[links.size()], partnerA = new int[links.size()], partnerB = new int[links.size()];
+            int n = 0;
+            for(long link : links) {
+                int cell = (int) (link >>> 32), partner = (int) link;
+                if(n > 0 && cells[n - 1] == cell) {
+                    partnerB[n - 1] = partner;
+                } else {
+                    cells[n] = cell;
+                    partnerA[n] = partner;
+                    partnerB[n] = -1;
+                    n++;
+                }
+            }
+            cells = Arrays.copyOf(cells, n);
+            int[] cost = new int[n * n];
+            for(int i = 0; i < n; i++) {
+                int[] dist = dijkstra(free, local(cells[i] % w, cells[i] / w));
+                for(int k = 0; k < n; k++) {
+                    int d = dist[local(cells[k] % w, cells[k] / w)];
+                    cost[i * n + k] = d == Integer.MAX_VALUE ? -1 : d;
+                }
+            }
+            cluster = new Cluster(cells, Arrays.copyOf(partnerA, n), Arrays.copyOf(partnerB, n), cost);
+            layer.clusters.set(c, cluster);
+            return cluster;
+        }
+    }
+
+    private long link(int x, int y, int px, int py) {
+        return (long) (y * w + x) << 32 | (py * w + px);
+    }
+
+    /**
+     * 簇内的Dijkstra搜索（八方向，直线10、斜线14，只经过簇内可以停留的网格，起点本身不检查）
+     * @param free 簇中可以停留的网格
+     * @param start 起点在簇内的下标
+     * @return 到簇内各网格的代价（不可达为Integer.MAX_VALUE）
+     */
+    private static int[] dijkstra(boolean[] free, int start) {
+        int[] dist = new int[CLUSTER * CLUSTER];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        dist[start] = 0;
+        PriorityQueue<Long> open = new PriorityQueue<>();
+        open.add((long) start);
+        while(!open.isEmpty()) {
+            long item = open.poll();
+            int cell = (int) (item & 0xFFFF), d = (int) (item >>> 16);
+            if(d > dist[cell]) continue;
+            int x = cell % CLUSTER, y = cell / CLUSTER;
+            for(int dy = -1; dy <= 1; dy++) {
+                for(int dx = -1; dx <= 1; dx++) {
+                    int nx = x + dx, ny = y + dy;
+                    if((dx == 0 && dy == 0) || nx < 0 || ny < 0 || nx >= CLUSTER || ny >= CLUSTER) continue;
+                    int next = ny * CLUSTER + nx;
+                    int nd = d + (dx != 0 && dy != 0 ? 14 : 10);
+                    if(!free[next] || nd >= dist[next]) continue;
+                    dist[next] = nd;
+                    open.add((long) nd << 16 | next);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * 不限深度、不分层的网格A*（只在对比测试中使用，代价和可通行判断与抽象图相同）
+     * @return 扩展的节点数
+     */
+    private int gridSearch(int sx, int sy, int gx, int gy, int radius) {
+        int[] g = new int[w * h];
+        Arrays.fill(g, Integer.MAX_VALUE);
+        boolean[] closed = new boolean[w * h];
+        PriorityQueue<Long> open = new PriorityQueue<>();
+        int start = sy * w + sx, goal = gy * w + gx, count = 0;
+        g[start] = 0;
+        open.add((long) heuristic(start, gx, gy) << 32 | start);
+        while(!open.isEmpty()) {
+            int key = (int) (open.poll() & 0xFFFFFFFFL);
+            if(closed[key]) continue;
+            closed[key] = true;
+            count++;
+            if(key == goal) break;
+            int x = key % w, y = key / w;
+            for(int dy = -1; dy <= 1; dy++) {
+                for(int dx = -1; dx <= 1; dx++) {
+                    if((dx == 0 && dy == 0) || !isPassable(x + dx, y + dy, radius)) continue;
+                    int next = (y + dy) * w + x + dx;
+                    int cost = g[key] + (dx != 0 && dy != 0 ? 14 : 10);
+                    if(closed[next] || cost >= g[next]) continue;
+                    g[next] = cost;
+                    open.add((long) (cost + heuristic(next, gx, gy)) << 32 | next);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int reached(int[] dist) {
+        int n = 0;
+        for(int d : dist)
+            if(d != Integer.MAX_VALUE) n++;
+        return n;
+    }
+
+    private boolean inside(int gx, int gy) {
+        return gx >= 0 && gy >= 0 && gx < w && gy < h;
+    }
+
+    private int clusterOf(int gx, int gy) {
+        return gy / CLUSTER * clusterCols + gx / CLUSTER;
+    }
+
+    private static int local(int gx, int gy) {
+        return gy % CLUSTER * CLUSTER + gx % CLUSTER;
+    }
+
+    private static int chebyshev(int x1, int y1, int x2, int y2) {
+        return Math.max(Math.abs(x1 - x2), Math.abs(y1 - y2));
+    }
+
+    /**
+     * 生成一种半径的所有簇（可停留的网格、过渡点和簇内代价）
+     * 平时按需生成；压力测试在计量每个敌人的内存之前调用，把与地图大小有关的部分算作固定占用
+     * @param radius 对象半径
+     */
+    public void prepare(int radius) {
+        Layer layer = layer(radius);
+        for(int c = 0; c < clusterCols * clusterRows; c++)
+            cluster(layer, c);
+    }
+
+    public long getSearches() {
+        return searches.get();
+    }
+
+    public long getExpanded() {
+        return expanded.get();
+    }
+
+    public long getBuilds() {
+        return builds.get();
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[地图边长（瓦片）] [障碍百分比] [查询次数] [种子]，默认400、15、200、1
+     * 在随机地图上随机选取相距较远的起点和终点（Monster的半径），比较：
+     * - 原来的A*（深度限制25）：扩展节点数，部分路径终点离目标还有多远
+     * - 分层寻路：第一遍（包括生成簇）和第二遍的抽象图扩展数、细化第一段的扩展数，找到完整路线的比例
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int tiles = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int percent = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        World world = new World(TileMap.generate(tiles, tiles, Grid.LENGTH, percent, seed), 1, seed, WaveRules.DEFAULT);
+        WorldGrids grids = world.getWorldGrids();
+        HierarchicalPathfinder hpa = world.getHierarchicalPathfinder();
+        int radius = 14;
+        Random random = new Random(seed);
+        List<int[]> pairs = new ArrayList<>();
+        while(pairs.size() < queries) {
+            int sx = random.nextInt(grids.getCols()), sy = random.nextInt(grids.getRows());
+            int gx = random.nextInt(grids.getCols()), gy = random.nextInt(grids.getRows());
+            if(chebyshev(sx, sy, gx, gy) > DIRECT_RANGE && hpa.isPassable(sx, sy, radius) && hpa.isPassable(gx, gy, radius))
+                pairs.add(new int[]{sx, sy, gx, gy});
+        }
+
+        long nodes = 0, gap = 0, nanos = System.nanoTime();
+        for(int[] p : pairs) {
+            Pathfinder pathfinder = new Pathfinder(grids, new Monster(p[0] * Grid.LENGTH + 5, p[1] * Grid.LENGTH + 5, world));
+            List<Grid> path = pathfinder.shortestPath(grids.get(p[2], p[3]), radius);
+            nodes += pathfinder.getClosedNodes().size();
+            Grid end = path == null || path.isEmpty() ? grids.get(p[0], p[1]) : path.get(path.size() - 1);
+            gap += chebyshev(end.getGridX(), end.getGridY(), p[2], p[3]);
+        }
+        System.out.printf("地图%d×%d瓦片，障碍%d%%，%d次查询，平均距离%.0f个网格%n", tiles, tiles, percent, queries,
+                pairs.stream().mapToInt(p -> chebyshev(p[0], p[1], p[2], p[3])).average().orElse(0));
+        System.out.printf("A*（深度限制25）：每次扩展%.0f个节点，%.3fms，部分路径终点离目标平均%.0f个网格%n",
+                (double) nodes / queries, (System.nanoTime() - nanos) / 1e6 / queries, (double) gap / queries);
+
+        nodes = 0;
+        nanos = System.nanoTime();
+        for(int[] p : pairs)
+            nodes += hpa.gridSearch(p[0], p[1], p[2], p[3], radius);
+        System.out.printf("不限深度的网格A*（同样的静态障碍）：每次扩展%.0f个节点，%.3fms%n",
+                (double) nodes / queries, (System.nanoTime() - nanos) / 1e6 / queries);
+
+        for(int pass = 1; pass <= 2; pass++) {
+            long before = hpa.getExpanded(), built = hpa.getBuilds(), refine = 0;
+            int found = 0;
+            nanos = System.nanoTime();
+            for(int[] p : pairs) {
+                if(hpa.route(p[0], p[1], p[2], p[3], radius) != null) found++;
+                Grid waypoint = hpa.nextWaypoint(grids.get(p[0], p[1]), grids.get(p[2], p[3]), radius);
+                Pathfinder pathfinder = new Pathfinder(grids, new Monster(p[0] * Grid.LENGTH + 5, p[1] * Grid.LENGTH + 5, world));
+                pathfinder.shortestPath(waypoint, 0);
+                refine += pathfinder.getClosedNodes().size();
+            }
+            System.out.printf("分层寻路第%d遍：每次抽象图扩展%.0f个节点（每次查询规划两遍），细化扩展%.0f个，%.3fms，完整路线%d/%d，生成簇%d次%n",
+                    pass, (hpa.getExpanded() - before) / 2.0 / queries, (double) refine / queries,
+                    (System.nanoTime() - nanos) / 1e6 / queries, found, queries, hpa.getBuilds() - built);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package Game;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+/**
+ * 尸潮压力测试
+ *
+ * 在大地图上用尸潮规则（WaveRules.horde：没有上限，每帧按生成预算批量生成，位置从网格中选择）
+ * 生成指定数量的敌人，全部生成后先预热再计时，对每个规模输出：
+ * - 每秒帧数和平均每帧耗时
+ * - 世界的固定内存（地图、所有寻路网格分块和敌人半径的分层寻路图，先全部生成）
+ * - 每个敌人占用的内存（固定部分生成后和敌人生成后各做一次GC，按堆占用的差值平均）
+ * - 各阶段的耗时（见TickProfile）
+ * - 跟随英雄的视口（窗口大小）中绘制一帧的耗时，绘制只处理视口内的对象，不随敌人总数增长
+ * - 最后一帧的状态哈希，同样的参数应该得到同样的哈希，可以确认测试本身是可重复的
+ * 英雄在测试期间每帧回满生命值，保证敌人一直处于追击状态
+ */
+public class HordeBenchmark {
+    public static final int DRAW_FRAMES = 20;  // 绘制计时的帧数
+
+    private final int width;        // 世界宽度
+    private final int height;       // 世界高度
+    private final int budget;       // 每帧生成预算
+    private final long seed;        // 随机数种子
+    private Pathfinder.Mode pathMode = Pathfinder.Mode.ASTAR;  // 敌人的寻路模式
+    private boolean pathCache;      // 是否开启路径缓存
+
+    /**
+     * 单个规模的测试结果
+     */
+    public static class Result {
+        final int enemies;          // 敌人数量（计时结束时存活的）
+        final int spawnTicks;       // 全部生成用的帧数
+        final long fixedBytes;      // 世界的固定内存（与敌人数量无关）
+        final long bytesPerEnemy;   // 每个敌人占用的内存
+        final double ticksPerSec;   // 每秒帧数
+        final TickProfile profile;  // 计时阶段的分阶段耗时
+        final long tickHash;        // 最后一帧的状态哈希
+        final double drawMs;        // 视口内绘制一帧的耗时（毫秒）
+        final double cacheHitRate;  // 计时阶段路径缓存的命中率（没有开启时为-1）
+
+        Result(int enemies, int spawnTicks, long fixedBytes, long bytesPerEnemy, double ticksPerSec, TickProfile profile, long tickHash,
+               double drawMs, double cacheHitRate) {
+            this.enemies = enemies;
+            this.spawnTicks = spawnTicks;
+            this.fixedBytes = fixedBytes;
+            this.bytesPerEnemy = bytesPerEnemy;
+            this.ticksPerSec = ticksPerSec;
+            this.profile = profile;
+            this.tickHash = tickHash;
+            this.drawMs = drawMs;
+            this.cacheHitRate = cacheHitRate;
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @param budget 每帧生成预算
+     * @param seed 随机数种子
+     */
+    public HordeBenchmark(int width, int height, int budget, long seed) {
+        this.width = width;
+        this.height = height;
+        this.budget = budget;
+        this.seed = seed;
+    }
+
+    public void setPathMode(Pathfinder.Mode pathMode) {
+        this.pathMode = pathMode;
+    }
+
+    public void setPathCache(boolean pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    /**
+     * 测试一个规模
+     * @param count 敌人数量
+     * @param warmup 预热帧数
+     * @param ticks 计时帧数
+     * @return 测试结果
+     */
+    public Result run(int count, int warmup, int ticks) {
+        long before = usedHeap();
+        World world = new World(width, height, 1, seed, WaveRules.horde(count, budget));
+        world.setStateHash(new StateHash());
+        world.setPathMode(pathMode);
+        if(pathCache) world.enablePathCache();
+        prepareNavigation(world);
+        long empty = usedHeap();
+
+        int spawnTicks = 0;
+        while(world.getCurrentEnemyNum() < count && spawnTicks < count) {
+            step(world);
+            spawnTicks++;
+        }
+        long full = usedHeap();
+        long bytesPerEnemy = Math.max(0, full - empty) / Math.max(1, world.getCurrentEnemyNum());
+
+        for(int i = 0; i < warmup; i++)
+            step(world);
+        TickProfile profile = new TickProfile();
+        world.setProfile(profile);
+        PathCache cache = world.getPathCache();
+        long lookups = cache == null ? 0 : cache.getLookups(), hits = cache == null ? 0 : cache.getHits();
+        long start = System.nanoTime();
+        for(int i = 0; i < ticks; i++)
+            step(world);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        world.setProfile(null);
+        double hitRate = cache == null ? -1 : (double) (cache.getHits() - hits) / Math.max(1, cache.getLookups() - lookups);
+
+        BufferedImage image = new BufferedImage(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        Camera camera = new Camera(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT);
+        long drawStart = System.nanoTime();
+        for(int i = 0; i < DRAW_FRAMES; i++) {
+            camera.follow(world.getHeroes(), world.getWidth(), world.getHeight());
+            world.drawWorld(g, camera);
+        }
+        double drawMs = (System.nanoTime() - drawStart) / 1e6 / DRAW_FRAMES;
+        g.dispose();
+
+        return new Result(world.getCurrentEnemyNum(), spawnTicks, Math.max(0, empty - before), bytesPerEnemy, ticks / seconds, profile,
+                world.getStateHash().getTickHash(), drawMs, hitRate);
+    }
+
+    /**
+     * 生成整张地图的寻路网格分块和敌人半径的分层寻路图（平时按需生成，生成后不随敌人数量增长）
+     * @param world 游戏世界
+     */
+    private static void prepareNavigation(World world) {
+        WorldGrids grids = world.getWorldGrids();
+        for(int cy = 0; cy < grids.getChunkRows(); cy++)
+            for(int cx = 0; cx < grids.getChunkCols(); cx++)
+                grids.get(cx * WorldGrids.CHUNK, cy * WorldGrids.CHUNK);
+        world.getHierarchicalPathfinder().prepare(new Monster(0, 0, world).getRadius());  // Monster和Ghost的半径相同
+    }
+
+    /**
+     * 推进一帧（英雄先回满生命值）
+     * @param world 游戏世界
+     */
+    private static void step(World world) {
+        for(Hero hero : world.getHeroes())
+            hero.setHP(Hero.MAX_HP);
+        world.tick();
+    }
+
+    /**
+     * 获取GC后的堆占用
+     * @return 字节数
+     */
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * 尸潮压力测试入口
+     * 参数：[敌人数量列表] [世界宽度] [世界高度] [每帧生成预算] [预热帧数] [计时帧数] [种子] [寻路模式] [cache]
+     * 默认"1000,5000,10000"、8000×6000、每帧500个、预热20帧、计时50帧、种子1、ASTAR（可选JPS、INCREMENTAL），
+     * 第9个参数为cache时开启路径缓存
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String sizes = args.length > 0 ? args[0] : "1000,5000,10000";
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 8000;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 6000;
+        int budget = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        int ticks = args.length > 5 ? Integer.parseInt(args[5]) : 50;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 1;
+
+        Pathfinder.Mode mode = args.length > 7 ? Pathfinder.Mode.valueOf(args[7].toUpperCase()) : Pathfinder.Mode.ASTAR;
+
+        HordeBenchmark bench = new HordeBenchmark(width, height, budget, seed);
+        bench.setPathMode(mode);
+        bench.setPathCache(args.length > 8 && args[8].equalsIgnoreCase("cache"));
+        System.out.printf("世界%d×%d，每帧生成%d个，预热%d帧，计时%d帧，种子%d，寻路模式%s，%d个CPU核心%n",
+                width, height, budget, warmup, ticks, seed, mode, Runtime.getRuntime().availableProcessors());
+        for(String item : sizes.split(",")) {
+            int count = Integer.parseInt(item.trim());
+            Result r = bench.run(count, warmup, ticks);
+            double perTick = r.profile.getTotalNanos() / 1e6 / Math.max(1, r.profile.getTicks());
+            System.out.printf("%d个敌人（%d帧生成完毕，计时结束时%d个）：每秒%.1f帧，每帧%.2fms，世界固定%.1fMB，每个敌人%d字节，视口绘制%.2fms，状态哈希%016x%n",
+                    count, r.spawnTicks, r.enemies, r.ticksPerSec, perTick, r.fixedBytes / 1048576.0, r.bytesPerEnemy, r.drawMs, r.tickHash);
+            StringBuilder line = new StringBuilder("  ");
+            for(TickProfile.Phase phase : TickProfile.Phase.values()) {
+                double ms = r.profile.getNanos(phase) / 1e6 / Math.max(1, r.profile.getTicks());
+                line.append(String.format("%s %.2fms(%.0f%%)  ", phase.getLabel(), ms, perTick == 0 ? 0 : ms * 100 / perTick));
+            }
+            if(r.cacheHitRate >= 0) line.append(String.format("路径缓存命中%.1f%%", r.cacheHitRate * 100));
+            System.out.println(line.toString().trim());
+        }
+    }
+}
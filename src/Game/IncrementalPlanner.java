@@ -0,0 +1,652 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增量寻路器（D* Lite）
+ *
+ * Pathfinder每次重新寻路都从零开始。敌人每30帧（以及每次碰撞后）重新寻路一次，期间自己走了几格、
+ * 目标挪了几格、周围的敌人换了位置，大部分搜索结果其实没有变。增量寻路器属于一个敌人，
+ * 保留上一次的搜索树（以终点为根的反向搜索，每个节点的代价是它到终点的距离），重新寻路时只修复变化的部分：
+ * - 敌人沿路径前进：搜索树不变，只把启发式的变化量累加到km上
+ * - 目标移动：进出终点区域的网格的代价变化，按边代价变化修复（目标移动得越远，要修复的越多）
+ * - 网格占用变化：移动对象（其他敌人、英雄、投射物）只在起点附近SENSE格内阻挡，远处的占用每帧都在变，
+ *   却不影响眼前该怎么走；只检查起点附近占用变化过的网格（由WorldGrids记录）和远近发生变化的网格，
+ *   静态布局（分块、静态对象）变化时检查全部，再更新可通行状态变化的网格和它们的邻居
+ * - 搜索限制在起点和终点外接矩形向外扩展MARGIN格的窗口内，窗口移动时只处理进出窗口的网格
+ * - 目标半径改变（例如最后一个路点换成英雄本身）按目标移动处理，只更新新旧终点区域内的网格
+ * 目标一次移动超过MARGIN格或者km累计得过大时从零开始。前者主要是换到分层寻路的下一个路点（约一个簇的距离），
+ * 这时原来的搜索树以旧路点为根，几乎全部作废，按目标移动修复扩展的节点比从零开始还多
+ *
+ * 增量修复省下的是扩展的节点，付出的是每次检查附近占用变化的开销：敌人密集时附近的占用每帧都在变，
+ * 路径又只有几十个节点，两者相抵甚至更慢；路径越长、重新寻路越频繁越划算（用main对比）
+ *
+ * 终点是一个区域：与目标的距离小于到达距离的网格（与Pathfinder的到达判断相同），都连到一个虚拟终点上
+ * 对象占用多个网格，可通行按对象站在网格坐标点（Grid.getX/getY，也是敌人沿路径移动的目标点）上时占用的网格判断，
+ * 被对象自己占用的网格视为可通行
+ *
+ * 结果与历史无关：每条边的代价在10/14的基础上加一个由网格和方向决定的微小扰动，最短路径几乎总是唯一的，
+ * 所以无论保留了多少搜索状态，得到的路径都和从零开始搜索相同；搜索状态不写入存档，读档后重新搜索也保持一致
+ */
+public class IncrementalPlanner {
+    public static final int MARGIN = 8;             // 窗口在起点和终点外接矩形外扩展的网格数
+    public static final int SENSE = 6;              // 只考虑离起点这么多格以内的移动对象（约为两次重新寻路之间走过的距离）
+    private static final long INF = Long.MAX_VALUE / 4;
+    private static final long SCALE = 1L << 40;     // 代价单位（低位用于扰动）
+    private static final long MAX_KM = 1L << 60;    // km超过这个值时从零开始（防止溢出）
+    private static final int GOAL = -1;             // 虚拟终点的编号
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private static final AtomicLong plans = new AtomicLong();      // 寻路次数
+    private static final AtomicLong expanded = new AtomicLong();   // 扩展的节点数
+    private static final AtomicLong resets = new AtomicLong();     // 从零开始的次数
+
+    /**
+     * 搜索节点
+     */
+    private static class Node {
+        final int key;           // 网格编号（gy*w+gx），虚拟终点为GOAL
+        final int x, y;          // 网格坐标
+        long g = INF, rhs = INF; // 到终点的代价和一步前瞻代价
+        boolean walkable;        // 上一次检查时对象能否放下
+        boolean inGoal;          // 是否在终点区域内
+        long k1, k2;             // 在开放列表中的优先级
+        int heap = -1;           // 在开放列表中的位置（-1表示不在）
+        int checked;             // 上一次检查可通行状态时的检查轮次（同一次寻路只检查一次）
+
+        Node(int key, int x, int y) {
+            this.key = key;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final WorldGrids grids;
+    private final int w, h;                        // 网格数量（宽、高）
+    private final int radius;                      // 对象半径
+    private final int footLo, footHi;              // 对象站在网格坐标点上时占用的网格相对中心网格的偏移范围
+    private Node[] cells = new Node[0];            // 窗口内网格对应的节点（行优先，没有访问过的为null）
+    private Node[] spare = new Node[0];            // 窗口移动时与cells交替使用的数组
+    private final List<Node> touched = new ArrayList<>();  // 移出窗口或可通行状态变化的节点（修复时复用）
+    private Node[] open = new Node[64];            // 开放列表（按优先级排列的二叉堆，节点记录自己的位置，可以直接移除）
+    private int openSize;                          // 开放列表中的节点数
+    private final Node goal = new Node(GOAL, 0, 0);
+    private Node start;                            // 对象当前所在网格
+    private GameObject agent;                      // 寻路对象
+    private int goalX, goalY;                      // 目标网格
+    private int reach;                             // 到达距离（像素）
+    private long km;                               // 起点移动累计的启发式修正
+    private int minX, minY, maxX, maxY;            // 搜索窗口（网格坐标，包含边界）
+    private int senseX, senseY;                    // 本次寻路的起点（判断移动对象是否在SENSE格以内）
+    private int lastSenseX, lastSenseY;            // 上一次寻路的起点
+    private int layoutVersion;                     // 上一次检查时的静态布局版本
+    private int lastUpdates;                       // 上一次检查时网格占用的更新次数
+    private int lastExpanded;                      // 上一次寻路扩展的节点数
+    private int checkRound;                        // 可通行状态的检查轮次（每次修复加一）
+    private final boolean alwaysReset;             // 每次都从零开始（对比测试用）
+
+    /**
+     * 构造方法
+     * @param grids 网格系统
+     * @param radius 对象半径
+     * @param alwaysReset 是否每次都从零开始（对比测试用，见World.setPlannerReset）
+     */
+    public IncrementalPlanner(WorldGrids grids, int radius, boolean alwaysReset) {
+        this.grids = grids;
+        this.alwaysReset = alwaysReset;
+        this.w = grids.getCols();
+        this.h = grids.getRows();
+        this.radius = radius;
+        int t = radius * 2 / Grid.LENGTH + 1;
+        this.footLo = Math.floorDiv(-radius, Grid.LENGTH) + 1;
+        this.footHi = Math.floorDiv(-radius + (t - 1) * Grid.LENGTH, Grid.LENGTH) + 1;
+    }
+
+    /**
+     * 寻路
+     * 只读取网格状态，可以在并行读阶段调用（每个寻路器只属于一个对象）
+     * @param agent 寻路对象（半径与构造时相同）
+     * @param target 目标网格
+     * @param reach 到达距离（距离目标小于这个值的网格都算到达）
+     * @return 逐格的路径（第一个是起点），窗口内不可达时返回null
+     */
+    public List<Grid> plan(GameObject agent, Grid target, int reach) {
+        this.agent = agent;
+        int sx = agent.getX() / Grid.LENGTH, sy = agent.getY() / Grid.LENGTH;
+        int gx = target.getGridX(), gy = target.getGridY();
+        senseX = sx;
+        senseY = sy;
+        lastExpanded = 0;
+        plans.incrementAndGet();
+        if(alwaysReset || start == null || km > MAX_KM
+                || Math.max(Math.abs(gx - goalX), Math.abs(gy - goalY)) > MARGIN) {
+            reset(sx, sy, gx, gy, reach);
+        } else {
+            moveGoal(gx, gy, reach);
+            moveWindow(sx, sy);
+            moveStart(sx, sy);
+            refreshWalkable();
+        }
+        computeShortestPath();
+        expanded.addAndGet(lastExpanded);
+        if(start.g >= INF) return null;
+
+        // 从起点沿代价最小的后继走到终点区域
+        List<Grid> path = new ArrayList<>();
+        Node cur = start;
+        while(cur != goal && path.size() <= cells.length) {
+            path.add(grids.get(cur.x, cur.y));
+            Node next = null;
+            long best = INF;
+            if(cur.inGoal && (cur.walkable || cur == start)) {
+                best = goal.g + perturb(cur.key, 8);
+                next = goal;
+            }
+            for(int d = 0; d < 8; d++) {
+                Node s = find(cur.x + DX[d], cur.y + DY[d]);
+                if(s == null || s.g >= INF) continue;
+                long cost = cost(cur, s, d);
+                if(cost < INF && s.g + cost < best) {
+                    best = s.g + cost;
+                    next = s;
+                }
+            }
+            if(next == null) return null;
+            cur = next;
+        }
+        return cur == goal ? path : null;
+    }
+
+    /**
+     * 丢弃所有搜索状态，从零开始
+     */
+    private void reset(int sx, int sy, int gx, int gy, int reach) {
+        resets.incrementAndGet();
+        Arrays.fill(open, 0, openSize, null);
+        openSize = 0;
+        km = 0;
+        this.reach = reach;
+        this.goalX = gx;
+        this.goalY = gy;
+        layoutVersion = grids.getLayoutVersion();
+        lastUpdates = grids.getUpdates();
+        lastSenseX = sx;
+        lastSenseY = sy;
+        setWindow(sx, sy);
+        int size = (maxX - minX + 1) * (maxY - minY + 1);
+        if(cells.length >= size && cells.length <= size * 4) Arrays.fill(cells, null);  // 窗口大小相近时复用
+        else cells = new Node[size];
+        start = node(sx, sy);
+        goal.g = INF;
+        goal.rhs = 0;
+        goal.heap = -1;
+        insert(goal);
+    }
+
+    /**
+     * 目标移动：更新进出终点区域的网格
+     */
+    private void moveGoal(int gx, int gy, int reach) {
+        if(gx == goalX && gy == goalY && reach == this.reach) return;
+        int oldX = goalX, oldY = goalY, oldR = this.reach / Grid.LENGTH + 1;
+        goalX = gx;
+        goalY = gy;
+        this.reach = reach;
+        int r = reach / Grid.LENGTH + 1;
+        for(int y = oldY - oldR; y <= oldY + oldR; y++) {
+            for(int x = oldX - oldR; x <= oldX + oldR; x++) {
+                Node node = find(x, y);
+                if(node != null && node.inGoal && !inGoal(x, y)) {
+                    node.inGoal = false;
+                    updateVertex(node);
+                }
+            }
+        }
+        for(int y = gy - r; y <= gy + r; y++) {
+            for(int x = gx - r; x <= gx + r; x++) {
+                if(!inWindow(x, y) || !inGoal(x, y)) continue;
+                Node node = node(x, y);
+                node.inGoal = true;
+                updateVertex(node);
+            }
+        }
+    }
+
+    /**
+     * 窗口跟随起点和终点移动：删除移出窗口的节点，处理移入窗口的网格
+     */
+    private void moveWindow(int sx, int sy) {
+        int oldMinX = minX, oldMinY = minY, oldMaxX = maxX, oldMaxY = maxY;
+        Node[] old = cells;
+        setWindow(sx, sy);
+        if(oldMinX == minX && oldMinY == minY && oldMaxX == maxX && oldMaxY == maxY) return;
+        int size = (maxX - minX + 1) * (maxY - minY + 1);
+        if(spare.length >= size && spare.length <= size * 4) {
+            cells = spare;
+            Arrays.fill(cells, null);
+        } else {
+            cells = new Node[size];
+        }
+        spare = old;
+        List<Node> removed = touched;
+        removed.clear();
+        for(Node node : old) {
+            if(node == null) continue;
+            if(inWindow(node.x, node.y)) {
+                cells[index(node.x, node.y)] = node;
+            } else {
+                remove(node);
+                removed.add(node);
+            }
+        }
+        for(Node node : removed) {
+            for(int d = 0; d < 8; d++) {
+                Node n = find(node.x + DX[d], node.y + DY[d]);
+                if(n != null) updateVertex(n);
+            }
+        }
+        for(int y = minY; y <= maxY; y++) {
+            for(int x = minX; x <= maxX; x++) {
+                if(x >= oldMinX && x <= oldMaxX && y >= oldMinY && y <= oldMaxY) continue;
+                boolean reachable = inGoal(x, y);
+                for(int d = 0; d < 8 && !reachable; d++) {
+                    Node n = find(x + DX[d], y + DY[d]);
+                    reachable = n != null && n.g < INF;
+                }
+                if(reachable) updateVertex(node(x, y));
+            }
+        }
+    }
+
+    /**
+     * 对象移动：搜索树不变，启发式的参照点从原来的起点换成新起点，把变化量累加到km上
+     * 起点自己视为可通行，新旧起点出发的边可能变化，重新计算它们的代价
+     */
+    private void moveStart(int sx, int sy) {
+        if(sx == start.x && sy == start.y) return;
+        Node old = start;
+        km += octile(old.x, old.y, sx, sy) * SCALE;
+        start = node(sx, sy);
+        if(find(old.x, old.y) == old) updateVertex(old);
+        updateVertex(start);
+    }
+
+    /**
+     * 检查网格的可通行状态，只更新变化的网格和它们的前驱
+     * 静态布局没有变化时，远处网格的可通行状态不会变，只需要检查：
+     * - 起点移动后进入或离开起点附近的网格（移动对象开始或不再阻挡）
+     * - 起点附近占用范围覆盖了占用变化的网格（见WorldGrids.updateGrids）的网格
+     */
+    private void refreshWalkable() {
+        checkRound++;
+        List<Node> changed = touched;
+        changed.clear();
+        int version = grids.getLayoutVersion(), updates = grids.getUpdates();
+        if(version != layoutVersion) {
+            for(Node node : cells)
+                if(node != null && refresh(node)) changed.add(node);
+        } else {
+            if(senseX != lastSenseX || senseY != lastSenseY) {
+                for(int y = Math.min(lastSenseY, senseY) - SENSE; y <= Math.max(lastSenseY, senseY) + SENSE; y++) {
+                    for(int x = Math.min(lastSenseX, senseX) - SENSE; x <= Math.max(lastSenseX, senseX) + SENSE; x++) {
+                        boolean wasNear = Math.max(Math.abs(x - lastSenseX), Math.abs(y - lastSenseY)) <= SENSE;
+                        boolean isNear = Math.max(Math.abs(x - senseX), Math.abs(y - senseY)) <= SENSE;
+                        Node node = wasNear != isNear ? find(x, y) : null;
+                        if(node != null && refresh(node)) changed.add(node);
+                    }
+                }
+            }
+            if(updates != lastUpdates) {
+                for(int gy = Math.max(0, senseY - SENSE + footLo); gy <= Math.min(h - 1, senseY + SENSE + footHi); gy++) {
+                    for(int gx = Math.max(0, senseX - SENSE + footLo); gx <= Math.min(w - 1, senseX + SENSE + footHi); gx++) {
+                        if(grids.get(gx, gy).getChanged() <= lastUpdates) continue;
+                        for(int y = Math.max(senseY - SENSE, gy - footHi); y <= Math.min(senseY + SENSE, gy - footLo); y++) {
+                            for(int x = Math.max(senseX - SENSE, gx - footHi); x <= Math.min(senseX + SENSE, gx - footLo); x++) {
+                                Node node = find(x, y);
+                                if(node != null && refresh(node)) changed.add(node);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        layoutVersion = version;
+        lastUpdates = updates;
+        lastSenseX = senseX;
+        lastSenseY = senseY;
+        for(Node node : changed) {
+            updateVertex(node);
+            for(int d = 0; d < 8; d++) {
+                Node n = find(node.x + DX[d], node.y + DY[d]);
+                if(n != null) updateVertex(n);
+            }
+        }
+    }
+
+    private boolean refresh(Node node) {
+        if(node.checked == checkRound) return false;  // 占用范围覆盖了多个变化的网格，已经检查过
+        node.checked = checkRound;
+        boolean walkable = fits(node.x, node.y);
+        if(walkable == node.walkable) return false;
+        node.walkable = walkable;
+        return true;
+    }
+
+    /**
+     * D* Lite的主循环：直到起点局部一致并且开放列表中没有优先级更小的节点
+     */
+    private void computeShortestPath() {
+        while(openSize > 0) {
+            Node u = open[0];
+            long sk2 = Math.min(start.g, start.rhs), sk1 = sk2 + km;
+            boolean before = u.k1 < sk1 || (u.k1 == sk1 && u.k2 < sk2);
+            if(!before && start.g == start.rhs) break;
+            long k2 = Math.min(u.g, u.rhs), k1 = k2 + heuristic(u) + km;
+            if(u.k1 < k1 || (u.k1 == k1 && u.k2 < k2)) {
+                insert(u);  // 起点移动后优先级过时，只更新优先级，不算扩展
+                continue;
+            }
+            remove(u);
+            lastExpanded++;
+            if(u.g > u.rhs) {
+                u.g = u.rhs;
+                updatePredecessors(u);
+            } else {
+                u.g = INF;
+                updateVertex(u);
+                updatePredecessors(u);
+            }
+        }
+    }
+
+    /**
+     * 节点的代价变化后，更新所有可能经过它到达终点的节点
+     */
+    private void updatePredecessors(Node u) {
+        if(u == goal) {
+            int r = reach / Grid.LENGTH + 1;
+            for(int y = goalY - r; y <= goalY + r; y++)
+                for(int x = goalX - r; x <= goalX + r; x++)
+                    if(inWindow(x, y) && inGoal(x, y)) updateVertex(node(x, y));
+            return;
+        }
+        for(int d = 0; d < 8; d++) {
+            int x = u.x + DX[d], y = u.y + DY[d];
+            if(inWindow(x, y)) updateVertex(node(x, y));
+        }
+    }
+
+    /**
+     * 重新计算节点的rhs（经过各个后继到终点的最小代价），并按是否局部一致放入或移出开放列表
+     */
+    private void updateVertex(Node v) {
+        if(v != goal) {
+            long best = INF;
+            if(v.walkable || v == start) {
+                if(v.inGoal && goal.g < INF) best = goal.g + perturb(v.key, 8);
+                for(int d = 0; d < 8; d++) {
+                    Node s = find(v.x + DX[d], v.y + DY[d]);
+                    if(s == null || s.g >= INF || !s.walkable) continue;
+                    long cost = s.g + cost(v, s, d);
+                    if(cost < best) best = cost;
+                }
+            }
+            v.rhs = best;
+        }
+        if(v.g == v.rhs) remove(v);
+        else insert(v);
+    }
+
+    /**
+     * 相邻网格之间的边代价（不可通行为INF，起点自己视为可通行）
+     */
+    private long cost(Node from, Node to, int dir) {
+        if(!to.walkable || (!from.walkable && from != start)) return INF;
+        return (dir % 2 == 0 ? 10 : 14) * SCALE + perturb(to.key, dir);
+    }
+
+    /**
+     * 放入开放列表，已经在列表中时更新优先级
+     */
+    private void insert(Node node) {
+        node.k2 = Math.min(node.g, node.rhs);
+        node.k1 = node.k2 + heuristic(node) + km;
+        if(node.heap >= 0) {
+            siftDown(node.heap);
+            siftUp(node.heap);
+            return;
+        }
+        if(openSize == open.length) open = Arrays.copyOf(open, openSize * 2);
+        open[openSize] = node;
+        node.heap = openSize++;
+        siftUp(node.heap);
+    }
+
+    private void remove(Node node) {
+        int i = node.heap;
+        if(i < 0) return;
+        node.heap = -1;
+        Node last = open[--openSize];
+        open[openSize] = null;
+        if(i == openSize) return;
+        open[i] = last;
+        last.heap = i;
+        siftDown(i);
+        siftUp(last.heap);
+    }
+
+    private void siftUp(int i) {
+        Node node = open[i];
+        while(i > 0) {
+            int parent = (i - 1) / 2;
+            if(!before(node, open[parent])) break;
+            open[i] = open[parent];
+            open[i].heap = i;
+            i = parent;
+        }
+        open[i] = node;
+        node.heap = i;
+    }
+
+    private void siftDown(int i) {
+        Node node = open[i];
+        while(true) {
+            int child = i * 2 + 1;
+            if(child >= openSize) break;
+            if(child + 1 < openSize && before(open[child + 1], open[child])) child++;
+            if(!before(open[child], node)) break;
+            open[i] = open[child];
+            open[i].heap = i;
+            i = child;
+        }
+        open[i] = node;
+        node.heap = i;
+    }
+
+    /**
+     * 比较开放列表中的优先级（k1、k2，相同时按网格编号，顺序与历史无关）
+     */
+    private static boolean before(Node a, Node b) {
+        if(a.k1 != b.k1) return a.k1 < b.k1;
+        if(a.k2 != b.k2) return a.k2 < b.k2;
+        return a.key < b.key;
+    }
+
+    /**
+     * 查找网格对应的节点（不创建，窗口外返回null）
+     */
+    private Node find(int x, int y) {
+        return inWindow(x, y) ? cells[index(x, y)] : null;
+    }
+
+    /**
+     * 获取窗口内网格对应的节点，不存在时创建（创建时检查可通行和是否在终点区域内）
+     */
+    private Node node(int x, int y) {
+        int i = index(x, y);
+        Node node = cells[i];
+        if(node == null) {
+            node = new Node(y * w + x, x, y);
+            node.walkable = fits(x, y);
+            node.inGoal = inGoal(x, y);
+            cells[i] = node;
+        }
+        return node;
+    }
+
+    private int index(int x, int y) {
+        return (y - minY) * (maxX - minX + 1) + x - minX;
+    }
+
+    private void setWindow(int sx, int sy) {
+        minX = Math.max(0, Math.min(sx, goalX) - MARGIN);
+        minY = Math.max(0, Math.min(sy, goalY) - MARGIN);
+        maxX = Math.min(w - 1, Math.max(sx, goalX) + MARGIN);
+        maxY = Math.min(h - 1, Math.max(sy, goalY) + MARGIN);
+    }
+
+    private boolean inWindow(int x, int y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * 判断对象站在网格(x, y)的坐标点上时，占用的网格是否都可通行（或者被对象自己占用）
+     * 离起点超过SENSE格的网格只考虑地图障碍和静态对象：等走到那里时移动对象早已离开，
+     * 不必为它们绕路，也不必在它们每次移动时修复搜索树
+     */
+    private boolean fits(int x, int y) {
+        boolean near = Math.max(Math.abs(x - senseX), Math.abs(y - senseY)) <= SENSE;
+        for(int dy = footLo; dy <= footHi; dy++) {
+            for(int dx = footLo; dx <= footHi; dx++) {
+                Grid grid = grids.get(x + dx, y + dy);
+                if(grid.isAccessible()) continue;
+                GameObject obj = grid.getObject();
+                if(obj == null || obj.getLifecycle() == LifecycleState.STATIC || (near && obj != agent)) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean inGoal(int x, int y) {
+        long dx = (long) (x - goalX) * Grid.LENGTH, dy = (long) (y - goalY) * Grid.LENGTH;
+        return dx * dx + dy * dy < (long) reach * reach;
+    }
+
+    /**
+     * 启发式：起点到节点的八方向距离（不超过真实代价，扰动只会让真实代价更大）
+     */
+    private long heuristic(Node node) {
+        if(node == goal) return 0;
+        return octile(start.x, start.y, node.x, node.y) * SCALE;
+    }
+
+    private static long octile(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x1 - x2), dy = Math.abs(y1 - y2);
+        return 10L * Math.max(dx, dy) + 4L * Math.min(dx, dy);
+    }
+
+    /**
+     * 边代价的扰动（只取决于网格和方向，小于SCALE/1024，保证最短路径唯一而不改变10/14的代价关系）
+     */
+    private static long perturb(int key, int dir) {
+        long z = key * 9L + dir + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & ((1L << 30) - 1);
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * 获取上一次寻路扩展的节点数
+     * @return 节点数
+     */
+    public int getLastExpanded() {
+        return lastExpanded;
+    }
+
+    public static long getPlans() {
+        return plans.get();
+    }
+
+    public static long getExpanded() {
+        return expanded.get();
+    }
+
+    public static long getResets() {
+        return resets.get();
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[敌人数量] [世界宽度] [世界高度] [帧数] [种子] [轮数]，默认800个、3000×2000、1500帧、种子1、3轮
+     * 同一局（尸潮规则，英雄由HeroBot控制、每帧回满生命值，目标一直在移动）分别用三种方式运行：
+     * INCREMENTAL保留搜索树、INCREMENTAL每次从零开始、ASTAR，输出每次寻路扩展的节点数、从零开始的比例、
+     * 敌人决策阶段和整帧的耗时以及最后一帧的状态哈希；前两种的哈希必须相同（增量修复得到的路径与从零开始相同）
+     *
+     * 每种方式各自新建世界，先在同一个世界里预热帧数的五分之一（生成敌人、第一次寻路和分层寻路的建图都在预热里），
+     * 再计时同样多的帧数；单核机器上先运行的方式会替后面的方式承担JIT编译和GC的开销，
+     * 所以每一轮轮换运行顺序，耗时取各轮的中位数
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 1500;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        int rounds = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+        System.out.printf("世界%d×%d，%d个敌人，预热%d帧，计时%d帧，种子%d，%d轮%n", width, height, count, ticks / 5, ticks, seed, rounds);
+        String[] labels = {"增量修复", "每次从零开始", "ASTAR"};
+        double[][] planMs = new double[labels.length][rounds], tickMs = new double[labels.length][rounds];
+        long[] plansOf = new long[labels.length], expandedOf = new long[labels.length], resetsOf = new long[labels.length];
+        long[] hashOf = new long[labels.length];
+        int[] enemiesOf = new int[labels.length];
+        for(int round = 0; round < rounds; round++) {
+            for(int i = 0; i < labels.length; i++) {
+                int run = (round + i) % labels.length;  // 每轮轮换先后顺序
+                World world = new World(width, height, 1, seed, WaveRules.horde(count, 200));
+                world.setPlannerReset(run == 1);
+                world.setStateHash(new StateHash());
+                world.setPathMode(run == 2 ? Pathfinder.Mode.ASTAR : Pathfinder.Mode.INCREMENTAL);
+                TickProfile profile = new TickProfile();
+                world.setProfile(profile);
+                HeroBot bot = new HeroBot(0);
+                long plans0 = 0, expanded0 = 0, resets0 = 0;
+                for(int t = 0; t < ticks / 5 + ticks; t++) {
+                    if(t == ticks / 5) {
+                        profile.clear();
+                        plans0 = getPlans();
+                        expanded0 = getExpanded();
+                        resets0 = getResets();
+                    }
+                    world.getHeroes().get(0).setHP(Hero.MAX_HP);
+                    bot.apply(world);
+                    world.tick();
+                }
+                planMs[run][round] = profile.getNanos(TickProfile.Phase.PLAN) / 1e6 / ticks;
+                tickMs[run][round] = profile.getTotalNanos() / 1e6 / ticks;
+                plansOf[run] = getPlans() - plans0;
+                expandedOf[run] = getExpanded() - expanded0;
+                resetsOf[run] = getResets() - resets0;
+                hashOf[run] = world.getStateHash().getTickHash();
+                enemiesOf[run] = world.getCurrentEnemyNum();
+            }
+        }
+        for(int run = 0; run < labels.length; run++) {
+            long n = Math.max(1, plansOf[run]);
+            Arrays.sort(planMs[run]);
+            Arrays.sort(tickMs[run]);
+            System.out.printf("%-8s：寻路%d次，每次扩展%.1f个节点，从零开始%.1f%%，敌人决策每帧%.2fms（%.2f~%.2f），整帧%.2fms，敌人%d个，状态哈希%016x%n",
+                    labels[run], run == 2 ? 0 : plansOf[run], run == 2 ? 0.0 : (double) expandedOf[run] / n,
+                    run == 2 ? 0.0 : resetsOf[run] * 100.0 / n, planMs[run][rounds / 2], planMs[run][0], planMs[run][rounds - 1],
+                    tickMs[run][rounds / 2], enemiesOf[run], hashOf[run]);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package Game;
+
+/**
+ * 生命周期状态枚举
+ * World根据对象的生命周期状态把对象放在不同的容器中
+ * 热点循环（碰撞检测、攻击判定、寻找目标）只遍历需要的容器
+ */
+public enum LifecycleState {
+    ACTIVE,    // 活动：可以移动或交互的对象（英雄、存活的敌人、弹丸）
+    STATIC,    // 静态：不会移动的对象（墙壁、宝箱），只参与碰撞和寻路
+    DYING,     // 死亡中：尸体，只绘制，不参与任何交互
+    REMOVED;   // 已移除：不在世界中（被拾取的宝箱、消失的弹丸和尸体）
+
+    /**
+     * 根据碰撞层判断对象加入世界时的状态
+     * @param obj 游戏对象
+     * @return 静态层的对象为STATIC，其余为ACTIVE
+     */
+    public static LifecycleState initialStateOf(GameObject obj){
+        if((obj.getCollisionLayer() & CollisionLayers.STATIC) != 0) return STATIC;
+        return ACTIVE;
+    }
+}
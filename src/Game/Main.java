@@ -1,5 +1,8 @@
 package Game;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * 主类 - 游戏程序入口
  * 负责启动游戏的开始界面
@@ -8,8 +11,10 @@ public class Main {
     /**
      * 程序主入口方法
      * 创建并显示游戏开始界面
+     * 参数：[地图文件]，指定时使用该地图（见TileMap），否则使用默认竞技场
      */
-    public static void main(String[] args) {
-        new Start();  // 创建开始界面窗口
+    public static void main(String[] args) throws IOException {
+        TileMap map = args.length > 0 ? TileMap.load(new File(args[0])) : null;
+        new Start(map);  // 创建开始界面窗口
     }
 }
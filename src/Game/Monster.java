@@ -34,32 +34,31 @@ public class Monster extends Enemy {
     }
 
     /**
-     * 绘制怪物
-     * 在攻击范围内时发动攻击
-     * @param g 图形上下文
+     * 攻击决策（读阶段）
+     * 在攻击范围内且武器冷却结束时朝向目标发动攻击
+     * @param snapshot 本帧世界快照
+     * @param intent 本帧决策
      */
-    public void draw(Graphics g) {
-        if(getTarget() != null && getTarget().getHP() > 0) {
+    protected void planAttack(WorldSnapshot snapshot, EnemyIntent intent) {
+        WorldSnapshot.HeroView nearest = snapshot.nearestHero(this.getX(), this.getY());
+        WorldSnapshot.HeroView current = snapshot.viewOf(getCurrentTarget());
+        if(nearest != null && current != null) {
             // 计算与目标的距离
-            int distance = (int) getDistance(this.getX(), this.getY(), getCurrentTarget().getX(), getCurrentTarget().getY());
+            int distance = (int) getDistance(this.getX(), this.getY(), current.getX(), current.getY());
             
             // 在攻击范围内且武器冷却结束
             if (distance <= ((Hand) getCurrentWeapon()).getAttackRange() && this.getCurrentWeapon().getColdDown() == 0) {
                 // 朝向目标
-                Direction dir = judgeAccurateDir(getTarget().getX(), getTarget().getY());
-                this.dir = dir;
-                this.oldDir = (dir == Direction.STOP ? oldDir : dir);
+                Direction dir = judgeAccurateDir(nearest.getX(), nearest.getY());
+                intent.setDir(dir);
+                intent.setOldDir(dir == Direction.STOP ? intent.getOldDir() : dir);
                 
-                // 发动攻击
-                this.getCurrentWeapon().setState();
-                this.getCurrentWeapon().setColdDown();
+                // 发动攻击（写阶段执行）
+                intent.setAttack(true);
                 
                 // 重新计算路径（攻击后可能需要调整位置）
-                getPath();
+                getPath(snapshot);
             }
         }
-        
-        locateDirection();  // 更新移动方向
-        super.draw(g);      // 绘制角色
     }
 }
@@ -0,0 +1,257 @@
+package Game;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 联机回环压力测试
+ *
+ * 在本机启动GameServer和N个套接字客户端，用尸潮规则（WaveRules.horde）依次测试每个敌人数量：
+ * 每个规模重新创建世界和连接，全部生成并预热后计时，输出服务器的帧耗时、快照耗时、每个客户端的带宽和客户端看到的对象数量。
+ *
+ * 英雄由HeroBot控制：机器人在服务器线程每帧之前（GameServer.setBeforeTick）根据权威世界计算按键，
+ * 客户端线程收到消息后把变化的按键作为MSG_INPUT发回服务器，与NetClient走同一条路径，所以输入有一到两帧的延迟。
+ * 英雄在测试期间每帧回满生命值，保证敌人一直处于追击状态。
+ * 服务器按真实时间每TICK_MS毫秒推进一帧，帧耗时超过TICK_MS时帧率下降，这正是要观察的现象。
+ */
+public class NetBenchmark {
+    private final int clients;      // 客户端数量
+    private final int viewRadius;   // 视野半径
+    private final int width;        // 世界宽度
+    private final int height;       // 世界高度
+    private final int budget;       // 每帧生成预算
+    private final long seed;        // 随机数种子
+
+    /**
+     * 单个规模的测试结果
+     */
+    public static class Result {
+        final int enemies;              // 敌人数量（计时结束时存活的）
+        final int ticks;                // 计时的帧数
+        final double seconds;           // 计时的秒数
+        final GameServer.Stats stats;   // 服务器在计时阶段的统计数据
+        final double entitiesSeen;      // 每个客户端平均看到的对象数量
+
+        Result(int enemies, int ticks, double seconds, GameServer.Stats stats, double entitiesSeen) {
+            this.enemies = enemies;
+            this.ticks = ticks;
+            this.seconds = seconds;
+            this.stats = stats;
+            this.entitiesSeen = entitiesSeen;
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param clients 客户端数量（1~World.MAX_HEROES）
+     * @param viewRadius 视野半径
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @param budget 每帧生成预算
+     * @param seed 随机数种子
+     */
+    public NetBenchmark(int clients, int viewRadius, int width, int height, int budget, long seed) {
+        this.clients = clients;
+        this.viewRadius = viewRadius;
+        this.width = width;
+        this.height = height;
+        this.budget = budget;
+        this.seed = seed;
+    }
+
+    /**
+     * 测试一个规模（服务器在调用线程运行，客户端各自一个线程）
+     * @param count 敌人数量
+     * @param warmup 预热帧数
+     * @param ticks 计时帧数
+     * @return 测试结果
+     */
+    public Result run(int count, int warmup, int ticks) throws IOException, InterruptedException {
+        World world = new World(width, height, clients, seed, WaveRules.horde(count, budget));
+        GameServer server = new GameServer(0, world, viewRadius);
+        server.setPrintStats(false);
+        Stage stage = new Stage(server, world, count, warmup, ticks);
+        server.setBeforeTick(stage);
+
+        Client[] remotes = new Client[clients];
+        Thread[] threads = new Thread[clients];
+        for(int i = 0; i < clients; i++) {
+            remotes[i] = new Client(server.getPort(), stage);
+            threads[i] = new Thread(remotes[i], "bench-client-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        server.run();
+        for(Thread thread : threads)
+            thread.join(2000);
+
+        long entities = 0, snapshots = 0;
+        for(Client remote : remotes) {
+            entities += remote.entitySum;
+            snapshots += remote.snapshots;
+        }
+        return new Result(world.getCurrentEnemyNum(), ticks, stage.seconds, stage.measured,
+                snapshots == 0 ? 0 : (double) entities / snapshots);
+    }
+
+    /**
+     * 测试阶段的控制（在服务器线程每帧之前执行）
+     * 英雄回满生命值、机器人计算按键，等敌人生成完毕并预热后清空统计数据，计时结束时取走统计数据并停止服务器
+     */
+    private static class Stage implements Runnable {
+        final GameServer server;
+        final World world;
+        final int count, warmup, ticks;
+        final HeroBot[] bots;
+        final int[] heroIds;                  // 每个英雄的对象编号（客户端用欢迎消息中的编号找到自己的英雄）
+        final AtomicIntegerArray buttons;     // 机器人计算的按键（客户端线程读取后发给服务器）
+        volatile boolean measuring;           // 是否处于计时阶段
+        int spawnTicks, warmTicks, timedTicks;
+        long start;
+        double seconds;
+        GameServer.Stats measured;
+
+        Stage(GameServer server, World world, int count, int warmup, int ticks) {
+            this.server = server;
+            this.world = world;
+            this.count = count;
+            this.warmup = warmup;
+            this.ticks = ticks;
+            int heroNum = world.getHeroes().size();
+            this.bots = new HeroBot[heroNum];
+            this.heroIds = new int[heroNum];
+            this.buttons = new AtomicIntegerArray(heroNum);
+            for(int i = 0; i < heroNum; i++) {
+                bots[i] = new HeroBot(i);
+                heroIds[i] = world.getHeroes().get(i).getId();
+            }
+        }
+
+        public void run() {
+            for(Hero hero : world.getHeroes())
+                hero.setHP(Hero.MAX_HP);
+            for(int i = 0; i < bots.length; i++)
+                buttons.set(i, bots[i].next(world));
+
+            if(world.getCurrentEnemyNum() < count && spawnTicks < count) {
+                spawnTicks++;
+            } else if(warmTicks < warmup) {
+                warmTicks++;
+            } else if(!measuring) {
+                server.takeStats();  // 丢弃生成和预热阶段的统计数据
+                start = System.nanoTime();
+                measuring = true;
+            } else if(++timedTicks >= ticks) {
+                // 本回调在第ticks+1帧之前执行，此时取走的正好是计时的ticks帧
+                measured = server.takeStats();
+                seconds = (System.nanoTime() - start) / 1e9;
+                measuring = false;
+                server.stop();
+            }
+        }
+
+        int slotOf(int heroId) {
+            for(int i = 0; i < heroIds.length; i++)
+                if(heroIds[i] == heroId) return i;
+            return -1;
+        }
+    }
+
+    /**
+     * 无界面的套接字客户端
+     * 与NetClient一样读取消息并应用到RemoteWorld，按键变化时发送MSG_INPUT
+     */
+    private static class Client implements Runnable {
+        final int port;
+        final Stage stage;
+        final RemoteWorld remote = new RemoteWorld();
+        volatile long entitySum;     // 计时阶段每次快照后看到的对象数量之和
+        volatile long snapshots;     // 计时阶段收到的快照数量
+
+        Client(int port, Stage stage) {
+            this.port = port;
+            this.stage = stage;
+        }
+
+        public void run() {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                OutputStream out = socket.getOutputStream();
+                ByteBuffer payload = ByteBuffer.allocate(8);
+                ByteBuffer frame = ByteBuffer.allocate(16);
+                int slot = -1, sent = 0;
+                while(true) {
+                    int length = Varint.readVarInt(in);
+                    if(length <= 0 || length > NetProtocol.MAX_FRAME) throw new IOException("消息长度非法: " + length);
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+                    remote.handle(ByteBuffer.wrap(data));
+                    if(remote.isRejected()) return;
+                    if(slot < 0 && remote.hasMap()) slot = stage.slotOf(remote.getHeroId());
+                    if(slot < 0) continue;
+                    if(data[0] == NetProtocol.MSG_SNAPSHOT && stage.measuring) {
+                        entitySum += remote.getEntityNum();
+                        snapshots++;
+                    }
+                    int next = stage.buttons.get(slot);
+                    if(next != sent) {
+                        payload.clear();
+                        payload.put(NetProtocol.MSG_INPUT);
+                        Varint.putVarInt(payload, next);
+                        payload.flip();
+                        frame.clear();
+                        NetProtocol.writeFrame(frame, payload);
+                        out.write(frame.array(), 0, frame.position());
+                        sent = next;
+                    }
+                }
+            } catch (IOException e) {
+                // 服务器停止时关闭连接，测试正常结束
+            }
+        }
+    }
+
+    /**
+     * 联机回环压力测试入口
+     * 参数：[客户端数量] [敌人数量列表] [视野半径] [世界宽度] [世界高度] [每帧生成预算] [预热帧数] [计时帧数] [种子]
+     * 默认2个客户端、"250,500,1000,2000"、视野半径640、4000×3000、每帧200个、预热30帧、计时200帧、种子1
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        String sizes = args.length > 1 ? args[1] : "250,500,1000,2000";
+        int viewRadius = args.length > 2 ? Integer.parseInt(args[2]) : GameServer.DEFAULT_VIEW_RADIUS;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 4000;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : 3000;
+        int budget = args.length > 5 ? Integer.parseInt(args[5]) : 200;
+        int warmup = args.length > 6 ? Integer.parseInt(args[6]) : 30;
+        int ticks = args.length > 7 ? Integer.parseInt(args[7]) : 200;
+        long seed = args.length > 8 ? Long.parseLong(args[8]) : 1;
+
+        NetBenchmark bench = new NetBenchmark(clients, viewRadius, width, height, budget, seed);
+        System.out.printf("%d个客户端，视野半径%d，世界%d×%d，每帧生成%d个，预热%d帧，计时%d帧，种子%d，每帧%dms，%d个CPU核心%n",
+                clients, viewRadius, width, height, budget, warmup, ticks, seed, GameServer.TICK_MS,
+                Runtime.getRuntime().availableProcessors());
+        for(String item : sizes.split(",")) {
+            int count = Integer.parseInt(item.trim());
+            Result r = bench.run(count, warmup, ticks);
+            GameServer.Stats s = r.stats;
+            if(s == null || s.ticks == 0) {
+                System.out.printf("%d个敌人：游戏在计时结束前结束%n", count);
+                continue;
+            }
+            System.out.printf("%d个敌人（计时结束时%d个）：每秒%.1f帧，帧耗时 平均%.2fms 最长%.2fms，快照 平均%.2fms，" +
+                            "每客户端%.1fKB/s，看到对象%.1f个，跳过快照%d 截断快照%d%n",
+                    count, r.enemies, s.ticks / r.seconds, s.tickNanos / 1e6 / s.ticks, s.maxTickNanos / 1e6,
+                    s.snapshots == 0 ? 0 : s.snapshotNanos / 1e6 / s.snapshots,
+                    s.bytes / 1024.0 / clients / r.seconds, r.entitiesSeen, s.skipped, s.truncated);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package Game;
+
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * 联机瘦客户端
+ * 不运行游戏逻辑，只把本地按键状态发给服务器，并绘制服务器快照
+ * 两套按键方案（WASD+JKL、方向键+小键盘）都可以控制自己的英雄
+ */
+public class NetClient extends Frame {
+    private static final long serialVersionUID = 1L;
+    private final Socket socket;            // 与服务器的连接
+    private final DataInputStream in;       // 输入流
+    private final OutputStream out;         // 输出流
+    private final RemoteWorld remote;       // 世界副本
+    private final Camera camera;            // 摄像机（跟随自己的英雄）
+    private Image offScreenImage;           // 离屏图像（用于双缓冲）
+    private int buttons;                    // 当前按下的按键槽位
+    private volatile boolean connected;     // 是否仍与服务器连接
+
+    /**
+     * 构造方法
+     * 连接服务器
+     * @param host 服务器地址
+     * @param port 服务器端口
+     * @throws IOException 连接失败
+     */
+    public NetClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = socket.getOutputStream();
+        this.remote = new RemoteWorld();
+        this.camera = new Camera(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT);
+        this.connected = true;
+    }
+
+    /**
+     * 网络接收线程
+     * 逐条读取服务器消息并应用到世界副本
+     */
+    private class ReceiveThread implements Runnable {
+        public void run() {
+            try {
+                while(connected) {
+                    int length = Varint.readVarInt(in);
+                    // 与服务器端NetProtocol.readFrame相同的长度检查，损坏或恶意的消息不会触发超大分配
+                    if(length < 0 || length > NetProtocol.MAX_FRAME) throw new IOException("消息长度非法: " + length);
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    remote.handle(ByteBuffer.wrap(payload));
+                    if(remote.isRejected()) {
+                        System.out.println("服务器已满");
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("与服务器断开: " + e.getMessage());
+            }
+            connected = false;
+        }
+    }
+
+    /**
+     * 绘制线程
+     * 与单机客户端一样每30毫秒刷新一次画面（插值使移动平滑）
+     */
+    private class PaintThread implements Runnable {
+        public void run() {
+            while(connected) {
+                repaint();
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            repaint();  // 绘制最后一次快照（如结束画面）
+        }
+    }
+
+    /**
+     * 绘制方法
+     * @param g 图形上下文对象
+     */
+    public void paint(Graphics g) {
+        remote.draw(g, camera);
+    }
+
+    /**
+     * 更新方法（双缓冲实现）
+     * @param g 图形上下文对象
+     */
+    public void update(Graphics g) {
+        if(offScreenImage == null) {
+            offScreenImage = this.createImage(camera.getViewWidth(), camera.getViewHeight());
+        }
+        Graphics gOffScreen = offScreenImage.getGraphics();
+        Color c = gOffScreen.getColor();
+        gOffScreen.setColor(Color.lightGray);
+        gOffScreen.fillRect(0, 0, camera.getViewWidth(), camera.getViewHeight());
+        gOffScreen.setColor(c);
+        paint(gOffScreen);
+        g.drawImage(offScreenImage, 0, 0, null);
+    }
+
+    /**
+     * 启动客户端窗口
+     */
+    public void lauchFrame() {
+        this.setLocation(400, 100);
+        this.setSize(camera.getViewWidth(), camera.getViewHeight());
+        this.setTitle("ZombieCrisis - 联机");
+        this.addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                System.exit(0);
+            }
+        });
+        this.setResizable(false);
+        this.setBackground(Color.lightGray);
+        this.addKeyListener(new KeyMonitor());
+        setVisible(true);
+        new Thread(new ReceiveThread(), "net-receive").start();
+        new Thread(new PaintThread(), "net-paint").start();
+    }
+
+    /**
+     * 设置按键槽位状态，状态变化时发送给服务器
+     * @param slot 按键槽位
+     * @param pressed 是否按下
+     */
+    public synchronized void setButton(int slot, boolean pressed) {
+        int next = pressed ? buttons | (1 << slot) : buttons & ~(1 << slot);
+        if(next == buttons || !connected) return;
+        buttons = next;
+        ByteBuffer payload = ByteBuffer.allocate(8);
+        payload.put(NetProtocol.MSG_INPUT);
+        Varint.putVarInt(payload, buttons);
+        payload.flip();
+        ByteBuffer frame = ByteBuffer.allocate(16);
+        NetProtocol.writeFrame(frame, payload);
+        try {
+            out.write(frame.array(), 0, frame.position());
+        } catch (IOException e) {
+            connected = false;
+        }
+    }
+
+    /**
+     * 获取世界副本
+     * @return 世界副本
+     */
+    public RemoteWorld getRemoteWorld() {
+        return remote;
+    }
+
+    /**
+     * 键盘监听器
+     * 把两套按键方案都映射到按键槽位
+     */
+    private class KeyMonitor extends KeyAdapter {
+        private int slotOf(KeyEvent e) {
+            int slot = Hero.keySlotOf(1, e.getKeyCode());
+            return slot >= 0 ? slot : Hero.keySlotOf(0, e.getKeyCode());
+        }
+
+        public void keyPressed(KeyEvent e) {
+            int slot = slotOf(e);
+            if(slot >= 0) setButton(slot, true);
+        }
+
+        public void keyReleased(KeyEvent e) {
+            int slot = slotOf(e);
+            if(slot >= 0) setButton(slot, false);
+        }
+    }
+
+    /**
+     * 客户端入口
+     * 参数：[服务器地址] [端口]，默认连接本机7777端口
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : NetProtocol.DEFAULT_PORT;
+        new NetClient(host, port).lauchFrame();
+    }
+}
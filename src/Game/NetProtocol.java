@@ -0,0 +1,101 @@
+package Game;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 联机协议常量与消息分帧
+ *
+ * 每条消息 = 变长整数表示的负载长度 + 负载，负载第一个字节是消息类型：
+ * - MSG_INPUT（客户端→服务器）：按键槽位的位掩码，只在按键状态变化时发送
+ * - MSG_WELCOME（服务器→客户端）：分配的英雄编号、世界尺寸、快照频率和地图数据的字节数
+ * - MSG_MAP（服务器→客户端）：紧跟欢迎消息，按顺序拼接成地图数据（TileMap格式），大地图分成多条，每条不超过MAX_FRAME
+ * - MSG_SNAPSHOT（服务器→客户端）：相对于上一次发给该客户端的快照的增量
+ * - MSG_REJECT（服务器→客户端）：房间已满
+ */
+public class NetProtocol {
+    public static final int DEFAULT_PORT = 7777;     // 默认端口
+    public static final int MAX_FRAME = 1 << 20;     // 单条消息最大字节数
+    public static final int MAX_MAP = 1 << 26;       // 地图数据最大字节数（服务器构造时拒绝更大的地图）
+    public static final int MAP_PART = MAX_FRAME - 16;  // 每条地图消息携带的地图数据字节数
+
+    public static final byte MSG_INPUT = 1;          // 输入消息
+    public static final byte MSG_WELCOME = 2;        // 欢迎消息
+    public static final byte MSG_SNAPSHOT = 3;       // 快照消息
+    public static final byte MSG_REJECT = 4;         // 拒绝消息
+    public static final byte MSG_MAP = 5;            // 地图数据消息
+
+    public static final int SNAPSHOT_SHOW_END = 1;   // 快照标志：显示结束画面
+    public static final int SNAPSHOT_GAME_OVER = 2;  // 快照标志：所有英雄已死亡
+
+    private NetProtocol() {
+    }
+
+    /**
+     * 把一条消息（负载）加上长度前缀写入输出缓冲区
+     * @param out 输出缓冲区（写模式）
+     * @param payload 负载（读模式，position到limit之间为内容）
+     */
+    public static void writeFrame(ByteBuffer out, ByteBuffer payload) {
+        Varint.putVarInt(out, payload.remaining());
+        out.put(payload);
+    }
+
+    /**
+     * 计算一条消息加上长度前缀后的字节数
+     * @param payloadSize 负载字节数
+     * @return 总字节数
+     */
+    public static int frameSize(int payloadSize) {
+        return Varint.sizeOf(payloadSize) + payloadSize;
+    }
+
+    /**
+     * 从输入缓冲区读取一条完整消息
+     * 数据不完整时不移动position并返回null，等待后续数据
+     * @param in 输入缓冲区（读模式）
+     * @return 消息负载的视图，不完整时返回null
+     */
+    public static ByteBuffer readFrame(ByteBuffer in) {
+        int start = in.position();
+        int length;
+        try {
+            length = Varint.getVarInt(in);
+        } catch (BufferUnderflowException e) {
+            in.position(start);
+            return null;
+        }
+        if(length < 0 || length > MAX_FRAME) throw new IllegalStateException("消息长度非法: " + length);
+        if(in.remaining() < length) {
+            in.position(start);
+            return null;
+        }
+        ByteBuffer payload = in.slice();
+        payload.limit(length);
+        in.position(in.position() + length);
+        return payload;
+    }
+
+    /**
+     * 写入UTF-8字符串（长度前缀）
+     * @param buf 目标缓冲区
+     * @param s 字符串
+     */
+    public static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        Varint.putVarInt(buf, bytes.length);
+        buf.put(bytes);
+    }
+
+    /**
+     * 读取UTF-8字符串（长度前缀）
+     * @param buf 源缓冲区
+     * @return 字符串
+     */
+    public static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[Varint.getVarInt(buf)];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
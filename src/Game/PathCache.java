@@ -0,0 +1,376 @@
+package Game;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 路径缓存（同一目标的敌人共享路径）
+ *
+ * 大多数敌人追踪同一个英雄，从相近的位置出发的搜索结果几乎相同。路径缓存按（目标网格、对象半径、目标半径）
+ * 保存最近搜索得到的完整路径（到达目标的逐格路径，每个目标最多PATHS_PER_GOAL条，敌人从不同方向过来），敌人寻路前先查询：
+ * - 目标一直在移动，目标网格附近GOAL_RANGE格内的缓存路径都可以使用，截到第一个到达当前目标的网格为止
+ * - 从路径的终点往回找，第一个离敌人不超过SPLICE_RANGE格、能从敌人所在网格直接走到（先斜走再直走）的网格，
+ *   敌人走到这个网格后接上缓存路径的剩余部分，不再搜索
+ * - 接上的剩余部分逐格重新检查：地图障碍和静态对象在整段路径上都阻挡，移动对象只在敌人附近SENSE格内阻挡
+ *   （与IncrementalPlanner相同，远处的移动对象等走到时早已离开），被阻挡的部分不能使用
+ * - 路径保存MAX_AGE帧后过期，最多保存CAPACITY条，超过时丢弃最早存入的
+ *
+ * 读阶段并行查询，只读不写；没有命中的敌人搜索得到完整路径后记为候选，读阶段结束后由World按敌人的顺序串行存入，
+ * 缓存的内容与线程的执行顺序无关；缓存随世界一起存档，读档后查询结果与原世界相同
+ */
+public class PathCache {
+    public static final int CAPACITY = 1024;                      // 最多保存的路径数
+    public static final int PATHS_PER_GOAL = 8;                   // 每个目标最多保存的路径数
+    public static final int MAX_AGE = 30;                         // 路径保存的帧数（与敌人重新寻路的周期相同）
+    public static final int SPLICE_RANGE = 6;                     // 敌人离缓存路径不超过这么多格时接入
+    public static final int GOAL_RANGE = 2;                       // 目标网格附近这么多格内的缓存路径都可以使用
+    public static final int SENSE = IncrementalPlanner.SENSE;     // 只考虑离敌人这么多格以内的移动对象
+
+    /**
+     * 缓存的路径
+     */
+    public static class Entry {
+        final long key;        // 目标网格、对象半径和目标半径
+        final long tick;       // 存入时的帧
+        final int[] xs, ys;    // 逐格路径的网格坐标（第一个是搜索的起点，最后一个在目标范围内）
+        final long hash;       // 以上内容的哈希（见getStateHash）
+
+        Entry(long key, long tick, int[] xs, int[] ys) {
+            this.key = key;
+            this.tick = tick;
+            this.xs = xs;
+            this.ys = ys;
+            long h = StateHash.mix(StateHash.mix(key, tick), xs.length);
+            for(int i = 0; i < xs.length; i++)
+                h = StateHash.mix(StateHash.mix(h, xs[i]), ys[i]);
+            this.hash = StateHash.finish(h);
+        }
+    }
+
+    private final WorldGrids worldGrids;
+    private final LinkedHashSet<Entry> entries = new LinkedHashSet<>();     // 所有路径（按存入顺序排列）
+    private final Map<Long, List<Entry>> byGoal = new HashMap<>();          // 每个键的路径（按存入顺序排列）
+    private final AtomicLong lookups = new AtomicLong();  // 查询次数
+    private final AtomicLong hits = new AtomicLong();     // 命中次数
+    private long stateHash;                               // 所有路径的哈希之和（存入和丢弃时增减）
+
+    /**
+     * 构造方法
+     * @param worldGrids 世界网格系统
+     */
+    public PathCache(WorldGrids worldGrids) {
+        this.worldGrids = worldGrids;
+    }
+
+    /**
+     * 查询缓存并接入缓存路径
+     * 目标网格附近GOAL_RANGE格内的缓存路径都可以使用（目标一直在移动），由近到远查找，
+     * 缓存路径截到第一个到达当前目标的网格为止，没有到达当前目标的路径不能使用
+     * 只读取缓存和网格状态，可以在并行读阶段调用
+     * @param agent 寻路对象
+     * @param goal 目标网格
+     * @param goalRadius 目标半径
+     * @return 从对象所在网格出发的逐格路径（与Pathfinder的路径格式相同），没有可用的缓存路径时返回null
+     */
+    public List<Grid> lookup(GameObject agent, Grid goal, int goalRadius) {
+        lookups.incrementAndGet();
+        if(entries.isEmpty()) return null;
+        int sx = agent.getX() / Grid.LENGTH, sy = agent.getY() / Grid.LENGTH;
+        int gx = goal.getGridX(), gy = goal.getGridY();
+        long reach = agent.getRadius() + goalRadius + 10;  // 与Pathfinder的到达判断相同
+        Footprint foot = null;
+        for(int r = 0; r <= GOAL_RANGE; r++) {
+            for(int y = gy - r; y <= gy + r; y++) {
+                for(int x = gx - r; x <= gx + r; x++) {
+                    if(Math.max(Math.abs(x - gx), Math.abs(y - gy)) != r) continue;  // 只查找这一圈
+                    if(x < 0 || y < 0 || x >= worldGrids.getCols() || y >= worldGrids.getRows()) continue;
+                    List<Entry> list = byGoal.get(key(x, y, agent.getRadius(), goalRadius));
+                    if(list == null) continue;
+                    for(int k = list.size() - 1; k >= 0; k--) {  // 新的路径优先
+                        Entry entry = list.get(k);
+                        if(!near(entry, sx, sy)) continue;
+                        if(foot == null) foot = new Footprint(agent, sx, sy);
+                        List<Grid> path = splice(entry, foot, goal, reach);
+                        if(path != null) {
+                            hits.incrementAndGet();
+                            return path;
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 路径上是否有离(sx, sy)不超过SPLICE_RANGE格的网格（接入前的快速筛选）
+     */
+    private static boolean near(Entry entry, int sx, int sy) {
+        for(int i = 0; i < entry.xs.length; i++)
+            if(Math.max(Math.abs(entry.xs[i] - sx), Math.abs(entry.ys[i] - sy)) <= SPLICE_RANGE) return true;
+        return false;
+    }
+
+    /**
+     * 把对象接入一条缓存路径
+     * 从终点往回找第一个离对象不超过SPLICE_RANGE格、能直接走到的网格，被阻挡的网格之前的部分都不能使用
+     * @return 逐格路径，不能接入时返回null
+     */
+    private List<Grid> splice(Entry entry, Footprint foot, Grid goal, long reach) {
+        int end = -1;
+        for(int i = 0; i < entry.xs.length && end < 0; i++) {
+            long dx = (long) (entry.xs[i] - goal.getGridX()) * Grid.LENGTH, dy = (long) (entry.ys[i] - goal.getGridY()) * Grid.LENGTH;
+            if(dx * dx + dy * dy < reach * reach) end = i;
+        }
+        if(end < 0) return null;
+        int first = end + 1;
+        while(first > 0 && foot.fits(entry.xs[first - 1], entry.ys[first - 1])) first--;
+        for(int j = end; j >= first; j--) {
+            int tx = entry.xs[j], ty = entry.ys[j];
+            if(Math.max(Math.abs(tx - foot.sx), Math.abs(ty - foot.sy)) > SPLICE_RANGE) continue;
+            List<Grid> path = walk(foot, tx, ty);
+            if(path == null) continue;
+            for(int i = j + 1; i <= end; i++)
+                path.add(worldGrids.get(entry.xs[i], entry.ys[i]));
+            return path;
+        }
+        return null;
+    }
+
+    /**
+     * 生成存入缓存的候选（只有到达目标的路径才能共享）
+     * 复制路径的网格坐标，不受敌人之后修改路径的影响
+     * @param agent 寻路对象
+     * @param goal 目标网格
+     * @param goalRadius 目标半径
+     * @param path 搜索得到的逐格路径
+     * @param tick 当前帧
+     * @return 候选，路径没有到达目标时返回null
+     */
+    public Entry candidate(GameObject agent, Grid goal, int goalRadius, List<Grid> path, long tick) {
+        if(path == null || path.isEmpty()) return null;
+        Grid last = path.get(path.size() - 1);
+        long dx = last.getX() - goal.getX(), dy = last.getY() - goal.getY();
+        long reach = agent.getRadius() + goalRadius + 10;  // 与Pathfinder的到达判断相同
+        if(dx * dx + dy * dy >= reach * reach) return null;  // 超过搜索深度得到的部分路径
+        int[] xs = new int[path.size()], ys = new int[path.size()];
+        for(int i = 0; i < path.size(); i++) {
+            xs[i] = path.get(i).getGridX();
+            ys[i] = path.get(i).getGridY();
+        }
+        return new Entry(key(goal.getGridX(), goal.getGridY(), agent.getRadius(), goalRadius), tick, xs, ys);
+    }
+
+    /**
+     * 读阶段结束后串行调用：丢弃过期的路径，按敌人的顺序存入本帧的候选
+     * 同一个键的路径超过PATHS_PER_GOAL条、或者总数超过CAPACITY时，丢弃最早存入的
+     * @param enemies 本帧参与决策的敌人（与读阶段的顺序相同）
+     * @param tick 当前帧
+     */
+    public void publish(List<Enemy> enemies, long tick) {
+        while(!entries.isEmpty()) {
+            Entry oldest = entries.iterator().next();
+            if(oldest.tick > tick - MAX_AGE) break;  // 按存入顺序排列，后面的都没有过期
+            remove(oldest);
+        }
+        for(int i = 0; i < enemies.size(); i++) {
+            Entry entry = enemies.get(i).takeCacheCandidate();
+            if(entry != null) add(entry);
+        }
+    }
+
+    /**
+     * 存入一条路径（超过数量限制时丢弃最早存入的）
+     */
+    private void add(Entry entry) {
+        List<Entry> list = byGoal.computeIfAbsent(entry.key, k -> new ArrayList<>());
+        list.add(entry);
+        entries.add(entry);
+        stateHash += entry.hash;
+        if(list.size() > PATHS_PER_GOAL) remove(list.get(0));
+        if(entries.size() > CAPACITY) remove(entries.iterator().next());
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry);
+        stateHash -= entry.hash;
+        List<Entry> list = byGoal.get(entry.key);
+        list.remove(entry);
+        if(list.isEmpty()) byGoal.remove(entry.key);
+    }
+
+    /**
+     * 从对象所在网格先斜走再直走到(tx, ty)，经过的网格都能放下对象时返回逐格路径（包括两端）
+     */
+    private List<Grid> walk(Footprint foot, int tx, int ty) {
+        List<Grid> path = new ArrayList<>();
+        int x = foot.sx, y = foot.sy;
+        int dx = Integer.signum(tx - x), dy = Integer.signum(ty - y);
+        path.add(worldGrids.get(x, y));
+        while(x != tx || y != ty) {
+            if(x != tx) x += dx;
+            if(y != ty) y += dy;
+            if(!foot.fits(x, y)) return null;
+            path.add(worldGrids.get(x, y));
+        }
+        return path;
+    }
+
+    /**
+     * 缓存的键：目标网格编号、对象半径和目标半径
+     */
+    private long key(int gx, int gy, int radius, int goalRadius) {
+        long cell = (long) gy * worldGrids.getCols() + gx;
+        return cell << 24 | (long) (radius & 0xFFF) << 12 | (goalRadius & 0xFFF);
+    }
+
+    /**
+     * 对象站在网格坐标点上时的占用范围（与IncrementalPlanner相同）
+     */
+    private class Footprint {
+        final GameObject agent;
+        final int lo, hi;      // 占用的网格相对中心网格的偏移范围
+        final int sx, sy;      // 对象所在网格
+
+        Footprint(GameObject agent, int sx, int sy) {
+            this.agent = agent;
+            this.sx = sx;
+            this.sy = sy;
+            int radius = agent.getRadius();
+            int t = radius * 2 / Grid.LENGTH + 1;
+            this.lo = Math.floorDiv(-radius, Grid.LENGTH) + 1;
+            this.hi = Math.floorDiv(-radius + (t - 1) * Grid.LENGTH, Grid.LENGTH) + 1;
+        }
+
+        /**
+         * 判断对象站在网格(x, y)上时能否放下：地图障碍和静态对象总是阻挡，移动对象只在SENSE格以内阻挡
+         */
+        boolean fits(int x, int y) {
+            if(x + lo < 0 || y + lo < 0 || x + hi >= worldGrids.getCols() || y + hi >= worldGrids.getRows()) return false;
+            boolean near = Math.max(Math.abs(x - sx), Math.abs(y - sy)) <= SENSE;
+            for(int gy = y + lo; gy <= y + hi; gy++) {
+                for(int gx = x + lo; gx <= x + hi; gx++) {
+                    Grid grid = worldGrids.get(gx, gy);
+                    if(grid.isAccessible()) continue;
+                    GameObject obj = grid.getObject();
+                    if(obj == null || obj.getLifecycle() == LifecycleState.STATIC || (near && obj != agent)) return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 获取所有路径的哈希之和（StateHash每帧使用，不需要逐条遍历）
+     * 与存入顺序无关；顺序由每条路径的存入帧决定，存入帧已包含在路径的哈希中
+     * @return 哈希之和
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * 获取命中率
+     * @return 命中次数占查询次数的比例，没有查询时为0
+     */
+    public double getHitRate() {
+        long n = lookups.get();
+        return n == 0 ? 0 : (double) hits.get() / n;
+    }
+
+    /**
+     * 写入缓存的路径（按存入顺序，查询和命中次数是统计数据，不写入）
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        Varint.putVarInt(buf, entries.size());
+        for(Entry entry : entries) {
+            Varint.putVarLong(buf, entry.key);
+            Varint.putVarLong(buf, entry.tick);
+            Varint.putVarInt(buf, entry.xs.length);
+            for(int i = 0; i < entry.xs.length; i++) {
+                Varint.putVarInt(buf, entry.xs[i]);
+                Varint.putVarInt(buf, entry.ys[i]);
+            }
+        }
+    }
+
+    /**
+     * 读取缓存的路径（与writeState的顺序一致）
+     * @param buf 输入缓冲区
+     */
+    public void readState(ByteBuffer buf) {
+        entries.clear();
+        byGoal.clear();
+        stateHash = 0;
+        int count = Varint.getVarInt(buf);
+        for(int k = 0; k < count; k++) {
+            long key = Varint.getVarLong(buf);
+            long tick = Varint.getVarLong(buf);
+            int n = Varint.getVarInt(buf);
+            int[] xs = new int[n], ys = new int[n];
+            for(int i = 0; i < n; i++) {
+                xs[i] = Varint.getVarInt(buf);
+                ys[i] = Varint.getVarInt(buf);
+            }
+            add(new Entry(key, tick, xs, ys));
+        }
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[敌人数量] [世界宽度] [世界高度] [帧数] [种子]，默认800个、3000×2000、1500帧、种子1
+     * 同一局（尸潮规则，英雄由HeroBot控制、每帧回满生命值）分别关闭和开启路径缓存运行，
+     * 输出敌人决策阶段的每帧耗时、缓存的命中率和最后一帧的状态哈希
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 1500;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        System.out.printf("世界%d×%d，%d个敌人，%d帧，种子%d%n", width, height, count, ticks, seed);
+        for(int round = 0; round < 2; round++) {
+            int frames = round == 0 ? ticks / 5 : ticks;  // 第一轮预热
+            for(boolean cached : new boolean[]{false, true}) {
+                World world = new World(width, height, 1, seed, WaveRules.horde(count, 200));
+                world.setStateHash(new StateHash());
+                if(cached) world.enablePathCache();
+                TickProfile profile = new TickProfile();
+                world.setProfile(profile);
+                HeroBot bot = new HeroBot(0);
+                for(int i = 0; i < frames; i++) {
+                    world.getHeroes().get(0).setHP(Hero.MAX_HP);
+                    bot.apply(world);
+                    world.tick();
+                }
+                if(round == 0) continue;
+                PathCache cache = world.getPathCache();
+                System.out.printf("%s：敌人决策每帧%.2fms，整帧%.2fms，%s敌人%d个，状态哈希%016x%n", cached ? "路径缓存" : "不缓存",
+                        profile.getNanos(TickProfile.Phase.PLAN) / 1e6 / frames, profile.getTotalNanos() / 1e6 / frames,
+                        cache == null ? "" : String.format("查询%d次，命中%.1f%%，缓存%d条路径，", cache.getLookups(),
+                                cache.getHitRate() * 100, cache.size()),
+                        world.getCurrentEnemyNum(), world.getStateHash().getTickHash());
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 路径平滑（拉绳法）
+ *
+ * 寻路得到的路径是逐格的，敌人每一两帧就到达一个路径点，A*在代价相同的走法之间随意选择，
+ * 斜线路线常常是斜走、直走交替的锯齿。路径平滑从路径起点出发，沿路径向后找最远的、能从起点直接走到的网格，
+ * 把它作为下一个路径点，再从这个路径点继续，得到只剩几个拐点的路径（第一个仍是起点，最后一个仍是终点）
+ *
+ * 角色只能沿八个方向移动，敌人朝远处的路径点走时（Enemy.getNextDir）先斜走到与路径点同一行或同一列，再直走过去，
+ * 任意角度的直线在八个方向下只能靠频繁换向来近似；所以"视线"检查的就是这条实际会走的折线，
+ * 每段路程最多换一次方向。检查在占用网格上逐格进行（斜走一步时两侧的网格也检查），
+ * 对象中心在经过的网格内任意位置时占用的网格都必须可通行（或者被对象自己占用），比寻路的判断更保守；
+ * 相邻的路径点之间不做检查（寻路时已经检查过）
+ */
+public class PathSmoother {
+    private final WorldGrids worldGrids;
+    private final GameObject object;   // 寻路对象
+    private final int footLo, footHi;  // 对象中心在一个网格内任意位置时占用的网格相对这个网格的偏移范围
+    private int checked;               // 视线检查访问过的网格数
+
+    /**
+     * 构造方法
+     * @param worldGrids 世界网格系统
+     * @param object 寻路对象
+     */
+    public PathSmoother(WorldGrids worldGrids, GameObject object) {
+        this.worldGrids = worldGrids;
+        this.object = object;
+        int radius = object.getRadius();
+        int t = radius * 2 / Grid.LENGTH + 1;
+        // 与WorldGrids.markObjects相同：中心在网格左边缘时占用范围最靠左，在右边缘时最靠右
+        this.footLo = Math.floorDiv(-radius, Grid.LENGTH) + 1;
+        this.footHi = Math.floorDiv(Grid.LENGTH - 1 - radius + (t - 1) * Grid.LENGTH, Grid.LENGTH) + 1;
+    }
+
+    /**
+     * 平滑路径
+     * 只读取网格状态，可以在并行读阶段调用
+     * @param path 逐格的路径（第一个是起点）
+     * @return 拐点组成的路径（第一个是起点，最后一个是终点），path为null时返回null
+     */
+    public List<Grid> smooth(List<Grid> path) {
+        if(path == null || path.size() <= 2) return path;
+        List<Grid> result = new ArrayList<>();
+        int anchor = 0;
+        result.add(path.get(0));
+        for(int i = 2; i < path.size(); i++) {
+            if(!lineOfSight(path.get(anchor), path.get(i))) {
+                anchor = i - 1;
+                result.add(path.get(anchor));
+            }
+        }
+        result.add(path.get(path.size() - 1));
+        return result;
+    }
+
+    /**
+     * 判断对象能否从一个网格直接走到另一个网格（先斜走到同一行或同一列，再直走）
+     * @param from 起点网格
+     * @param to 终点网格
+     * @return 经过的每个网格上对象都能放下时返回true
+     */
+    public boolean lineOfSight(Grid from, Grid to) {
+        int x = from.getGridX(), y = from.getGridY();
+        int tx = to.getGridX(), ty = to.getGridY();
+        int sx = Integer.signum(tx - x), sy = Integer.signum(ty - y);
+        if(!fits(x, y)) return false;
+        while(x != tx && y != ty) {
+            // 中心在网格内的位置不同，斜走时可能先越过竖线或横线，两侧的网格都会经过
+            if(!fits(x + sx, y) || !fits(x, y + sy) || !fits(x + sx, y + sy)) return false;
+            x += sx;
+            y += sy;
+        }
+        while(x != tx) {
+            x += sx;
+            if(!fits(x, y)) return false;
+        }
+        while(y != ty) {
+            y += sy;
+            if(!fits(x, y)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 判断对象中心在网格(x, y)内任意位置时，占用的网格是否都可通行（或者被对象自己占用）
+     */
+    private boolean fits(int x, int y) {
+        checked++;
+        if(x + footLo < 0 || y + footLo < 0 || x + footHi >= worldGrids.getCols() || y + footHi >= worldGrids.getRows()) return false;
+        for(int gy = y + footLo; gy <= y + footHi; gy++) {
+            for(int gx = x + footLo; gx <= x + footHi; gx++) {
+                Grid grid = worldGrids.get(gx, gy);
+                if(!grid.isAccessible() && grid.getObject() != object) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取视线检查访问过的网格数
+     * @return 网格数
+     */
+    public int getChecked() {
+        return checked;
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[敌人数量] [世界宽度] [世界高度] [障碍百分比] [帧数] [种子]，默认300个、2000×1500、10%、1500帧、种子1
+     * 1. 在随机障碍地图上，用Monster的半径在随机起点和终点之间寻路，输出平滑前后的路径点数和平滑的耗时
+     * 2. 同一局（尸潮规则，英雄由HeroBot控制、每帧回满生命值）分别关闭和开启路径平滑运行，
+     *    输出每个敌人每秒的换向次数、碰撞后重新寻路的次数和每帧耗时
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+        int percent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int ticks = args.length > 4 ? Integer.parseInt(args[4]) : 1500;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+        TileMap map = TileMap.generate(width / Grid.LENGTH, height / Grid.LENGTH, Grid.LENGTH, percent, seed);
+        System.out.printf("地图%d×%d，障碍%d%%，%d个敌人，%d帧，种子%d%n", width, height, percent, count, ticks, seed);
+
+        World world = new World(map, 1, seed, WaveRules.DEFAULT);
+        WorldGrids grids = world.getWorldGrids();
+        Random random = new Random(seed);
+        List<int[]> pairs = new ArrayList<>();
+        while(pairs.size() < 500) {
+            int sx = 100 + random.nextInt(width - 200), sy = 100 + random.nextInt(height - 200);
+            int gx = sx - 200 + random.nextInt(400), gy = sy - 200 + random.nextInt(400);
+            if(grids.isFree(sx, sy, 14) && grids.isFree(gx, gy, 14)) pairs.add(new int[]{sx, sy, gx, gy});
+        }
+        long cells = 0, waypoints = 0, checked = 0, nanos = 0;
+        for(int[] p : pairs) {
+            Monster monster = new Monster(p[0], p[1], world);
+            List<Grid> path = new Pathfinder(grids, monster).shortestPath(grids.getGrid(p[2], p[3]), 14);
+            if(path == null) continue;
+            PathSmoother smoother = new PathSmoother(grids, monster);
+            long start = System.nanoTime();
+            List<Grid> smoothed = smoother.smooth(path);
+            nanos += System.nanoTime() - start;
+            cells += path.size();
+            waypoints += smoothed.size();
+            checked += smoother.getChecked();
+        }
+        System.out.printf("寻路%d次：逐格路径平均%.1f个网格，平滑后%.1f个路径点，每次检查%.1f个网格，%.1fus%n", pairs.size(),
+                (double) cells / pairs.size(), (double) waypoints / pairs.size(), (double) checked / pairs.size(),
+                nanos / 1e3 / pairs.size());
+
+        for(int round = 0; round < 2; round++) {
+            int frames = round == 0 ? ticks / 5 : ticks;  // 第一轮预热
+            for(boolean smoothing : new boolean[]{false, true}) {
+                world = new World(map, 1, seed, WaveRules.horde(count, 200));
+                world.setPathSmoothing(smoothing);
+                world.setStateHash(new StateHash());
+                HeroBot bot = new HeroBot(0);
+                Map<GameObject, Direction> dirs = new HashMap<>();
+                long turns = 0, replans = 0, enemyTicks = 0;
+                long start = System.nanoTime();
+                for(int i = 0; i < frames; i++) {
+                    world.getHeroes().get(0).setHP(Hero.MAX_HP);
+                    bot.apply(world);
+                    world.tick();
+                    for(Iterator<GameObject> it = world.getObjectsIterator(); it.hasNext(); ) {
+                        GameObject obj = it.next();
+                        if(!(obj instanceof Enemy)) continue;
+                        Direction last = dirs.put(obj, obj.getDir());
+                        if(last != null && last != obj.getDir() && last != Direction.STOP && obj.getDir() != Direction.STOP) turns++;  // 只统计移动中的换向
+                        if(((Enemy) obj).isReplan()) replans++;
+                        enemyTicks++;
+                    }
+                }
+                if(round == 0) continue;
+                double ms = (System.nanoTime() - start) / 1e6 / frames;
+                double seconds = Math.max(1, enemyTicks) / 30.0;
+                System.out.printf("%s：每个敌人每秒换向%.2f次，碰撞后重新寻路%.3f次，每帧%.2fms，敌人%d个，状态哈希%016x%n",
+                        smoothing ? "路径平滑" : "逐格路径", turns / seconds, replans / seconds, ms,
+                        world.getCurrentEnemyNum(), world.getStateHash().getTickHash());
+            }
+        }
+    }
+}
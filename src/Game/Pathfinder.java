@@ -2,15 +2,37 @@ package Game;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
 
 /**
  * 寻路器类
  * 实现A*寻路算法，为敌人提供智能路径规划
  * 考虑障碍物和其他对象，计算最优路径
+ *
+ * 搜索模式由World.setPathMode按世界选择，ASTAR和JPS的搜索深度限制和到达判断相同：
+ * - ASTAR：逐格扩展八个方向
+ * - JPS：跳点搜索，直线和斜线方向一次跳过没有强迫邻居的网格，只有跳点进入开放列表，
+ *   空旷区域扩展的节点数少几个数量级；对象占用多个网格，跳跃和剪枝都按对象整个占用范围能否放下判断
+ * - INCREMENTAL：敌人使用自己的IncrementalPlanner，在重新寻路之间保留搜索树；Pathfinder本身按ASTAR搜索
  */
 public class Pathfinder{
+    public static final int MAX_DEPTH = 25;  // 最大搜索深度（超过后把当前节点当作终点，返回部分路径）
+
+    /**
+     * 搜索模式
+     */
+    public enum Mode {
+        ASTAR,      // 逐格A*
+        JPS,        // 跳点搜索
+        INCREMENTAL // 增量重规划（D* Lite，见IncrementalPlanner）
+    }
+
     private List<PathNode> openNodes;      // 开放列表（待探索节点）
     private List<PathNode> closedNodes;    // 关闭列表（已探索节点）
     private List<PathNode> nodesToGoal;    // 到达目标的节点序列
@@ -20,6 +42,9 @@ public class Pathfinder{
     private GameObject object;             // 寻路对象
     private List<Grid> gridsOfObject;      // 对象占用的网格列表
     private int centre;                    // 中心网格索引
+    private Mode mode = Mode.ASTAR;        // 搜索模式
+    private int[] footprintX, footprintY;  // 对象占用的网格相对中心网格的偏移（跳点搜索用）
+    private int scanned;                   // 跳点搜索中检查过的网格数
 
     /**
      * 构造方法
@@ -87,6 +112,22 @@ public class Pathfinder{
         return worldGrids;
     }
 
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * 获取上一次跳点搜索中检查过的网格数（包括跳跃途中经过但没有进入开放列表的网格）
+     * @return 网格数
+     */
+    public int getScanned() {
+        return scanned;
+    }
+
     /**
      * 判断网格是否被对象占用
      * @param currentGrid 当前网格
@@ -189,13 +230,14 @@ public class Pathfinder{
     /**
      * A*寻路算法主方法
      * 计算从当前位置到目标位置的最短路径
+     * 只读取网格状态，调用前需保证网格已经更新（World每帧更新一次）
+     * 因此多个寻路器可以在并行读阶段共享同一个网格系统
      * @param goalPos 目标位置
+     * @param goalRadius 目标半径（距离小于双方半径和+10即视为到达）
      * @return 路径网格列表
      */
-    public List<Grid> shortestPath(Grid goalPos){
-    	if(((Enemy)object).getTarget() == null) return null;  // 没有目标
-        worldGrids.updateGrids();  // 更新网格状态
-
+    public List<Grid> shortestPath(Grid goalPos, int goalRadius){
+        if(mode == Mode.JPS) return jumpPointSearch(goalPos, goalRadius);
         Grid startPos = (Grid) getCentreGrid().clone();  // 起点
 
         openNodes = new ArrayList<>();
@@ -216,8 +258,7 @@ public class Pathfinder{
 
             // 检查是否到达目标
             int distance = getDistance(current.getX(), current.getY(), goalPos.getX(), goalPos.getY());
-            int r = ((Enemy)object).getTarget().getRadius();
-            if (distance < object.getRadius() + r + 10 || currentNode.getDepth() > 25) {
+            if (distance < object.getRadius() + goalRadius + 10 || currentNode.getDepth() > MAX_DEPTH) {
                 hasGoal = true;  // 到达目标或超过最大深度
                 break;
             }
@@ -298,4 +339,200 @@ public class Pathfinder{
             return null;
         }
     }
+
+    /**
+     * 跳点搜索
+     * 与shortestPath的A*相同：直线代价10、斜线代价14，斜线移动只要求目标位置能放下（不检查两侧），
+     * 距离目标小于双方半径和+10或深度超过MAX_DEPTH时结束；启发式使用八方向距离
+     * 返回的路径逐格展开（第一个是起点），与A*的路径格式相同
+     * @param goalPos 目标位置
+     * @param goalRadius 目标半径
+     * @return 路径网格列表，没有路径时返回null
+     */
+    private List<Grid> jumpPointSearch(Grid goalPos, int goalRadius) {
+        if(footprintX == null) {
+            footprintX = new int[gridsOfObject.size()];
+            footprintY = new int[gridsOfObject.size()];
+            for(int i = 0; i < gridsOfObject.size(); i++) {
+                footprintX[i] = gridsOfObject.get(i).getGridX() - getCentreGrid().getGridX();
+                footprintY[i] = gridsOfObject.get(i).getGridY() - getCentreGrid().getGridY();
+            }
+        }
+        int w = worldGrids.getCols();
+        int reach = object.getRadius() + goalRadius + 10;
+        Grid startPos = getCentreGrid();
+        openNodes = new ArrayList<>();
+        closedNodes = new ArrayList<>();
+        scanned = 0;
+
+        Map<Integer, PathNode> best = new HashMap<>();
+        HashSet<Integer> closed = new HashSet<>();
+        PriorityQueue<PathNode> open = new PriorityQueue<>((a, b) -> a.getF() - b.getF());
+        PathNode start = new PathNode(startPos, null, 0, octile(startPos.getGridX(), startPos.getGridY(), goalPos), 0);
+        open.add(start);
+        best.put(startPos.getGridY() * w + startPos.getGridX(), start);
+        PathNode end = null;
+        while(!open.isEmpty()) {
+            PathNode node = open.poll();
+            Grid current = node.getStateData();
+            int x = current.getGridX(), y = current.getGridY();
+            if(!closed.add(y * w + x)) continue;
+            closedNodes.add(node);
+            if(getDistance(current.getX(), current.getY(), goalPos.getX(), goalPos.getY()) < reach || node.getDepth() > MAX_DEPTH) {
+                end = node;
+                break;
+            }
+            // 剪枝：起点扩展八个方向，其余节点只沿来的方向扩展自然邻居和强迫邻居
+            int px = 0, py = 0;
+            if(node.getParentNode() != null) {
+                px = Integer.signum(x - node.getParentNode().getStateData().getGridX());
+                py = Integer.signum(y - node.getParentNode().getStateData().getGridY());
+            }
+            for(int dy = -1; dy <= 1; dy++) {
+                for(int dx = -1; dx <= 1; dx++) {
+                    if((dx == 0 && dy == 0) || !isPruned(x, y, px, py, dx, dy)) continue;
+                    int jump = jump(x, y, dx, dy, node.getDepth(), goalPos, reach);
+                    if(jump < 0 || closed.contains(jump)) continue;
+                    int jx = jump % w, jy = jump / w;
+                    int steps = Math.max(Math.abs(jx - x), Math.abs(jy - y));
+                    int g = node.getG() + steps * (dx != 0 && dy != 0 ? 14 : 10);
+                    PathNode old = best.get(jump);
+                    if(old != null && old.getG() <= g) continue;
+                    Grid grid = worldGrids.get(jx, jy);
+                    PathNode next = new PathNode(grid, node, g, octile(jx, jy, goalPos), node.getDepth() + steps);
+                    best.put(jump, next);
+                    open.add(next);
+                }
+            }
+        }
+        if(end == null) return null;
+
+        // 把跳点之间的直线或斜线逐格展开
+        List<PathNode> jumps = new ArrayList<>();
+        for(PathNode node = end; node != null; node = node.getParentNode())
+            jumps.add(node);
+        Collections.reverse(jumps);
+        pathToGoal.add(startPos);
+        for(int i = 1; i < jumps.size(); i++) {
+            Grid from = jumps.get(i - 1).getStateData(), to = jumps.get(i).getStateData();
+            int dx = Integer.signum(to.getGridX() - from.getGridX()), dy = Integer.signum(to.getGridY() - from.getGridY());
+            for(int x = from.getGridX(), y = from.getGridY(); x != to.getGridX() || y != to.getGridY(); ) {
+                x += dx;
+                y += dy;
+                pathToGoal.add(worldGrids.get(x, y));
+            }
+        }
+        return pathToGoal;
+    }
+
+    /**
+     * 判断方向(dx, dy)是否需要扩展（来的方向为(px, py)，起点为(0, 0)）
+     * 直线：沿原方向，以及侧面被挡住时斜向绕过的方向（强迫邻居）
+     * 斜线：沿原方向和它的两个分量，以及背后一侧被挡住时的方向（强迫邻居）
+     */
+    private boolean isPruned(int x, int y, int px, int py, int dx, int dy) {
+        if(px == 0 && py == 0) return true;
+        if(px != 0 && py != 0) {
+            if((dx == px && dy == py) || (dx == px && dy == 0) || (dx == 0 && dy == py)) return true;
+            if(dx == -px && dy == py) return !fits(x - px, y);
+            if(dx == px && dy == -py) return !fits(x, y - py);
+            return false;
+        }
+        if(px != 0) {
+            if(dx != px) return false;
+            return dy == 0 || !fits(x, y + dy);
+        }
+        if(dy != py) return false;
+        return dx == 0 || !fits(x + dx, y);
+    }
+
+    /**
+     * 从(x, y)沿(dx, dy)跳跃，直到遇到障碍、到达目标、超过深度限制或者找到跳点
+     * @return 跳点（gy*w+gx），遇到障碍时返回-1
+     */
+    private int jump(int x, int y, int dx, int dy, int depth, Grid goalPos, int reach) {
+        int w = worldGrids.getCols();
+        while(true) {
+            x += dx;
+            y += dy;
+            depth++;
+            scanned++;
+            if(!fits(x, y)) return -1;
+            if(getDistance(x * Grid.LENGTH, y * Grid.LENGTH, goalPos.getX(), goalPos.getY()) < reach || depth > MAX_DEPTH)
+                return y * w + x;
+            if(dx != 0 && dy != 0) {
+                if((!fits(x - dx, y) && fits(x - dx, y + dy)) || (!fits(x, y - dy) && fits(x + dx, y - dy)))
+                    return y * w + x;
+                if(jump(x, y, dx, 0, depth, goalPos, reach) >= 0 || jump(x, y, 0, dy, depth, goalPos, reach) >= 0)
+                    return y * w + x;
+            } else if(dx != 0) {
+                if((!fits(x, y + 1) && fits(x + dx, y + 1)) || (!fits(x, y - 1) && fits(x + dx, y - 1)))
+                    return y * w + x;
+            } else {
+                if((!fits(x + 1, y) && fits(x + 1, y + dy)) || (!fits(x - 1, y) && fits(x - 1, y + dy)))
+                    return y * w + x;
+            }
+        }
+    }
+
+    /**
+     * 判断对象中心在网格(x, y)时，占用的网格是否都可通行（或者被对象自己占用）
+     */
+    private boolean fits(int x, int y) {
+        if(x < 0 || y < 0 || x >= worldGrids.getCols() || y >= worldGrids.getRows()) return false;
+        for(int i = 0; i < footprintX.length; i++) {
+            Grid grid = worldGrids.get(x + footprintX[i], y + footprintY[i]);
+            if(!grid.isAccessible() && grid.getObject() != object) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 八方向距离（直线10、斜线14）
+     */
+    private static int octile(int x, int y, Grid goalPos) {
+        int dx = Math.abs(goalPos.getGridX() - x), dy = Math.abs(goalPos.getGridY() - y);
+        return 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+    }
+
+    /**
+     * 对比测试入口
+     * 参数：[世界宽度] [世界高度] [查询次数] [种子]，默认2000×1500、500次、种子1
+     * 在空旷的竞技场上，用Monster的半径在随机起点和终点之间分别用两种模式寻路（都受深度限制），
+     * 输出每次查询扩展的节点数、跳点搜索检查过的网格数、耗时和路径长度
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        World world = new World(width, height, 1, seed, WaveRules.DEFAULT);
+        WorldGrids grids = world.getWorldGrids();
+        Random random = new Random(seed);
+        List<int[]> pairs = new ArrayList<>();
+        while(pairs.size() < queries) {
+            int sx = 100 + random.nextInt(width - 200), sy = 100 + random.nextInt(height - 200);
+            int gx = 100 + random.nextInt(width - 200), gy = 100 + random.nextInt(height - 200);
+            if(grids.isFree(sx, sy, 14) && grids.isFree(gx, gy, 14)) pairs.add(new int[]{sx, sy, gx, gy});
+        }
+        System.out.printf("竞技场%d×%d，%d次查询（深度限制%d）%n", width, height, queries, MAX_DEPTH);
+        for(int round = 0; round < 2; round++) {
+            for(Mode mode : new Mode[]{Mode.ASTAR, Mode.JPS}) {
+                long nodes = 0, scanned = 0, length = 0, nanos = System.nanoTime();
+                for(int[] p : pairs) {
+                    Pathfinder pathfinder = new Pathfinder(grids, new Monster(p[0], p[1], world));
+                    pathfinder.setMode(mode);
+                    List<Grid> path = pathfinder.shortestPath(grids.getGrid(p[2], p[3]), 14);
+                    nodes += pathfinder.getClosedNodes().size();
+                    scanned += mode == Mode.JPS ? pathfinder.getScanned() : 0;
+                    length += path == null ? 0 : path.size();
+                }
+                if(round == 0) continue;  // 第一轮预热
+                System.out.printf("%-5s：每次扩展%.1f个节点，检查%.1f个网格，%.1fus，路径平均%.1f格%n", mode,
+                        (double) nodes / queries, (double) scanned / queries, (System.nanoTime() - nanos) / 1e3 / queries,
+                        (double) length / queries);
+            }
+        }
+    }
 }
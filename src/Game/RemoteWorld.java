@@ -0,0 +1,183 @@
+package Game;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.List;
+
+/**
+ * 客户端的世界副本
+ * 只保存服务器快照中的对象状态，不运行任何游戏逻辑
+ * 网络线程应用快照，绘制线程读取，两者通过对象锁同步
+ */
+public class RemoteWorld {
+    private final Map<Integer, EntityState> entities;  // 对象状态（按编号）
+    private final List<EntityState> drawList;          // 绘制列表（复用）
+    private int heroId;                                // 本客户端控制的英雄编号
+    private int width = GameClient.WORLD_WIDTH;        // 世界宽度
+    private int height = GameClient.WORLD_HEIGHT;      // 世界高度
+    private int snapshotInterval = 1;                  // 每隔多少帧收到一次快照
+    private int tickMs = 30;                           // 服务器每帧毫秒数
+    private TileMap map;                               // 地图（欢迎消息之后收到，障碍物不在快照中）
+    private ByteBuffer mapData;                        // 正在接收的地图数据（收完后解析为map）
+    private long tick;                                 // 最新快照的帧号
+    private int flags;                                 // 最新快照的标志
+    private int maxEnemyNum;                           // 当前波次最大敌人数量
+    private int currentEnemyNum;                       // 当前敌人数量
+    private long receivedAt;                           // 收到最新快照的时间（纳秒）
+    private boolean rejected;                          // 是否被服务器拒绝
+    private Image endImg;                              // 游戏结束图片
+
+    /**
+     * 构造方法
+     */
+    public RemoteWorld() {
+        this.entities = new HashMap<>();
+        this.drawList = new ArrayList<>();
+        this.endImg = Toolkit.getDefaultToolkit().getImage(RemoteWorld.class.getClassLoader().getResource("images/gameover.png"));
+    }
+
+    /**
+     * 处理一条服务器消息
+     * @param payload 消息负载
+     */
+    public synchronized void handle(ByteBuffer payload) {
+        byte type = payload.get();
+        if(type == NetProtocol.MSG_WELCOME) {
+            heroId = Varint.getVarInt(payload);
+            width = Varint.getVarInt(payload);
+            height = Varint.getVarInt(payload);
+            snapshotInterval = Varint.getVarInt(payload);
+            tickMs = Varint.getVarInt(payload);
+            int mapSize = Varint.getVarInt(payload);
+            if(mapSize < 0 || mapSize > NetProtocol.MAX_MAP) throw new IllegalStateException("地图数据长度非法: " + mapSize);
+            map = null;
+            mapData = ByteBuffer.allocate(mapSize);
+        } else if(type == NetProtocol.MSG_MAP) {
+            if(mapData == null || payload.remaining() > mapData.remaining()) throw new IllegalStateException("多余的地图数据");
+            mapData.put(payload);
+            if(!mapData.hasRemaining()) {
+                mapData.flip();
+                map = TileMap.read(mapData);
+                mapData = null;
+            }
+        } else if(type == NetProtocol.MSG_SNAPSHOT) {
+            applySnapshot(payload);
+        } else if(type == NetProtocol.MSG_REJECT) {
+            rejected = true;
+        } else {
+            throw new IllegalStateException("未知消息类型: " + type);
+        }
+    }
+
+    /**
+     * 应用增量快照（格式见GameServer.sendSnapshot）
+     * @param payload 快照负载
+     */
+    private void applySnapshot(ByteBuffer payload) {
+        tick = Varint.getVarLong(payload);
+        flags = payload.get();
+        maxEnemyNum = Varint.getVarInt(payload);
+        currentEnemyNum = Varint.getVarInt(payload);
+
+        // 没有出现在增量中的对象保持原位，不再插值
+        for(EntityState state : entities.values()) {
+            state.prevX = state.x;
+            state.prevY = state.y;
+        }
+        int id;
+        while((id = Varint.getVarInt(payload)) != 0) {
+            EntityState state = entities.get(id);
+            if(state == null) {
+                state = new EntityState();
+                state.id = id;
+                entities.put(id, state);
+            }
+            state.read(payload);
+        }
+        while((id = Varint.getVarInt(payload)) != 0) {
+            entities.remove(id);
+        }
+        receivedAt = System.nanoTime();
+    }
+
+    /**
+     * 绘制世界
+     * 在上一份和最新快照之间按时间插值，快照频率低于绘制频率时移动依然平滑；
+     * 视口跟随自己控制的英雄，只绘制视口内的对象和障碍物
+     * @param g 图形上下文（屏幕坐标）
+     * @param camera 摄像机
+     */
+    public synchronized void draw(Graphics g, Camera camera) {
+        if((flags & NetProtocol.SNAPSHOT_SHOW_END) != 0) {
+            g.drawImage(endImg, 0, 0, camera.getViewWidth(), camera.getViewHeight(), null);
+            return;
+        }
+        double period = snapshotInterval * tickMs * 1e6;
+        double alpha = Math.min(1.0, (System.nanoTime() - receivedAt) / period);
+        EntityState self = entities.get(heroId);
+        if(self != null) camera.center(self.x, self.y, width, height);
+        g.translate(-camera.getLeft(), -camera.getTop());
+
+        // 尸体在最底层，其余按Y坐标排序（与World.drawWorld一致）
+        drawList.clear();
+        for(EntityState state : entities.values()) {
+            if(camera.isVisible(state.x, state.y)) drawList.add(state);
+        }
+        Collections.sort(drawList, new Comparator<EntityState>() {
+            @Override
+            public int compare(EntityState s1, EntityState s2) {
+                if(s1.corpse != s2.corpse) return s1.corpse ? -1 : 1;
+                if(s1.y != s2.y) return s1.y - s2.y;
+                return s1.x - s2.x;
+            }
+        });
+        if(map != null) map.setView(camera.getCullLeft(), camera.getCullTop(), camera.getCullRight(), camera.getCullBottom());
+        int next = 0;
+        for(EntityState state : drawList) {
+            if(map != null && !state.corpse) next = map.draw(g, next, state.y - 1);
+            state.draw(g, alpha);
+        }
+        if(map != null) map.draw(g, next, Integer.MAX_VALUE);
+
+        // 标记自己控制的英雄
+        if(self != null) {
+            Color c = g.getColor();
+            g.setColor(Color.BLUE);
+            g.drawOval(self.x - 20, self.y + 18, 40, 10);
+            g.setColor(c);
+        }
+        g.translate(camera.getLeft(), camera.getTop());
+
+        // 波次信息固定在屏幕上
+        g.drawString("波次敌人数: " + maxEnemyNum + "  当前敌人: " + currentEnemyNum, 20, 50);
+    }
+
+    public synchronized boolean hasMap() {
+        return map != null;
+    }
+
+    public synchronized int getHeroId() {
+        return heroId;
+    }
+
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public synchronized int getEntityNum() {
+        return entities.size();
+    }
+}
@@ -0,0 +1,270 @@
+package Game;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 回放播放器
+ *
+ * 读取ReplayWriter写入的回放文件（格式见ReplayWriter）：
+ * - 打开时只读取文件头和索引，数据块在用到时才映射到内存（MappedByteBuffer），文件再大也不需要整体读入
+ * - seek先找到不晚于目标帧的最后一个关键帧并解码，再按输入记录模拟到目标帧，开销不超过一个关键帧间隔
+ * - 连续播放跨过数据块时不重新解码关键帧，而是应用下一个数据块的前导输入继续模拟
+ * - 每条输入记录带有录制时的状态哈希，播放时逐帧比较，发现不一致时报告第一帧
+ */
+public class ReplayReader implements Closeable {
+    private final RandomAccessFile file;     // 回放文件
+    private final FileChannel channel;       // 文件通道
+    private final int interval;              // 关键帧间隔
+    private final int heroNum;               // 英雄数量
+    private final long[] chunkTicks;         // 每个数据块的关键帧所在帧
+    private final long[] chunkOffsets;       // 每个数据块的文件偏移
+    private World world;                     // 正在播放的世界
+    private MappedByteBuffer chunk;          // 当前数据块（定位在下一条输入记录）
+    private int chunkIndex = -1;             // 当前数据块下标
+    private boolean afterKeyframe;           // 刚解码关键帧（下一帧的输入已包含在关键帧中）
+    private long desyncTick = -1;            // 第一个与录制时不一致的帧（-1表示一致）
+
+    /**
+     * 构造方法
+     * 读取文件头和索引（没有索引时顺序扫描数据块）
+     * @param path 回放文件
+     * @throws IOException 读取失败或不是回放文件
+     */
+    public ReplayReader(File path) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = file.getChannel();
+        try {
+            long size = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 32));
+            if(header.getInt() != ReplayWriter.MAGIC) throw new IOException("不是ZombieCrisis回放文件: " + path);
+            int version = Varint.getVarInt(header);
+            if(version != ReplayWriter.VERSION) throw new IOException("不支持的回放版本: " + version);
+            this.interval = Varint.getVarInt(header);
+            this.heroNum = Varint.getVarInt(header);
+            long dataStart = header.position();
+
+            List<long[]> entries = readIndex(size);
+            if(entries == null) entries = scanChunks(dataStart, size);
+            if(entries.isEmpty()) throw new IOException("回放中没有完整的数据块: " + path);
+            this.chunkTicks = new long[entries.size()];
+            this.chunkOffsets = new long[entries.size()];
+            for(int i = 0; i < entries.size(); i++) {
+                chunkTicks[i] = entries.get(i)[0];
+                chunkOffsets[i] = entries.get(i)[1];
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("回放文件已损坏: " + path, e);
+        }
+    }
+
+    /**
+     * 读取文件末尾的索引
+     * @param size 文件大小
+     * @return 索引，没有文件尾（录制中断）时返回null
+     */
+    private List<long[]> readIndex(long size) throws IOException {
+        if(size < ReplayWriter.FOOTER_SIZE) return null;
+        ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - ReplayWriter.FOOTER_SIZE, ReplayWriter.FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        if(footer.getInt() != ReplayWriter.MAGIC || indexOffset < 0 || indexOffset > size - ReplayWriter.FOOTER_SIZE) return null;
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, size - ReplayWriter.FOOTER_SIZE - indexOffset);
+        int n = Varint.getVarInt(buf);
+        List<long[]> entries = new ArrayList<>(n);
+        for(int i = 0; i < n; i++)
+            entries.add(new long[]{Varint.getVarLong(buf), Varint.getVarLong(buf)});
+        return entries;
+    }
+
+    /**
+     * 按块长度顺序扫描数据块（录制中断、没有索引时使用）
+     * @param offset 第一个数据块的偏移
+     * @param size 文件大小
+     * @return 完整写入的数据块
+     */
+    private List<long[]> scanChunks(long offset, long size) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        while(offset + 4 <= size) {
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(16, size - offset));
+            int length = head.getInt();
+            if(length <= 0 || offset + 4 + length > size) break;
+            entries.add(new long[]{Varint.getVarLong(head), offset});
+            offset += 4 + length;
+        }
+        return entries;
+    }
+
+    /**
+     * 映射数据块
+     * @param index 数据块下标
+     * @return 数据块（定位在前导输入记录处）
+     */
+    private MappedByteBuffer mapChunk(int index) throws IOException {
+        ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffsets[index], 4);
+        int length = head.getInt();
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffsets[index] + 4, length);
+        Varint.getVarLong(buf);  // 关键帧所在帧（与索引相同）
+        chunkIndex = index;
+        return buf;
+    }
+
+    /**
+     * 跳到指定帧
+     * 解码不晚于目标帧的最后一个关键帧，再模拟到目标帧
+     * @param tick 目标帧（不早于第一个关键帧；超过回放末尾时停在最后一帧）
+     * @return 跳转后的世界
+     * @throws IOException 读取失败
+     */
+    public World seek(long tick) throws IOException {
+        int i = Arrays.binarySearch(chunkTicks, tick);
+        if(i < 0) i = -i - 2;
+        if(i < 0) throw new IllegalArgumentException("回放从第" + chunkTicks[0] + "帧开始: " + tick);
+
+        chunk = mapChunk(i);
+        skipRecord(chunk);  // 前导输入已包含在关键帧中
+        int length = Varint.getVarInt(chunk);
+        ByteBuffer keyframe = chunk.slice();
+        keyframe.limit(length);
+        world = WorldCodec.decode(keyframe);
+        chunk.position(chunk.position() + length);
+        world.setStateHash(new StateHash());
+        afterKeyframe = true;
+
+        while(world.getTick() < tick && step()) {
+        }
+        return world;
+    }
+
+    /**
+     * 播放一帧
+     * @return 是否还有下一帧（false表示已到回放末尾，世界没有推进）
+     * @throws IOException 读取失败
+     */
+    public boolean step() throws IOException {
+        if(world == null) throw new IllegalStateException("请先调用seek");
+        if(afterKeyframe) {
+            afterKeyframe = false;
+        } else {
+            if(!chunk.hasRemaining()) {
+                if(chunkIndex + 1 >= chunkTicks.length) return false;
+                chunk = mapChunk(chunkIndex + 1);
+                applyRecord(chunk);  // 前导输入
+                int length = Varint.getVarInt(chunk);
+                chunk.position(chunk.position() + length);  // 跳过关键帧
+            } else {
+                applyRecord(chunk);
+            }
+        }
+        world.tick();
+        return true;
+    }
+
+    /**
+     * 应用一条输入记录，并与录制时的状态哈希比较
+     * @param buf 数据块
+     */
+    private void applyRecord(ByteBuffer buf) {
+        int n = Varint.getVarInt(buf);
+        int[] events = new int[n];
+        for(int i = 0; i < n; i++)
+            events[i] = Varint.getVarInt(buf);
+        long recorded = buf.getLong();
+        StateHash hash = world.getStateHash();
+        if(recorded != 0 && desyncTick < 0 && hash.getTick() == world.getTick() && hash.getTickHash() != recorded) {
+            desyncTick = world.getTick();
+            System.err.println("回放在第" + desyncTick + "帧与录制时不一致");
+        }
+        for(int event : events) {
+            Hero hero = world.getHeroes().get(event >> 4);
+            int slot = (event >> 1) & 7;
+            if((event & 1) != 0) hero.press(slot);
+            else hero.release(slot);
+        }
+    }
+
+    private static void skipRecord(ByteBuffer buf) {
+        int n = Varint.getVarInt(buf);
+        for(int i = 0; i < n; i++)
+            Varint.getVarInt(buf);
+        buf.getLong();
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getHeroNum() {
+        return heroNum;
+    }
+
+    public int getChunkCount() {
+        return chunkTicks.length;
+    }
+
+    /**
+     * 获取最后一个关键帧所在帧
+     * @return 帧
+     */
+    public long getLastKeyframeTick() {
+        return chunkTicks[chunkTicks.length - 1];
+    }
+
+    /**
+     * 获取第一个与录制时不一致的帧
+     * @return 帧，-1表示一致
+     */
+    public long getDesyncTick() {
+        return desyncTick;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * 性能分析入口
+     * 参数：文件 [起始帧] [帧数]，默认从最后一个关键帧开始运行到回放末尾（最多600帧）
+     * 跳到起始帧后逐帧计时，输出跳转耗时和帧耗时分布
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        File path = new File(args.length > 0 ? args[0] : "replay.zcr");
+        try(ReplayReader reader = new ReplayReader(path)) {
+            long from = args.length > 1 ? Long.parseLong(args[1]) : reader.getLastKeyframeTick();
+            int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+
+            long t0 = System.nanoTime();
+            World world = reader.seek(from);
+            System.out.printf("%d个数据块，关键帧间隔%d；跳到第%d帧用时%.1fms（第%d波，敌人%d个）%n",
+                    reader.getChunkCount(), reader.getInterval(), world.getTick(), (System.nanoTime() - t0) / 1e6,
+                    world.getWave(), world.getCurrentEnemyNum());
+
+            long[] costs = new long[ticks];
+            int n = 0;
+            while(n < ticks) {
+                long start = System.nanoTime();
+                if(!reader.step()) break;
+                costs[n++] = System.nanoTime() - start;
+            }
+            if(n == 0) return;
+            Arrays.sort(costs, 0, n);
+            System.out.printf("运行%d帧到第%d帧：中位数%.3fms p99 %.3fms 最长%.3fms%s%n", n, world.getTick(),
+                    costs[n / 2] / 1e6, costs[Math.min(n - 1, n * 99 / 100)] / 1e6, costs[n - 1] / 1e6,
+                    reader.getDesyncTick() < 0 ? "，与录制时一致" : "，第" + reader.getDesyncTick() + "帧起不一致");
+        }
+    }
+}
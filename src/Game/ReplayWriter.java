@@ -0,0 +1,232 @@
+package Game;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 回放录制器
+ *
+ * 回放文件由若干数据块组成，每个数据块以一个完整的关键帧（WorldCodec编码的世界状态）开头，
+ * 后面是之后每一帧的输入增量（英雄按键的按下/释放事件），因此跳到任意一帧最多只需模拟一个关键帧间隔。
+ * 文件末尾是数据块索引，读取时可以只映射需要的数据块（见ReplayReader）。
+ *
+ * 格式（版本1）：
+ * - 文件头：魔数"ZCRP"、版本号、关键帧间隔、英雄数量
+ * - 数据块：块长度（4字节，不含自身）、关键帧所在帧、前导输入记录、关键帧长度和内容、之后每帧一条输入记录
+ * - 输入记录：事件数量、每个事件（英雄下标<<4 | 槽位<<1 | 是否按下）、记录时上一帧结束时的状态哈希（8字节）
+ * - 索引：数据块数量，每个数据块的关键帧所在帧和文件偏移
+ * - 文件尾：索引偏移（8字节）、魔数（4字节）
+ * 录制中断（没有写入索引）的文件仍然可以按块长度顺序扫描读取已完整写入的数据块
+ *
+ * 每帧开始时（World.tick的第一步）把上一帧之后发生的输入写成一条记录；
+ * 前导输入记录是关键帧之前刚发生的输入，已经包含在关键帧中，只在连续播放跨过数据块时使用
+ */
+public class ReplayWriter implements Closeable {
+    public static final int MAGIC = 0x5A435250;        // 魔数"ZCRP"
+    public static final int VERSION = 1;               // 格式版本
+    public static final int FOOTER_SIZE = 12;          // 文件尾长度
+    public static final int DEFAULT_INTERVAL = 300;    // 默认关键帧间隔（约9秒）
+
+    private final RandomAccessFile file;               // 回放文件
+    private final FileChannel channel;                 // 文件通道
+    private final World world;                         // 录制的世界
+    private final int interval;                        // 关键帧间隔
+    private final List<long[]> index;                  // 数据块索引（关键帧所在帧，文件偏移）
+    private final List<Integer> pending;               // 上一帧之后发生的输入事件
+    private ByteBuffer chunk;                          // 正在写的数据块
+    private long chunkTick = -1;                       // 正在写的数据块的关键帧所在帧
+    private long bytes;                                // 已写入的字节数
+    private boolean closed;                            // 是否已关闭
+
+    /**
+     * 构造方法
+     * 开始录制指定世界（世界没有状态哈希时自动开启）
+     * @param file 回放文件
+     * @param world 要录制的世界
+     * @param interval 关键帧间隔（帧数）
+     * @throws IOException 创建文件失败
+     */
+    public ReplayWriter(File file, World world, int interval) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.world = world;
+        this.interval = Math.max(1, interval);
+        this.index = new ArrayList<>();
+        this.pending = new ArrayList<>();
+        this.chunk = ByteBuffer.allocate(64 * 1024);
+
+        ByteBuffer header = ByteBuffer.allocate(32);
+        header.putInt(MAGIC);
+        Varint.putVarInt(header, VERSION);
+        Varint.putVarInt(header, this.interval);
+        Varint.putVarInt(header, world.getHeroes().size());
+        header.flip();
+        write(header);
+
+        if(world.getStateHash() == null) world.setStateHash(new StateHash());
+        world.setRecorder(this);
+    }
+
+    /**
+     * 记录一次按键输入（由World.onHeroInput调用，可以在任何线程）
+     * @param hero 英雄下标
+     * @param slot 按键槽位
+     * @param pressed 是否按下
+     */
+    public synchronized void onInput(int hero, int slot, boolean pressed) {
+        if(hero >= 0) pending.add(hero << 4 | slot << 1 | (pressed ? 1 : 0));
+    }
+
+    /**
+     * 每帧开始时调用（由World.tick调用）
+     * 把上一帧之后的输入写成一条记录，到关键帧间隔时结束当前数据块并写入新的关键帧
+     * @param world 录制的世界
+     */
+    public synchronized void beforeTick(World world) {
+        if(closed) return;
+        long tick = world.getTick();
+        try {
+            if(chunkTick < 0 || tick - chunkTick >= interval) {
+                finishChunk();
+                chunk.clear();
+                chunk.putInt(0);  // 块长度，结束时回填
+                Varint.putVarLong(chunk, tick);
+                putRecord(world);
+                ByteBuffer keyframe = WorldCodec.encode(world);
+                ensure(keyframe.remaining() + 8);
+                Varint.putVarInt(chunk, keyframe.remaining());
+                chunk.put(keyframe);
+                chunkTick = tick;
+            } else {
+                putRecord(world);
+            }
+        } catch (IOException e) {
+            System.err.println("回放写入失败，停止录制: " + e);
+            world.setRecorder(null);
+            closed = true;
+        }
+    }
+
+    /**
+     * 写入一条输入记录
+     * @param world 录制的世界
+     */
+    private void putRecord(World world) {
+        ensure(pending.size() * 5 + 16);
+        Varint.putVarInt(chunk, pending.size());
+        for(int event : pending)
+            Varint.putVarInt(chunk, event);
+        pending.clear();
+        StateHash hash = world.getStateHash();
+        chunk.putLong(hash != null && hash.getTick() == world.getTick() ? hash.getTickHash() : 0);
+    }
+
+    /**
+     * 确保数据块缓冲区还有足够空间
+     * @param n 需要的字节数
+     */
+    private void ensure(int n) {
+        if(chunk.remaining() >= n) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(chunk.capacity() * 2, chunk.position() + n));
+        chunk.flip();
+        bigger.put(chunk);
+        chunk = bigger;
+    }
+
+    /**
+     * 把当前数据块写入文件并登记到索引
+     */
+    private void finishChunk() throws IOException {
+        if(chunkTick < 0) return;
+        chunk.putInt(0, chunk.position() - 4);
+        chunk.flip();
+        index.add(new long[]{chunkTick, bytes});
+        write(chunk);
+        chunkTick = -1;
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        bytes += buf.remaining();
+        while(buf.hasRemaining())
+            channel.write(buf);
+    }
+
+    /**
+     * 结束录制：写入最后一个数据块、索引和文件尾
+     * @throws IOException 写入失败
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed) return;
+        closed = true;
+        world.setRecorder(null);
+        try {
+            finishChunk();
+            long indexOffset = bytes;
+            ByteBuffer buf = ByteBuffer.allocate(16 + index.size() * 20 + FOOTER_SIZE);
+            Varint.putVarInt(buf, index.size());
+            for(long[] entry : index) {
+                Varint.putVarLong(buf, entry[0]);
+                Varint.putVarLong(buf, entry[1]);
+            }
+            buf.putLong(indexOffset);
+            buf.putInt(MAGIC);
+            buf.flip();
+            write(buf);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * 获取已写入的数据块数量
+     * @return 数据块数量
+     */
+    public synchronized int getChunkCount() {
+        return index.size();
+    }
+
+    /**
+     * 获取已写入的字节数
+     * @return 字节数
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 录制入口（生成用于测试和性能分析的回放）
+     * 参数：文件 [种子] [最多帧数] [关键帧间隔]，默认种子42、20000帧、间隔300
+     * 两个英雄由按种子生成的随机按键控制
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        File out = new File(args.length > 0 ? args[0] : "replay.zcr");
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_INTERVAL;
+
+        World world = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, 2, seed);
+        DesyncChecker.RandomInput input = new DesyncChecker.RandomInput(seed * 31 + 7, 2);
+        long start = System.nanoTime();
+        ReplayWriter writer = new ReplayWriter(out, world, interval);
+        try {
+            for(int i = 0; i < ticks && !world.End(); i++) {
+                input.apply(world);
+                world.tick();
+            }
+        } finally {
+            writer.close();  // 写完最后一个数据块和索引后再统计
+        }
+        System.out.printf("录制%d帧（第%d波），%d个数据块，%d字节（每帧%.1f字节），用时%.1fs%n",
+                world.getTick(), world.getWave(), writer.getChunkCount(), writer.getBytes(),
+                writer.getBytes() / (double) Math.max(1, world.getTick()), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -1,6 +1,7 @@
 package Game;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.List;
 
@@ -14,9 +15,15 @@ public class Role extends GameObject{
     private int walkState;                    // 行走动画状态（0-15循环）
     private List<Weapon> weapons;             // 武器列表
     private Weapon currentWeapon;             // 当前装备的武器
-    protected int deadState;                  // 死亡状态计数器（-1表示存活）
+    protected int deadState;                  // 死亡状态（-1表示存活，>=0表示死亡中）
+    protected long deadEndTick;               // 死亡状态结束的帧（由计时器在该帧处理）
     private int maxHP;                        // 最大生命值
-    private int begin;                        // 开始保护时间（闪烁效果）
+    private long beginEndTick;                // 保护时间结束的帧（闪烁效果）
+    private boolean invulnerable;             // 是否处于保护期（由计时器在保护时间结束时清除）
+    private int attackFrame;                  // 本帧要绘制的攻击动画帧（-1表示本帧不播放攻击动画）
+    private boolean hitFrame;                 // 本帧是否绘制受击帧
+    private TimerWheel.TimerEvent deadEvent;  // 死亡结束事件
+    private TimerWheel.TimerEvent beginEvent; // 保护时间结束事件
     
     /**
      * 血条内部类
@@ -28,18 +35,30 @@ public class Role extends GameObject{
          * @param g 图形上下文
          */
         public void draw(Graphics g) {
-            int maxLength = 40;  // 血条最大长度
-            // 根据当前HP计算血条长度
-            int length = (int)((double)getHP() / (double)getMaxHP() * 40);
-            Color c = g.getColor();
-            g.setColor(Color.RED);
-            g.drawRect(x - 20, y - 40, maxLength, 7);  // 绘制边框
-            g.fillRect(x - 20, y - 40, length, 7);     // 填充血量
-            g.setColor(c);
+            drawBloodBar(g, x, y, getHP(), getMaxHP());
         }
     }
     private BloodBar bloodBar;  // 血条对象
 
+    /**
+     * 在指定位置头顶绘制血条（静态版本，供只持有快照的客户端使用）
+     * @param g 图形上下文
+     * @param x 角色X坐标
+     * @param y 角色Y坐标
+     * @param hp 当前生命值
+     * @param maxHP 最大生命值
+     */
+    public static void drawBloodBar(Graphics g, int x, int y, int hp, int maxHP) {
+        int maxLength = 40;  // 血条最大长度
+        // 根据当前HP计算血条长度
+        int length = (int)((double)hp / (double)maxHP * 40);
+        Color c = g.getColor();
+        g.setColor(Color.RED);
+        g.drawRect(x - 20, y - 40, maxLength, 7);  // 绘制边框
+        g.fillRect(x - 20, y - 40, length, 7);     // 填充血量
+        g.setColor(c);
+    }
+
     /**
      * 构造方法
      * @param name 角色名称
@@ -56,10 +75,10 @@ public class Role extends GameObject{
         this.weapons = new ArrayList<>();
         this.walkState = 0;
         this.deadState = -1;  // -1表示存活
+        this.attackFrame = -1;
         // 英雄有250帧的初始保护时间（闪烁效果）
         if(this instanceof Hero)
-        	this.begin = 250;
-        else this.begin = 0;
+        	this.startBegin(250);
         bloodBar = new BloodBar();
     }
 
@@ -86,11 +105,11 @@ public class Role extends GameObject{
 
     /**
      * 绘制行走动画
-     * 根据移动状态选择合适的精灵图帧
+     * 根据update中维护的行走状态选择合适的精灵图帧
      * @param g 图形上下文
      */
     public void drawWalkImage(Graphics g) {
-        if(mainTainWalkState(16) < 0){  // 停止状态
+        if(walkState < 0){  // 停止状态
             // 绘制静止帧（第0列）
             drawOneImage(g, name, PICOFFSET,this.x, this.y, 0, this.oldDir.ordinal());
         } else {  // 移动状态
@@ -99,40 +118,89 @@ public class Role extends GameObject{
         }
     }
 
+    /**
+     * 更新角色状态
+     * 处理受击、武器攻击判定、行走动画和移动
+     * 死亡倒计时和武器冷却都按截止帧计算，不需要逐帧维护
+     */
+    public void update() {
+        attackFrame = -1;
+        hitFrame = false;
+
+	    // 1. 死亡状态：等待计时器结束死亡状态
+	    if(deadState >= 0){
+	        return;
+	    }
+	    
+	    // 2. 受击状态：产生血迹
+	    if(checkOnAttack() > 0){
+	        hitFrame = true;
+	        GameRandom rand = world.getRandom();
+	        if(Math.abs(rand.nextInt(100)) > 20) world.addBlood(this.x, this.y);  // 80%概率产生血迹
+	        onAttackState--;
+	    } 
+	    // 3. 武器攻击状态：推进攻击动画
+	    else if (currentWeapon.getState() >= 0 && (currentWeapon instanceof Sword || currentWeapon instanceof Hand)) {
+	        attackFrame = this.currentWeapon.getState();
+	        this.currentWeapon.maintainState(9);  // 攻击动画共9帧
+	        if (this.currentWeapon.getState() == 1)  // 攻击动画第1帧时执行伤害判定
+	            this.currentWeapon.Attack();
+	        return;
+	    }
+	    
+	    // 4. 正常状态：行走动画和移动
+	    mainTainWalkState(16);
+        move();  // 移动
+    }
+
     /**
      * 绘制角色
-     * 处理死亡动画、受击动画、武器攻击动画和正常行走
+     * 根据update的结果绘制死亡动画、受击动画、武器攻击动画或行走动画
      * @param g 图形上下文
      */
     public void draw(Graphics g) {
 	    // 1. 死亡状态：显示死亡动画
 	    if(deadState >= 0){
 	        this.drawOneImage(g, name, PICOFFSET, this.x, this.y, 13, 0);
-	        this.maintainDeadState();
 	        return;
 	    }
 	    
-	    // 2. 受击状态：显示受击动画和血迹
-	    if(checkOnAttack() > 0){
+	    // 2. 受击状态：显示受击动画
+	    if(hitFrame){
 	        this.drawOneImage(g, name, PICOFFSET, this.x, this.y, 0, this.oldDir.ordinal());
-	        Random rand = new Random();
-	        if(Math.abs(rand.nextInt(100)) > 20) world.addBlood(this.x, this.y);  // 80%概率产生血迹
-	        onAttackState--;
 	    } 
 	    // 3. 武器攻击状态：显示攻击动画
-	    else if (currentWeapon.getState() >= 0 && (currentWeapon instanceof Sword || currentWeapon instanceof Hand)) {
-	        this.currentWeapon.drawNomalAttack(g);
-	        if (this.currentWeapon.getState() == 1)  // 攻击动画第1帧时执行伤害判定
-	            this.currentWeapon.Attack();
-	        this.currentWeapon.maintainColdDown();
+	    else if (attackFrame >= 0) {
+	        this.currentWeapon.drawNomalAttack(g, attackFrame);
 	        return;
 	    }
 	    
 	    // 4. 正常状态：显示行走动画
 	    this.drawWalkImage(g);
-        
-        this.currentWeapon.maintainColdDown();  // 维护武器冷却
-        move();  // 移动
+    }
+
+    /**
+     * 获取精灵图偏移量
+     * @return 偏移量
+     */
+    public int getPicOffset() {
+        return PICOFFSET;
+    }
+
+    /**
+     * 获取本帧绘制使用的精灵图帧
+     * 按draw的顺序选择死亡、受击、攻击或行走帧
+     * @return 列索引*16+行索引
+     */
+    public int getSpriteFrame() {
+        if(deadState >= 0) return 13 * 16;
+        if(hitFrame) return this.oldDir.ordinal();
+        if(attackFrame >= 0) {
+            Direction d = getDir() == Direction.STOP ? getOldDir() : getDir();
+            return (attackFrame / 3 + 5) * 16 + d.ordinal();
+        }
+        if(walkState < 0) return this.oldDir.ordinal();
+        return (walkState / 4 + 1) * 16 + this.dir.ordinal();
     }
 
     /**
@@ -150,6 +218,7 @@ public class Role extends GameObject{
         world.collisionDetection(this);  // 碰撞检测
         this.x += getxIncrement();       // 更新X坐标
         this.y += getyIncrement();       // 更新Y坐标
+        world.getSpatialIndex().update(this);  // 之后其他对象的碰撞检测按新位置查找
     }
 
     /**
@@ -175,7 +244,8 @@ public class Role extends GameObject{
      * @param object 碰撞的对象
      */
     public void collisionResponse(GameObject object){
-        if(this.dir == Direction.STOP) return;
+        // 边界已把角色夹回区域内，沿边界滑动由夹紧完成
+        if(this.dir == Direction.STOP || object.getCollisionLayer() == CollisionLayers.BORDER) return;
         
         // 计算碰撞法线方向（从对方指向自己）
         int deltaX = object.getX() - this.getX();
@@ -207,7 +277,7 @@ public class Role extends GameObject{
      * @param weapon 攻击的武器
      */
     public void onAttack(Weapon weapon){
-    	if(getHP() <= 0 || begin > 0) return;  // 已死亡或保护期内不受伤
+    	if(getHP() <= 0 || invulnerable) return;  // 已死亡或保护期内不受伤
     	
         this.onAttackState = 5;  // 设置受击状态持续5帧
         this.setHP(this.getHP() - weapon.getDamage());  // 扣除生命值
@@ -239,7 +309,29 @@ public class Role extends GameObject{
      * 开始死亡倒计时
      */
     public void setDeadState(){
-        this.deadState = 150;  // 150帧后移除
+        this.startDeadState(150);  // 150帧后移除
+    }
+
+    /**
+     * 进入死亡状态
+     * 在计时器中登记死亡结束事件，死亡期间不需要逐帧倒计时
+     * @param frames 死亡状态持续帧数
+     */
+    protected void startDeadState(int frames){
+        this.deadState = 0;
+        this.deadEndTick = world.getTick() + frames + 1;
+        world.setLifecycle(this, LifecycleState.DYING);  // 移入尸体列表，不再参与碰撞、攻击和寻路
+        if(deadEvent != null) deadEvent.cancel();
+        deadEvent = world.getTimer().schedule(frames + 1, this::endDeadState);
+    }
+
+    /**
+     * 获取死亡状态剩余帧数
+     * @return 剩余帧数（存活时返回-1）
+     */
+    public int getDeadState() {
+        if(deadState < 0) return -1;
+        return (int) Math.max(0, deadEndTick - world.getTick());
     }
 
     /**
@@ -291,14 +383,13 @@ public class Role extends GameObject{
     }
     
     /**
-     * 维护死亡状态
-     * 倒计时结束后从世界中移除
+     * 死亡状态结束（由计时器调用）
+     * 从世界中移除
      */
-    public void maintainDeadState() {
-    	if(deadState > 0)
-        	deadState--;
-    	else
-    		world.objDead(this);  // 移除对象
+    public void endDeadState() {
+    	world.stateChanged(this);  // 事件不再等待，尸体的状态改变了
+    	if(deadState < 0 || world.getTick() < deadEndTick) return;  // 已复活，事件已过期
+    	world.objDead(this);  // 移除对象
     }
 
     /**
@@ -321,7 +412,7 @@ public class Role extends GameObject{
      * @return 是否发生碰撞
      */
     public boolean collisionDetection(GameObject object){
-        if(object instanceof Weapon && ((Weapon) object).isHost(this)){
+        if(object.getOwner() == this){
             return false;  // 不与自己的武器碰撞
         }
         return super.collisionDetection(object);
@@ -344,11 +435,11 @@ public class Role extends GameObject{
     }
     
     /**
-     * 获取并递减保护时间
-     * @return 剩余保护时间
+     * 获取保护时间
+     * @return 剩余保护时间（帧数）
      */
     public int getBegin() {
-    	return begin--;
+    	return (int) Math.max(0, beginEndTick - world.getTick());
     }
     
     /**
@@ -356,6 +447,74 @@ public class Role extends GameObject{
      * 用于复活后的无敌时间
      */
     public void resetBegin() {
-    	this.begin = 350;
+    	this.startBegin(350);
+    }
+
+    /**
+     * 开始保护时间
+     * 在计时器中登记保护时间结束事件
+     * @param frames 保护时间（帧数）
+     */
+    protected void startBegin(int frames) {
+    	this.invulnerable = true;
+    	this.beginEndTick = world.getTick() + frames;
+    	if(beginEvent != null) beginEvent.cancel();
+    	beginEvent = world.getTimer().schedule(frames, this::endBegin);
+    }
+
+    /**
+     * 写入角色状态（见GameObject.writeState）
+     * 武器按武器列表顺序写入，当前武器记为下标
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        super.writeState(buf);
+        Varint.putSignedVarInt(buf, walkState);
+        Varint.putSignedVarInt(buf, deadState);
+        Varint.putVarLong(buf, deadEndTick);
+        Varint.putVarLong(buf, beginEndTick);
+        buf.put((byte) (invulnerable ? 1 : 0));
+        Varint.putSignedVarInt(buf, attackFrame);
+        buf.put((byte) (hitFrame ? 1 : 0));
+        Varint.putVarInt(buf, weapons.indexOf(currentWeapon));
+        Varint.putVarInt(buf, weapons.size());
+        for(Weapon weapon : weapons)
+            weapon.writeState(buf);
+        WorldCodec.putEvent(buf, world.getTimer(), deadEvent);
+        WorldCodec.putEvent(buf, world.getTimer(), beginEvent);
+    }
+
+    /**
+     * 读取角色状态（与writeState的顺序一致）
+     * 武器已由构造方法创建，只恢复它们的状态
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        super.readState(buf, reader);
+        this.walkState = Varint.getSignedVarInt(buf);
+        this.deadState = Varint.getSignedVarInt(buf);
+        this.deadEndTick = Varint.getVarLong(buf);
+        this.beginEndTick = Varint.getVarLong(buf);
+        this.invulnerable = buf.get() != 0;
+        this.attackFrame = Varint.getSignedVarInt(buf);
+        this.hitFrame = buf.get() != 0;
+        this.currentWeapon = weapons.get(Varint.getVarInt(buf));
+        int weaponNum = Varint.getVarInt(buf);
+        if(weaponNum != weapons.size())
+            throw new IllegalStateException(name + "的武器数量不一致: " + weaponNum);
+        for(Weapon weapon : weapons)
+            weapon.readState(buf, reader);
+        this.deadEvent = reader.readEvent(buf, this::endDeadState);
+        this.beginEvent = reader.readEvent(buf, this::endBegin);
+    }
+
+    /**
+     * 保护时间结束（由计时器调用）
+     */
+    public void endBegin() {
+    	world.stateChanged(this);  // 死亡中的英雄也可能收到这个事件
+    	if(world.getTick() >= beginEndTick)  // 期间重新开始过保护时间则忽略
+    		this.invulnerable = false;
     }
 }
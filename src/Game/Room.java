@@ -0,0 +1,195 @@
+package Game;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 房间类
+ * 一局独立的对局（一个World），由RoomHost的载体线程按截止时间推进
+ * 同一时刻最多只有一个载体线程执行某个房间，World本身不需要加锁
+ */
+public class Room implements Delayed {
+
+    /**
+     * 房间状态
+     */
+    public enum State {
+        RUNNING,  // 运行中
+        ENDED,    // 对局正常结束
+        SHED,     // 因持续超时被卸载
+        FAILED    // 执行出错
+    }
+
+    /**
+     * 房间监听器
+     * 两个方法都在载体线程中调用
+     */
+    public interface Listener {
+        /**
+         * 每帧结束后调用（例如广播快照）
+         * @param room 房间
+         */
+        void afterTick(Room room);
+
+        /**
+         * 房间关闭后调用
+         * @param room 房间
+         */
+        void onClosed(Room room);
+    }
+
+    private final int id;                 // 房间编号
+    private final World world;            // 游戏世界
+    private final long periodNanos;       // 每帧间隔（纳秒）
+    private final Listener listener;      // 监听器（可为null）
+    private volatile State state;         // 房间状态
+    private volatile boolean shedRequested;  // 是否已被选中卸载（在当前帧结束后关闭）
+    long nextTickAt;                      // 下一帧的截止时间（System.nanoTime）
+
+    // 统计数据（只由执行该房间的载体线程写入）
+    private long ticks;                   // 已执行帧数
+    private long overruns;                // 执行时间超过帧间隔的帧数
+    private int consecutiveOverruns;      // 连续超时帧数
+    private long lateTicks;               // 开始时间晚于截止时间一帧以上的帧数
+    private long droppedTicks;            // 因落后太多而放弃追赶的帧数
+    private long totalTickNanos;          // 累计执行时间
+    private long maxTickNanos;            // 最长执行时间
+    private long recentTickNanos;         // 最近执行时间的指数滑动平均
+
+    /**
+     * 构造方法
+     * @param id 房间编号
+     * @param world 游戏世界
+     * @param periodNanos 每帧间隔（纳秒）
+     * @param listener 监听器（可为null）
+     */
+    public Room(int id, World world, long periodNanos, Listener listener) {
+        this.id = id;
+        this.world = world;
+        this.periodNanos = periodNanos;
+        this.listener = listener;
+        this.state = State.RUNNING;
+        this.nextTickAt = System.nanoTime() + periodNanos;
+    }
+
+    /**
+     * 执行一帧并记录耗时
+     * @return 本帧执行时间（纳秒）
+     */
+    long runTick() {
+        long start = System.nanoTime();
+        if(start - nextTickAt > periodNanos) lateTicks++;
+        world.tick();
+        if(listener != null) listener.afterTick(this);
+        long cost = System.nanoTime() - start;
+
+        ticks++;
+        totalTickNanos += cost;
+        maxTickNanos = Math.max(maxTickNanos, cost);
+        recentTickNanos = recentTickNanos == 0 ? cost : (recentTickNanos * 7 + cost) / 8;
+        if(cost > periodNanos) {
+            overruns++;
+            consecutiveOverruns++;
+        } else {
+            consecutiveOverruns = 0;
+        }
+        return cost;
+    }
+
+    /**
+     * 计算下一帧的截止时间
+     * 落后超过一帧时放弃追赶（记为丢弃帧），避免一个慢房间连续占用载体线程
+     * @param now 当前时间
+     */
+    void scheduleNext(long now) {
+        nextTickAt += periodNanos;
+        if(now - nextTickAt > periodNanos) {
+            long behind = (now - nextTickAt) / periodNanos;
+            droppedTicks += behind;
+            nextTickAt += behind * periodNanos;
+        }
+    }
+
+    /**
+     * 关闭房间
+     * @param state 关闭原因
+     */
+    void close(State state) {
+        this.state = state;
+        if(listener != null) listener.onClosed(this);
+    }
+
+    /**
+     * 请求卸载房间
+     * 房间正在其它载体线程上执行时，由该线程在本帧结束后关闭
+     */
+    void requestShed() {
+        this.shedRequested = true;
+    }
+
+    boolean isShedRequested() {
+        return shedRequested;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(nextTickAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        return Long.compare(nextTickAt, ((Room) o).nextTickAt);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public int getConsecutiveOverruns() {
+        return consecutiveOverruns;
+    }
+
+    public long getLateTicks() {
+        return lateTicks;
+    }
+
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public long getRecentTickNanos() {
+        return recentTickNanos;
+    }
+
+    /**
+     * 获取平均每帧执行时间
+     * @return 平均执行时间（纳秒）
+     */
+    public long getAverageTickNanos() {
+        return ticks == 0 ? 0 : totalTickNanos / ticks;
+    }
+}
@@ -0,0 +1,299 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多房间主机
+ *
+ * 在一个JVM中运行大量相互独立的对局，所有房间复用固定数量的载体线程：
+ * - 公平调度：房间按下一帧的截止时间放在DelayQueue中，载体线程每次取出最早到期的房间只执行一帧，
+ *   执行完重新入队，任何房间都不能连续占用载体线程
+ * - 超时跟踪：每个房间记录执行超过帧间隔的帧数、开始晚于截止时间的帧数和放弃追赶的帧数
+ * - 负载卸载：
+ *   1. 准入控制：房间数达到上限或载体线程普遍落后时拒绝新房间
+ *   2. 连续超时SHED_OVERRUNS帧的房间被卸载
+ *   3. 载体线程整体落后超过一帧时，每秒最多卸载一个最近耗时最高的房间
+ *
+ * 房间内的敌人决策改为串行执行，并行度由载体线程提供，避免与共享的ForkJoinPool争抢核心
+ */
+public class RoomHost {
+    public static final int SHED_OVERRUNS = 100;          // 连续超时多少帧后卸载房间
+    private static final long SHED_COOLDOWN_NANOS = 1000000000L;  // 两次整体卸载之间的最短间隔
+
+    private final long periodNanos;                        // 每帧间隔
+    private final int maxRooms;                            // 最多房间数
+    private final DelayQueue<Room> queue;                  // 按截止时间排序的房间队列
+    private final Map<Integer, Room> rooms;                // 运行中的房间
+    private final Carrier[] carriers;                      // 载体线程
+    private final AtomicInteger nextRoomId;                // 下一个房间编号
+    private final AtomicLong lastShedAt;                   // 上一次整体卸载的时间
+    private volatile boolean running;                      // 是否运行
+
+    // 统计数据
+    private final AtomicLong rejectedRooms = new AtomicLong();  // 被拒绝的房间数
+    private final AtomicLong shedRooms = new AtomicLong();      // 被卸载的房间数
+    private final AtomicLong endedRooms = new AtomicLong();     // 正常结束的房间数
+
+    /**
+     * 载体线程
+     * 循环取出最早到期的房间执行一帧
+     */
+    private class Carrier extends Thread {
+        volatile long lateEwma;   // 开始时间相对截止时间延迟的指数滑动平均（纳秒）
+        volatile long busyNanos;  // 累计执行时间
+        volatile long ticks;      // 累计执行帧数
+
+        Carrier(int index) {
+            super("room-carrier-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while(running) {
+                Room room;
+                try {
+                    room = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if(room == null || room.getState() != Room.State.RUNNING) continue;
+                runRoom(this, room);
+            }
+        }
+    }
+
+    /**
+     * 构造方法
+     * @param carrierNum 载体线程数量
+     * @param maxRooms 最多房间数
+     * @param tickMs 每帧毫秒数
+     */
+    public RoomHost(int carrierNum, int maxRooms, int tickMs) {
+        this.periodNanos = tickMs * 1000000L;
+        this.maxRooms = maxRooms;
+        this.queue = new DelayQueue<>();
+        this.rooms = new ConcurrentHashMap<>();
+        this.nextRoomId = new AtomicInteger();
+        this.lastShedAt = new AtomicLong(System.nanoTime());
+        this.carriers = new Carrier[carrierNum];
+        for(int i = 0; i < carrierNum; i++)
+            carriers[i] = new Carrier(i);
+    }
+
+    /**
+     * 启动所有载体线程
+     */
+    public void start() {
+        running = true;
+        for(Carrier carrier : carriers)
+            carrier.start();
+    }
+
+    /**
+     * 停止主机，关闭所有房间
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        for(Carrier carrier : carriers)
+            carrier.join();
+        queue.clear();
+        rooms.clear();
+    }
+
+    /**
+     * 打开一个新房间
+     * 超过房间上限或主机过载时拒绝
+     * @param world 游戏世界
+     * @param listener 房间监听器（可为null）
+     * @return 新房间，被拒绝时返回null
+     */
+    public Room openRoom(World world, Room.Listener listener) {
+        if(rooms.size() >= maxRooms || isOverloaded()) {
+            rejectedRooms.incrementAndGet();
+            return null;
+        }
+        world.getPlanner().setParallel(false);  // 并行度由载体线程提供
+        Room room = new Room(nextRoomId.incrementAndGet(), world, periodNanos, listener);
+        rooms.put(room.getId(), room);
+        queue.add(room);
+        return room;
+    }
+
+    /**
+     * 主机是否过载
+     * 载体线程的平均延迟超过半帧时认为过载
+     * @return 是否过载
+     */
+    public boolean isOverloaded() {
+        return getAverageLateness() > periodNanos / 2;
+    }
+
+    /**
+     * 获取载体线程的平均延迟
+     * @return 平均延迟（纳秒）
+     */
+    public long getAverageLateness() {
+        long sum = 0;
+        for(Carrier carrier : carriers)
+            sum += carrier.lateEwma;
+        return sum / carriers.length;
+    }
+
+    /**
+     * 执行房间的一帧
+     * @param carrier 当前载体线程
+     * @param room 房间
+     */
+    private void runRoom(Carrier carrier, Room room) {
+        long late = Math.max(0, System.nanoTime() - room.nextTickAt);
+        carrier.lateEwma = (carrier.lateEwma * 15 + late) / 16;
+        try {
+            carrier.busyNanos += room.runTick();
+            carrier.ticks++;
+        } catch (RuntimeException e) {
+            System.err.println("房间" + room.getId() + "执行出错: " + e);
+            WorldCodec.writeCrashSnapshot(room.getWorld(), "room" + room.getId());
+            closeRoom(room, Room.State.FAILED);
+            return;
+        }
+
+        if(room.getWorld().End()) {
+            closeRoom(room, Room.State.ENDED);
+        } else if(room.isShedRequested() || room.getConsecutiveOverruns() >= SHED_OVERRUNS) {
+            closeRoom(room, Room.State.SHED);
+        } else {
+            room.scheduleNext(System.nanoTime());
+            queue.add(room);
+        }
+        if(getAverageLateness() > periodNanos) shedHeaviestRoom();
+    }
+
+    /**
+     * 整体落后时卸载最近耗时最高的房间（每秒最多一次）
+     */
+    private void shedHeaviestRoom() {
+        long now = System.nanoTime();
+        long last = lastShedAt.get();
+        if(now - last < SHED_COOLDOWN_NANOS || !lastShedAt.compareAndSet(last, now)) return;
+        Room heaviest = null;
+        for(Room room : rooms.values()) {
+            if(heaviest == null || room.getRecentTickNanos() > heaviest.getRecentTickNanos()) heaviest = room;
+        }
+        if(heaviest == null) return;
+        if(queue.remove(heaviest)) closeRoom(heaviest, Room.State.SHED);  // 在队列中等待，直接关闭
+        else heaviest.requestShed();                                       // 正在执行，本帧结束后关闭
+    }
+
+    /**
+     * 关闭房间
+     * @param room 房间
+     * @param state 关闭原因
+     */
+    private void closeRoom(Room room, Room.State state) {
+        if(rooms.remove(room.getId()) == null) return;
+        if(state == Room.State.SHED) shedRooms.incrementAndGet();
+        else if(state == Room.State.ENDED) endedRooms.incrementAndGet();
+        room.close(state);
+    }
+
+    /**
+     * 获取运行中的房间
+     * @return 房间集合
+     */
+    public Collection<Room> getRooms() {
+        return rooms.values();
+    }
+
+    public long getRejectedRooms() {
+        return rejectedRooms.get();
+    }
+
+    public long getShedRooms() {
+        return shedRooms.get();
+    }
+
+    public long getEndedRooms() {
+        return endedRooms.get();
+    }
+
+    /**
+     * 获取所有载体线程累计执行的帧数
+     * @return 帧数
+     */
+    public long getTotalTicks() {
+        long sum = 0;
+        for(Carrier carrier : carriers)
+            sum += carrier.ticks;
+        return sum;
+    }
+
+    /**
+     * 获取所有载体线程累计执行时间
+     * @return 执行时间（纳秒）
+     */
+    public long getBusyNanos() {
+        long sum = 0;
+        for(Carrier carrier : carriers)
+            sum += carrier.busyNanos;
+        return sum;
+    }
+
+    /**
+     * 压力测试入口
+     * 参数：[房间数] [载体线程数] [运行秒数]，默认200个房间、CPU核数个载体线程、30秒
+     * 房间结束（英雄无人操作会死亡）后立即补开一个新房间，保持房间数不变
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int roomNum = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int carrierNum = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        final RoomHost host = new RoomHost(carrierNum, roomNum, GameServer.TICK_MS);
+        Room.Listener refill = new Room.Listener() {
+            @Override
+            public void afterTick(Room room) {
+            }
+
+            @Override
+            public void onClosed(Room room) {
+                if(room.getState() == Room.State.ENDED)
+                    host.openRoom(new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, 1), this);
+            }
+        };
+        for(int i = 0; i < roomNum; i++)
+            host.openRoom(new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, 1), refill);
+        host.start();
+
+        long lastTicks = 0, lastBusy = 0;
+        for(int s = 5; s <= seconds; s += 5) {
+            Thread.sleep(5000);
+            long ticks = host.getTotalTicks(), busy = host.getBusyNanos();
+            long overruns = 0, late = 0, dropped = 0, maxTick = 0;
+            List<Room> snapshot = new ArrayList<>(host.getRooms());
+            for(Room room : snapshot) {
+                overruns += room.getOverruns();
+                late += room.getLateTicks();
+                dropped += room.getDroppedTicks();
+                maxTick = Math.max(maxTick, room.getMaxTickNanos());
+            }
+            System.out.printf("%ds 房间%d 帧/秒%.0f 载体利用率%.0f%% 平均延迟%.2fms | 超时帧%d 迟到帧%d 丢弃帧%d 最长帧%.2fms | 结束%d 卸载%d 拒绝%d%n",
+                    s, snapshot.size(), (ticks - lastTicks) / 5.0,
+                    (busy - lastBusy) / 1e9 / 5.0 / carrierNum * 100, host.getAverageLateness() / 1e6,
+                    overruns, late, dropped, maxTick / 1e6,
+                    host.getEndedRooms(), host.getShedRooms(), host.getRejectedRooms());
+            lastTicks = ticks;
+            lastBusy = busy;
+        }
+        host.stop();
+    }
+}
@@ -0,0 +1,147 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 空间哈希（均匀网格空间索引）
+ *
+ * 把世界划分为边长cellSize的格子，每个格子保存中心点落在其中的对象：
+ * - 对象只在跨越格子时才移动到新格子，大多数帧的update只是一次比较
+ * - 范围查询只访问与查询圆外接正方形相交的格子，与世界中的对象总数无关
+ * - 世界范围外的坐标被夹到边缘格子中
+ *
+ * 对象所在的格子记录在GameObject.spatialCell中，-1表示不在索引中
+ */
+public class SpatialHash {
+    public static final int DEFAULT_CELL_SIZE = 128;  // 默认格子边长
+
+    private final int cellSize;                // 格子边长
+    private final int cols;                    // 列数
+    private final int rows;                    // 行数
+    private final List<List<GameObject>> cells;  // 每个格子中的对象
+    private int size;                          // 索引中的对象数量
+
+    /**
+     * 构造方法
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @param cellSize 格子边长
+     */
+    public SpatialHash(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.cols = width / cellSize + 1;
+        this.rows = height / cellSize + 1;
+        this.cells = new ArrayList<>(cols * rows);
+        for(int i = 0; i < cols * rows; i++)
+            cells.add(new ArrayList<GameObject>());
+    }
+
+    /**
+     * 计算坐标所在的格子
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 格子下标
+     */
+    private int cellOf(int x, int y) {
+        int cx = Math.min(cols - 1, Math.max(0, x / cellSize));
+        int cy = Math.min(rows - 1, Math.max(0, y / cellSize));
+        return cy * cols + cx;
+    }
+
+    /**
+     * 加入对象
+     * @param obj 游戏对象
+     */
+    public void insert(GameObject obj) {
+        if(obj.spatialCell >= 0) return;
+        int cell = cellOf(obj.getX(), obj.getY());
+        cells.get(cell).add(obj);
+        obj.spatialCell = cell;
+        size++;
+    }
+
+    /**
+     * 移除对象
+     * @param obj 游戏对象
+     */
+    public void remove(GameObject obj) {
+        if(obj.spatialCell < 0) return;
+        cells.get(obj.spatialCell).remove(obj);
+        obj.spatialCell = -1;
+        size--;
+    }
+
+    /**
+     * 对象移动后更新所在格子（没有跨越格子时不做任何事）
+     * @param obj 游戏对象
+     */
+    public void update(GameObject obj) {
+        if(obj.spatialCell < 0) return;
+        int cell = cellOf(obj.getX(), obj.getY());
+        if(cell == obj.spatialCell) return;
+        cells.get(obj.spatialCell).remove(obj);
+        cells.get(cell).add(obj);
+        obj.spatialCell = cell;
+    }
+
+    /**
+     * 范围查询
+     * 把中心点与(x, y)距离不超过radius的对象加入结果列表（不清空结果列表）
+     * @param x 圆心X坐标
+     * @param y 圆心Y坐标
+     * @param radius 半径
+     * @param out 结果列表
+     */
+    public void query(int x, int y, int radius, List<GameObject> out) {
+        int minCx = Math.min(cols - 1, Math.max(0, (x - radius) / cellSize));
+        int maxCx = Math.min(cols - 1, Math.max(0, (x + radius) / cellSize));
+        int minCy = Math.min(rows - 1, Math.max(0, (y - radius) / cellSize));
+        int maxCy = Math.min(rows - 1, Math.max(0, (y + radius) / cellSize));
+        long r2 = (long) radius * radius;
+        for(int cy = minCy; cy <= maxCy; cy++) {
+            for(int cx = minCx; cx <= maxCx; cx++) {
+                List<GameObject> cell = cells.get(cy * cols + cx);
+                for(int i = 0; i < cell.size(); i++) {
+                    GameObject obj = cell.get(i);
+                    long dx = obj.getX() - x;
+                    long dy = obj.getY() - y;
+                    if(dx * dx + dy * dy <= r2) out.add(obj);
+                }
+            }
+        }
+    }
+
+    /**
+     * 矩形范围查询（绘制时按视口裁剪）
+     * 把中心点在[left, right]×[top, bottom]内的对象加入结果列表（不清空结果列表）
+     * @param left 左边界
+     * @param top 上边界
+     * @param right 右边界
+     * @param bottom 下边界
+     * @param out 结果列表
+     */
+    public void queryRect(int left, int top, int right, int bottom, List<GameObject> out) {
+        int minCx = Math.min(cols - 1, Math.max(0, left / cellSize));
+        int maxCx = Math.min(cols - 1, Math.max(0, right / cellSize));
+        int minCy = Math.min(rows - 1, Math.max(0, top / cellSize));
+        int maxCy = Math.min(rows - 1, Math.max(0, bottom / cellSize));
+        for(int cy = minCy; cy <= maxCy; cy++) {
+            for(int cx = minCx; cx <= maxCx; cx++) {
+                List<GameObject> cell = cells.get(cy * cols + cx);
+                for(int i = 0; i < cell.size(); i++) {
+                    GameObject obj = cell.get(i);
+                    if(obj.getX() >= left && obj.getX() <= right && obj.getY() >= top && obj.getY() <= bottom) out.add(obj);
+                }
+            }
+        }
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int size() {
+        return size;
+    }
+}
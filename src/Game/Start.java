@@ -12,6 +12,7 @@ public class Start extends JFrame{
 	public static final int WIDTH = 400;    // 窗口宽度
 	public static final int HEIGHT = 350;   // 窗口高度
 	private boolean flag;                    // 标志位（未使用）
+	private final TileMap map;               // 地图（null表示默认竞技场）
 	
 	/**
 	 * 单人游戏按钮监听器
@@ -20,7 +21,7 @@ public class Start extends JFrame{
 	class SinglePlayerListener implements ActionListener {  
 	    @Override  
 	    public void actionPerformed(ActionEvent e) {  
-	    	new GameClient(false).lauchFrame();  // 创建单人游戏客户端（false表示单人模式）
+	    	createClient(false).lauchFrame();  // 创建单人游戏客户端（false表示单人模式）
 	    	setVisible(false);                    // 隐藏开始界面
 	    }  
 	} 
@@ -32,7 +33,7 @@ public class Start extends JFrame{
 	class DoublePlayerListener implements ActionListener {  
 	    @Override  
 	    public void actionPerformed(ActionEvent e) {  
-	    	new GameClient(true).lauchFrame();   // 创建双人游戏客户端（true表示双人模式）
+	    	createClient(true).lauchFrame();   // 创建双人游戏客户端（true表示双人模式）
 	    	setVisible(false);                    // 隐藏开始界面
 	    }  
 	} 
@@ -47,11 +48,30 @@ public class Start extends JFrame{
 		}
 	}
 	
+	/**
+	 * 创建游戏客户端
+	 * @param doublePlayer 是否为双人模式
+	 * @return 使用默认竞技场或指定地图的客户端
+	 */
+	private GameClient createClient(boolean doublePlayer) {
+		return map == null ? new GameClient(doublePlayer) : new GameClient(doublePlayer, map);
+	}
+	
 	/**
 	 * 构造方法
-	 * 初始化开始界面窗口，创建单人和双人模式选择按钮
+	 * 使用默认竞技场
 	 */
 	public Start(){
+		this(null);
+	}
+	
+	/**
+	 * 构造方法
+	 * 初始化开始界面窗口，创建单人和双人模式选择按钮
+	 * @param map 地图（null表示默认竞技场）
+	 */
+	public Start(TileMap map){
+		this.map = map;
 		setSize(WIDTH, HEIGHT);              // 设置窗口大小
 		setResizable(false);                 // 禁止调整窗口大小
 		setLocationRelativeTo(null);         // 窗口居中显示
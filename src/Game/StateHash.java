@@ -0,0 +1,336 @@
+package Game;
+
+import java.io.PrintStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 状态哈希
+ *
+ * 每帧结束时对模拟状态计算一个64位哈希，用于验证确定性和检测失步：
+ * - 每个实体的哈希覆盖编号、所在容器、坐标和writeState写入的全部字段
+ *   （生命值、方向、死亡和保护状态、武器冷却、寻路状态等）
+ * - 本帧哈希混合所有实体的哈希之和和世界自身的状态（World.hashState：随机数状态、波次计数、血迹等）
+ * - 链式哈希把每帧的哈希依次混合，任意一帧出现差异之后链式哈希都不同，适合记录到日志或随快照发送
+ *
+ * 增量计算：实体的哈希保存在对象上（GameObject.entityHash，hashEpoch记录属于哪一轮全部重算），各实体的项mix(编号, 实体哈希)相加，
+ * 与遍历顺序无关，换了容器顺序的同一个状态得到同一个哈希。每帧只重算可能改变的实体：
+ * - 活动对象每帧都参与模拟，全部重算
+ * - 静态对象、尸体和等待重生的宝箱只在换容器（World.setLifecycle）或者计时器回调、死亡中英雄的输入改变了它们时（World.stateChanged）重算
+ * 第一次计算或换了世界时全部重算
+ */
+public class StateHash {
+    private static final long PRIME1 = 0x9E3779B97F4A7C15L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final AtomicInteger EPOCHS = new AtomicInteger();  // 全部重算的轮次（所有实例共用，保证不重复）
+
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);  // 写入实体状态的缓冲区（复用，不够时加倍）
+    private final List<GameObject> changed = new ArrayList<>();  // 上一次计算之后活动容器之外改变了的实体
+    private World world;                                      // 上一次计算的世界（null表示需要全部重算）
+    private int epoch;                                        // 本实例当前的轮次（对象的hashEpoch等于它时才在和中）
+    private long entitySum;                                   // 所有实体的项之和
+    private int count;                                        // 实体数量
+    private int[] ids = new int[64];                          // 按编号排列的实体编号（比较时才生成）
+    private long[] hashes = new long[64];                     // 对应的实体哈希
+    private long listedTick = -1;                             // ids和hashes对应的帧
+    private long tick;                                        // 最近一次计算的帧
+    private long worldHash;                                   // 世界自身状态的哈希
+    private long tickHash;                                    // 本帧哈希
+    private long chainHash;                                   // 链式哈希
+    private long totalNanos;                                  // 累计计算时间
+    private long updates;                                     // 累计计算次数
+    private PrintStream log;                                  // 每帧输出哈希的日志（可为null）
+
+    /**
+     * 构造方法（不输出日志）
+     */
+    public StateHash() {
+        this(null);
+    }
+
+    /**
+     * 构造方法
+     * @param log 每帧输出一行"帧 本帧哈希"的日志（可为null）
+     */
+    public StateHash(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * 计算本帧哈希（由World.tick在每帧结束时调用）
+     * @param world 游戏世界
+     */
+    public void update(World world) {
+        long start = System.nanoTime();
+        if(this.world != world) {
+            rehashAll(world);
+        } else {
+            synchronized(changed) {
+                for(GameObject obj : changed)
+                    rehash(obj, containerOf(world, obj));
+            }
+            for(Iterator<GameObject> iter = world.getObjectsIterator(); iter.hasNext(); )
+                rehash(iter.next(), LifecycleState.ACTIVE);
+        }
+        synchronized(changed) {
+            changed.clear();
+        }
+        tick = world.getTick();
+        worldHash = finish(world.hashState(PRIME2));
+        tickHash = finish(mix(mix(mix(PRIME1, tick), entitySum), worldHash));
+        chainHash = finish(mix(chainHash, tickHash));
+        totalNanos += System.nanoTime() - start;
+        updates++;
+        if(log != null) log.printf("%d %016x%n", tick, tickHash);
+    }
+
+    /**
+     * 记录活动容器之外的实体改变了状态，下一次计算时重算（由World调用；单机模式中键盘输入来自事件线程）
+     * @param obj 游戏对象
+     */
+    public void changed(GameObject obj) {
+        if(world == null || obj.getLifecycle() == LifecycleState.ACTIVE) return;  // 活动对象每帧都会重算
+        synchronized(changed) {
+            changed.add(obj);
+        }
+    }
+
+    /**
+     * 丢弃保存的实体哈希，下一次计算时全部重算（World.setStateHash时调用，期间没有记录的改变不会漏掉）
+     */
+    public void invalidate() {
+        world = null;
+        synchronized(changed) {
+            changed.clear();
+        }
+    }
+
+    /**
+     * 重算所有容器中的实体
+     * @param world 游戏世界
+     */
+    private void rehashAll(World world) {
+        this.world = world;
+        this.epoch = EPOCHS.incrementAndGet();
+        entitySum = 0;
+        count = 0;
+        for(Iterator<GameObject> iter = world.getObjectsIterator(); iter.hasNext(); )
+            add(iter.next(), LifecycleState.ACTIVE);
+        for(Iterator<GameObject> iter = world.getStaticsIterator(); iter.hasNext(); )
+            add(iter.next(), LifecycleState.STATIC);
+        for(GameObject obj : world.getCorpses())
+            add(obj, LifecycleState.DYING);
+        for(GameObject obj : world.getPickedBoxes())
+            add(obj, LifecycleState.REMOVED);
+    }
+
+    /**
+     * 重算一个实体：去掉原来的项，仍在某个容器中时加上新的项
+     * @param obj 游戏对象
+     * @param container 所在容器（null表示已不在任何容器中）
+     */
+    private void rehash(GameObject obj, LifecycleState container) {
+        if(obj.hashEpoch == epoch) {
+            entitySum -= term(obj.getId(), obj.entityHash);
+            obj.hashEpoch = 0;
+            count--;
+        }
+        if(container != null) add(obj, container);
+    }
+
+    private void add(GameObject obj, LifecycleState container) {
+        obj.entityHash = hashEntity(obj, container);
+        obj.hashEpoch = epoch;
+        entitySum += term(obj.getId(), obj.entityHash);
+        count++;
+    }
+
+    /**
+     * 实体所在的容器（等待重生的宝箱记为REMOVED）
+     * @return 容器对应的生命周期状态，不在任何容器中时返回null
+     */
+    private static LifecycleState containerOf(World world, GameObject obj) {
+        LifecycleState state = obj.getLifecycle();
+        if(state != LifecycleState.REMOVED) return state;
+        return obj instanceof Box && world.getPickedBoxes().contains(obj) ? state : null;
+    }
+
+    /**
+     * 实体在和中的项（编号参与混合，两个实体交换状态也会改变哈希）
+     */
+    private static long term(int id, long entityHash) {
+        return finish(mix(mix(PRIME2, id), entityHash));
+    }
+
+    /**
+     * 计算单个实体的哈希
+     * @param obj 游戏对象
+     * @param container 所在容器
+     * @return 哈希
+     */
+    private long hashEntity(GameObject obj, LifecycleState container) {
+        while(true) {
+            try {
+                scratch.clear();
+                Varint.putVarInt(scratch, obj.getId());
+                Varint.putSignedVarInt(scratch, obj.getX());
+                Varint.putSignedVarInt(scratch, obj.getY());
+                scratch.put((byte) container.ordinal());
+                obj.writeState(scratch);
+                return hashBytes(scratch, PRIME1);
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * 对缓冲区中已写入的字节计算哈希（每次处理8字节）
+     * @param buf 缓冲区（[0, position)为数据）
+     * @param h 初始值
+     * @return 哈希
+     */
+    private static long hashBytes(ByteBuffer buf, long h) {
+        int n = buf.position();
+        int i = 0;
+        for(; i + 8 <= n; i += 8)
+            h = mix(h, buf.getLong(i));
+        for(; i < n; i++)
+            h = mix(h, buf.get(i));
+        return finish(mix(h, n));
+    }
+
+    /**
+     * 把一个值混合进哈希（World.hashState等直接哈希字段时使用）
+     * @param h 当前哈希
+     * @param value 值
+     * @return 混合后的哈希
+     */
+    static long mix(long h, long value) {
+        h ^= value * PRIME2;
+        return Long.rotateLeft(h, 31) * PRIME1;
+    }
+
+    /**
+     * 混合一个计时事件（与WorldCodec.putEvent写入的内容一致：没有等待时为0，否则为到期帧和登记序号）
+     * @param h 当前哈希
+     * @param timer 计时器
+     * @param event 事件（可为null）
+     * @return 混合后的哈希
+     */
+    static long mixEvent(long h, TimerWheel timer, TimerWheel.TimerEvent event) {
+        if(!timer.isPending(event)) return mix(h, 0);
+        return mix(mix(h, event.getDeadline()), event.getSeq());
+    }
+
+    static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * 找出本帧与另一个状态哈希第一个不同的实体（按编号排列，在计算之后、下一帧之前调用）
+     * @param other 另一个世界的状态哈希（同一帧）
+     * @return 第一个不同的实体在编号顺序中的下标；
+     *         实体都相同但世界自身状态不同时返回实体数量；完全相同时返回-1
+     */
+    public int firstMismatch(StateHash other) {
+        list();
+        other.list();
+        int n = Math.min(count, other.count);
+        for(int i = 0; i < n; i++)
+            if(ids[i] != other.ids[i] || hashes[i] != other.hashes[i]) return i;
+        if(count != other.count) return n;
+        return worldHash == other.worldHash ? -1 : count;
+    }
+
+    /**
+     * 按编号排列本帧所有实体的哈希（只在比较时需要）
+     */
+    private void list() {
+        if(listedTick == tick || world == null) return;
+        List<GameObject> all = new ArrayList<>(count);
+        world.getObjectsIterator().forEachRemaining(all::add);
+        world.getStaticsIterator().forEachRemaining(all::add);
+        all.addAll(world.getCorpses());
+        all.addAll(world.getPickedBoxes());
+        all.sort(Comparator.comparingInt(GameObject::getId));
+        if(ids.length < all.size()) {
+            ids = new int[all.size()];
+            hashes = new long[all.size()];
+        }
+        for(int i = 0; i < all.size(); i++) {
+            ids[i] = all.get(i).getId();
+            hashes[i] = all.get(i).entityHash;
+        }
+        listedTick = tick;
+    }
+
+    /**
+     * 在世界中按编号查找对象（活动、静态、尸体和等待重生的宝箱）
+     * @param world 游戏世界
+     * @param id 对象编号
+     * @return 游戏对象，找不到时返回null
+     */
+    public static GameObject find(World world, int id) {
+        for(Iterator<GameObject> iter = world.getObjectsIterator(); iter.hasNext(); ) {
+            GameObject obj = iter.next();
+            if(obj.getId() == id) return obj;
+        }
+        for(Iterator<GameObject> iter = world.getStaticsIterator(); iter.hasNext(); ) {
+            GameObject obj = iter.next();
+            if(obj.getId() == id) return obj;
+        }
+        for(List<? extends GameObject> list : Arrays.asList(world.getCorpses(), world.getPickedBoxes()))
+            for(GameObject obj : list)
+                if(obj.getId() == id) return obj;
+        return null;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getTickHash() {
+        return tickHash;
+    }
+
+    public long getChainHash() {
+        return chainHash;
+    }
+
+    public long getWorldHash() {
+        return worldHash;
+    }
+
+    public int getEntityCount() {
+        return count;
+    }
+
+    public int getEntityId(int index) {
+        list();
+        return ids[index];
+    }
+
+    public long getEntityHash(int index) {
+        list();
+        return hashes[index];
+    }
+
+    /**
+     * 获取平均每帧计算时间
+     * @return 平均计算时间（纳秒）
+     */
+    public long getAverageNanos() {
+        return updates == 0 ? 0 : totalNanos / updates;
+    }
+}
@@ -0,0 +1,106 @@
+package Game;
+
+import java.util.Arrays;
+
+/**
+ * 分阶段帧耗时统计
+ *
+ * World.tick在每个阶段结束时调用lap，把上一次记录以来的耗时计入该阶段；
+ * 碰撞检测发生在对象更新中，单独用nested计时，从所在阶段中扣除，避免重复计算。
+ * 只在设置了统计对象时计时（World.setProfile），正常对局没有额外开销
+ */
+public class TickProfile {
+    /**
+     * 帧的阶段（与World.tick的顺序一致）
+     */
+    public enum Phase {
+        TIMER("计时器"),
+        STREAM("分块调度"),
+        SPAWN("生成敌人"),
+        SORT("排序"),
+        GRIDS("更新网格"),
+        PLAN("敌人决策"),
+        UPDATE("对象更新"),
+        COLLISION("碰撞检测"),
+        INDEX("空间索引"),
+        HASH("状态哈希");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] nanos = new long[Phase.values().length];  // 每个阶段累计耗时
+    private long mark;       // 上一次记录的时间
+    private long nested;     // 上一次记录以来嵌套计时的耗时
+    private long ticks;      // 统计的帧数
+
+    /**
+     * 开始一帧
+     */
+    public void begin() {
+        mark = System.nanoTime();
+        nested = 0;
+        ticks++;
+    }
+
+    /**
+     * 结束一个阶段
+     * @param phase 阶段
+     */
+    public void lap(Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - mark - nested;
+        mark = now;
+        nested = 0;
+    }
+
+    /**
+     * 记录嵌套在其它阶段中的耗时
+     * @param phase 阶段
+     * @param start 开始时间（System.nanoTime）
+     */
+    public void nested(Phase phase, long start) {
+        long elapsed = System.nanoTime() - start;
+        nanos[phase.ordinal()] += elapsed;
+        nested += elapsed;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void clear() {
+        Arrays.fill(nanos, 0);
+        ticks = 0;
+    }
+
+    /**
+     * 获取阶段的累计耗时
+     * @param phase 阶段
+     * @return 纳秒
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * 获取所有阶段的累计耗时
+     * @return 纳秒
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for(long n : nanos)
+            total += n;
+        return total;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+}
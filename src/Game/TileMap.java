@@ -0,0 +1,508 @@
+package Game;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 瓦片地图
+ *
+ * 描述一张地图的静态内容：尺寸、障碍物位集、出生点和补给点。
+ * 世界用它直接生成静态碰撞数据（障碍瓦片合并成的矩形）和寻路网格（WorldGrids），不再写死墙壁的位置。
+ *
+ * 文件格式（定长字段，大端，可以直接映射到内存读取）：
+ * 1. 魔数"ZCMP"、版本号、瓦片边长（像素，Grid.LENGTH的整数倍）、列数、行数、出生点数量、补给点数量（各4字节）
+ * 2. 障碍物位集：列数×行数位，按行优先排列，每64位一个long
+ * 3. 出生点：类型（SPAWN_HERO或SPAWN_ENEMY）、X、Y坐标（像素）
+ * 4. 补给点：X、Y坐标（像素）
+ * 读取时用MappedByteBuffer映射整个文件，位集用一次批量读取，大地图也只需要一次顺序扫描
+ */
+public class TileMap {
+    public static final int MAGIC = 0x5A434D50;    // 魔数"ZCMP"
+    public static final int VERSION = 1;           // 格式版本
+    public static final int HEADER_SIZE = 28;      // 文件头大小
+    public static final int SPAWN_HERO = 0;        // 英雄出生点
+    public static final int SPAWN_ENEMY = 1;       // 敌人出生点
+
+    private final int tileSize;                    // 瓦片边长（像素）
+    private final int cols, rows;                  // 列数、行数
+    private final long[] blockers;                 // 障碍物位集（行优先）
+    private final List<int[]> spawns = new ArrayList<>();   // 出生点（类型、X、Y）
+    private final List<int[]> pickups = new ArrayList<>();  // 补给点（X、Y）
+    private int[] rects;                           // 障碍矩形（每4个int：左、上、右、下，像素，右下不含）
+    private int[] rectOf;                          // 每个瓦片所属的障碍矩形（下标+1，0表示不是障碍）
+    private int[] drawOrder;                       // 按中心Y坐标排列的障碍矩形（绘制顺序）
+    private int[] drawRank;                        // 每个障碍矩形在绘制顺序中的位置
+    private int overhang;                          // 墙壁图片超出障碍矩形上下边的最大距离
+    private int[] view;                            // 视口内的障碍矩形（按绘制顺序）
+    private int viewCount = -1;                    // 视口内的障碍矩形数量，-1表示不裁剪
+    private int[] viewStamp;                       // 每个障碍矩形最后一次被收集时的视口编号（去重）
+    private int stamp;                             // 视口编号
+
+    /**
+     * 构造方法（没有障碍物的空地图，由工厂方法填充）
+     * @param tileSize 瓦片边长（像素）
+     * @param cols 列数
+     * @param rows 行数
+     */
+    TileMap(int tileSize, int cols, int rows) {
+        if(tileSize <= 0 || tileSize % Grid.LENGTH != 0 || cols <= 0 || rows <= 0)
+            throw new IllegalArgumentException("地图尺寸无效: 瓦片" + tileSize + "，" + cols + "×" + rows);
+        this.tileSize = tileSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.blockers = new long[(int) (((long) cols * rows + 63) / 64)];
+    }
+
+    /**
+     * 默认竞技场（原来写死在World中的布局）
+     * 3×2排列的6面100×100的墙、4个英雄出生点、四条边中点的敌人出生点和2个宝箱
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @return 地图
+     */
+    public static TileMap arena(int width, int height) {
+        TileMap map = new TileMap(Grid.LENGTH, width / Grid.LENGTH, height / Grid.LENGTH);
+        for(int i = 1; i <= 2; i++)
+            for(int j = 1; j <= 3; j++)
+                map.block(width / 4 * j - 50, height / 3 * i - 50, width / 4 * j + 50, height / 3 * i + 50);
+
+        int[][] heroSpawns = {{340, 180}, {620, 180}, {340, 560}, {620, 560}};
+        for(int[] p : heroSpawns)
+            map.addSpawn(SPAWN_HERO, p[0], p[1]);
+        int off = Role.PICOFFSET + 10;
+        map.addSpawn(SPAWN_ENEMY, width / 2, off);           // 上边界
+        map.addSpawn(SPAWN_ENEMY, off, height / 2);          // 左边界
+        map.addSpawn(SPAWN_ENEMY, width / 2, height - off);  // 下边界
+        map.addSpawn(SPAWN_ENEMY, width - off, height / 2);  // 右边界
+        map.addPickup(320, 360);
+        map.addPickup(640, 360);
+        map.index();
+        return map;
+    }
+
+    /**
+     * 随机生成地图（测试地图规模对性能的影响）
+     * 障碍物是随机大小的矩形，出生点和补给点附近保持空旷；布局与默认竞技场相同，只是按地图大小放大
+     * @param cols 列数
+     * @param rows 行数
+     * @param tileSize 瓦片边长
+     * @param percent 障碍物占地图的百分比（近似）
+     * @param seed 随机数种子
+     * @return 地图
+     */
+    public static TileMap generate(int cols, int rows, int tileSize, int percent, long seed) {
+        TileMap map = new TileMap(tileSize, cols, rows);
+        int width = map.getWidth(), height = map.getHeight();
+        int cx = width / 2, cy = height / 2;
+        for(int[] p : new int[][]{{cx - 140, cy - 180}, {cx + 140, cy - 180}, {cx - 140, cy + 20}, {cx + 140, cy + 20}})
+            map.addSpawn(SPAWN_HERO, p[0], p[1]);
+        int off = Role.PICOFFSET + 10;
+        map.addSpawn(SPAWN_ENEMY, cx, off);
+        map.addSpawn(SPAWN_ENEMY, off, cy);
+        map.addSpawn(SPAWN_ENEMY, cx, height - off);
+        map.addSpawn(SPAWN_ENEMY, width - off, cy);
+        map.addPickup(cx - 160, cy);
+        map.addPickup(cx + 160, cy);
+
+        GameRandom rand = new GameRandom(seed);
+        long target = (long) cols * rows * percent / 100;
+        long blocked = 0;
+        int maxSide = Math.max(2, Math.min(cols, rows) / 20);
+        for(int attempts = 0; blocked < target && attempts < cols * rows; attempts++) {
+            int w = 1 + rand.nextInt(maxSide), h = 1 + rand.nextInt(maxSide);
+            int c = rand.nextInt(cols), r = rand.nextInt(rows);
+            int left = c * tileSize, top = r * tileSize;
+            int right = Math.min(cols, c + w) * tileSize, bottom = Math.min(rows, r + h) * tileSize;
+            if(map.nearPoint(left, top, right, bottom, 150)) continue;  // 出生点和补给点附近保持空旷
+            blocked += map.block(left, top, right, bottom);
+        }
+        map.index();
+        return map;
+    }
+
+    /**
+     * 判断矩形是否靠近某个出生点或补给点
+     */
+    private boolean nearPoint(int left, int top, int right, int bottom, int margin) {
+        for(int[] s : spawns)
+            if(near(s[1], s[2], left, top, right, bottom, margin)) return true;
+        for(int[] p : pickups)
+            if(near(p[0], p[1], left, top, right, bottom, margin)) return true;
+        return false;
+    }
+
+    private static boolean near(int x, int y, int left, int top, int right, int bottom, int margin) {
+        return x + margin > left && x - margin < right && y + margin > top && y - margin < bottom;
+    }
+
+    /**
+     * 把像素矩形覆盖的瓦片设为障碍
+     * @return 新增的障碍瓦片数量
+     */
+    int block(int left, int top, int right, int bottom) {
+        int added = 0;
+        for(int r = Math.max(0, top / tileSize); r < Math.min(rows, (bottom + tileSize - 1) / tileSize); r++)
+            for(int c = Math.max(0, left / tileSize); c < Math.min(cols, (right + tileSize - 1) / tileSize); c++) {
+                int i = r * cols + c;
+                if((blockers[i >> 6] & (1L << i)) == 0) added++;
+                blockers[i >> 6] |= 1L << i;
+            }
+        return added;
+    }
+
+    void addSpawn(int kind, int x, int y) {
+        spawns.add(new int[]{kind, x, y});
+    }
+
+    void addPickup(int x, int y) {
+        pickups.add(new int[]{x, y});
+    }
+
+    /**
+     * 把障碍瓦片合并成矩形（贪心：按行优先找到未合并的障碍瓦片，先向右再向下尽量扩展）
+     * 并建立瓦片到矩形的索引和绘制顺序；之后地图不再修改，可以被多个世界共享
+     */
+    private void index() {
+        rectOf = new int[cols * rows];
+        List<int[]> list = new ArrayList<>();
+        for(int r = 0; r < rows; r++) {
+            for(int c = 0; c < cols; c++) {
+                if(!isBlocked(c, r) || rectOf[r * cols + c] != 0) continue;
+                int w = 1;
+                while(c + w < cols && isBlocked(c + w, r) && rectOf[r * cols + c + w] == 0) w++;
+                int h = 1;
+                grow:
+                while(r + h < rows) {
+                    for(int k = 0; k < w; k++)
+                        if(!isBlocked(c + k, r + h) || rectOf[(r + h) * cols + c + k] != 0) break grow;
+                    h++;
+                }
+                list.add(new int[]{c * tileSize, r * tileSize, (c + w) * tileSize, (r + h) * tileSize});
+                for(int y = r; y < r + h; y++)
+                    Arrays.fill(rectOf, y * cols + c, y * cols + c + w, list.size());
+            }
+        }
+        rects = new int[list.size() * 4];
+        for(int i = 0; i < list.size(); i++)
+            System.arraycopy(list.get(i), 0, rects, i * 4, 4);
+
+        Integer[] order = new Integer[list.size()];
+        for(int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> getRectCenterY(a) != getRectCenterY(b)
+                ? getRectCenterY(a) - getRectCenterY(b) : getRectCenterX(a) - getRectCenterX(b));
+        drawOrder = new int[order.length];
+        drawRank = new int[order.length];
+        for(int i = 0; i < order.length; i++) {
+            drawOrder[i] = order[i];
+            drawRank[order[i]] = i;
+            overhang = Math.max(overhang, (rects[order[i] * 4 + 3] - rects[order[i] * 4 + 1] + 3) / 4);
+        }
+    }
+
+    /**
+     * 读取地图文件（内存映射）
+     * @param file 地图文件
+     * @return 地图
+     * @throws IOException 读取失败或不是地图文件
+     */
+    public static TileMap load(File file) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buf);
+        } catch (IllegalArgumentException | java.nio.BufferUnderflowException e) {
+            throw new IOException("地图文件已损坏: " + file, e);
+        }
+    }
+
+    /**
+     * 从缓冲区读取地图（格式见类注释，读到地图末尾为止）
+     * @param buf 缓冲区
+     * @return 地图
+     * @throws IllegalArgumentException 不是地图数据或版本不支持
+     */
+    public static TileMap read(ByteBuffer buf) {
+        if(buf.getInt() != MAGIC) throw new IllegalArgumentException("不是ZombieCrisis地图数据");
+        int version = buf.getInt();
+        if(version != VERSION) throw new IllegalArgumentException("不支持的地图版本: " + version);
+        TileMap map = new TileMap(buf.getInt(), buf.getInt(), buf.getInt());
+        int spawnCount = buf.getInt();
+        int pickupCount = buf.getInt();
+        buf.asLongBuffer().get(map.blockers);
+        buf.position(buf.position() + map.blockers.length * 8);
+        for(int i = 0; i < spawnCount; i++)
+            map.addSpawn(buf.getInt(), buf.getInt(), buf.getInt());
+        for(int i = 0; i < pickupCount; i++)
+            map.addPickup(buf.getInt(), buf.getInt());
+        map.index();
+        return map;
+    }
+
+    /**
+     * 写入缓冲区
+     * @param buf 缓冲区（剩余空间至少getByteSize）
+     */
+    public void write(ByteBuffer buf) {
+        buf.putInt(MAGIC).putInt(VERSION).putInt(tileSize).putInt(cols).putInt(rows);
+        buf.putInt(spawns.size()).putInt(pickups.size());
+        buf.asLongBuffer().put(blockers);
+        buf.position(buf.position() + blockers.length * 8);
+        for(int[] s : spawns)
+            buf.putInt(s[0]).putInt(s[1]).putInt(s[2]);
+        for(int[] p : pickups)
+            buf.putInt(p[0]).putInt(p[1]);
+    }
+
+    /**
+     * 获取编码后的字节数
+     * @return 字节数
+     */
+    public int getByteSize() {
+        return HEADER_SIZE + blockers.length * 8 + spawns.size() * 12 + pickups.size() * 8;
+    }
+
+    /**
+     * 保存到文件
+     * @param file 地图文件
+     * @throws IOException 写入失败
+     */
+    public void save(File file) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(getByteSize());
+            write(channel.map(FileChannel.MapMode.READ_WRITE, 0, getByteSize()));
+        }
+    }
+
+    /**
+     * 判断瓦片是否为障碍
+     * @param col 列
+     * @param row 行
+     * @return 是否为障碍（地图外视为障碍）
+     */
+    public boolean isBlocked(int col, int row) {
+        if(col < 0 || row < 0 || col >= cols || row >= rows) return true;
+        int i = row * cols + col;
+        return (blockers[i >> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * 判断像素坐标是否在障碍上
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 是否在障碍上
+     */
+    public boolean isBlockedAt(int x, int y) {
+        return isBlocked(Math.floorDiv(x, tileSize), Math.floorDiv(y, tileSize));
+    }
+
+    /**
+     * 查找下一个可能与圆形碰撞的障碍矩形
+     * 检查圆的包围盒（向左上多扩展1像素，包含刚好接触的情况）覆盖的瓦片，
+     * 返回其中下标大于after的最小矩形下标；调用方按下标顺序逐个处理，与按列表顺序检测墙壁相同
+     * @param x 圆心X坐标
+     * @param y 圆心Y坐标
+     * @param radius 半径
+     * @param after 上一个处理的矩形下标（第一次为-1）
+     * @return 矩形下标，没有时返回-1
+     */
+    public int nextRect(int x, int y, int radius, int after) {
+        int c0 = Math.max(0, Math.floorDiv(x - radius - 1, tileSize));
+        int c1 = Math.min(cols - 1, Math.floorDiv(x + radius, tileSize));
+        int r0 = Math.max(0, Math.floorDiv(y - radius - 1, tileSize));
+        int r1 = Math.min(rows - 1, Math.floorDiv(y + radius, tileSize));
+        int best = Integer.MAX_VALUE;
+        for(int r = r0; r <= r1; r++) {
+            for(int c = c0; c <= c1; c++) {
+                int id = rectOf[r * cols + c] - 1;
+                if(id > after && id < best) best = id;
+            }
+        }
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+     * 设置视口，之后的draw只绘制视口内的障碍矩形
+     * 扫描视口（上下各扩展墙壁图片超出矩形的距离）覆盖的瓦片收集矩形，再按绘制顺序排列，
+     * 耗时与视口大小有关，与地图大小无关。视口状态保存在地图中，只应由绘制线程调用
+     * @param left 左边界
+     * @param top 上边界
+     * @param right 右边界
+     * @param bottom 下边界
+     */
+    public void setView(int left, int top, int right, int bottom) {
+        if(view == null) {
+            view = new int[drawOrder.length];
+            viewStamp = new int[drawOrder.length];
+        }
+        stamp++;
+        int c0 = Math.max(0, Math.floorDiv(left, tileSize));
+        int c1 = Math.min(cols - 1, Math.floorDiv(right, tileSize));
+        int r0 = Math.max(0, Math.floorDiv(top - overhang, tileSize));
+        int r1 = Math.min(rows - 1, Math.floorDiv(bottom + overhang, tileSize));
+        int n = 0;
+        for(int r = r0; r <= r1; r++) {
+            for(int c = c0; c <= c1; c++) {
+                int id = rectOf[r * cols + c] - 1;
+                if(id < 0 || viewStamp[id] == stamp) continue;
+                viewStamp[id] = stamp;
+                view[n++] = drawRank[id];
+            }
+        }
+        Arrays.sort(view, 0, n);
+        for(int i = 0; i < n; i++)
+            view[i] = drawOrder[view[i]];
+        viewCount = n;
+    }
+
+    /**
+     * 取消视口，之后的draw绘制所有障碍矩形
+     */
+    public void clearView() {
+        viewCount = -1;
+    }
+
+    /**
+     * 按绘制顺序绘制障碍矩形，直到中心Y坐标超过maxY
+     * 与按Y坐标排序的对象交替调用，障碍物和对象之间的遮挡关系与墙壁作为对象时相同；
+     * 设置了视口时只绘制视口内的矩形
+     * @param g 图形上下文
+     * @param from 绘制顺序中的起始位置
+     * @param maxY 中心Y坐标上限
+     * @return 下一次的起始位置
+     */
+    public int draw(Graphics g, int from, int maxY) {
+        int[] order = viewCount < 0 ? drawOrder : view;
+        int count = viewCount < 0 ? drawOrder.length : viewCount;
+        while(from < count && getRectCenterY(order[from]) <= maxY) {
+            int i = order[from++] * 4;
+            Wall.drawRect(g, rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+        }
+        return from;
+    }
+
+    public int getRectCount() {
+        return rects.length / 4;
+    }
+
+    public int getRectLeft(int i) {
+        return rects[i * 4];
+    }
+
+    public int getRectTop(int i) {
+        return rects[i * 4 + 1];
+    }
+
+    public int getRectRight(int i) {
+        return rects[i * 4 + 2];
+    }
+
+    public int getRectBottom(int i) {
+        return rects[i * 4 + 3];
+    }
+
+    private int getRectCenterX(int i) {
+        return (rects[i * 4] + rects[i * 4 + 2]) / 2;
+    }
+
+    private int getRectCenterY(int i) {
+        return (rects[i * 4 + 1] + rects[i * 4 + 3]) / 2;
+    }
+
+    /**
+     * 获取指定类型的出生点
+     * @param kind 类型（SPAWN_HERO或SPAWN_ENEMY）
+     * @return 坐标列表（每项为X、Y）
+     */
+    public List<int[]> getSpawns(int kind) {
+        List<int[]> list = new ArrayList<>();
+        for(int[] s : spawns)
+            if(s[0] == kind) list.add(new int[]{s[1], s[2]});
+        return list;
+    }
+
+    /**
+     * 获取补给点
+     * @return 坐标列表（每项为X、Y）
+     */
+    public List<int[]> getPickups() {
+        return pickups;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getWidth() {
+        return cols * tileSize;
+    }
+
+    public int getHeight() {
+        return rows * tileSize;
+    }
+
+    /**
+     * 地图工具入口
+     * generate 文件 [列数] [行数] [障碍百分比] [种子]：随机生成地图并保存（默认1000×1000瓦片、15%、种子1）
+     * bench 文件 [帧数] [英雄数量]：测量读取地图、创建世界的耗时，再运行指定帧数（默认600帧、2个英雄，英雄由HeroBot控制）
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        String mode = args.length > 0 ? args[0] : "bench";
+        File file = new File(args.length > 1 ? args[1] : "map.zcm");
+        if("generate".equals(mode)) {
+            int cols = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+            int rows = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+            int percent = args.length > 4 ? Integer.parseInt(args[4]) : 15;
+            long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+            long t0 = System.nanoTime();
+            TileMap map = generate(cols, rows, Grid.LENGTH, percent, seed);
+            map.save(file);
+            System.out.printf("生成%d×%d瓦片（%d×%d像素）的地图，%d个障碍矩形，%d字节，用时%.1fms%n",
+                    cols, rows, map.getWidth(), map.getHeight(), map.getRectCount(), map.getByteSize(), (System.nanoTime() - t0) / 1e6);
+            return;
+        }
+
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        int heroNum = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        long t0 = System.nanoTime();
+        TileMap map = load(file);
+        long t1 = System.nanoTime();
+        World world = new World(map, heroNum, 1, WaveRules.DEFAULT);
+        long t2 = System.nanoTime();
+        System.out.printf("地图%d×%d瓦片（%d×%d像素），%d个障碍矩形：读取%.1fms，创建世界%.1fms%n",
+                map.getCols(), map.getRows(), map.getWidth(), map.getHeight(), map.getRectCount(),
+                (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+
+        HeroBot[] bots = new HeroBot[heroNum];
+        for(int i = 0; i < heroNum; i++)
+            bots[i] = new HeroBot(i);
+        long[] costs = new long[ticks];
+        int n = 0;
+        while(n < ticks && !world.End()) {
+            long start = System.nanoTime();
+            for(HeroBot bot : bots)
+                bot.apply(world);
+            world.tick();
+            costs[n++] = System.nanoTime() - start;
+        }
+        if(n == 0) return;
+        Arrays.sort(costs, 0, n);
+        System.out.printf("运行%d帧（第%d波，敌人%d个）：中位数%.3fms p99 %.3fms 最长%.3fms%n", n, world.getWave(),
+                world.getCurrentEnemyNum(), costs[n / 2] / 1e6, costs[Math.min(n - 1, n * 99 / 100)] / 1e6, costs[n - 1] / 1e6);
+    }
+}
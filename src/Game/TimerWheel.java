@@ -0,0 +1,190 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 时间轮类（哈希时间轮）
+ * 
+ * 按帧调度延迟事件（宝箱重生、尸体移除、保护时间结束、敌人生成延迟等）
+ * 
+ * 工作原理：
+ * - 时间轮有SLOTS个槽位，事件按到期帧对槽位数取模放入对应槽位
+ * - 每帧只检查当前帧对应的一个槽位，执行其中已到期的事件
+ * - 延迟超过一圈的事件留在槽位中，等转到它到期的那一圈再执行
+ * 
+ * 每帧的开销只与本帧槽位中的事件数有关，而不是与所有带倒计时的对象数量有关
+ * 同一帧到期的事件按登记顺序执行，保证模拟结果可重现
+ * 每个事件带有递增的登记序号，存档时记录到期帧和序号，读档时按序号重新登记即可恢复相同的执行顺序
+ */
+public class TimerWheel {
+    public static final int SLOTS = 256;          // 槽位数量（必须是2的幂）
+    private static final int MASK = SLOTS - 1;    // 取模掩码
+    private List<TimerEvent>[] slots;             // 槽位数组
+    private List<TimerEvent> due;                 // 本帧到期的事件（复用，避免每帧分配）
+    private long currentTick;                     // 当前帧
+    private long nextSeq;                         // 下一个事件的登记序号
+    private int size;                             // 等待中的事件数量
+
+    /**
+     * 计时事件
+     * 记录到期帧和要执行的动作
+     */
+    public static class TimerEvent {
+        private final long deadline;    // 到期帧
+        private final long seq;         // 登记序号
+        private final Runnable action;  // 到期时执行的动作
+        private boolean cancelled;      // 是否已取消
+
+        TimerEvent(long deadline, long seq, Runnable action) {
+            this.deadline = deadline;
+            this.seq = seq;
+            this.action = action;
+            this.cancelled = false;
+        }
+
+        /**
+         * 取消事件
+         * 已取消的事件到期时不会执行
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 构造方法
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel() {
+        this.slots = new List[SLOTS];
+        for(int i = 0; i < SLOTS; i++)
+            slots[i] = new ArrayList<>();
+        this.due = new ArrayList<>();
+        this.currentTick = 0;
+        this.nextSeq = 0;
+        this.size = 0;
+    }
+
+    /**
+     * 登记延迟事件
+     * @param delay 延迟帧数（至少1帧，即最早在下一帧执行）
+     * @param action 到期时执行的动作
+     * @return 计时事件（可用于取消）
+     */
+    public TimerEvent schedule(int delay, Runnable action) {
+        if(delay < 1) delay = 1;
+        TimerEvent event = new TimerEvent(currentTick + delay, nextSeq++, action);
+        slots[(int) (event.deadline & MASK)].add(event);
+        size++;
+        return event;
+    }
+
+    /**
+     * 判断事件是否仍在等待执行
+     * @param event 计时事件（可为null）
+     * @return 未取消且尚未到期时返回true
+     */
+    public boolean isPending(TimerEvent event) {
+        return event != null && !event.cancelled && event.deadline > currentTick;
+    }
+
+    /**
+     * 清空时间轮并设置当前帧（读档时使用）
+     * 之后调用restoreEvent重新登记等待中的事件
+     * @param tick 当前帧
+     * @param nextSeq 下一个事件的登记序号
+     */
+    public void restore(long tick, long nextSeq) {
+        for(List<TimerEvent> slot : slots)
+            slot.clear();
+        this.currentTick = tick;
+        this.nextSeq = nextSeq;
+        this.size = 0;
+    }
+
+    /**
+     * 重新登记存档中的事件（保留原到期帧和登记序号）
+     * 在槽中按登记序号插入，因此事件可以按任意顺序恢复
+     * @param deadline 到期帧
+     * @param seq 登记序号
+     * @param action 到期时执行的动作
+     * @return 计时事件
+     */
+    public TimerEvent restoreEvent(long deadline, long seq, Runnable action) {
+        if(deadline <= currentTick) throw new IllegalArgumentException("事件已过期: " + deadline);
+        TimerEvent event = new TimerEvent(deadline, seq, action);
+        List<TimerEvent> slot = slots[(int) (deadline & MASK)];
+        int i = slot.size();
+        while(i > 0 && slot.get(i - 1).seq > seq) i--;
+        slot.add(i, event);
+        size++;
+        return event;
+    }
+
+    /**
+     * 推进一帧
+     * 执行当前帧槽位中所有已到期的事件（事件中可以登记新的事件）
+     */
+    public void advance() {
+        currentTick++;
+        List<TimerEvent> slot = slots[(int) (currentTick & MASK)];
+        
+        // 把到期事件移出槽位，未到期的事件按原顺序保留
+        int kept = 0;
+        for(int i = 0; i < slot.size(); i++){
+            TimerEvent event = slot.get(i);
+            if(event.deadline <= currentTick) {
+                due.add(event);
+            } else {
+                slot.set(kept++, event);
+            }
+        }
+        while(slot.size() > kept)
+            slot.remove(slot.size() - 1);
+        size -= due.size();
+        
+        // 按登记顺序执行到期事件
+        for(int i = 0; i < due.size(); i++){
+            TimerEvent event = due.get(i);
+            if(!event.cancelled) event.action.run();
+        }
+        due.clear();
+    }
+
+    /**
+     * 获取当前帧
+     * @return 当前帧
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * 获取下一个事件的登记序号
+     * @return 登记序号
+     */
+    public long getNextSeq() {
+        return nextSeq;
+    }
+
+    /**
+     * 获取等待中的事件数量
+     * @return 事件数量
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,128 @@
+package Game;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 变长整数编码工具类
+ *
+ * 每个字节低7位存放数据，最高位表示后面是否还有字节（与protobuf的varint相同）：
+ * - 0~127只占1个字节，坐标增量、编号等小数字大多只需要1~2个字节
+ * - 有符号数先做ZigZag变换（0,-1,1,-2... 映射为 0,1,2,3...），负数的小增量同样很短
+ *
+ * 网络快照和存档共用这套编码
+ */
+public class Varint {
+    public static final int MAX_INT_BYTES = 5;  // 一个int编码后最多的字节数
+
+    private Varint() {
+    }
+
+    /**
+     * 写入无符号变长整数
+     * @param buf 目标缓冲区
+     * @param value 数值（按无符号处理）
+     */
+    public static void putVarInt(ByteBuffer buf, int value) {
+        while((value & ~0x7F) != 0){
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    /**
+     * 读取无符号变长整数
+     * 数据不完整时抛出BufferUnderflowException（调用方可据此等待更多数据）
+     * @param buf 源缓冲区
+     * @return 数值
+     */
+    public static int getVarInt(ByteBuffer buf) {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("变长整数过长");
+    }
+
+    /**
+     * 从输入流读取无符号变长整数
+     * @param in 输入流
+     * @return 数值
+     * @throws IOException 流已结束或读取失败
+     */
+    public static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            int b = in.read();
+            if(b < 0) throw new IOException("连接已关闭");
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("变长整数过长");
+    }
+
+    /**
+     * 写入有符号变长整数（ZigZag编码）
+     * @param buf 目标缓冲区
+     * @param value 数值
+     */
+    public static void putSignedVarInt(ByteBuffer buf, int value) {
+        putVarInt(buf, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * 读取有符号变长整数（ZigZag编码）
+     * @param buf 源缓冲区
+     * @return 数值
+     */
+    public static int getSignedVarInt(ByteBuffer buf) {
+        int raw = getVarInt(buf);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * 写入无符号变长长整数
+     * @param buf 目标缓冲区
+     * @param value 数值（按无符号处理）
+     */
+    public static void putVarLong(ByteBuffer buf, long value) {
+        while((value & ~0x7FL) != 0){
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    /**
+     * 读取无符号变长长整数
+     * @param buf 源缓冲区
+     * @return 数值
+     */
+    public static long getVarLong(ByteBuffer buf) {
+        long value = 0;
+        for(int shift = 0; shift < 70; shift += 7){
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("变长整数过长");
+    }
+
+    /**
+     * 计算无符号变长整数编码后的字节数
+     * @param value 数值
+     * @return 字节数（1~5）
+     */
+    public static int sizeOf(int value) {
+        int size = 1;
+        while((value & ~0x7F) != 0){
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
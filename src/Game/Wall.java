@@ -5,7 +5,7 @@ import java.awt.*;
 /**
  * 墙壁类
  * 继承自GameObject，作为地图中的障碍物
- * 不可破坏，阻挡移动和寻路
+ * 不可破坏，阻挡移动和寻路，使用轴对齐包围盒作为碰撞体
  */
 public class Wall extends GameObject{
 
@@ -17,10 +17,40 @@ public class Wall extends GameObject{
      */
     public Wall(int x, int y, World world) {
         super("Wall", 50, 0, 99999, x, y, true, world);
-        // radius=50: 碰撞半径
+        // radius=50: 占用网格的半径（寻路用）
         // speed=0: 不移动
         // HP=99999: 不可破坏
         // collidable=true: 可碰撞，阻挡移动
+        this.halfWidth = 50;   // 碰撞体为100x100的轴对齐包围盒（墙壁底座）
+        this.halfHeight = 50;
+    }
+
+    /**
+     * 构造方法（任意大小的墙壁，用作地图障碍矩形的碰撞体）
+     * @param left 左边界
+     * @param top 上边界
+     * @param right 右边界
+     * @param bottom 下边界
+     * @param world 所属世界
+     */
+    public Wall(int left, int top, int right, int bottom, World world) {
+        this((left + right) / 2, (top + bottom) / 2, world);
+        place(left, top, right, bottom);
+    }
+
+    /**
+     * 把墙壁移到指定矩形（世界用同一个对象依次检测地图中的各个障碍矩形）
+     * @param left 左边界
+     * @param top 上边界
+     * @param right 右边界
+     * @param bottom 下边界
+     */
+    void place(int left, int top, int right, int bottom) {
+        this.x = (left + right) / 2;
+        this.y = (top + bottom) / 2;
+        this.halfWidth = (right - left) / 2;
+        this.halfHeight = (bottom - top) / 2;
+        this.radius = Math.max(halfWidth, halfHeight);
     }
 
     /**
@@ -28,7 +58,31 @@ public class Wall extends GameObject{
      * @param g 图形上下文
      */
     public void draw(Graphics g){
-        g.drawImage(imgMap.get(name), x - 50, y - 75, 100, 150, null);
+        drawRect(g, x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight);
+    }
+
+    /**
+     * 在指定位置绘制墙壁（静态版本，供只持有快照的客户端使用）
+     * @param g 图形上下文
+     * @param x X坐标
+     * @param y Y坐标
+     */
+    public static void drawAt(Graphics g, int x, int y){
+        g.drawImage(imgMap.get("Wall"), x - 50, y - 75, 100, 150, null);
+    }
+
+    /**
+     * 绘制覆盖指定矩形的墙壁（地图障碍矩形）
+     * 图片高度是底座的1.5倍，向上伸出底座高度的1/4，100x100的矩形与drawAt相同
+     * @param g 图形上下文
+     * @param left 左边界
+     * @param top 上边界
+     * @param right 右边界
+     * @param bottom 下边界
+     */
+    public static void drawRect(Graphics g, int left, int top, int right, int bottom){
+        int h = bottom - top;
+        g.drawImage(imgMap.get("Wall"), left, top - h / 4, right - left, h + h / 2, null);
     }
     
     /**
@@ -0,0 +1,137 @@
+package Game;
+
+/**
+ * 波次规则
+ *
+ * 敌人生成和补给的可调参数，默认值与原来写死在World和Box中的数值相同：
+ * - 第一波敌人数量3，每波增加3个
+ * - 同时存在的敌人最多100个（0表示没有上限）
+ * - 10%的敌人是Ghost
+ * - 宝箱被拾取后Box.DELAYTIME帧重生
+ * - 每50帧生成1个敌人，位置在四条边的中点附近
+ * 尸潮场景（horde）取消上限，每帧按生成预算批量生成，位置从网格中随机选择可通行且远离英雄的格子
+ * 规则属于模拟状态，随世界一起存档，平衡测试（BalanceRunner）用它比较不同的参数
+ */
+public class WaveRules {
+    public static final WaveRules DEFAULT = new WaveRules(3, 3, 100, 10, Box.DELAYTIME, 1, 50, false);
+
+    private final int initialEnemies;   // 第一波敌人数量
+    private final int growth;           // 每波增加的敌人数量
+    private final int enemyCap;         // 同时存在的敌人数量上限
+    private final int ghostPercent;     // Ghost占生成敌人的百分比
+    private final int boxDelay;         // 宝箱重生延迟（帧数）
+    private final int spawnBudget;      // 每次生成的敌人数量上限
+    private final int spawnInterval;    // 两次生成之间的间隔（帧数）
+    private final boolean gridSpawn;    // 是否从网格中选择生成位置（否则在四条边的中点附近）
+
+    /**
+     * 构造方法
+     * @param initialEnemies 第一波敌人数量
+     * @param growth 每波增加的敌人数量
+     * @param enemyCap 同时存在的敌人数量上限
+     * @param ghostPercent Ghost占生成敌人的百分比（0~100）
+     * @param boxDelay 宝箱重生延迟（帧数）
+     * @param spawnBudget 每次生成的敌人数量上限
+     * @param spawnInterval 两次生成之间的间隔（帧数，至少1）
+     * @param gridSpawn 是否从网格中选择生成位置
+     */
+    public WaveRules(int initialEnemies, int growth, int enemyCap, int ghostPercent, int boxDelay,
+                     int spawnBudget, int spawnInterval, boolean gridSpawn) {
+        if(initialEnemies < 1 || growth < 0 || enemyCap < 0 || ghostPercent < 0 || ghostPercent > 100 || boxDelay < 0
+                || spawnBudget < 1 || spawnInterval < 1)
+            throw new IllegalArgumentException("波次规则无效: " + initialEnemies + "," + growth + "," + enemyCap + "," + ghostPercent
+                    + "," + boxDelay + "," + spawnBudget + "," + spawnInterval);
+        this.initialEnemies = initialEnemies;
+        this.growth = growth;
+        this.enemyCap = enemyCap;
+        this.ghostPercent = ghostPercent;
+        this.boxDelay = boxDelay;
+        this.spawnBudget = spawnBudget;
+        this.spawnInterval = spawnInterval;
+        this.gridSpawn = gridSpawn;
+    }
+
+    /**
+     * 尸潮场景：一波count个敌人，没有上限，每帧最多生成budget个，位置从网格中选择
+     * @param count 敌人数量（全部消灭后再来同样数量的一波）
+     * @param budget 每帧生成预算
+     * @return 波次规则
+     */
+    public static WaveRules horde(int count, int budget) {
+        return new WaveRules(count, 0, 0, DEFAULT.ghostPercent, DEFAULT.boxDelay, budget, 1, true);
+    }
+
+    /**
+     * 按"名称=值"的列表修改默认规则
+     * 名称：initial（第一波敌人数量）、growth（每波增加）、cap（敌人上限，0表示没有上限）、ghost（Ghost百分比）、
+     * box（宝箱重生延迟）、budget（每次生成数量）、interval（生成间隔）、grid（1表示从网格中选择生成位置）
+     * @param spec 例如"growth=5,cap=150"，多个参数用逗号分隔，空字符串表示默认规则
+     * @return 波次规则
+     */
+    public static WaveRules parse(String spec) {
+        int initial = DEFAULT.initialEnemies, growth = DEFAULT.growth, cap = DEFAULT.enemyCap;
+        int ghost = DEFAULT.ghostPercent, box = DEFAULT.boxDelay;
+        int budget = DEFAULT.spawnBudget, interval = DEFAULT.spawnInterval;
+        boolean grid = DEFAULT.gridSpawn;
+        for(String item : spec.split(",")) {
+            if(item.trim().isEmpty()) continue;
+            String[] kv = item.split("=");
+            if(kv.length != 2) throw new IllegalArgumentException("波次参数格式应为名称=值: " + item);
+            int value = Integer.parseInt(kv[1].trim());
+            switch (kv[0].trim()) {
+                case "initial": initial = value; break;
+                case "growth": growth = value; break;
+                case "cap": cap = value; break;
+                case "ghost": ghost = value; break;
+                case "box": box = value; break;
+                case "budget": budget = value; break;
+                case "interval": interval = value; break;
+                case "grid": grid = value != 0; break;
+                default: throw new IllegalArgumentException("未知的波次参数: " + kv[0]);
+            }
+        }
+        return new WaveRules(initial, growth, cap, ghost, box, budget, interval, grid);
+    }
+
+    public int getInitialEnemies() {
+        return initialEnemies;
+    }
+
+    public int getGrowth() {
+        return growth;
+    }
+
+    /**
+     * 获取同时存在的敌人数量上限
+     * @return 上限，0表示没有上限
+     */
+    public int getEnemyCap() {
+        return enemyCap;
+    }
+
+    public int getGhostPercent() {
+        return ghostPercent;
+    }
+
+    public int getBoxDelay() {
+        return boxDelay;
+    }
+
+    public int getSpawnBudget() {
+        return spawnBudget;
+    }
+
+    public int getSpawnInterval() {
+        return spawnInterval;
+    }
+
+    public boolean isGridSpawn() {
+        return gridSpawn;
+    }
+
+    @Override
+    public String toString() {
+        return "initial=" + initialEnemies + ",growth=" + growth + ",cap=" + enemyCap + ",ghost=" + ghostPercent + ",box=" + boxDelay
+                + ",budget=" + spawnBudget + ",interval=" + spawnInterval + ",grid=" + (gridSpawn ? 1 : 0);
+    }
+}
@@ -1,6 +1,7 @@
 package Game;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -12,10 +13,11 @@ public abstract class Weapon extends GameObject {
     protected int state;           // 武器状态（-1未使用，>=0攻击动画帧）
     protected Role host;           // 持有者
     protected int coldDownTime;    // 冷却时间（帧数）
-    protected int coldDown;        // 当前冷却计数器
+    protected long readyTick;      // 冷却结束的帧
     protected int damage;          // 伤害值
     protected int attackRange;     // 攻击范围
     protected int attackAngle;     // 攻击角度（度）
+    protected int attackMask;      // 攻击掩码（可攻击的碰撞层，由持有者所在层决定）
 
     /**
      * 构造方法
@@ -34,10 +36,11 @@ public abstract class Weapon extends GameObject {
         super(name, radius, speed, host.getDir(), 9999, host.x, host.y, collidable,  world);
         this.damage = damage;
         this.coldDownTime = coldDownTime;
-        this.coldDown = 0;
+        this.readyTick = 0;
         this.host = host;
         this.attackRange = attackRange;
         this.attackAngle = attackAngle;
+        this.attackMask = CollisionLayers.attackMaskOf(host.getCollisionLayer());
         state = -1;  // 初始状态：未使用
     }
 
@@ -53,17 +56,14 @@ public abstract class Weapon extends GameObject {
      * 绘制普通攻击动画
      * 显示角色的攻击动画帧
      * @param g 图形上下文
-     * @return 上一帧的状态
+     * @param frame 要绘制的攻击动画帧（0-8）
      */
-    public int drawNomalAttack(Graphics g){
-        if(state < 0) return state;  // 未在攻击状态
+    public void drawNomalAttack(Graphics g, int frame){
+        if(frame < 0) return;  // 未在攻击状态
         
-        int lastState = state;
-        int picX = getState() / 3 + 5;  // 攻击动画在精灵图的第5-7列
+        int picX = frame / 3 + 5;  // 攻击动画在精灵图的第5-7列
         int picY = (host.getDir() == Direction.STOP ? host.getOldDir() : host.getDir()).ordinal();
         drawOneImage(g, host.name, Role.PICOFFSET, host.x, host.y, picX, picY);
-        maintainState(9);  // 攻击动画共9帧
-        return lastState;
     }
 
     /**
@@ -98,17 +98,18 @@ public abstract class Weapon extends GameObject {
             // 跳过自己
             if(this.host.equals(object)) continue;
             
-            // 敌人不攻击敌人
-            if(this.host instanceof Enemy && object instanceof Enemy) continue;
+            // 攻击掩码粗筛（例如敌人不攻击敌人）
+            if((attackMask & object.getCollisionLayer()) == 0) continue;
             
             int objX = object.getX();
             int objY = object.getY();
             int deltaX = objX - this.getX();
             int deltaY = - objY + this.getY();  // Y轴向下为正，需要取反
-            double D = getDistance(objX, objY, this.getX(),this.getY());
             
-            // 距离判定：目标在攻击范围内
-            if(D < getAttackRange()){
+            // 距离判定：目标在攻击范围内（先比较距离平方，范围外的对象无需开方）
+            long range = getAttackRange();
+            if((long) deltaX * deltaX + (long) deltaY * deltaY < range * range){
+                double D = Math.sqrt((double) deltaX * deltaX + (double) deltaY * deltaY);
                 // 计算目标相对于武器的角度
                 double sinA = deltaY / D;
                 double cosA = deltaX / D;
@@ -151,17 +152,6 @@ public abstract class Weapon extends GameObject {
         return state;
     }
 
-    /**
-     * 维护冷却时间
-     * 每帧递减冷却计数器
-     * @return 剩余冷却时间
-     */
-    public int maintainColdDown(){
-        if(coldDown > 0)
-            coldDown--;
-        return coldDown;
-    }
-
     /**
      * 设置冷却时间
      * @param coldDownTime 冷却时间（帧数）
@@ -172,10 +162,10 @@ public abstract class Weapon extends GameObject {
 
     /**
      * 设置冷却
-     * 使用武器后调用，开始冷却
+     * 使用武器后调用，记录冷却结束的帧（不需要逐帧递减）
      */
     public void setColdDown(){
-        coldDown = coldDownTime;
+        readyTick = world.getTick() + coldDownTime;
     }
 
     /**
@@ -183,7 +173,7 @@ public abstract class Weapon extends GameObject {
      * @return 剩余冷却帧数
      */
     public int getColdDown() {
-        return coldDown;
+        return (int) Math.max(0, readyTick - world.getTick());
     }
 
     /**
@@ -237,6 +227,14 @@ public abstract class Weapon extends GameObject {
         this.state = -1;
     }
 
+    /**
+     * 获取持有者
+     * @return 持有该武器的角色
+     */
+    public GameObject getOwner() {
+        return host;
+    }
+
     /**
      * 判断是否为指定角色的武器
      * @param role 角色对象
@@ -249,6 +247,27 @@ public abstract class Weapon extends GameObject {
         return false;
     }
 
+    /**
+     * 写入武器状态（攻击动画帧和冷却结束的帧）
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        super.writeState(buf);
+        Varint.putSignedVarInt(buf, state);
+        Varint.putVarLong(buf, readyTick);
+    }
+
+    /**
+     * 读取武器状态
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        super.readState(buf, reader);
+        this.state = Varint.getSignedVarInt(buf);
+        this.readyTick = Varint.getVarLong(buf);
+    }
+
     /**
      * 转换为字符串
      * @return 武器名称
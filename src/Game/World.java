@@ -3,6 +3,7 @@ package Game;
 import javax.imageio.ImageIO;
 import java.io.*;
 import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -11,22 +12,68 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * 游戏世界类
  * 管理游戏中的所有对象、敌人生成、碰撞检测、游戏状态等核心逻辑
  * 使用CopyOnWriteArrayList保证线程安全
+ * 
+ * 对象按生命周期状态分别存放：
+ * - objects：活动对象（英雄、存活的敌人、弹丸），碰撞、攻击、寻找目标只遍历这里
+ * - statics：静态对象（墙壁、宝箱），只参与碰撞检测和寻路网格
+ * - corpses：尸体，只绘制，由计时器到期后移除
+ * 三种对象同时登记在空间索引中，用于按范围查找对象
  */
 public class World {
-    private CopyOnWriteArrayList<GameObject> objects;  // 游戏对象列表（线程安全）
+    public static final int MAX_HEROES = 4;            // 最多英雄数量
+    // 英雄出生位置（按加入顺序）
+    private static final int SPAWN_RADIUS = 14;            // 网格生成时预留的半径（Monster和Ghost的半径）
+    private static final int SPAWN_ATTEMPTS = 8;           // 网格生成时每个敌人最多尝试的位置数
+    private static final int SPAWN_SAFE_DISTANCE = 300;    // 网格生成时与英雄的最小距离
+    private CopyOnWriteArrayList<GameObject> objects;  // 活动对象列表（线程安全）
+    private CopyOnWriteArrayList<GameObject> statics;  // 静态对象列表
+    private CopyOnWriteArrayList<Role> corpses;        // 尸体列表
+    private List<Hero> heroes;                         // 所有英雄（包括死亡中的）
+    private List<GameObject> renderList;               // 绘制列表（视口内的对象按Y坐标排序，每帧复用）
     private CopyOnWriteArrayList<Blood> bloods;        // 血迹列表
+    private Border border;                             // 活动区域边界（不在对象列表中）
     private List<Box> pickedBoxes;                     // 已被拾取的宝箱列表（等待重生）
     private int maxBloodNum = 5000;                    // 最大血迹数量
     private int bloodNum;                              // 当前血迹编号
     private int width;                                 // 世界宽度
     private int height;                                // 世界高度
     private int maxEnemyNum;                           // 当前波次最大敌人数量
+    private int wave;                                  // 当前波次（从1开始）
     private int currentEnemyNum;                       // 当前存活敌人数量
+    private int killedEnemyNum;                        // 累计被消灭的敌人数量（统计数据，不写入存档）
     private int producedEnemyNum;                      // 当前波次已生成敌人数量
-    private int produceDelay;                          // 敌人生成延迟计数器
+    private boolean spawnReady;                        // 生成延迟是否结束（由计时器设置）
+    private long spawnReadyTick;                       // 生成延迟结束的帧
     private int boxDelay;                              // 宝箱生成延迟计数器
     private Image endImg;                              // 游戏结束图片
-    private int end;                                   // 游戏结束倒计时（-1表示未结束）
+    private long endTick;                              // 显示结束画面的帧（-1表示未结束）
+    private boolean ended;                             // 游戏是否完全结束（由计时器设置）
+    private TimerWheel timer;                          // 计时器（调度所有延迟事件）
+    private WorldGrids worldGrids;                     // 共享网格系统（每帧读阶段前更新一次）
+    private EnemyPlanner planner;                      // 敌人决策器（并行读阶段）
+    private int nextId;                                // 下一个分配的对象编号
+    private SpatialHash spatialIndex;                  // 空间索引（活动、静态对象和尸体）
+    private GameRandom random;                         // 随机数（所有影响模拟结果的随机数都从这里取）
+    private TimerWheel.TimerEvent spawnEvent;          // 生成延迟结束事件
+    private TimerWheel.TimerEvent endEvent;            // 游戏结束事件
+    private StateHash stateHash;                       // 每帧的状态哈希（用于一致性检查，可为null）
+    private ReplayWriter recorder;                     // 回放录制器（可为null）
+    private WaveRules rules;                           // 波次规则
+    private final TileMap map;                         // 地图（障碍物、出生点、补给点）
+    private final Wall obstacle;                       // 地图障碍矩形的碰撞体（复用）
+    private final List<int[]> enemySpawns;             // 地图中的敌人出生点
+    private final List<GameObject> spawnQuery = new ArrayList<>();  // 检查生成位置时复用的查询结果
+    private final List<GameObject> collisionQuery = new ArrayList<>();  // 碰撞检测时复用的查询结果（写阶段串行使用）
+    private int maxActiveRadius;                       // 活动对象的最大碰撞半径（碰撞检测的查询范围）
+    private TickProfile profile;                       // 分阶段耗时统计（null表示不统计）
+    private WorldStreamer streamer;                    // 分块流式加载（null表示整张地图都完整模拟）
+    private final HierarchicalPathfinder hierarchy;    // 分层寻路（远距离路线）
+    private final GridRaycast raycast;                 // 网格射线（远程攻击的视线和弹丸的扫掠碰撞）
+    private Pathfinder.Mode pathMode = Pathfinder.Mode.ASTAR;  // 敌人在网格上寻路的搜索模式
+    private boolean plannerReset;                      // INCREMENTAL模式下每次都从零开始搜索（对比测试用，不影响结果，不存档）
+    private boolean pathSmoothing = true;              // 是否把敌人的逐格路径拉直成几个拐点
+    private PathCache pathCache;                       // 路径缓存（null表示敌人不共享路径）
+    private boolean crowdSteering = true;              // 敌人是否在附近的敌人之间局部避让（碰撞后不再重新寻路）
 
     /**
      * 构造方法
@@ -35,69 +82,207 @@ public class World {
      * @param Doubleplayer 是否为双人模式
      */
     public World(int width, int height, boolean Doubleplayer) {
-        this.width = width;
-        this.height = height;
+        this(width, height, Doubleplayer ? 2 : 1);
+    }
+
+    /**
+     * 构造方法
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @param heroNum 英雄数量（1~MAX_HEROES，联机时每个玩家一个英雄）
+     */
+    public World(int width, int height, int heroNum) {
+        this(width, height, heroNum, System.nanoTime());
+    }
+
+    /**
+     * 构造方法
+     * 相同种子和相同输入得到完全相同的对局
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @param heroNum 英雄数量（1~MAX_HEROES）
+     * @param seed 随机数种子
+     */
+    public World(int width, int height, int heroNum, long seed) {
+        this(width, height, heroNum, seed, WaveRules.DEFAULT);
+    }
+
+    /**
+     * 构造方法
+     * 使用指定的波次规则（平衡测试）
+     * @param width 世界宽度
+     * @param height 世界高度
+     * @param heroNum 英雄数量（1~MAX_HEROES）
+     * @param seed 随机数种子
+     * @param rules 波次规则
+     */
+    public World(int width, int height, int heroNum, long seed, WaveRules rules) {
+        this(TileMap.arena(width, height), heroNum, seed, rules);
+    }
+
+    /**
+     * 构造方法
+     * 按地图放置英雄和宝箱，地图中的障碍物作为静态碰撞体和寻路网格中的不可通行区域
+     * @param map 地图
+     * @param heroNum 英雄数量（1~MAX_HEROES，不超过地图中英雄出生点的数量）
+     * @param seed 随机数种子
+     * @param rules 波次规则
+     */
+    public World(TileMap map, int heroNum, long seed, WaveRules rules) {
+        this(map);
+        this.rules = rules;
+        this.maxEnemyNum = rules.getInitialEnemies();
+        if(heroNum < 1 || heroNum > MAX_HEROES)
+            throw new IllegalArgumentException("英雄数量必须在1到" + MAX_HEROES + "之间: " + heroNum);
+        List<int[]> heroSpawns = map.getSpawns(TileMap.SPAWN_HERO);
+        if(heroNum > heroSpawns.size())
+            throw new IllegalArgumentException("地图只有" + heroSpawns.size() + "个英雄出生点: " + heroNum);
+        random.setState(seed);
+        
+        // 添加玩家（玩家1使用键盘组1，其余玩家使用键盘组0）
+        for(int i = 0; i < heroNum; i++)
+        	addObject(new Hero(heroSpawns.get(i)[0], heroSpawns.get(i)[1], i == 0 ? 1 : 0, this));
+        
+        // 在补给点添加宝箱
+        for(int[] p : map.getPickups())
+            addObject(new Box(p[0], p[1], this));
+    }
+
+    /**
+     * 构造方法（空世界，只有地图，没有任何对象，读档时由WorldCodec填充）
+     * @param map 地图
+     */
+    World(TileMap map) {
+        this.map = map;
+        this.enemySpawns = map.getSpawns(TileMap.SPAWN_ENEMY);
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.timer = new TimerWheel();                 // 必须在创建对象之前初始化（对象需要读取当前帧）
         this.objects = new CopyOnWriteArrayList<>();
+        this.statics = new CopyOnWriteArrayList<>();
+        this.corpses = new CopyOnWriteArrayList<>();
+        this.heroes = new ArrayList<>();
+        this.renderList = new ArrayList<>();
         this.bloods = new CopyOnWriteArrayList<>();
         this.pickedBoxes = new ArrayList<>();
         this.bloodNum = 0;
-        this.maxEnemyNum = 3;                          // 初始波次3个敌人
+        this.rules = WaveRules.DEFAULT;
+        this.maxEnemyNum = rules.getInitialEnemies();  // 初始波次3个敌人
+        this.wave = 1;
         this.currentEnemyNum = 0;
         this.producedEnemyNum = 0;
         this.boxDelay = 0;
-        this.end = -1;                                 // -1表示游戏未结束
+        this.spawnReady = true;
+        this.endTick = -1;                             // -1表示游戏未结束
+        this.ended = false;
         this.endImg = Toolkit.getDefaultToolkit().getImage(World.class.getClassLoader().getResource("images/gameover.png"));
-        
-        // 添加玩家1（位置340, 180，键盘组1）
-        objects.add(new Hero(340, 180, 1, this));
-        
-        // 如果是双人模式，添加玩家2（位置620, 180，键盘组0）
-        if(Doubleplayer)
-        	objects.add(new Hero(620, 180, 0, this));
-        
-        // 添加四个边界（上下左右）
-        objects.add(new Border(0, this));
-        objects.add(new Border(1, this));
-        objects.add(new Border(2, this));
-        objects.add(new Border(3, this));
-        
-        // 添加两个宝箱
-        objects.add(new Box(320, 360, this));
-        objects.add(new Box(640, 360, this));
-        
-        // 添加墙壁（3x2网格布局）
-        for(int i = 1; i <= 2; i++)
-            for(int j = 1; j <= 3; j++){
-                objects.add(new Wall(width / 4 * j, height / 3 * i, this));
-        }
+        this.border = new Border(this);               // 活动区域边界（寻路网格需要）
+        this.obstacle = new Wall(0, 0, this);         // 地图障碍矩形的碰撞体（检测时移到各个矩形上）
+        this.worldGrids = new WorldGrids(this);
+        this.hierarchy = new HierarchicalPathfinder(this);
+        this.raycast = new GridRaycast(worldGrids);
+        this.planner = new EnemyPlanner();
+        this.spatialIndex = new SpatialHash(width, height, SpatialHash.DEFAULT_CELL_SIZE);
+        this.random = new GameRandom(0);
     }
 
     /**
-     * 获取游戏对象迭代器
-     * @return 对象列表的迭代器
+     * 获取活动对象迭代器
+     * @return 活动对象列表的迭代器
      */
     public Iterator<GameObject> getObjectsIterator(){
         return objects.iterator();
     }
 
+    /**
+     * 获取静态对象迭代器
+     * @return 静态对象列表的迭代器
+     */
+    public Iterator<GameObject> getStaticsIterator(){
+        return statics.iterator();
+    }
+
+    /**
+     * 获取尸体列表
+     * @return 尸体列表
+     */
+    public List<Role> getCorpses(){
+        return corpses;
+    }
+
+    /**
+     * 获取所有英雄（包括死亡中的英雄）
+     * @return 英雄列表
+     */
+    public List<Hero> getHeroes(){
+        return heroes;
+    }
+
     /**
      * 从世界中移除对象
      * @param obj 要移除的对象
      */
     public void removeObject(GameObject obj){
-        objects.remove(obj);
+        setLifecycle(obj, LifecycleState.REMOVED);
     }
 
     /**
      * 向世界中添加对象
+     * 根据碰撞层放入活动对象列表或静态对象列表
      * @param obj 要添加的对象
      */
     public void addObject(GameObject obj){
-        objects.add(obj);
+        if(obj.getId() == 0) obj.setId(++nextId);  // 首次加入世界时分配编号（重生的宝箱保留原编号）
+        if(obj instanceof Hero && !heroes.contains(obj)) heroes.add((Hero) obj);
+        setLifecycle(obj, LifecycleState.initialStateOf(obj));
+    }
+
+    /**
+     * 改变对象的生命周期状态
+     * 把对象从原来的容器移到新状态对应的容器
+     * @param obj 游戏对象
+     * @param state 新状态
+     */
+    public void setLifecycle(GameObject obj, LifecycleState state){
+        if(obj.getLifecycle() == state) return;
+        switch (obj.getLifecycle()){
+            case ACTIVE: objects.remove(obj); break;
+            case STATIC: statics.remove(obj); break;
+            case DYING: corpses.remove(obj); break;
+            default: break;
+        }
+        switch (state){
+            case ACTIVE: objects.add(obj); break;
+            case STATIC: statics.add(obj); break;
+            case DYING: corpses.add((Role) obj); break;
+            default: break;
+        }
+        if((obj.getLifecycle() == LifecycleState.STATIC || state == LifecycleState.STATIC) && obj.isCollidable()
+                && (obj.getCollisionLayer() & CollisionLayers.NAV_BLOCKING) != 0) {
+            hierarchy.invalidate(obj);  // 阻挡寻路的静态对象改变时，只重建它附近的簇
+            worldGrids.layoutChanged();
+        }
+        if(state == LifecycleState.ACTIVE) maxActiveRadius = Math.max(maxActiveRadius, obj.getRadius());
+        if(state == LifecycleState.REMOVED) spatialIndex.remove(obj);
+        else {
+            spatialIndex.insert(obj);
+            spatialIndex.update(obj);  // 复活的英雄已在索引中，但位置已经改变
+        }
+        obj.setLifecycle(state);
+        stateChanged(obj);
+    }
+
+    /**
+     * 通知状态哈希：对象在活动容器之外改变了状态（换容器、计时器回调），下一次计算时重算它的哈希
+     * 活动对象每帧都会重算，不需要通知
+     * @param obj 游戏对象
+     */
+    public void stateChanged(GameObject obj) {
+        if(stateHash != null) stateHash.changed(obj);
     }
 
     /**
-     * 获取指定索引的对象
+     * 获取指定索引的活动对象
      * @param index 对象索引
      * @return 游戏对象
      */
@@ -121,6 +306,22 @@ public class World {
         return height;
     }
 
+    /**
+     * 获取当前波次最大敌人数量（波次计数）
+     * @return 最大敌人数量
+     */
+    public int getMaxEnemyNum() {
+        return maxEnemyNum;
+    }
+
+    /**
+     * 获取当前波次
+     * @return 波次（从1开始）
+     */
+    public int getWave() {
+        return wave;
+    }
+
     /**
      * 获取当前存活敌人数量
      * @return 敌人数量
@@ -137,105 +338,239 @@ public class World {
         this.currentEnemyNum = currentEnemyNum;
     }
 
+    /**
+     * 获取波次规则
+     * @return 波次规则
+     */
+    public WaveRules getWaveRules() {
+        return rules;
+    }
+
+    /**
+     * 获取累计被消灭的敌人数量
+     * @return 敌人数量
+     */
+    public int getKilledEnemyNum() {
+        return killedEnemyNum;
+    }
+
     /**
      * 设置敌人生成延迟
      * 每次生成敌人后调用，防止敌人瞬间全部生成
+     * 生成间隔（默认50帧）后由计时器恢复生成
      */
     public void setProduceDelay(){
-        this.produceDelay = 50;
+        int interval = rules.getSpawnInterval();
+        this.spawnReady = false;
+        this.spawnReadyTick = getTick() + interval;
+        if(spawnEvent != null) spawnEvent.cancel();
+        spawnEvent = timer.schedule(interval, this::endProduceDelay);
+    }
+
+    /**
+     * 生成延迟结束（由计时器调用）
+     */
+    private void endProduceDelay(){
+        if(getTick() >= spawnReadyTick) spawnReady = true;
     }
 
     /**
      * 拾取宝箱
-     * 将宝箱从世界中移除并加入重生队列
+     * 将宝箱从世界中移除并加入重生队列，由计时器在延迟结束后重生
      * @param box 被拾取的宝箱
      */
     public void pickUpBox(Box box){
         this.removeObject(box);
         pickedBoxes.add(box);
-        box.setDelay(Box.DELAYTIME);  // 设置重生延迟
+        box.setDelay(rules.getBoxDelay());  // 设置重生延迟
+        box.setRespawnEvent(timer.schedule(rules.getBoxDelay() + 1, () -> produceBox(box)));
     }
 
     /**
-     * 生成宝箱
-     * 检查已拾取的宝箱，延迟结束后重新加入世界
+     * 生成宝箱（由计时器调用）
+     * 重生延迟结束后把宝箱重新加入世界
+     * @param box 要重生的宝箱
      */
-    public void produceBox(){
-        for(Box box : pickedBoxes){
-            if(box.getDelay() == 0){
-                this.addObject(box);
-                pickedBoxes.remove(box);
-                break;
-            } else {
-                box.setDelay(box.getDelay() - 1);
-            }
-        }
+    public void produceBox(Box box){
+        if(pickedBoxes.remove(box))
+            this.addObject(box);
     }
 
     /**
      * 生成敌人
-     * 在地图四个边界随机位置生成敌人（Monster或Ghost）
-     * 每波敌人全部消灭后，下一波敌人数量+3
+     * 每次最多生成波次规则中的生成预算个敌人（Monster或Ghost），位置在地图的敌人出生点附近或从网格中选择
+     * （地图没有敌人出生点时总是从网格中选择）
+     * 每波敌人全部消灭后，下一波敌人数量增加（由波次规则决定，默认+3）
      */
     public void produceEnemy(){
-    	produceDelay = (produceDelay - 1 > 0? produceDelay - 1 : 0);  // 延迟倒计时
-    	if(currentEnemyNum >= 100) return;  // 限制最大敌人数量
+        int cap = rules.getEnemyCap();
+    	if(cap > 0 && currentEnemyNum >= cap) return;  // 限制最大敌人数量（0表示没有上限）
     	
-        if(producedEnemyNum < maxEnemyNum && produceDelay <= 0){
-            Random rand = new Random();
-            int pos = Math.abs(rand.nextInt()) % 4;      // 随机选择边界（0上1左2下3右）
-            int type = Math.abs(rand.nextInt()) % 100;   // 随机敌人类型（10%概率Ghost，90%概率Monster）
-            int t = (rand.nextInt() % 2) * Role.PICOFFSET * 2;  // 随机偏移
-            int off = Role.PICOFFSET + 10;
-            
-            // 根据位置和类型生成敌人
-            switch (pos){
-                case 0:  // 上边界
-                    objects.add(type < 10 ? new Ghost(width / 2 + t, off, this) : new Monster(width / 2 + t, off, this));
-                    break;
-                case 1:  // 左边界
-                    objects.add(type < 10 ? new Ghost(off, height / 2 + t, this) : new Monster(off, height / 2 + t, this));
-                    break;
-                case 2:  // 下边界
-                    objects.add(type < 10 ? new Ghost(width / 2 + t, height - off, this) : new Monster(width / 2 + t, height - off, this));
-                    break;
-                case 3:  // 右边界
-                    objects.add(type < 10 ? new Ghost(width - off, height / 2 + t, this) : new Monster(width -off, height / 2 + t, this));
-                    break;
-                default:
-                    break;
+        if(producedEnemyNum < maxEnemyNum && spawnReady){
+            int budget = rules.getSpawnBudget();
+            for(int i = 0; i < budget && producedEnemyNum < maxEnemyNum && (cap == 0 || currentEnemyNum < cap); i++){
+                Enemy enemy = rules.isGridSpawn() || enemySpawns.isEmpty() ? spawnOnGrid() : spawnAtPoint();
+                if(enemy == null) break;  // 没有空位，下次再生成
+                addObject(enemy);
+                currentEnemyNum++;
+                producedEnemyNum++;
             }
-            currentEnemyNum++;
-            producedEnemyNum++;
             setProduceDelay();  // 设置生成延迟
         } else if(currentEnemyNum <= 0 && producedEnemyNum == maxEnemyNum) {
             // 当前波次敌人全部消灭，开始下一波
-            maxEnemyNum += 3;  // 下一波敌人数量+3
+            maxEnemyNum += rules.getGrowth();  // 下一波敌人数量增加（默认+3）
+            wave++;
             producedEnemyNum = 0;
         }
     }
 
+    /**
+     * 在地图的某个敌人出生点附近创建一个敌人
+     * 位置沿出生点最近的地图边随机偏移（默认竞技场的出生点在四条边的中点）
+     * @return 敌人（尚未加入世界）
+     */
+    private Enemy spawnAtPoint(){
+        GameRandom rand = random;
+        int pos = Math.abs(rand.nextInt()) % enemySpawns.size();  // 随机选择出生点（默认竞技场：0上1左2下3右）
+        int type = Math.abs(rand.nextInt()) % 100;   // 随机敌人类型（默认10%概率Ghost，90%概率Monster）
+        int t = (rand.nextInt() % 2) * Role.PICOFFSET * 2;  // 随机偏移
+        int x = enemySpawns.get(pos)[0], y = enemySpawns.get(pos)[1];
+        
+        // 靠近上下边的出生点沿X方向偏移，靠近左右边的沿Y方向偏移
+        if(Math.min(y, height - y) <= Math.min(x, width - x)) x += t;
+        else y += t;
+        return createEnemy(type, x, y);
+    }
+
+    /**
+     * 从网格中随机选择一个空位创建敌人
+     * 空位要求：在活动区域内，占用的网格都可通行（不在边界和墙上），附近没有其他对象，离所有英雄至少SPAWN_SAFE_DISTANCE
+     * @return 敌人（尚未加入世界），尝试SPAWN_ATTEMPTS次仍没有空位时返回null
+     */
+    private Enemy spawnOnGrid(){
+        GameRandom rand = random;
+        int type = rand.nextInt(100);
+        int r = SPAWN_RADIUS;
+        for(int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++){
+            int x = r + rand.nextInt(width - 2 * r);
+            int y = r + rand.nextInt(height - 2 * r);
+            if(nearHero(x, y) || !isSpotFree(x, y, r, spawnQuery)) continue;
+            return createEnemy(type, x, y);
+        }
+        return null;
+    }
+
+    /**
+     * 判断以(x, y)为中心、半径r的位置能否放下一个敌人
+     * 在活动区域内，占用的网格不是边界或地图障碍（流式加载时还必须已装入），附近没有其他存活的可碰撞对象
+     * @param x X坐标
+     * @param y Y坐标
+     * @param r 半径
+     * @param query 复用的查询结果列表
+     * @return 是否空闲
+     */
+    boolean isSpotFree(int x, int y, int r, List<GameObject> query){
+        if(!border.contains(x - r, y - r) || !border.contains(x + r, y + r)) return false;  // 在活动区域外
+        if(!worldGrids.isFree(x, y, r)) return false;
+        query.clear();
+        spatialIndex.query(x, y, 2 * r, query);
+        for(int i = 0; i < query.size(); i++){
+            GameObject obj = query.get(i);
+            if(obj.isCollidable() && obj.getHP() > 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 判断位置是否离某个存活的英雄太近
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 是否太近
+     */
+    private boolean nearHero(int x, int y){
+        for(Hero hero : heroes){
+            if(hero.getHP() <= 0) continue;
+            long dx = hero.getX() - x, dy = hero.getY() - y;
+            if(dx * dx + dy * dy < (long) SPAWN_SAFE_DISTANCE * SPAWN_SAFE_DISTANCE) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按随机类型创建敌人
+     * @param type 随机数（0~99，小于Ghost百分比时创建Ghost）
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 敌人
+     */
+    private Enemy createEnemy(int type, int x, int y){
+        return type < rules.getGhostPercent() ? new Ghost(x, y, this) : new Monster(x, y, this);
+    }
+
     /**
      * 碰撞检测
-     * 检测指定对象与世界中所有其他对象的碰撞
+     * 检测指定对象与边界、附近的活动对象、静态对象和地图障碍的碰撞
+     * 活动对象从空间索引中查找（中心距离不超过自身半径与活动对象最大半径之和），按编号顺序检测，与索引中对象的顺序无关
+     * 写阶段中对象移动或被推开后立即更新所在格子，查询不会漏掉刚移动过的对象
      * @param obj 要检测的对象
      * @return 是否发生碰撞
      */
     public boolean collisionDetection(GameObject obj){
-        Iterator<GameObject> iter = this.getObjectsIterator();
+        long start = profile != null ? System.nanoTime() : 0;
         int flag = 0;
-        while(iter.hasNext()){
-            GameObject tmpObj = iter.next();
+        spatialIndex.update(obj);
+        // 先检测活动区域边界（越界时直接夹回区域内）
+        if(obj.canCollideWith(border) && obj.collisionDetection(border)){
+            obj.collisionResponse(border);
+            flag = 1;
+        }
+        
+        collisionQuery.clear();
+        spatialIndex.query(obj.getX(), obj.getY(), obj.getRadius() + maxActiveRadius, collisionQuery);
+        for(int i = collisionQuery.size() - 1; i >= 0; i--){
+            if(collisionQuery.get(i).getLifecycle() != LifecycleState.ACTIVE) collisionQuery.remove(i);  // 静态对象和尸体另外处理
+        }
+        if(collisionQuery.size() > 1) collisionQuery.sort(ID_ORDER);
+        if(collisionDetection(obj, collisionQuery)) flag = 1;
+        // 静态对象只在碰撞掩码包含静态层时检测
+        if((obj.getCollisionMask() & CollisionLayers.STATIC) != 0 && collisionDetection(obj, statics)) flag = 1;
+        // 地图障碍物：把碰撞体依次移到对象附近的每个障碍矩形上检测（按矩形下标顺序）
+        if(obj.canCollideWith(obstacle)){
+            for(int i = map.nextRect(obj.getX(), obj.getY(), obj.getRadius(), -1); i >= 0;
+                i = map.nextRect(obj.getX(), obj.getY(), obj.getRadius(), i)){
+                obstacle.place(map.getRectLeft(i), map.getRectTop(i), map.getRectRight(i), map.getRectBottom(i));
+                if(obj.collisionDetection(obstacle)){
+                    obj.collisionResponse(obstacle);
+                    flag = 1;
+                }
+            }
+        }
+        spatialIndex.update(obj);  // 可能被推开
+        if(profile != null) profile.nested(TickProfile.Phase.COLLISION, start);
+        if(flag == 1) return true;
+        else return false;
+    }
+
+    /**
+     * 检测对象与指定列表中对象的碰撞
+     * @param obj 要检测的对象
+     * @param list 对象列表
+     * @return 是否发生碰撞
+     */
+    private boolean collisionDetection(GameObject obj, List<GameObject> list){
+        boolean hit = false;
+        for(GameObject tmpObj : list){
+            // 粗筛：碰撞层不匹配的直接跳过
+            if(!obj.canCollideWith(tmpObj)) continue;
             // 跳过自己和已死亡的对象
             if(!obj.equals(tmpObj) && tmpObj.getHP() > 0){
                 if(obj.collisionDetection(tmpObj)){
                     obj.collisionResponse(tmpObj);  // 触发碰撞响应
-                    flag = 1;
+                    hit = true;
                 }
             }
         }
-        if(flag == 1) return true;
-        else return false;
+        return hit;
     }
 
     /**
@@ -244,41 +579,508 @@ public class World {
      * Y坐标小的对象先绘制，Y坐标大的对象后绘制（在上层）
      */
     public void objectSort(){
-        Collections.sort(objects, new Comparator<GameObject>() {
-            @Override
-            public int compare(GameObject obj1, GameObject obj2) {
-                int i = obj1.getY() - obj2.getY();
-                if(i == 0){
-                    return obj1.getX() - obj2.getX();
-                }
-                return i;
+        Collections.sort(objects, Y_ORDER);
+    }
+
+    /** 按编号排序的比较器（碰撞检测的顺序） */
+    private static final Comparator<GameObject> ID_ORDER = Comparator.comparingInt(GameObject::getId);
+
+    /** 按Y坐标排序的比较器（Y相同则按X排序） */
+    private static final Comparator<GameObject> Y_ORDER = new Comparator<GameObject>() {
+        @Override
+        public int compare(GameObject obj1, GameObject obj2) {
+            int i = obj1.getY() - obj2.getY();
+            if(i == 0){
+                return obj1.getX() - obj2.getX();
             }
-        });
+            return i;
+        }
+    };
+
+    /**
+     * 更新游戏世界（每帧调用一次）
+     * 
+     * 每帧分为两个阶段：
+     * 1. 读阶段：基于只读的世界快照，所有敌人并行计算目标、方向和攻击决策
+     * 2. 写阶段：按绘制顺序串行更新所有对象，应用移动、伤害和生成
+     * 读阶段中不修改任何共享状态，因此可以安全地使用多个核心
+     */
+    public void tick(){
+        if(profile != null) profile.begin();
+        if(recorder != null) recorder.beforeTick(this);  // 录制上一帧之后的输入（每隔一段时间写入关键帧）
+        timer.advance();  // 进入下一帧，执行到期的延迟事件（宝箱重生、尸体移除、生成延迟等）
+        lap(TickProfile.Phase.TIMER);
+        if(streamer != null) streamer.step();  // 按英雄位置装入/换出分块，换入换出敌人
+        lap(TickProfile.Phase.STREAM);
+        produceEnemy();   // 生成敌人
+        lap(TickProfile.Phase.SPAWN);
+        
+        // 对象排序，更新和绘制使用相同的顺序
+        this.objectSort();
+        lap(TickProfile.Phase.SORT);
+        
+        // 读阶段：更新网格并生成快照，敌人并行决策
+        worldGrids.updateGrids();
+        lap(TickProfile.Phase.GRIDS);
+        WorldSnapshot snapshot = new WorldSnapshot(this, worldGrids);
+        List<Enemy> enemies = new ArrayList<>();
+        for(GameObject obj : objects){
+            if(obj instanceof Enemy && obj.getHP() > 0) enemies.add((Enemy) obj);
+        }
+        planner.plan(enemies, snapshot);
+        if(pathCache != null) pathCache.publish(enemies, getTick());  // 按敌人的顺序存入本帧搜索到的路径
+        lap(TickProfile.Phase.PLAN);
+        
+        // 写阶段：串行更新活动对象，再更新静态对象（宝箱的拾取检测）
+        Iterator<GameObject> iter = this.getObjectsIterator();
+        while(iter.hasNext()){
+            iter.next().update();
+        }
+        iter = this.getStaticsIterator();
+        while(iter.hasNext()){
+            GameObject obj = iter.next();
+            if(streamer == null || streamer.isActive(obj.getX(), obj.getY())) obj.update();  // 远处的宝箱不可能被拾取
+        }
+        lap(TickProfile.Phase.UPDATE);
+        
+        // 更新移动对象在空间索引中的格子（静态对象和尸体不移动）
+        for(GameObject obj : objects){
+            spatialIndex.update(obj);
+        }
+        lap(TickProfile.Phase.INDEX);
+        
+        if(stateHash != null) stateHash.update(this);
+        lap(TickProfile.Phase.HASH);
     }
 
     /**
-     * 绘制游戏世界
-     * 每帧调用，绘制所有游戏对象
+     * 结束一个阶段的计时（没有设置分阶段统计时什么也不做）
+     * @param phase 阶段
+     */
+    private void lap(TickProfile.Phase phase){
+        if(profile != null) profile.lap(phase);
+    }
+
+    /**
+     * 开启分块流式加载（很大的地图）
+     * 只有英雄附近的分块完整模拟，远处的敌人换出为休眠记录（见WorldStreamer）；开启后不能关闭，随世界一起存档
+     * @param activeChunks 活动区域半径（分块数）
+     */
+    public void enableStreaming(int activeChunks){
+        if(streamer != null) throw new IllegalStateException("已经开启分块流式加载");
+        this.streamer = new WorldStreamer(this, activeChunks);
+    }
+
+    /**
+     * 获取分块流式加载
+     * @return 流式加载，没有开启时返回null
+     */
+    public WorldStreamer getStreamer(){
+        return streamer;
+    }
+
+    /**
+     * 设置敌人在网格上寻路的搜索模式（影响敌人的路线，属于模拟状态，随世界一起存档）
+     * @param pathMode 搜索模式
+     */
+    public void setPathMode(Pathfinder.Mode pathMode){
+        this.pathMode = pathMode;
+    }
+
+    public Pathfinder.Mode getPathMode(){
+        return pathMode;
+    }
+
+    /**
+     * 设置INCREMENTAL模式下敌人的增量寻路器是否每次都从零开始（对比测试用，得到的路径相同，不存档）
+     * 只影响之后创建的寻路器，应在生成敌人之前设置
+     * @param plannerReset 是否每次从零开始
+     */
+    public void setPlannerReset(boolean plannerReset){
+        this.plannerReset = plannerReset;
+    }
+
+    public boolean isPlannerReset(){
+        return plannerReset;
+    }
+
+    /**
+     * 设置是否平滑敌人的路径（见PathSmoother，影响敌人的路线，随世界一起存档）
+     * @param pathSmoothing 是否平滑
+     */
+    public void setPathSmoothing(boolean pathSmoothing){
+        this.pathSmoothing = pathSmoothing;
+    }
+
+    public boolean isPathSmoothing(){
+        return pathSmoothing;
+    }
+
+    /**
+     * 开启路径缓存（目标相同的敌人共享路径，见PathCache）
+     * 影响敌人的路线，开启后不能关闭，缓存的路径随世界一起存档
+     */
+    public void enablePathCache(){
+        if(pathCache != null) throw new IllegalStateException("已经开启路径缓存");
+        this.pathCache = new PathCache(worldGrids);
+    }
+
+    /**
+     * 获取路径缓存
+     * @return 路径缓存，没有开启时返回null
+     */
+    public PathCache getPathCache(){
+        return pathCache;
+    }
+
+    /**
+     * 设置敌人是否局部避让（见CrowdSteering，影响敌人的移动，随世界一起存档）
+     * @param crowdSteering 是否避让
+     */
+    public void setCrowdSteering(boolean crowdSteering){
+        this.crowdSteering = crowdSteering;
+    }
+
+    public boolean isCrowdSteering(){
+        return crowdSteering;
+    }
+
+    /**
+     * 设置分阶段耗时统计（性能测试用）
+     * @param profile 统计对象，null表示不统计
+     */
+    public void setProfile(TickProfile profile){
+        this.profile = profile;
+    }
+
+    public TickProfile getProfile(){
+        return profile;
+    }
+
+    /**
+     * 绘制整个游戏世界（视口与世界一样大）
      * @param g 图形上下文
      */
     public void drawWorld(Graphics g){
-    	if(isEnd()) {  // 如果游戏结束倒计时开始
-    		end--;
-    	}
-        produceEnemy();  // 生成敌人
-        produceBox();    // 生成宝箱
-        
-        // 绘制所有血迹
+        drawWorld(g, new Camera(width, height));
+    }
+
+    /**
+     * 绘制视口内的游戏世界
+     * 每帧在tick之后调用，只绘制不修改游戏状态；
+     * 对象从空间索引中按视口查询，绘制耗时与屏幕上的内容有关，与世界中的对象总数无关
+     * @param g 图形上下文（屏幕坐标）
+     * @param camera 摄像机
+     */
+    public void drawWorld(Graphics g, Camera camera){
+        g.translate(-camera.getLeft(), -camera.getTop());
+
+        // 绘制视口内的血迹
         for(Blood blood : bloods){
-            blood.draw(g);
+            if(camera.isVisible(blood.getX(), blood.getY())) blood.draw(g);
         }
-        
-        // 对象排序后绘制
-        this.objectSort();
-        Iterator<GameObject> iter =this.getObjectsIterator();
-        while(iter.hasNext()){
-            iter.next().draw(g);
+
+        renderList.clear();
+        spatialIndex.queryRect(camera.getCullLeft(), camera.getCullTop(), camera.getCullRight(), camera.getCullBottom(), renderList);
+
+        // 尸体绘制在最底层
+        for(GameObject obj : renderList){
+            if(obj.getLifecycle() == LifecycleState.DYING) obj.draw(g);
+        }
+        renderList.removeIf(obj -> obj.getLifecycle() == LifecycleState.DYING);
+
+        // 活动对象和静态对象按Y坐标排序后绘制，地图障碍物按中心Y坐标穿插在其中
+        Collections.sort(renderList, Y_ORDER);
+        map.setView(camera.getCullLeft(), camera.getCullTop(), camera.getCullRight(), camera.getCullBottom());
+        int next = 0;
+        for(GameObject obj : renderList){
+            next = map.draw(g, next, obj.getY() - 1);
+            obj.draw(g);
+        }
+        map.draw(g, next, Integer.MAX_VALUE);
+
+        g.translate(camera.getLeft(), camera.getTop());
+    }
+
+    /**
+     * 获取当前帧
+     * @return 从游戏开始经过的帧数
+     */
+    public long getTick() {
+        return timer.getCurrentTick();
+    }
+
+    /**
+     * 获取计时器
+     * @return 计时器
+     */
+    public TimerWheel getTimer() {
+        return timer;
+    }
+
+    /**
+     * 获取血迹列表
+     * @return 血迹列表
+     */
+    public List<Blood> getBloods() {
+        return bloods;
+    }
+
+    /**
+     * 获取随机数生成器
+     * @return 随机数生成器
+     */
+    public GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * 获取下一个分配的对象编号
+     * @return 对象编号
+     */
+    public int getNextId() {
+        return nextId;
+    }
+
+    /**
+     * 写入世界自身的状态（用于存档，格式见WorldCodec）
+     * 包括波次规则、波次计数、生成延迟、结束倒计时、随机数状态、编号计数器、血迹和分块流式加载（活动半径、休眠敌人）
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        buf.putLong(random.getState());
+        Varint.putVarInt(buf, nextId);
+        Varint.putVarInt(buf, rules.getInitialEnemies());
+        Varint.putVarInt(buf, rules.getGrowth());
+        Varint.putVarInt(buf, rules.getEnemyCap());
+        Varint.putVarInt(buf, rules.getGhostPercent());
+        Varint.putVarInt(buf, rules.getBoxDelay());
+        Varint.putVarInt(buf, rules.getSpawnBudget());
+        Varint.putVarInt(buf, rules.getSpawnInterval());
+        buf.put((byte) (rules.isGridSpawn() ? 1 : 0));
+        Varint.putVarInt(buf, wave);
+        Varint.putVarInt(buf, maxEnemyNum);
+        Varint.putSignedVarInt(buf, currentEnemyNum);
+        Varint.putVarInt(buf, producedEnemyNum);
+        buf.put((byte) (spawnReady ? 1 : 0));
+        Varint.putVarLong(buf, spawnReadyTick);
+        WorldCodec.putEvent(buf, timer, spawnEvent);
+        Varint.putVarLong(buf, endTick + 1);  // -1表示未结束
+        buf.put((byte) (ended ? 1 : 0));
+        WorldCodec.putEvent(buf, timer, endEvent);
+        Varint.putVarInt(buf, bloodNum);
+        Varint.putVarInt(buf, bloods.size());
+        for(Blood blood : bloods) {
+            Varint.putSignedVarInt(buf, blood.getX());
+            Varint.putSignedVarInt(buf, blood.getY());
+            buf.put((byte) ((blood.getPicX() == 0 ? 0 : 1) | (blood.getPicY() == 0 ? 0 : 2)));
+        }
+        Varint.putVarInt(buf, streamer == null ? 0 : streamer.getActiveChunks());  // 0表示没有开启
+        if(streamer != null) streamer.writeState(buf);
+        buf.put((byte) pathMode.ordinal());
+        buf.put((byte) (pathSmoothing ? 1 : 0));
+        buf.put((byte) (pathCache == null ? 0 : 1));
+        if(pathCache != null) pathCache.writeState(buf);
+        buf.put((byte) (crowdSteering ? 1 : 0));
+    }
+
+    /**
+     * 把世界自身的状态直接混合进哈希（StateHash每帧调用，字段与writeState一致，不经过缓冲区）
+     * 路径缓存用它维护的路径哈希之和，不逐条遍历
+     * @param h 当前哈希
+     * @return 混合后的哈希
+     */
+    long hashState(long h) {
+        h = StateHash.mix(h, random.getState());
+        h = StateHash.mix(h, nextId);
+        h = StateHash.mix(h, rules.getInitialEnemies());
+        h = StateHash.mix(h, rules.getGrowth());
+        h = StateHash.mix(h, rules.getEnemyCap());
+        h = StateHash.mix(h, rules.getGhostPercent());
+        h = StateHash.mix(h, rules.getBoxDelay());
+        h = StateHash.mix(h, rules.getSpawnBudget());
+        h = StateHash.mix(h, rules.getSpawnInterval());
+        h = StateHash.mix(h, rules.isGridSpawn() ? 1 : 0);
+        h = StateHash.mix(h, wave);
+        h = StateHash.mix(h, maxEnemyNum);
+        h = StateHash.mix(h, currentEnemyNum);
+        h = StateHash.mix(h, producedEnemyNum);
+        h = StateHash.mix(h, spawnReady ? 1 : 0);
+        h = StateHash.mix(h, spawnReadyTick);
+        h = StateHash.mixEvent(h, timer, spawnEvent);
+        h = StateHash.mix(h, endTick);
+        h = StateHash.mix(h, ended ? 1 : 0);
+        h = StateHash.mixEvent(h, timer, endEvent);
+        h = StateHash.mix(h, bloodNum);
+        h = StateHash.mix(h, bloods.size());
+        for(Blood blood : bloods) {
+            h = StateHash.mix(h, blood.getX());
+            h = StateHash.mix(h, blood.getY());
+            h = StateHash.mix(h, (blood.getPicX() == 0 ? 0 : 1) | (blood.getPicY() == 0 ? 0 : 2));
+        }
+        h = StateHash.mix(h, streamer == null ? 0 : streamer.getActiveChunks());
+        if(streamer != null) h = streamer.hashState(h);
+        h = StateHash.mix(h, pathMode.ordinal());
+        h = StateHash.mix(h, pathSmoothing ? 1 : 0);
+        h = StateHash.mix(h, pathCache == null ? 0 : 1);
+        if(pathCache != null) h = StateHash.mix(h, pathCache.getStateHash());
+        h = StateHash.mix(h, crowdSteering ? 1 : 0);
+        return h;
+    }
+
+    /**
+     * 读取世界自身的状态（与writeState的顺序一致）
+     * @param buf 输入缓冲区
+     * @param reader 读档上下文
+     */
+    public void readState(ByteBuffer buf, WorldCodec.Reader reader) {
+        random.setState(buf.getLong());
+        this.nextId = Varint.getVarInt(buf);
+        this.rules = new WaveRules(Varint.getVarInt(buf), Varint.getVarInt(buf), Varint.getVarInt(buf),
+                Varint.getVarInt(buf), Varint.getVarInt(buf), Varint.getVarInt(buf), Varint.getVarInt(buf), buf.get() != 0);
+        this.wave = Varint.getVarInt(buf);
+        this.maxEnemyNum = Varint.getVarInt(buf);
+        this.currentEnemyNum = Varint.getSignedVarInt(buf);
+        this.producedEnemyNum = Varint.getVarInt(buf);
+        this.spawnReady = buf.get() != 0;
+        this.spawnReadyTick = Varint.getVarLong(buf);
+        this.spawnEvent = reader.readEvent(buf, this::endProduceDelay);
+        this.endTick = Varint.getVarLong(buf) - 1;
+        this.ended = buf.get() != 0;
+        this.endEvent = reader.readEvent(buf, this::endGame);
+        this.bloodNum = Varint.getVarInt(buf);
+        int n = Varint.getVarInt(buf);
+        List<Blood> restored = new ArrayList<>(n);
+        for(int i = 0; i < n; i++) {
+            int x = Varint.getSignedVarInt(buf);
+            int y = Varint.getSignedVarInt(buf);
+            int pic = buf.get();
+            restored.add(new Blood(x, y, (pic & 1) * 475, ((pic >> 1) & 1) * 475, this));
+        }
+        bloods.clear();
+        bloods.addAll(restored);
+        int activeChunks = Varint.getVarInt(buf);
+        if(activeChunks > 0) {
+            this.streamer = new WorldStreamer(this, activeChunks);
+            streamer.readState(buf);
+        }
+        this.pathMode = Pathfinder.Mode.values()[buf.get()];
+        this.pathSmoothing = buf.get() != 0;
+        if(buf.get() != 0) {
+            this.pathCache = new PathCache(worldGrids);
+            pathCache.readState(buf);
         }
+        this.crowdSteering = buf.get() != 0;
+    }
+
+    /**
+     * 获取已被拾取、等待重生的宝箱
+     * @return 宝箱列表
+     */
+    public List<Box> getPickedBoxes() {
+        return pickedBoxes;
+    }
+
+    /**
+     * 获取地图
+     * @return 地图
+     */
+    public TileMap getMap() {
+        return map;
+    }
+
+    /**
+     * 获取活动区域边界
+     * @return 边界对象
+     */
+    public Border getBorder() {
+        return border;
+    }
+
+    /**
+     * 获取共享网格系统
+     * @return 网格系统
+     */
+    public WorldGrids getWorldGrids() {
+        return worldGrids;
+    }
+
+    /**
+     * 获取网格射线
+     * @return 网格射线（无状态，读阶段和写阶段共用）
+     */
+    public GridRaycast getRaycast() {
+        return raycast;
+    }
+
+    /**
+     * 获取分层寻路器
+     * @return 分层寻路器
+     */
+    public HierarchicalPathfinder getHierarchicalPathfinder() {
+        return hierarchy;
+    }
+
+    /**
+     * 获取空间索引
+     * @return 空间索引
+     */
+    public SpatialHash getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * 获取敌人决策器
+     * @return 敌人决策器
+     */
+    public EnemyPlanner getPlanner() {
+        return planner;
+    }
+
+    /**
+     * 设置敌人决策器（例如使用指定线程池的决策器）
+     * @param planner 敌人决策器
+     */
+    public void setPlanner(EnemyPlanner planner) {
+        this.planner = planner;
+    }
+
+    /**
+     * 设置回放录制器
+     * @param recorder 回放录制器（null表示停止录制）
+     */
+    public void setRecorder(ReplayWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * 英雄按键输入（由Hero.press/release调用）
+     * 正在录制回放时转交给录制器；死亡中的英雄也会收到输入，所以同时通知状态哈希
+     * @param hero 英雄
+     * @param slot 按键槽位
+     * @param pressed 是否按下
+     */
+    public void onHeroInput(Hero hero, int slot, boolean pressed) {
+        ReplayWriter r = recorder;
+        if(r != null) r.onInput(heroes.indexOf(hero), slot, pressed);
+        stateChanged(hero);
+    }
+
+    /**
+     * 获取状态哈希
+     * @return 状态哈希，未开启时返回null
+     */
+    public StateHash getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * 设置状态哈希，开启后每帧结束时计算一次
+     * @param stateHash 状态哈希（null表示关闭）
+     */
+    public void setStateHash(StateHash stateHash) {
+        if(stateHash != null) stateHash.invalidate();  // 没有挂上时的改变没有记录，第一次计算时全部重算
+        this.stateHash = stateHash;
     }
 
     /**
@@ -286,8 +1088,11 @@ public class World {
      * @param obj 死亡的对象
      */
     public void objDead(Object obj){
-        if(obj instanceof Enemy) currentEnemyNum--;  // 如果是敌人，减少敌人计数
-        this.objects.remove(obj);
+        if(obj instanceof Enemy) {
+            currentEnemyNum--;  // 如果是敌人，减少敌人计数
+            killedEnemyNum++;
+        }
+        if(obj instanceof GameObject) removeObject((GameObject) obj);
     }
 
     /**
@@ -306,10 +1111,8 @@ public class World {
      * @return 是否有存活的英雄
      */
     public boolean searchHero() {
-    	Iterator<GameObject> iter = getObjectsIterator();
-    	while(iter.hasNext()) {
-    		GameObject obj = iter.next();
-    		if(obj instanceof Hero && obj.getHP() > 0) return true;
+    	for(Hero hero : heroes) {
+    		if(hero.getHP() > 0) return true;
     	}
     	gameOver();  // 没有存活英雄，游戏结束
     	return false;
@@ -331,11 +1134,12 @@ public class World {
     }
     
     /**
-     * 绘制游戏结束画面
-     * @param g 图形上下文
+     * 绘制游戏结束画面（铺满视口）
+     * @param g 图形上下文（屏幕坐标）
+     * @param camera 摄像机
      */
-    public void drawEnd(Graphics g) {
-    	g.drawImage(endImg, 0, 0, width, height, null);
+    public void drawEnd(Graphics g, Camera camera) {
+    	g.drawImage(endImg, 0, 0, camera.getViewWidth(), camera.getViewHeight(), null);
     }
     
     /**
@@ -343,16 +1147,25 @@ public class World {
      * 设置游戏结束倒计时
      */
     public void gameOver() {
-    	if(!isEnd())
-    		this.end = 30;  // 30帧后显示结束画面
+    	if(!isEnd()) {
+    		this.endTick = getTick() + 30;  // 30帧后显示结束画面
+    		endEvent = timer.schedule(30, this::endGame);
+    	}
     }
     
+    /**
+     * 结束倒计时结束（由计时器调用）
+     */
+    private void endGame() {
+    	this.ended = true;
+    }
+
     /**
      * 判断是否处于结束倒计时状态
      * @return 是否在倒计时
      */
     public boolean isEnd() {
-    	return this.end >= 0;
+    	return this.endTick >= 0;
     }
     
     /**
@@ -360,6 +1173,6 @@ public class World {
      * @return 是否结束
      */
     public boolean End() {
-    	return this.end == 0;
+    	return this.ended;
     }
 }
@@ -0,0 +1,463 @@
+package Game;
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * 世界状态编解码器
+ *
+ * 把一局对局的完整状态编码为紧凑的二进制格式，用于存档/读档、复制世界和崩溃快照：
+ * - 整数使用变长编码（Varint），坐标是整数像素，用zigzag变长编码，大多数字段只占1~2字节
+ * - 对象之间的引用（弹丸的持有者、敌人的目标、各容器中的顺序）都记为对象编号
+ * - 计时器中等待的事件记为（到期帧，登记序号），读档后按序号重新登记，执行顺序与存档前一致
+ * - 随机数状态一起保存，读档后继续运行的对局与没有存档的对局逐帧相同
+ *
+ * 格式（版本1）：
+ * 1. 魔数"ZCWS"、版本号、地图（TileMap格式，包含世界宽高）、当前帧、下一个事件的登记序号
+ * 2. 实体表：每个实体的类型、编号和坐标（英雄附加按键组，弹丸附加持有者编号），非弹丸在前
+ * 3. 容器顺序：活动对象、静态对象、尸体、等待重生的宝箱、英雄（都是编号列表）
+ * 4. 世界自身的状态（World.writeState）
+ * 5. 实体状态：按实体表顺序调用writeState
+ * 存档只在同一版本的程序之间使用，格式变化时提高版本号，读档时拒绝其它版本
+ */
+public class WorldCodec {
+    public static final int MAGIC = 0x5A435753;      // 魔数"ZCWS"
+    public static final int VERSION = 1;             // 格式版本
+    public static final String CRASH_DIR = "crash";  // 崩溃快照目录
+    private static final int INITIAL_CAPACITY = 64 * 1024;  // 初始缓冲区大小（不够时加倍）
+
+    // 实体类型
+    private static final int KIND_HERO = 1;
+    private static final int KIND_MONSTER = 2;
+    private static final int KIND_GHOST = 3;
+    private static final int KIND_FIREBALL = 4;
+    private static final int KIND_GHOSTBALL = 5;
+    private static final int KIND_WALL = 6;
+    private static final int KIND_BOX = 7;
+
+    /**
+     * 读档上下文
+     * 按编号查找已创建的对象，并把读到的计时事件重新登记到世界的计时器中
+     */
+    public static class Reader {
+        private final World world;
+        private final Map<Integer, GameObject> objects = new HashMap<>();
+
+        Reader(World world) {
+            this.world = world;
+        }
+
+        /**
+         * 按编号查找对象
+         * @param id 对象编号（0表示空引用）
+         * @return 游戏对象，编号为0时返回null
+         */
+        public GameObject get(int id) {
+            if(id == 0) return null;
+            GameObject obj = objects.get(id);
+            if(obj == null) throw new IllegalStateException("存档引用了不存在的对象: " + id);
+            return obj;
+        }
+
+        /**
+         * 读取由putEvent写入的计时事件并重新登记
+         * @param buf 输入缓冲区
+         * @param action 事件到期时执行的动作
+         * @return 重新登记的事件，存档时没有等待中的事件则返回null
+         */
+        public TimerWheel.TimerEvent readEvent(ByteBuffer buf, Runnable action) {
+            long deadline = Varint.getVarLong(buf);
+            if(deadline == 0) return null;
+            long seq = Varint.getVarLong(buf);
+            return world.getTimer().restoreEvent(deadline, seq, action);
+        }
+    }
+
+    /**
+     * 写入计时事件（只记录仍在等待的事件，已执行或已取消的记为0）
+     * @param buf 输出缓冲区
+     * @param timer 计时器
+     * @param event 计时事件（可为null）
+     */
+    public static void putEvent(ByteBuffer buf, TimerWheel timer, TimerWheel.TimerEvent event) {
+        if(!timer.isPending(event)) {
+            Varint.putVarLong(buf, 0);
+            return;
+        }
+        Varint.putVarLong(buf, event.getDeadline());  // 到期帧总是大于当前帧，不会为0
+        Varint.putVarLong(buf, event.getSeq());
+    }
+
+    /**
+     * 编码世界状态
+     * @param world 游戏世界（必须在两帧之间调用）
+     * @return 编码结果（已flip，可直接读取）
+     */
+    public static ByteBuffer encode(World world) {
+        int capacity = INITIAL_CAPACITY;
+        while(true) {
+            ByteBuffer buf = ByteBuffer.allocate(capacity);
+            try {
+                encode(world, buf);
+                buf.flip();
+                return buf;
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    /**
+     * 把世界状态编码到指定缓冲区（从当前位置开始写）
+     * @param world 游戏世界（必须在两帧之间调用）
+     * @param buf 输出缓冲区
+     * @throws BufferOverflowException 缓冲区空间不足
+     */
+    public static void encode(World world, ByteBuffer buf) {
+        TimerWheel timer = world.getTimer();
+        buf.putInt(MAGIC);
+        Varint.putVarInt(buf, VERSION);
+        world.getMap().write(buf);
+        Varint.putVarLong(buf, timer.getCurrentTick());
+        Varint.putVarLong(buf, timer.getNextSeq());
+
+        // 实体表：各容器中的对象，加上已移除但仍被弹丸引用的持有者；弹丸放在最后（创建时需要持有者）
+        Set<GameObject> entities = new LinkedHashSet<>();
+        Set<Ball> balls = new LinkedHashSet<>();
+        collect(world.getHeroes(), entities, balls);
+        collect(iterable(world.getObjectsIterator()), entities, balls);
+        collect(iterable(world.getStaticsIterator()), entities, balls);
+        collect(world.getCorpses(), entities, balls);
+        collect(world.getPickedBoxes(), entities, balls);
+        for(Ball ball : balls)
+            entities.add(ball.getOwner());
+        entities.addAll(balls);
+
+        Varint.putVarInt(buf, entities.size());
+        for(GameObject obj : entities) {
+            int kind = kindOf(obj);
+            buf.put((byte) kind);
+            Varint.putVarInt(buf, obj.getId());
+            Varint.putSignedVarInt(buf, obj.getX());
+            Varint.putSignedVarInt(buf, obj.getY());
+            if(kind == KIND_HERO) buf.put((byte) ((Hero) obj).getKeyGroup());
+            else if(kind == KIND_FIREBALL || kind == KIND_GHOSTBALL) Varint.putVarInt(buf, obj.getOwner().getId());
+        }
+
+        // 容器顺序
+        putIds(buf, iterable(world.getObjectsIterator()));
+        putIds(buf, iterable(world.getStaticsIterator()));
+        putIds(buf, world.getCorpses());
+        putIds(buf, world.getPickedBoxes());
+        putIds(buf, world.getHeroes());
+
+        world.writeState(buf);
+        for(GameObject obj : entities)
+            obj.writeState(buf);
+    }
+
+    /**
+     * 解码世界状态
+     * @param buf 输入缓冲区（从当前位置开始读）
+     * @return 恢复的游戏世界
+     * @throws IllegalArgumentException 不是存档数据或版本不支持
+     */
+    public static World decode(ByteBuffer buf) {
+        if(buf.getInt() != MAGIC) throw new IllegalArgumentException("不是ZombieCrisis存档数据");
+        int version = Varint.getVarInt(buf);
+        if(version != VERSION) throw new IllegalArgumentException("不支持的存档版本: " + version);
+        TileMap map = TileMap.read(buf);
+        long tick = Varint.getVarLong(buf);
+        long nextSeq = Varint.getVarLong(buf);
+
+        World world = new World(map);
+        Reader reader = new Reader(world);
+
+        // 按实体表创建对象（构造方法登记的计时事件随后被清除）
+        int n = Varint.getVarInt(buf);
+        List<GameObject> entities = new ArrayList<>(n);
+        for(int i = 0; i < n; i++) {
+            int kind = buf.get();
+            int id = Varint.getVarInt(buf);
+            int x = Varint.getSignedVarInt(buf);
+            int y = Varint.getSignedVarInt(buf);
+            GameObject obj;
+            switch (kind) {
+                case KIND_HERO: obj = new Hero(x, y, buf.get(), world); break;
+                case KIND_MONSTER: obj = new Monster(x, y, world); break;
+                case KIND_GHOST: obj = new Ghost(x, y, world); break;
+                case KIND_FIREBALL: obj = new Fireball((Role) reader.get(Varint.getVarInt(buf)), world); break;
+                case KIND_GHOSTBALL: obj = new Ghostball((Role) reader.get(Varint.getVarInt(buf)), world); break;
+                case KIND_WALL: obj = new Wall(x, y, world); break;
+                case KIND_BOX: obj = new Box(x, y, world); break;
+                default: throw new IllegalArgumentException("未知的实体类型: " + kind);
+            }
+            obj.x = x;  // 弹丸的构造方法使用持有者的坐标
+            obj.y = y;
+            obj.setId(id);
+            reader.objects.put(id, obj);
+            entities.add(obj);
+        }
+
+        // 按原顺序放回各容器（同时加入空间索引）
+        for(GameObject obj : readIds(buf, reader)) world.setLifecycle(obj, LifecycleState.ACTIVE);
+        for(GameObject obj : readIds(buf, reader)) world.setLifecycle(obj, LifecycleState.STATIC);
+        for(GameObject obj : readIds(buf, reader)) world.setLifecycle(obj, LifecycleState.DYING);
+        for(GameObject obj : readIds(buf, reader)) world.getPickedBoxes().add((Box) obj);
+        for(GameObject obj : readIds(buf, reader)) world.getHeroes().add((Hero) obj);
+
+        world.getTimer().restore(tick, nextSeq);
+        world.readState(buf, reader);
+        for(GameObject obj : entities)
+            obj.readState(buf, reader);
+        return world;
+    }
+
+    /**
+     * 复制世界（编码后立即解码）
+     * 副本与原世界完全独立，继续运行时逐帧相同
+     * @param world 游戏世界
+     * @return 副本
+     */
+    public static World copy(World world) {
+        return decode(encode(world));
+    }
+
+    /**
+     * 存档
+     * @param world 游戏世界
+     * @param file 存档文件
+     * @throws IOException 写入失败
+     */
+    public static void save(World world, File file) throws IOException {
+        ByteBuffer buf = encode(world);
+        try(FileOutputStream out = new FileOutputStream(file)) {
+            out.getChannel().write(buf);
+        }
+    }
+
+    /**
+     * 读档
+     * @param file 存档文件
+     * @return 恢复的游戏世界
+     * @throws IOException 读取失败或文件不是存档
+     */
+    public static World load(File file) throws IOException {
+        try {
+            return decode(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        } catch (RuntimeException e) {
+            throw new IOException("存档已损坏: " + file, e);
+        }
+    }
+
+    /**
+     * 写入崩溃快照
+     * 在模拟出错时调用，把出错时的世界状态保存到CRASH_DIR目录，便于离线复现
+     * 出错的帧可能只执行了一半，快照本身写入失败时只打印错误，不影响调用者的错误处理
+     * @param world 游戏世界
+     * @param tag 来源标记（如房间编号）
+     * @return 快照文件，写入失败时返回null
+     */
+    public static File writeCrashSnapshot(World world, String tag) {
+        try {
+            File dir = new File(CRASH_DIR);
+            if(!dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建目录: " + dir);
+            String time = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+            File file = new File(dir, "crash-" + tag + "-" + world.getTick() + "-" + time + ".zcs");
+            save(world, file);
+            System.err.println("崩溃快照已保存: " + file.getPath());
+            return file;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("崩溃快照保存失败: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取实体类型
+     * @param obj 游戏对象
+     * @return 实体类型
+     */
+    private static int kindOf(GameObject obj) {
+        if(obj instanceof Hero) return KIND_HERO;
+        if(obj instanceof Monster) return KIND_MONSTER;
+        if(obj instanceof Ghost) return KIND_GHOST;
+        if(obj instanceof Fireball) return KIND_FIREBALL;
+        if(obj instanceof Ghostball) return KIND_GHOSTBALL;
+        if(obj instanceof Wall) return KIND_WALL;
+        if(obj instanceof Box) return KIND_BOX;
+        throw new IllegalArgumentException("无法存档的对象: " + obj.getClass().getSimpleName());
+    }
+
+    private static void collect(Iterable<? extends GameObject> list, Set<GameObject> entities, Set<Ball> balls) {
+        for(GameObject obj : list) {
+            if(obj instanceof Ball) {
+                balls.add((Ball) obj);
+            } else {
+                entities.add(obj);
+            }
+        }
+    }
+
+    private static <T> Iterable<T> iterable(Iterator<T> iter) {
+        List<T> list = new ArrayList<>();
+        while(iter.hasNext()) list.add(iter.next());
+        return list;
+    }
+
+    private static void putIds(ByteBuffer buf, Iterable<? extends GameObject> list) {
+        int n = 0;
+        for(GameObject ignored : list) n++;
+        Varint.putVarInt(buf, n);
+        for(GameObject obj : list)
+            Varint.putVarInt(buf, obj.getId());
+    }
+
+    private static List<GameObject> readIds(ByteBuffer buf, Reader reader) {
+        int n = Varint.getVarInt(buf);
+        List<GameObject> list = new ArrayList<>(n);
+        for(int i = 0; i < n; i++)
+            list.add(reader.get(Varint.getVarInt(buf)));
+        return list;
+    }
+
+    /**
+     * 与Java序列化对比用的实体（逐字段对应writeState写入的主要字段）
+     */
+    private static class SerialEntity implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String kind;
+        int id, x, y, dir, oldDir, hp, onAttackState, xIncrement, yIncrement;
+        boolean collidable;
+        int deadState, begin, currentWeapon, target, delay;
+        List<int[]> weapons = new ArrayList<>();  // 每个武器：状态、剩余冷却、弹药
+    }
+
+    /**
+     * 与Java序列化对比用的世界
+     */
+    private static class SerialWorld implements Serializable {
+        private static final long serialVersionUID = 1L;
+        long tick, rng;
+        int width, height, maxEnemyNum, currentEnemyNum;
+        List<SerialEntity> entities = new ArrayList<>();
+        List<int[]> bloods = new ArrayList<>();
+    }
+
+    private static SerialWorld toSerial(World world) {
+        SerialWorld sw = new SerialWorld();
+        sw.tick = world.getTick();
+        sw.rng = world.getRandom().getState();
+        sw.width = world.getWidth();
+        sw.height = world.getHeight();
+        sw.maxEnemyNum = world.getMaxEnemyNum();
+        sw.currentEnemyNum = world.getCurrentEnemyNum();
+        List<GameObject> all = new ArrayList<>();
+        for(GameObject obj : iterable(world.getObjectsIterator())) all.add(obj);
+        for(GameObject obj : iterable(world.getStaticsIterator())) all.add(obj);
+        all.addAll(world.getCorpses());
+        for(GameObject obj : all) {
+            SerialEntity e = new SerialEntity();
+            e.kind = obj.getClass().getSimpleName();
+            e.id = obj.getId();
+            e.x = obj.getX();
+            e.y = obj.getY();
+            e.dir = obj.getDir().ordinal();
+            e.oldDir = obj.getOldDir().ordinal();
+            e.hp = obj.getHP();
+            e.onAttackState = obj.checkOnAttack();
+            e.xIncrement = obj.getxIncrement();
+            e.yIncrement = obj.getyIncrement();
+            e.collidable = obj.isCollidable();
+            if(obj instanceof Role) {
+                Role role = (Role) obj;
+                e.deadState = role.getDeadState();
+                e.begin = role.getBegin();
+                e.currentWeapon = role.getWeapons().indexOf(role.getCurrentWeapon());
+                for(Weapon w : role.getWeapons())
+                    e.weapons.add(new int[]{w.getState(), w.getColdDown(), w instanceof Ball ? ((Ball) w).getNum() : 0});
+            }
+            if(obj instanceof Enemy && ((Enemy) obj).getCurrentTarget() != null)
+                e.target = ((Enemy) obj).getCurrentTarget().getId();
+            if(obj instanceof Box) e.delay = ((Box) obj).getDelay();
+            sw.entities.add(e);
+        }
+        for(Blood blood : world.getBloods())
+            sw.bloods.add(new int[]{blood.getX(), blood.getY(), blood.getPicX(), blood.getPicY()});
+        return sw;
+    }
+
+    /**
+     * 性能对比入口
+     * 参数：[帧数] [重复次数]，默认运行800帧后编解码1000次
+     * 先检查中途读档后继续运行的世界与原世界逐帧一致，
+     * 再对比本格式与Java序列化（同样字段的Serializable对象）的大小和编解码耗时
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        // 运行到一半时复制世界，之后两个世界逐帧比较
+        World world = new World(GameClient.WORLD_WIDTH, GameClient.WORLD_HEIGHT, 2, 42);
+        for(int i = 0; i < ticks / 2; i++)
+            world.tick();
+        World copy = copy(world);
+        for(int i = ticks / 2; i < ticks && !world.End(); i++) {
+            world.tick();
+            copy.tick();
+            if(!encode(world).equals(encode(copy))) {
+                System.out.println("第" + world.getTick() + "帧读档后的世界与原世界不一致");
+                return;
+            }
+        }
+        System.out.printf("第%d帧读档，继续运行到第%d帧与原世界一致；活动对象%d个，尸体%d个，血迹%d个%n",
+                ticks / 2, world.getTick(), world.getSpatialIndex().size() - world.getCorpses().size(),
+                world.getCorpses().size(), world.getBloods().size());
+
+        // 本格式
+        ByteBuffer buf = ByteBuffer.allocate(INITIAL_CAPACITY * 16);
+        int size = 0;
+        long encodeNanos = 0, decodeNanos = 0;
+        for(int r = 0; r < rounds; r++) {
+            buf.clear();
+            long t0 = System.nanoTime();
+            encode(world, buf);
+            long t1 = System.nanoTime();
+            buf.flip();
+            size = buf.remaining();
+            decode(buf);
+            long t2 = System.nanoTime();
+            encodeNanos += t1 - t0;
+            decodeNanos += t2 - t1;
+        }
+        System.out.printf("WorldCodec: %7d字节  编码%8.1fus  解码%8.1fus（解码包括重建网格等世界结构）%n",
+                size, encodeNanos / 1e3 / rounds, decodeNanos / 1e3 / rounds);
+
+        // Java序列化
+        int javaSize = 0;
+        encodeNanos = 0;
+        decodeNanos = 0;
+        for(int r = 0; r < rounds; r++) {
+            long t0 = System.nanoTime();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(toSerial(world));
+            }
+            long t1 = System.nanoTime();
+            try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                in.readObject();
+            }
+            long t2 = System.nanoTime();
+            javaSize = bytes.size();
+            encodeNanos += t1 - t0;
+            decodeNanos += t2 - t1;
+        }
+        System.out.printf("Java序列化: %7d字节  编码%8.1fus  解码%8.1fus（不含路径和计时事件）%n",
+                javaSize, encodeNanos / 1e3 / rounds, decodeNanos / 1e3 / rounds);
+    }
+}
@@ -2,9 +2,11 @@ package Game;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 网格类（内部类）
@@ -17,7 +19,9 @@ class Grid implements Cloneable{
     private int x, y;                     // 实际坐标（像素坐标）
     private boolean accessible;           // 是否可通行
     private GameObject object;            // 当前网格上的对象
-    private boolean isBorder;             // 是否为边界
+    private boolean isBorder;             // 是否为边界或地图障碍（始终不可通行）
+    private GameObject previous;          // 更新占用前网格上的对象（只在WorldGrids.updateGrids中使用）
+    private int changed;                  // 占用最后一次变化时的更新次数（见WorldGrids.getUpdates）
 
     /**
      * 构造方法
@@ -67,6 +71,10 @@ class Grid implements Cloneable{
         this.y = y;
     }
 
+    public boolean isBorder() {
+        return isBorder;
+    }
+
     public boolean isAccessible() {
         return accessible;
     }
@@ -83,6 +91,22 @@ class Grid implements Cloneable{
         this.object = object;
     }
 
+    public GameObject getPrevious() {
+        return previous;
+    }
+
+    public void setPrevious(GameObject previous) {
+        this.previous = previous;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public void setChanged(int changed) {
+        this.changed = changed;
+    }
+
     /**
      * 克隆网格对象
      * @return 克隆的网格
@@ -103,75 +127,257 @@ class Grid implements Cloneable{
  * 世界网格系统类
  * 将游戏世界划分为网格，用于A*寻路算法
  * 管理网格的可通行状态和对象占用情况
+ *
+ * 网格按CHUNK×CHUNK分块保存，分块内容（边界和地图障碍）只取决于地图，可以随时重新生成：
+ * - 默认在第一次访问某个分块时生成，之后一直保留（与整张地图都生成网格等价）
+ * - 开启分块流式加载（WorldStreamer）后，只有装入的分块才有网格，未装入分块中的位置都返回unloaded（始终不可通行），
+ *   寻路不会进入未装入的区域，读阶段也不会生成分块，多个寻路器可以并行读取
  */
 public class WorldGrids {
-    private List<Grid> grids;                    // 所有网格列表
+    public static final int CHUNK = 64;           // 分块边长（网格数）
+    private final AtomicReferenceArray<Grid[]> chunks;  // 网格分块（分块行优先，null表示未生成或未装入）
+    private final Grid unloaded;                  // 未装入分块中的网格（始终不可通行）
     private World world;                         // 所属世界
     private List<Grid> unaccessibleGrids;        // 不可通行网格列表
+    private List<Grid> clearedGrids;             // 本次更新前不可通行的网格（与unaccessibleGrids交替使用）
+    private int updates;                         // 占用更新的次数
     private int w, h;                            // 网格数量（宽、高）
+    private final int chunkCols, chunkRows;      // 分块数量（宽、高）
+    private volatile boolean streamed;           // 分块是否由WorldStreamer装入和换出
+    private volatile int layoutVersion;          // 静态布局版本（装入或换出分块、阻挡寻路的静态对象变化时加一）
 
     /**
      * 构造方法
-     * 初始化网格系统，将世界划分为10x10像素的网格
-     * @param world 游戏世界
+     * 将世界划分为10x10像素的网格，网格在第一次访问所在分块时生成
+     * 中心在活动区域外的网格和地图障碍覆盖的网格设为边界（始终不可通行）
+     * @param world 游戏世界（需要已创建地图和活动区域边界）
      */
     public WorldGrids(World world) {
         this.world = world;
         w = world.getWidth() / Grid.LENGTH;   // 计算网格列数
         h = world.getHeight() / Grid.LENGTH;  // 计算网格行数
-        this.grids = new ArrayList<>();
+        this.chunkCols = (w + CHUNK - 1) / CHUNK;
+        this.chunkRows = (h + CHUNK - 1) / CHUNK;
+        this.chunks = new AtomicReferenceArray<>(chunkCols * chunkRows);
+        this.unloaded = new Grid(-1, -1, true);
         this.unaccessibleGrids = new ArrayList<>();
-        
-        // 创建所有网格
-        for(int i = 0; i < h; i++){
-            for(int j = 0; j < w; j++){
-                // 左上角区域设为边界（不可通行）
-                if(j == 0 || j == 1 || i <= 5)
-                    grids.add(new Grid(j, i, true));
-                else
-                    grids.add(new Grid(j, i, false));
+        this.clearedGrids = new ArrayList<>();
+    }
+
+    /**
+     * 生成一个分块的网格
+     * 只读取地图和活动区域边界（创建后不再改变），可以在后台线程中调用
+     * 与getGrid(GameObject)的偏移一致，网格(j, i)对应像素区域[(j-1)*LENGTH, j*LENGTH)×[(i-1)*LENGTH, i*LENGTH)，
+     * 按网格中心判断（地图瓦片边长是网格边长的整数倍）；超出世界的网格也设为边界
+     * @param chunk 分块下标
+     * @return 分块中的网格（行优先）
+     */
+    public Grid[] buildChunk(int chunk) {
+        int gx0 = chunk % chunkCols * CHUNK, gy0 = chunk / chunkCols * CHUNK;
+        Grid[] grids = new Grid[CHUNK * CHUNK];
+        for(int i = 0; i < CHUNK; i++){
+            for(int j = 0; j < CHUNK; j++){
+                grids[i * CHUNK + j] = new Grid(gx0 + j, gy0 + i, isStaticBlocked(gx0 + j, gy0 + i));
             }
         }
+        return grids;
+    }
+
+    /**
+     * 判断网格是否为边界或地图障碍（只取决于地图，与分块是否装入无关，可以在后台线程中调用）
+     * @param gx 网格X坐标
+     * @param gy 网格Y坐标
+     * @return 是否始终不可通行（超出世界的网格也是）
+     */
+    public boolean isStaticBlocked(int gx, int gy) {
+        if(gx < 0 || gy < 0 || gx >= w || gy >= h) return true;
+        int cx = gx * Grid.LENGTH - Grid.LENGTH / 2, cy = gy * Grid.LENGTH - Grid.LENGTH / 2;
+        return !world.getBorder().contains(cx, cy) || world.getMap().isBlockedAt(cx, cy);
+    }
+
+    /**
+     * 按需生成分块（没有开启流式加载时）
+     * 并行读阶段中多个寻路器可能同时访问同一个未生成的分块，加锁保证只生成一次
+     * @param chunk 分块下标
+     * @return 分块中的网格
+     */
+    private synchronized Grid[] loadChunk(int chunk) {
+        Grid[] grids = chunks.get(chunk);
+        if(grids == null) {
+            grids = buildChunk(chunk);
+            chunks.set(chunk, grids);
+        }
+        return grids;
+    }
+
+    /**
+     * 根据网格坐标获取网格（不检查范围）
+     * @param gridX 网格X坐标
+     * @param gridY 网格Y坐标
+     * @return 对应的网格，流式加载时未装入的分块返回unloaded
+     */
+    private Grid grid(int gridX, int gridY) {
+        int chunk = gridY / CHUNK * chunkCols + gridX / CHUNK;
+        Grid[] grids = chunks.get(chunk);
+        if(grids == null) {
+            if(streamed) return unloaded;
+            grids = loadChunk(chunk);
+        }
+        return grids[gridY % CHUNK * CHUNK + gridX % CHUNK];
+    }
+
+    /**
+     * 设置是否由WorldStreamer管理分块
+     * 开启时丢弃所有已生成的分块，由WorldStreamer重新装入需要的分块
+     * @param streamed 是否流式加载
+     */
+    public void setStreamed(boolean streamed) {
+        this.streamed = streamed;
+        layoutVersion++;
+        if(streamed) {
+            for(int i = 0; i < chunks.length(); i++)
+                chunks.set(i, null);
+        }
+    }
+
+    /**
+     * 装入分块（流式加载，在写阶段调用）
+     * @param chunk 分块下标
+     * @param grids buildChunk生成的网格
+     */
+    public void install(int chunk, Grid[] grids) {
+        chunks.set(chunk, grids);
+        layoutVersion++;
+    }
+
+    /**
+     * 换出分块（流式加载，在写阶段调用）
+     * @param chunk 分块下标
+     * @return 换出的网格（可以缓存后重新装入），没有装入时返回null
+     */
+    public Grid[] evict(int chunk) {
+        layoutVersion++;
+        return chunks.getAndSet(chunk, null);
+    }
+
+    /**
+     * 判断分块是否已生成或装入
+     * @param chunk 分块下标
+     * @return 是否有网格
+     */
+    public boolean isLoaded(int chunk) {
+        return chunks.get(chunk) != null;
+    }
+
+    /**
+     * 阻挡寻路的静态对象加入或移出世界（在写阶段调用）
+     */
+    public void layoutChanged() {
+        layoutVersion++;
+    }
+
+    /**
+     * 获取占用更新的次数（每次updateGrids加一，与Grid.getChanged比较可以知道网格在某次更新之后是否变化过）
+     * @return 更新次数
+     */
+    public int getUpdates() {
+        return updates;
+    }
+
+    /**
+     * 获取静态布局版本
+     * 版本不变时，地图障碍、边界、已装入的分块和静态对象占用的网格都没有变化（增量寻路器据此跳过远处网格的检查）
+     * @return 版本号
+     */
+    public int getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    public int getCols() {
+        return w;
+    }
+
+    public int getRows() {
+        return h;
+    }
+
+    public int getChunkCols() {
+        return chunkCols;
+    }
+
+    public int getChunkRows() {
+        return chunkRows;
     }
 
     /**
      * 更新网格状态
      * 根据当前游戏对象的位置更新网格的可通行状态
      * 每次寻路前调用，确保网格状态与游戏状态同步
+     * 占用（网格上的对象）与上一次不同的网格记下本次的更新次数，增量寻路器只需要检查这些网格
      */
     public void updateGrids(){
         resetGrid();  // 先重置所有网格
 
-        // 遍历所有游戏对象
-        Iterator<GameObject> objIter = world.getObjectsIterator();
+        // 遍历活动对象和静态对象（尸体不阻挡寻路）
+        markObjects(world.getObjectsIterator());
+        markObjects(world.getStaticsIterator());
+
+        updates++;
+        for(int i = 0, n = unaccessibleGrids.size(); i < n; i++) {
+            Grid tmp = unaccessibleGrids.get(i);
+            if(tmp.getObject() != tmp.getPrevious()) tmp.setChanged(updates);
+        }
+        for(int i = 0, n = clearedGrids.size(); i < n; i++) {
+            Grid tmp = clearedGrids.get(i);
+            if(tmp.getObject() != tmp.getPrevious()) tmp.setChanged(updates);
+            tmp.setPrevious(null);
+        }
+        clearedGrids.clear();
+    }
+
+    /**
+     * 把对象占用的网格标记为不可通行
+     * @param objIter 对象迭代器
+     */
+    private void markObjects(Iterator<GameObject> objIter){
         while(objIter.hasNext()){
             GameObject object = objIter.next();
-            // 跳过不可碰撞对象和边界
-            if(!object.isCollidable() || object instanceof Border) continue;
+            // 跳过不可碰撞对象和不阻挡寻路的层（如边界）
+            if(!object.isCollidable() || (object.getCollisionLayer() & CollisionLayers.NAV_BLOCKING) == 0) continue;
             
-            // 获取对象占用的所有网格
-            Iterator<Grid> tmpIt = getGrid(object).iterator();
-            while(tmpIt.hasNext()){
-                Grid tmp = tmpIt.next();
-                tmp.setObject(object);        // 标记网格上的对象
-                tmp.setAccessible(false);     // 设为不可通行
-                unaccessibleGrids.add(tmp);   // 加入不可通行列表
+            // 标记对象占用的所有网格（与getGrid(GameObject)的网格和顺序相同，但不创建临时列表）
+            int objX = object.getX() - object.getRadius();
+            int objY = object.getY() - object.getRadius();
+            int t = object.getRadius() * 2 / Grid.LENGTH + 1;
+            for(int i = 0; i < t && i < w; i++) {
+                int x = objX + i * Grid.LENGTH + Grid.LENGTH;
+                if(i > 0 && x / Grid.LENGTH == (x - Grid.LENGTH) / Grid.LENGTH) continue;  // 与上一列是同一个网格
+                for(int j = 0; j < t && j < h; j++) {
+                    int y = objY + j * Grid.LENGTH + Grid.LENGTH;
+                    if(j > 0 && y / Grid.LENGTH == (y - Grid.LENGTH) / Grid.LENGTH) continue;
+                    Grid tmp = getGrid(x, y);
+                    tmp.setObject(object);        // 标记网格上的对象
+                    tmp.setAccessible(false);     // 设为不可通行
+                    unaccessibleGrids.add(tmp);   // 加入不可通行列表
+                }
             }
         }
     }
 
     /**
      * 重置网格状态
-     * 将所有不可通行网格恢复为可通行状态
+     * 将所有不可通行网格恢复为可通行状态（记下原来的对象，移到clearedGrids中等待比较）
      */
     public void resetGrid(){
-        Iterator<Grid> unAcGridIter = getUnaccessibleGridsIterator();
-        while(unAcGridIter.hasNext()){
-            Grid tmp = unAcGridIter.next();
-            tmp.setAccessible(true);   // 恢复可通行
+        for(int i = 0, n = unaccessibleGrids.size(); i < n; i++){
+            Grid tmp = unaccessibleGrids.get(i);
+            if(tmp.getObject() != null) tmp.setPrevious(tmp.getObject());  // 同一个网格可能在列表中出现多次
+            tmp.setAccessible(!tmp.isBorder());  // 恢复可通行（边界和地图障碍仍不可通行）
             tmp.setObject(null);       // 清除对象引用
-            unAcGridIter.remove();     // 从不可通行列表移除
         }
+        List<Grid> tmp = clearedGrids;
+        clearedGrids = unaccessibleGrids;
+        unaccessibleGrids = tmp;       // 交换列表，不必逐个移除
     }
 
     /**
@@ -181,19 +387,21 @@ public class WorldGrids {
      * @return 对象占用的网格列表
      */
     public List<Grid> getGrid(GameObject obj){
-        List<Grid> grids = new ArrayList<>();
         int objX = obj.getX() - obj.getRadius();  // 对象左上角X
         int objY = obj.getY() - obj.getRadius();  // 对象左上角Y
         int length = obj.getRadius() * 2;         // 对象直径
         int t = length / Grid.LENGTH + 1;         // 需要的网格数
+        List<Grid> grids = new ArrayList<>(t * t);
         
         // 遍历对象覆盖的网格区域
-        for(int x = objX, i = 0; i < t && i < w; i++, x += Grid.LENGTH)
+        // 坐标逐列（行）递增一个网格，只有负坐标向零取整时相邻两列（行）才会落在同一个网格，跳过即可避免重复
+        for(int x = objX, i = 0; i < t && i < w; i++, x += Grid.LENGTH) {
+            if(i > 0 && (x + Grid.LENGTH) / Grid.LENGTH == x / Grid.LENGTH) continue;
             for(int y = objY, j = 0; j < t && j < h; j++, y += Grid.LENGTH) {
-                Grid tmp = getGrid(x+Grid.LENGTH, y+Grid.LENGTH);
-                if(grids.indexOf(tmp) < 0)  // 避免重复添加
-                    grids.add(tmp);
+                if(j > 0 && (y + Grid.LENGTH) / Grid.LENGTH == y / Grid.LENGTH) continue;
+                grids.add(getGrid(x+Grid.LENGTH, y+Grid.LENGTH));
             }
+        }
         return grids;
     }
 
@@ -204,9 +412,28 @@ public class WorldGrids {
      * @return 对应的网格
      */
     public Grid getGrid(int x, int y){
-        int gridX = x / Grid.LENGTH;  // 转换为网格坐标
-        int gridY = y / Grid.LENGTH;
-        return this.grids.get(gridY * w + gridX);  // 一维数组索引
+        return grid(x / Grid.LENGTH, y / Grid.LENGTH);  // 转换为网格坐标
+    }
+
+    /**
+     * 判断以(x, y)为中心、指定半径的正方形区域是否空闲
+     * 区域内的网格（与getGrid(GameObject)的偏移一致）都在世界内、已装入，并且不是边界或地图障碍；
+     * 不检查对象占用（上一次updateGrids的标记在读档后不存在），调用方用空间索引检查
+     * @param x 中心X坐标
+     * @param y 中心Y坐标
+     * @param radius 半径
+     * @return 是否空闲
+     */
+    public boolean isFree(int x, int y, int radius){
+        if(x - radius < 0 || y - radius < 0) return false;
+        int maxX = (x + radius + Grid.LENGTH) / Grid.LENGTH, maxY = (y + radius + Grid.LENGTH) / Grid.LENGTH;
+        if(maxX >= w || maxY >= h) return false;
+        for(int gy = (y - radius + Grid.LENGTH) / Grid.LENGTH; gy <= maxY; gy++){
+            for(int gx = (x - radius + Grid.LENGTH) / Grid.LENGTH; gx <= maxX; gx++){
+                if(grid(gx, gy).isBorder()) return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -221,7 +448,7 @@ public class WorldGrids {
         if(gridY < 0) gridY = 0;
         if(gridX >= w) gridX = w-1;
         if(gridY >= h) gridY = h-1;
-        return this.grids.get(gridY * w + gridX);
+        return grid(gridX, gridY);
     }
 
     /**
@@ -233,10 +460,15 @@ public class WorldGrids {
     }
 
     /**
-     * 获取所有网格迭代器
-     * @return 所有网格的迭代器
+     * 获取所有已生成（或已装入）网格的迭代器
+     * @return 网格迭代器
      */
     public Iterator<Grid> getGridsIterator(){
-        return grids.iterator();
+        List<Grid> all = new ArrayList<>();
+        for(int i = 0; i < chunks.length(); i++){
+            Grid[] grids = chunks.get(i);
+            if(grids != null) all.addAll(Arrays.asList(grids));
+        }
+        return all.iterator();
     }
 }
@@ -0,0 +1,110 @@
+package Game;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 世界快照类
+ * 每帧读阶段开始前由World在主线程生成，保存敌人决策所需的只读数据
+ * 读阶段中所有敌人并行读取同一个快照，快照生成后不再修改
+ */
+public class WorldSnapshot {
+    private final HeroView[] heroes;       // 所有英雄的状态副本
+    private final WorldGrids worldGrids;   // 本帧已更新的网格系统（读阶段只读）
+
+    /**
+     * 英雄状态副本（不可变）
+     * 记录读阶段开始时英雄的位置、半径和生命值
+     */
+    public static class HeroView {
+        private final Hero hero;    // 对应的英雄（仅用于标识目标，读阶段不读取其状态）
+        private final int x, y;     // 坐标
+        private final int radius;   // 半径
+        private final int HP;       // 生命值
+
+        public HeroView(Hero hero) {
+            this.hero = hero;
+            this.x = hero.getX();
+            this.y = hero.getY();
+            this.radius = hero.getRadius();
+            this.HP = hero.getHP();
+        }
+
+        public Hero getHero() {
+            return hero;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getRadius() {
+            return radius;
+        }
+
+        public int getHP() {
+            return HP;
+        }
+    }
+
+    /**
+     * 构造方法
+     * 复制世界中所有英雄的状态
+     * @param world 游戏世界
+     * @param worldGrids 本帧已更新的网格系统
+     */
+    public WorldSnapshot(World world, WorldGrids worldGrids) {
+        List<HeroView> views = new ArrayList<>();
+        for(Hero hero : world.getHeroes()){
+            views.add(new HeroView(hero));
+        }
+        this.heroes = views.toArray(new HeroView[0]);
+        this.worldGrids = worldGrids;
+    }
+
+    /**
+     * 获取距离指定位置最近的存活英雄
+     * 距离相同时选择列表中靠后的英雄（与Enemy.getTarget一致）
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 最近的存活英雄，没有则返回null
+     */
+    public HeroView nearestHero(int x, int y) {
+        HeroView target = null;
+        double minDistance = Double.MAX_VALUE;
+        for(HeroView view : heroes){
+            if(view.getHP() <= 0) continue;
+            double distance = Math.pow(x - view.getX(), 2) + Math.pow(y - view.getY(), 2);
+            if(distance <= minDistance){
+                target = view;
+                minDistance = distance;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 获取指定角色的状态副本
+     * @param role 角色
+     * @return 状态副本，不是英雄则返回null
+     */
+    public HeroView viewOf(Role role) {
+        for(HeroView view : heroes){
+            if(view.getHero() == role) return view;
+        }
+        return null;
+    }
+
+    /**
+     * 获取网格系统
+     * @return 本帧已更新的网格系统
+     */
+    public WorldGrids getWorldGrids() {
+        return worldGrids;
+    }
+}
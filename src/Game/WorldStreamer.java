@@ -0,0 +1,497 @@
+package Game;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 分块流式加载
+ *
+ * 很大的地图不需要所有区域同时完整模拟。世界按CHUNK_SIZE像素划分为分块（与WorldGrids的网格分块相同），
+ * 按离英雄最近的距离（以分块计的切比雪夫距离）分为几圈：
+ * - 活动区域（距离不超过activeChunks）：对象完整模拟，远处的宝箱不更新
+ * - 活动区域外一圈：寻路网格仍然装入，寻路和碰撞不会碰到未装入的分块
+ * - 再外一圈：在后台线程中预先生成寻路网格，英雄走近时直接装入，只有预取还没完成时才在本帧等待
+ * - 更远的分块没有寻路网格（网格内容由地图决定，换出后随时可以重新生成）
+ * 离开活动区域的敌人换出为休眠记录（类型、坐标、生命值、速度），按分块保存，每个只占RECORD个int；
+ * 休眠敌人每隔STEP_TICKS帧以简化的方式移动（直线走向最近的英雄，只避开地图障碍，不寻路、不碰撞），
+ * 预取圈以外的休眠敌人每隔FAR_INTERVALS个间隔才移动一次（每次走FAR_INTERVALS倍的距离）；
+ * 回到活动区域并且位置空闲时换入，重新成为完整的敌人（编号重新分配），仍计入当前敌人数量。
+ * 只访问有休眠记录的分块（位集）和活动区域内的分块（英雄换分块时重新计算），每帧的开销取决于休眠敌人数和活动区域，与地图大小无关。
+ *
+ * 所有决定只取决于英雄和敌人的位置，在固定的帧上进行；后台预取只影响等待时间，不影响装入哪些分块，对局仍然是确定的。
+ * 活动半径和休眠记录属于模拟状态，随世界一起存档（World.writeState）
+ */
+public class WorldStreamer {
+    public static final int CHUNK_SIZE = WorldGrids.CHUNK * Grid.LENGTH;  // 分块边长（像素）
+    public static final int STEP_TICKS = 15;   // 换入换出敌人和移动休眠敌人的间隔（帧数）
+    public static final int RECORD = 5;        // 每个休眠敌人的int数量（类型、X、Y、生命值、速度）
+    public static final int FAR_INTERVALS = 4; // 预取圈以外的休眠敌人移动的间隔数
+    private static final int RADIUS = 14;      // 休眠敌人的半径（Monster和Ghost相同，检查换入位置用）
+    private static final int KIND_MONSTER = 0;
+    private static final int KIND_GHOST = 1;
+
+    /** 预取寻路网格的后台线程（所有世界共用） */
+    private static final ExecutorService PREFETCH = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chunk-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final World world;                 // 所属世界
+    private final WorldGrids grids;            // 寻路网格
+    private final int activeChunks;            // 活动区域半径（分块数）
+    private final int cols, rows;              // 分块数量（宽、高）
+    private final int[][] dormant;             // 每个分块的休眠敌人记录（每RECORD个int一个，null表示没有）
+    private final int[] dormantSize;           // 每个分块的记录长度（int数）
+    private final BitSet occupied;             // 有休眠记录的分块
+    private int[] activeList = new int[0];     // 活动区域内的分块（按下标升序，英雄换分块时重新计算）
+    private int dormantCount;                  // 休眠敌人总数
+    private int[] heroChunks = new int[0];     // 上一次计算区域时每个英雄所在的分块
+    private final List<Integer> installed = new ArrayList<>();                 // 已装入的网格分块
+    private final Map<Integer, Future<Grid[]>> prefetched = new HashMap<>();   // 预取中（或换出后缓存）的网格分块
+    private final List<GameObject> query = new ArrayList<>();                  // 检查换入位置时复用的查询结果
+    private long waitNanos;                    // 等待预取的累计时间
+    private int syncLoads;                     // 没有预取、在本帧生成的分块数（不含开启时的初始装入）
+    private int initialLoads;                  // 开启时同步装入的分块数
+    private int prefetchHits;                  // 使用预取结果装入的分块数
+
+    /**
+     * 构造方法
+     * 丢弃已生成的寻路网格，按英雄当前的位置装入需要的分块
+     * @param world 游戏世界（英雄已经加入）
+     * @param activeChunks 活动区域半径（分块数，至少1）
+     */
+    public WorldStreamer(World world, int activeChunks) {
+        if(activeChunks < 1) throw new IllegalArgumentException("活动区域半径至少为1个分块: " + activeChunks);
+        this.world = world;
+        this.grids = world.getWorldGrids();
+        this.activeChunks = activeChunks;
+        this.cols = grids.getChunkCols();
+        this.rows = grids.getChunkRows();
+        this.dormant = new int[cols * rows][];
+        this.dormantSize = new int[cols * rows];
+        this.occupied = new BitSet(cols * rows);
+        grids.setStreamed(true);
+        refresh();
+        this.initialLoads = syncLoads;  // 开启时英雄附近的分块只能同步生成
+        this.syncLoads = 0;
+    }
+
+    /**
+     * 每帧调用一次（World.tick，生成敌人之前）
+     * 英雄换了分块时重新计算各圈分块；每隔STEP_TICKS帧换出离开活动区域的敌人、移动休眠敌人并换入回到活动区域的敌人
+     */
+    public void step() {
+        if(heroesMoved()) refresh();
+        if(world.getTick() % STEP_TICKS != 0) return;
+        pageOut();
+        moveDormant();
+        pageIn();
+    }
+
+    /**
+     * 判断是否有英雄换了分块
+     * @return 是否需要重新计算区域
+     */
+    private boolean heroesMoved() {
+        List<Hero> heroes = world.getHeroes();
+        if(heroes.size() != heroChunks.length) return true;
+        for(int i = 0; i < heroes.size(); i++)
+            if(chunkOf(heroes.get(i).getX(), heroes.get(i).getY()) != heroChunks[i]) return true;
+        return false;
+    }
+
+    /**
+     * 重新计算各圈分块
+     * 装入活动区域外扩一圈内的分块（优先使用预取结果），向再外一圈提交预取，换出更远的分块，并记下活动区域内的分块
+     */
+    private void refresh() {
+        List<Hero> heroes = world.getHeroes();
+        heroChunks = new int[heroes.size()];
+        for(int i = 0; i < heroes.size(); i++)
+            heroChunks[i] = chunkOf(heroes.get(i).getX(), heroes.get(i).getY());
+
+        int keep = activeChunks + 1, fetch = keep + 1;
+        BitSet active = new BitSet(cols * rows);
+        for(int hero : heroChunks) {
+            int hc = hero % cols, hr = hero / cols;
+            for(int r = Math.max(0, hr - fetch); r <= Math.min(rows - 1, hr + fetch); r++) {
+                for(int c = Math.max(0, hc - fetch); c <= Math.min(cols - 1, hc + fetch); c++) {
+                    int chunk = r * cols + c;
+                    if(distance(chunk) <= activeChunks) active.set(chunk);
+                    if(grids.isLoaded(chunk)) continue;
+                    if(distance(chunk) <= keep) install(chunk);
+                    else if(!prefetched.containsKey(chunk)) prefetched.put(chunk, PREFETCH.submit(() -> grids.buildChunk(chunk)));
+                }
+            }
+        }
+        activeList = active.stream().toArray();
+
+        // 换出活动区域外扩一圈以外的分块，预取圈内的留作缓存
+        for(Iterator<Integer> it = installed.iterator(); it.hasNext(); ) {
+            int chunk = it.next();
+            int d = distance(chunk);
+            if(d <= keep) continue;
+            Grid[] evicted = grids.evict(chunk);
+            it.remove();
+            if(d <= fetch && evicted != null) prefetched.put(chunk, CompletableFuture.completedFuture(evicted));
+        }
+        for(Iterator<Map.Entry<Integer, Future<Grid[]>>> it = prefetched.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Future<Grid[]>> e = it.next();
+            if(distance(e.getKey()) > fetch) {
+                e.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 装入一个分块的寻路网格
+     * 有预取结果时使用（还没完成就等待），否则在本帧生成
+     * @param chunk 分块下标
+     */
+    private void install(int chunk) {
+        Future<Grid[]> future = prefetched.remove(chunk);
+        Grid[] chunkGrids;
+        if(future != null) {
+            long start = System.nanoTime();
+            try {
+                chunkGrids = future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("预取分块失败: " + chunk, e);
+            }
+            waitNanos += System.nanoTime() - start;
+            prefetchHits++;
+        } else {
+            chunkGrids = grids.buildChunk(chunk);
+            syncLoads++;
+        }
+        grids.install(chunk, chunkGrids);
+        installed.add(chunk);
+    }
+
+    /**
+     * 换出离开活动区域的存活敌人
+     */
+    private void pageOut() {
+        Iterator<GameObject> iter = world.getObjectsIterator();
+        while(iter.hasNext()) {
+            GameObject obj = iter.next();
+            if(!(obj instanceof Enemy) || obj.getHP() <= 0 || obj.getLifecycle() != LifecycleState.ACTIVE) continue;
+            if(isActive(obj.getX(), obj.getY())) continue;
+            add(chunkOf(obj.getX(), obj.getY()), obj instanceof Ghost ? KIND_GHOST : KIND_MONSTER,
+                    obj.getX(), obj.getY(), obj.getHP(), obj.getSpeed());
+            world.removeObject(obj);
+        }
+    }
+
+    /**
+     * 移动休眠敌人
+     * 先按记录所在的分块顺序计算新位置，再把跨越分块的记录移到新分块（保持原有顺序）
+     * 只访问有记录的分块；预取圈以外的分块每隔FAR_INTERVALS个间隔才移动一次
+     */
+    private void moveDormant() {
+        if(dormantCount == 0) return;
+        TileMap map = world.getMap();
+        Border border = world.getBorder();
+        int fetch = activeChunks + 2;
+        boolean farTurn = world.getTick() / STEP_TICKS % FAR_INTERVALS == 0;
+        for(int chunk = occupied.nextSetBit(0); chunk >= 0; chunk = occupied.nextSetBit(chunk + 1)) {
+            boolean far = distance(chunk) > fetch;
+            if(far && !farTurn) continue;
+            int[] list = dormant[chunk];
+            for(int i = 0; i < dormantSize[chunk]; i += RECORD) {
+                Hero hero = nearestHero(list[i + 1], list[i + 2]);
+                if(hero == null) continue;
+                double dx = hero.getX() - list[i + 1], dy = hero.getY() - list[i + 2];
+                double len = Math.sqrt(dx * dx + dy * dy);
+                int step = list[i + 4] * STEP_TICKS * (far ? FAR_INTERVALS : 1);
+                if(len <= step) continue;
+                int mx = (int) (dx * step / len), my = (int) (dy * step / len);
+                int x = list[i + 1], y = list[i + 2];
+                if(passable(map, border, x + mx, y + my)) { x += mx; y += my; }
+                else if(passable(map, border, x + mx, y)) x += mx;
+                else if(passable(map, border, x, y + my)) y += my;
+                list[i + 1] = x;
+                list[i + 2] = y;
+            }
+        }
+        for(int chunk = occupied.nextSetBit(0); chunk >= 0; chunk = occupied.nextSetBit(chunk + 1)) {
+            int[] list = dormant[chunk];
+            int kept = 0;
+            for(int i = 0; i < dormantSize[chunk]; i += RECORD) {
+                int target = chunkOf(list[i + 1], list[i + 2]);
+                if(target == chunk) {
+                    System.arraycopy(list, i, list, kept, RECORD);
+                    kept += RECORD;
+                } else {
+                    dormantCount--;
+                    add(target, list[i], list[i + 1], list[i + 2], list[i + 3], list[i + 4]);
+                }
+            }
+            setSize(chunk, kept);
+        }
+    }
+
+    /**
+     * 换入活动区域中位置空闲的休眠敌人
+     * 只访问活动区域内的分块，位置空闲时才创建敌人
+     */
+    private void pageIn() {
+        if(dormantCount == 0) return;
+        for(int chunk : activeList) {
+            if(dormantSize[chunk] == 0) continue;
+            int[] list = dormant[chunk];
+            int kept = 0;
+            for(int i = 0; i < dormantSize[chunk]; i += RECORD) {
+                if(world.isSpotFree(list[i + 1], list[i + 2], RADIUS, query)) {
+                    Enemy enemy = list[i] == KIND_GHOST ? new Ghost(list[i + 1], list[i + 2], world) : new Monster(list[i + 1], list[i + 2], world);
+                    enemy.setHP(list[i + 3]);
+                    world.addObject(enemy);
+                    dormantCount--;
+                } else {
+                    System.arraycopy(list, i, list, kept, RECORD);  // 被占用，下次再试
+                    kept += RECORD;
+                }
+            }
+            setSize(chunk, kept);
+        }
+    }
+
+    /**
+     * 设置分块的记录长度（没有记录时从位集中去掉）
+     */
+    private void setSize(int chunk, int size) {
+        dormantSize[chunk] = size;
+        if(size == 0) occupied.clear(chunk);
+    }
+
+    /**
+     * 追加一条休眠记录
+     */
+    private void add(int chunk, int kind, int x, int y, int hp, int speed) {
+        int[] list = dormant[chunk];
+        int size = dormantSize[chunk];
+        if(list == null) list = dormant[chunk] = new int[RECORD * 4];
+        else if(size + RECORD > list.length) list = dormant[chunk] = Arrays.copyOf(list, list.length * 2);
+        list[size] = kind;
+        list[size + 1] = x;
+        list[size + 2] = y;
+        list[size + 3] = hp;
+        list[size + 4] = speed;
+        dormantSize[chunk] = size + RECORD;
+        occupied.set(chunk);
+        dormantCount++;
+    }
+
+    private static boolean passable(TileMap map, Border border, int x, int y) {
+        return border.contains(x, y) && !map.isBlockedAt(x, y);
+    }
+
+    private Hero nearestHero(int x, int y) {
+        Hero best = null;
+        long bestDist = Long.MAX_VALUE;
+        for(Hero hero : world.getHeroes()) {
+            long dx = hero.getX() - x, dy = hero.getY() - y;
+            if(dx * dx + dy * dy < bestDist) {
+                bestDist = dx * dx + dy * dy;
+                best = hero;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 计算坐标所在的分块（世界外的坐标夹到边缘分块）
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 分块下标
+     */
+    private int chunkOf(int x, int y) {
+        int c = Math.min(cols - 1, Math.max(0, x / CHUNK_SIZE));
+        int r = Math.min(rows - 1, Math.max(0, y / CHUNK_SIZE));
+        return r * cols + c;
+    }
+
+    /**
+     * 计算分块到最近英雄所在分块的距离（切比雪夫距离）
+     * @param chunk 分块下标
+     * @return 距离（分块数）
+     */
+    private int distance(int chunk) {
+        int c = chunk % cols, r = chunk / cols;
+        int best = Integer.MAX_VALUE;
+        for(int hero : heroChunks)
+            best = Math.min(best, Math.max(Math.abs(hero % cols - c), Math.abs(hero / cols - r)));
+        return best;
+    }
+
+    /**
+     * 判断坐标是否在活动区域内
+     * @param x X坐标
+     * @param y Y坐标
+     * @return 是否完整模拟
+     */
+    public boolean isActive(int x, int y) {
+        return distance(chunkOf(x, y)) <= activeChunks;
+    }
+
+    /**
+     * 写入休眠记录（见World.writeState）
+     * 按分块顺序写入非空分块的下标和记录
+     * @param buf 输出缓冲区
+     */
+    public void writeState(ByteBuffer buf) {
+        Varint.putVarInt(buf, occupied.cardinality());
+        for(int chunk = occupied.nextSetBit(0); chunk >= 0; chunk = occupied.nextSetBit(chunk + 1)) {
+            Varint.putVarInt(buf, chunk);
+            Varint.putVarInt(buf, dormantSize[chunk] / RECORD);
+            for(int i = 0; i < dormantSize[chunk]; i++)
+                Varint.putSignedVarInt(buf, dormant[chunk][i]);
+        }
+    }
+
+    /**
+     * 把休眠记录直接混合进哈希（见World.hashState，内容与writeState一致）
+     * @param h 当前哈希
+     * @return 混合后的哈希
+     */
+    long hashState(long h) {
+        h = StateHash.mix(h, occupied.cardinality());
+        for(int chunk = occupied.nextSetBit(0); chunk >= 0; chunk = occupied.nextSetBit(chunk + 1)) {
+            h = StateHash.mix(h, chunk);
+            h = StateHash.mix(h, dormantSize[chunk]);
+            for(int i = 0; i < dormantSize[chunk]; i++)
+                h = StateHash.mix(h, dormant[chunk][i]);
+        }
+        return h;
+    }
+
+    /**
+     * 读取休眠记录（与writeState的顺序一致）
+     * @param buf 输入缓冲区
+     */
+    public void readState(ByteBuffer buf) {
+        int chunks = Varint.getVarInt(buf);
+        for(int k = 0; k < chunks; k++) {
+            int chunk = Varint.getVarInt(buf);
+            int n = Varint.getVarInt(buf);
+            for(int i = 0; i < n; i++)
+                add(chunk, Varint.getSignedVarInt(buf), Varint.getSignedVarInt(buf), Varint.getSignedVarInt(buf),
+                        Varint.getSignedVarInt(buf), Varint.getSignedVarInt(buf));
+        }
+    }
+
+    public int getActiveChunks() {
+        return activeChunks;
+    }
+
+    public int getDormantCount() {
+        return dormantCount;
+    }
+
+    /**
+     * 获取已装入寻路网格的分块数
+     * @return 分块数
+     */
+    public int getLoadedChunks() {
+        return installed.size();
+    }
+
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    public int getSyncLoads() {
+        return syncLoads;
+    }
+
+    public int getPrefetchHits() {
+        return prefetchHits;
+    }
+
+    public int getInitialLoads() {
+        return initialLoads;
+    }
+
+    /**
+     * 地图规模测试入口
+     * 参数：[地图边长列表（瓦片）] [每个分块的敌人数] [活动区域半径] [帧数]，默认"256,512,1024"、4个、1个分块、600帧（英雄要走过几个分块，预取才会被用到）
+     * 对每个规模生成随机地图，在整张地图上均匀生成敌人，分别在开启和不开启流式加载时运行指定帧数
+     * （英雄由HeroBot控制，每帧回满生命值），输出每帧耗时、世界占用的堆内存（不含地图本身）和分块状态
+     * 先用第一个规模预热（不输出），避免第一组结果包含JIT编译的时间
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String sizes = args.length > 0 ? args[0] : "256,512,1024";
+        int perChunk = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int active = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 600;
+        String[] items = sizes.split(",");
+        int first = Integer.parseInt(items[0].trim());
+        bench(first, perChunk, active, ticks, false);
+        bench(first, perChunk, 0, ticks, false);
+        for(String item : items) {
+            int tiles = Integer.parseInt(item.trim());
+            bench(tiles, perChunk, active, ticks, true);
+            bench(tiles, perChunk, 0, ticks, true);
+        }
+    }
+
+    /**
+     * 测试一个规模
+     * @param tiles 地图边长（瓦片，瓦片边长等于网格边长）
+     * @param perChunk 每个分块的敌人数
+     * @param active 活动区域半径，0表示不开启流式加载
+     * @param ticks 帧数
+     * @param report 是否输出结果（预热时不输出）
+     */
+    private static void bench(int tiles, int perChunk, int active, int ticks, boolean report) {
+        TileMap map = TileMap.generate(tiles, tiles, Grid.LENGTH, 10, 1);
+        long base = HordeBenchmark.usedHeap();
+        int side = (tiles + WorldGrids.CHUNK - 1) / WorldGrids.CHUNK;
+        int count = side * side * perChunk;
+        World world = new World(map, 2, 1, WaveRules.horde(count, 500));
+        for(int i = 0; i < count && world.getCurrentEnemyNum() < count; i++)
+            world.tick();
+        if(active > 0) world.enableStreaming(active);
+
+        HeroBot[] bots = {new HeroBot(0), new HeroBot(1)};
+        long start = System.nanoTime();
+        int n = 0;
+        for(; n < ticks && !world.End(); n++) {
+            for(HeroBot bot : bots)
+                bot.apply(world);
+            for(Hero hero : world.getHeroes())
+                hero.setHP(Hero.MAX_HP);
+            world.tick();
+        }
+        if(!report) return;
+        double perTick = (System.nanoTime() - start) / 1e6 / Math.max(1, n);
+        double heapMb = Math.max(0, HordeBenchmark.usedHeap() - base) / 1048576.0;
+        WorldStreamer streamer = world.getStreamer();
+        int alive = 0;
+        for(Iterator<GameObject> it = world.getObjectsIterator(); it.hasNext(); )
+            if(it.next() instanceof Enemy) alive++;
+        if(streamer == null) {
+            System.out.printf("%d×%d瓦片（%d个分块，%d个敌人）完整模拟：每帧%.2fms，世界占用%.1fMB，活动敌人%d%n",
+                    tiles, tiles, side * side, count, perTick, heapMb, alive);
+        } else {
+            System.out.printf("%d×%d瓦片（%d个分块，%d个敌人）流式加载：每帧%.2fms，世界占用%.1fMB，活动敌人%d，休眠%d，"
+                            + "装入网格分块%d，开启时同步生成%d，之后预取命中%d/同步生成%d，等待预取%.1fms%n",
+                    tiles, tiles, side * side, count, perTick, heapMb, alive, streamer.getDormantCount(),
+                    streamer.getLoadedChunks(), streamer.getInitialLoads(), streamer.getPrefetchHits(), streamer.getSyncLoads(), streamer.getWaitNanos() / 1e6);
+        }
+    }
+}